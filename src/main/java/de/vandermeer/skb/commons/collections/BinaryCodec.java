@@ -0,0 +1,851 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.composite.coin.NONode;
+import de.vandermeer.skb.base.composite.coin.NONone;
+import de.vandermeer.skb.base.composite.coin.NONull;
+import de.vandermeer.skb.base.composite.coin.NOSuccess;
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.IsCollectionStrategy;
+import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
+import de.vandermeer.skb.base.utils.collections.ListStrategy;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * Compact binary format for flat trees, flat tables, property tables and collections.
+ *
+ * <p>
+ * A stream starts with the magic bytes "SKB", a version and the kind of the written object.
+ * Tables add their strategy and columns. Paths follow in sorted order, each path is written as the number of characters it shares
+ * with the previous path followed by the remaining characters, so common prefixes are written only once.
+ * All lengths and counts are variable length integers. Values are written with a type tag, supported are null,
+ * {@link NONull}, {@link NONone}, {@link NONode}, {@link NOSuccess}, strings, booleans, all primitive wrappers, byte arrays and
+ * (nested) {@link ComCollection}s. Other values require a {@link ValueCodec}.
+ * </p>
+ *
+ * <p>
+ * Objects are streamed through a small buffer, so they are never buffered as a whole.
+ * Channels are neither closed nor flushed beyond the written data; a reader can read ahead of the end of an object.
+ * Channels to read from must be blocking, a channel that returns no data fails the read with an {@link IOException}.
+ * Lengths in a stream are not trusted, arrays grow with the data read so a corrupt length ends in an {@link EOFException}.
+ * Collection and table strategies are restored if they are a {@link ListStrategy} or {@link SetStrategy}, other strategies are read as defaults.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class BinaryCodec {
+
+	/** Magic bytes "SKB" at the start of every stream */
+	static final byte[] MAGIC = new byte[]{'S', 'K', 'B'};
+
+	/** Version of the format */
+	static final byte VERSION = 1;
+
+	/** Default size of the stream buffers */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Kind of object: flat tree */
+	static final byte K_TREE = 1;
+
+	/** Kind of object: flat multi-value tree */
+	static final byte K_MULTI_TREE = 2;
+
+	/** Kind of object: flat table */
+	static final byte K_TABLE = 3;
+
+	/** Kind of object: flat multi-value table */
+	static final byte K_MULTI_TABLE = 4;
+
+	/** Kind of object: property table */
+	static final byte K_PROPERTY_TABLE = 5;
+
+	/** Kind of object: collection */
+	static final byte K_COLLECTION = 6;
+
+	/** Value tag: null */
+	static final byte T_NULL = 0;
+
+	/** Value tag: null object, followed by one byte for the null object */
+	static final byte T_NULL_OBJECT = 1;
+
+	/** Value tag: string */
+	static final byte T_STRING = 2;
+
+	/** Value tag: boolean false */
+	static final byte T_FALSE = 3;
+
+	/** Value tag: boolean true */
+	static final byte T_TRUE = 4;
+
+	/** Value tag: integer */
+	static final byte T_INTEGER = 5;
+
+	/** Value tag: long */
+	static final byte T_LONG = 6;
+
+	/** Value tag: double */
+	static final byte T_DOUBLE = 7;
+
+	/** Value tag: float */
+	static final byte T_FLOAT = 8;
+
+	/** Value tag: short */
+	static final byte T_SHORT = 9;
+
+	/** Value tag: byte */
+	static final byte T_BYTE = 10;
+
+	/** Value tag: character */
+	static final byte T_CHARACTER = 11;
+
+	/** Value tag: byte array */
+	static final byte T_BYTES = 12;
+
+	/** Value tag: collection */
+	static final byte T_COLLECTION = 13;
+
+	/** Value tag: value of the custom codec */
+	static final byte T_CUSTOM = 14;
+
+	/** Strategy tag: default strategy */
+	static final byte S_DEFAULT = 0;
+
+	/** Strategy tag: list strategy, followed by its name */
+	static final byte S_LIST = 1;
+
+	/** Strategy tag: set strategy, followed by its name */
+	static final byte S_SET = 2;
+
+	/** Null objects in the order of their codes */
+	static final NullObject[] NULL_OBJECTS = new NullObject[]{NONull.get, NONone.get, NONode.get, NOSuccess.get};
+
+	/** Codec for values of other types, null if not supported */
+	final ValueCodec<Object> custom;
+
+	/** Size of the stream buffers */
+	final int bufferSize;
+
+	/** Creates a new codec for the supported value types. */
+	public BinaryCodec(){
+		this(null, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new codec.
+	 * @param custom codec for values of types that are not supported directly, can be null
+	 * @param bufferSize size of the stream buffers in bytes
+	 * @throws IllegalArgumentException if bufferSize is less than 16
+	 */
+	public BinaryCodec(ValueCodec<Object> custom, int bufferSize){
+		if(bufferSize<16){
+			throw new IllegalArgumentException("buffer size must be at least 16");
+		}
+		this.custom = custom;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Writes a flat tree.
+	 * @param tree tree to write
+	 * @param out channel to write to
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if a value has no supported type
+	 */
+	public void write(FlatTree<?> tree, WritableByteChannel out) throws IOException {
+		Output o = this.start(out, K_TREE);
+		this.writeEntries(o, tree.sval.sortedKeys(), tree.sval);
+		o.flush();
+	}
+
+	/**
+	 * Writes a flat multi-value tree.
+	 * @param tree tree to write
+	 * @param out channel to write to
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if a value has no supported type
+	 */
+	public void write(FlatMultiTree<?> tree, WritableByteChannel out) throws IOException {
+		Output o = this.start(out, K_MULTI_TREE);
+		this.writeEntries(o, tree.sval.sortedKeys(), tree.sval);
+		o.flush();
+	}
+
+	/**
+	 * Writes a flat table or a property table.
+	 * @param table table to write
+	 * @param out channel to write to
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if a value has no supported type
+	 */
+	public void write(FlatTable<?> table, WritableByteChannel out) throws IOException {
+		Output o = this.start(out, (table instanceof PropertyTable)?K_PROPERTY_TABLE:K_TABLE);
+		this.writeStrategy(o, table.strategy);
+		if(!(table instanceof PropertyTable)){
+			this.writeColumns(o, table.columns);
+		}
+		this.writeEntries(o, new TreeSet<String>(table.sval.keySet()), table.sval);
+		o.flush();
+	}
+
+	/**
+	 * Writes a flat multi-value table.
+	 * @param table table to write
+	 * @param out channel to write to
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if a value has no supported type
+	 */
+	public void write(FlatMultiTable<?> table, WritableByteChannel out) throws IOException {
+		Output o = this.start(out, K_MULTI_TABLE);
+		this.writeStrategy(o, table.strategy);
+		this.writeColumns(o, table.columns);
+		this.writeEntries(o, new TreeSet<String>(table.sval.keySet()), table.sval);
+		o.flush();
+	}
+
+	/**
+	 * Writes a collection.
+	 * @param collection collection to write
+	 * @param out channel to write to
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if a value has no supported type
+	 */
+	public void write(ComCollection<?> collection, WritableByteChannel out) throws IOException {
+		Output o = this.start(out, K_COLLECTION);
+		this.writeValue(o, collection);
+		o.flush();
+	}
+
+	/**
+	 * Reads a flat tree.
+	 * @param in channel to read from
+	 * @param <E> type of the values
+	 * @return new tree
+	 * @throws IOException from reading the channel, or if the channel does not contain a flat tree
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> FlatTree<E> readFlatTree(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_TREE);
+		FlatTree<E> ret = new FlatTree<E>();
+		this.readEntries(i, (Map<String, Object>)(Map<String, ?>)ret.sval);
+		return ret;
+	}
+
+	/**
+	 * Reads a flat multi-value tree.
+	 * @param in channel to read from
+	 * @param <E> type of the values
+	 * @return new tree
+	 * @throws IOException from reading the channel, or if the channel does not contain a flat multi-value tree
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> FlatMultiTree<E> readFlatMultiTree(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_MULTI_TREE);
+		FlatMultiTree<E> ret = new FlatMultiTree<E>();
+		this.readEntries(i, (Map<String, Object>)(Map<String, ?>)ret.sval);
+		return ret;
+	}
+
+	/**
+	 * Reads a flat table.
+	 * @param in channel to read from
+	 * @param <E> type of the values
+	 * @return new table
+	 * @throws IOException from reading the channel, or if the channel does not contain a flat table
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> FlatTable<E> readFlatTable(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_TABLE);
+		FlatTable<E> ret = new FlatTable<E>(this.readSetStrategy(i), this.readColumns(i));
+		this.readEntries(i, (Map<String, Object>)(Map<String, ?>)ret.sval);
+		ret.reindexRows();
+		return ret;
+	}
+
+	/**
+	 * Reads a flat multi-value table.
+	 * @param in channel to read from
+	 * @param <E> type of the values
+	 * @return new table
+	 * @throws IOException from reading the channel, or if the channel does not contain a flat multi-value table
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> FlatMultiTable<E> readFlatMultiTable(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_MULTI_TABLE);
+		FlatMultiTable<E> ret = new FlatMultiTable<E>(this.readSetStrategy(i), this.readColumns(i));
+		this.readEntries(i, (Map<String, Object>)(Map<String, ?>)ret.sval);
+		ret.reindexRows();
+		return ret;
+	}
+
+	/**
+	 * Reads a property table.
+	 * @param in channel to read from
+	 * @return new table
+	 * @throws IOException from reading the channel, or if the channel does not contain a property table
+	 */
+	public PropertyTable readPropertyTable(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_PROPERTY_TABLE);
+		PropertyTable ret = new PropertyTable(this.readSetStrategy(i));
+		this.readEntries(i, ret.sval);
+		ret.reindexRows();
+		return ret;
+	}
+
+	/**
+	 * Reads a collection.
+	 * @param in channel to read from
+	 * @param <E> type of the values
+	 * @return new collection
+	 * @throws IOException from reading the channel, or if the channel does not contain a collection
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> ComCollection<E> readComCollection(ReadableByteChannel in) throws IOException {
+		Input i = this.open(in, K_COLLECTION);
+		Object ret = this.readValue(i);
+		if(!(ret instanceof ComCollection)){
+			throw new IOException("malformed stream, collection expected");
+		}
+		return (ComCollection<E>)ret;
+	}
+
+	/**
+	 * Starts a new stream.
+	 * @param out channel to write to
+	 * @param kind kind of the written object
+	 * @return output for the stream
+	 * @throws IOException from writing to the channel
+	 */
+	Output start(WritableByteChannel out, byte kind) throws IOException {
+		Output ret = new Output(out, this.bufferSize);
+		ret.bytes(MAGIC);
+		ret.put(VERSION);
+		ret.put(kind);
+		return ret;
+	}
+
+	/**
+	 * Opens a stream and tests its header.
+	 * @param in channel to read from
+	 * @param kind expected kind of object
+	 * @return input for the stream
+	 * @throws IOException from reading the channel, or if the header is not the expected one
+	 */
+	Input open(ReadableByteChannel in, byte kind) throws IOException {
+		Input ret = new Input(in, this.bufferSize);
+		for(byte b : MAGIC){
+			if(ret.get()!=b){
+				throw new IOException("not an SKB binary stream");
+			}
+		}
+		byte version = ret.get();
+		if(version!=VERSION){
+			throw new IOException("unsupported version " + version);
+		}
+		byte actual = ret.get();
+		if(actual!=kind){
+			throw new IOException("unexpected kind of object " + actual + ", expected " + kind);
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes paths with their values, the paths are prefix compressed.
+	 * @param o output
+	 * @param keys paths in sorted order
+	 * @param map map with the values
+	 * @throws IOException from writing to the channel
+	 */
+	void writeEntries(Output o, Collection<String> keys, Map<String, ?> map) throws IOException {
+		o.varint(keys.size());
+		String previous = "";
+		for(String key : keys){
+			int common = BinaryCodec.commonPrefix(previous, key);
+			o.varint(common);
+			o.string(key.substring(common));
+			this.writeValue(o, map.get(key));
+			previous = key;
+		}
+	}
+
+	/**
+	 * Reads paths with their values into a map.
+	 * @param i input
+	 * @param map map to add the paths to
+	 * @throws IOException from reading the channel, or for a malformed stream
+	 */
+	void readEntries(Input i, Map<String, Object> map) throws IOException {
+		int size = i.length();
+		String previous = "";
+		for(int k=0; k<size; k++){
+			int common = i.length();
+			if(common>previous.length()){
+				throw new IOException("malformed stream, invalid path prefix");
+			}
+			String key = previous.substring(0, common) + i.string();
+			map.put(key, this.readValue(i));
+			previous = key;
+		}
+	}
+
+	/**
+	 * Writes a value with its type tag.
+	 * @param o output
+	 * @param value the value
+	 * @throws IOException from writing to the channel
+	 * @throws IllegalArgumentException if the value has no supported type
+	 */
+	void writeValue(Output o, Object value) throws IOException {
+		if(value==null){
+			o.put(T_NULL);
+		}
+		else if(value instanceof NullObject){
+			for(int k=0; k<NULL_OBJECTS.length; k++){
+				if(NULL_OBJECTS[k].getClass()==value.getClass()){
+					o.put(T_NULL_OBJECT);
+					o.put((byte)k);
+					return;
+				}
+			}
+			throw new IllegalArgumentException("unsupported null object " + value.getClass().getName());
+		}
+		else if(value instanceof String){
+			o.put(T_STRING);
+			o.string((String)value);
+		}
+		else if(value instanceof Boolean){
+			o.put(((Boolean)value)?T_TRUE:T_FALSE);
+		}
+		else if(value instanceof Integer){
+			o.put(T_INTEGER);
+			o.varint(BinaryCodec.zigzag((Integer)value));
+		}
+		else if(value instanceof Long){
+			o.put(T_LONG);
+			o.varint(BinaryCodec.zigzag((Long)value));
+		}
+		else if(value instanceof Double){
+			o.put(T_DOUBLE);
+			o.fixed(Double.doubleToRawLongBits((Double)value), 8);
+		}
+		else if(value instanceof Float){
+			o.put(T_FLOAT);
+			o.fixed(Float.floatToRawIntBits((Float)value), 4);
+		}
+		else if(value instanceof Short){
+			o.put(T_SHORT);
+			o.varint(BinaryCodec.zigzag((Short)value));
+		}
+		else if(value instanceof Byte){
+			o.put(T_BYTE);
+			o.put((Byte)value);
+		}
+		else if(value instanceof Character){
+			o.put(T_CHARACTER);
+			o.varint((Character)value);
+		}
+		else if(value instanceof byte[]){
+			o.put(T_BYTES);
+			o.varint(((byte[])value).length);
+			o.bytes((byte[])value);
+		}
+		else if(value instanceof ComCollection){
+			ComCollection<?> coll = (ComCollection<?>)value;
+			o.put(T_COLLECTION);
+			this.writeStrategy(o, coll.strategy);
+			o.varint(coll.size());
+			for(Object v : coll){
+				this.writeValue(o, v);
+			}
+		}
+		else if(this.custom!=null){
+			byte[] bytes = this.custom.encode(value);
+			o.put(T_CUSTOM);
+			o.varint(bytes.length);
+			o.bytes(bytes);
+		}
+		else{
+			throw new IllegalArgumentException("unsupported value type " + value.getClass().getName());
+		}
+	}
+
+	/**
+	 * Reads a value with its type tag.
+	 * @param i input
+	 * @return the value
+	 * @throws IOException from reading the channel, or for a malformed stream
+	 */
+	@SuppressWarnings("unchecked")
+	Object readValue(Input i) throws IOException {
+		byte tag = i.get();
+		switch(tag){
+			case T_NULL:
+				return null;
+			case T_NULL_OBJECT:
+				int code = i.get();
+				if(code<0 || code>=NULL_OBJECTS.length){
+					throw new IOException("malformed stream, unknown null object " + code);
+				}
+				return NULL_OBJECTS[code];
+			case T_STRING:
+				return i.string();
+			case T_FALSE:
+				return Boolean.FALSE;
+			case T_TRUE:
+				return Boolean.TRUE;
+			case T_INTEGER:
+				return (int)BinaryCodec.unzigzag(i.varint());
+			case T_LONG:
+				return BinaryCodec.unzigzag(i.varint());
+			case T_DOUBLE:
+				return Double.longBitsToDouble(i.fixed(8));
+			case T_FLOAT:
+				return Float.intBitsToFloat((int)i.fixed(4));
+			case T_SHORT:
+				return (short)BinaryCodec.unzigzag(i.varint());
+			case T_BYTE:
+				return i.get();
+			case T_CHARACTER:
+				return (char)i.varint();
+			case T_BYTES:
+				return i.bytes(i.length());
+			case T_COLLECTION:
+				IsCollectionStrategy strategy = this.readStrategy(i);
+				int size = i.length();
+				List<Object> values = new ArrayList<Object>(Math.min(size, 1024));
+				for(int k=0; k<size; k++){
+					values.add(this.readValue(i));
+				}
+				return new ComCollection<Object>(strategy, values);
+			case T_CUSTOM:
+				if(this.custom==null){
+					throw new IOException("custom value found, but no value codec set");
+				}
+				return this.custom.decode(ByteBuffer.wrap(i.bytes(i.length())));
+			default:
+				throw new IOException("malformed stream, unknown value tag " + tag);
+		}
+	}
+
+	/**
+	 * Writes a collection strategy.
+	 * @param o output
+	 * @param strategy strategy to write
+	 * @throws IOException from writing to the channel
+	 */
+	void writeStrategy(Output o, IsCollectionStrategy strategy) throws IOException {
+		if(strategy instanceof ListStrategy){
+			o.put(S_LIST);
+			o.string(((ListStrategy)strategy).name());
+		}
+		else if(strategy instanceof SetStrategy){
+			o.put(S_SET);
+			o.string(((SetStrategy)strategy).name());
+		}
+		else{
+			o.put(S_DEFAULT);
+		}
+	}
+
+	/**
+	 * Reads a collection strategy.
+	 * @param i input
+	 * @return strategy, null for the default strategy or an unknown name
+	 * @throws IOException from reading the channel, or for a malformed stream
+	 */
+	IsCollectionStrategy readStrategy(Input i) throws IOException {
+		byte tag = i.get();
+		if(tag==S_DEFAULT){
+			return null;
+		}
+		String name = i.string();
+		try{
+			if(tag==S_LIST){
+				return ListStrategy.valueOf(name);
+			}
+			if(tag==S_SET){
+				return SetStrategy.valueOf(name);
+			}
+		}
+		catch(IllegalArgumentException ignore){
+			return null;
+		}
+		throw new IOException("malformed stream, unknown strategy tag " + tag);
+	}
+
+	/**
+	 * Reads a set strategy for a table.
+	 * @param i input
+	 * @return set strategy, null for the default strategy
+	 * @throws IOException from reading the channel, or for a malformed stream
+	 */
+	IsSetStrategy readSetStrategy(Input i) throws IOException {
+		IsCollectionStrategy ret = this.readStrategy(i);
+		return (ret instanceof IsSetStrategy)?(IsSetStrategy)ret:null;
+	}
+
+	/**
+	 * Writes the columns of a table.
+	 * @param o output
+	 * @param columns columns to write
+	 * @throws IOException from writing to the channel
+	 */
+	void writeColumns(Output o, Collection<IsAttributeKey> columns) throws IOException {
+		o.varint(columns.size());
+		for(IsAttributeKey col : columns){
+			o.string(col.key());
+		}
+	}
+
+	/**
+	 * Reads the columns of a table, columns with the key of an {@link EAttributeKeys} are read as that key.
+	 * @param i input
+	 * @return columns
+	 * @throws IOException from reading the channel, or for a malformed stream
+	 */
+	List<IsAttributeKey> readColumns(Input i) throws IOException {
+		int size = i.length();
+		List<IsAttributeKey> ret = new ArrayList<IsAttributeKey>(Math.min(size, 1024));
+		for(int k=0; k<size; k++){
+			String key = i.string();
+			IsAttributeKey col = null;
+			for(EAttributeKeys ek : EAttributeKeys.values()){
+				if(ek.key().equals(key)){
+					col = ek;
+					break;
+				}
+			}
+			ret.add((col==null)?IsAttributeKey.create(key):col);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of characters two strings share at their start, never splitting a surrogate pair.
+	 * @param a first string
+	 * @param b second string
+	 * @return length of the common prefix
+	 */
+	static int commonPrefix(String a, String b){
+		int max = Math.min(a.length(), b.length());
+		int ret = 0;
+		while(ret<max && a.charAt(ret)==b.charAt(ret)){
+			ret++;
+		}
+		if(ret>0 && Character.isHighSurrogate(a.charAt(ret-1))){
+			ret--;
+		}
+		return ret;
+	}
+
+	/**
+	 * Encodes a signed value so that small negative values have a short variable length encoding.
+	 * @param value signed value
+	 * @return encoded value
+	 */
+	static long zigzag(long value){
+		return (value<<1) ^ (value>>63);
+	}
+
+	/**
+	 * Decodes a value encoded with {@link #zigzag(long)}.
+	 * @param value encoded value
+	 * @return signed value
+	 */
+	static long unzigzag(long value){
+		return (value>>>1) ^ -(value & 1);
+	}
+
+	/** Buffered output to a channel. */
+	static final class Output {
+		final WritableByteChannel out;
+		final ByteBuffer buffer;
+
+		Output(WritableByteChannel out, int size){
+			this.out = out;
+			this.buffer = ByteBuffer.allocate(size);
+		}
+
+		void put(byte b) throws IOException {
+			if(!this.buffer.hasRemaining()){
+				this.flush();
+			}
+			this.buffer.put(b);
+		}
+
+		void varint(long value) throws IOException {
+			long v = value;
+			while((v & ~0x7FL)!=0){
+				this.put((byte)((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			this.put((byte)v);
+		}
+
+		void fixed(long value, int length) throws IOException {
+			for(int k=0; k<length; k++){
+				this.put((byte)(value>>>(8*k)));
+			}
+		}
+
+		void string(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			this.varint(bytes.length);
+			this.bytes(bytes);
+		}
+
+		void bytes(byte[] bytes) throws IOException {
+			if(bytes.length>this.buffer.remaining()){
+				this.flush();
+			}
+			if(bytes.length>this.buffer.capacity()){
+				ByteBuffer direct = ByteBuffer.wrap(bytes);
+				while(direct.hasRemaining()){
+					this.out.write(direct);
+				}
+			}
+			else{
+				this.buffer.put(bytes);
+			}
+		}
+
+		void flush() throws IOException {
+			this.buffer.flip();
+			while(this.buffer.hasRemaining()){
+				this.out.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+
+	/** Buffered input from a channel. */
+	static final class Input {
+		/** Largest array allocated before any of its bytes are read */
+		static final int CHUNK = 65536;
+
+		final ReadableByteChannel in;
+		final ByteBuffer buffer;
+
+		Input(ReadableByteChannel in, int size){
+			this.in = in;
+			this.buffer = ByteBuffer.allocate(size);
+			this.buffer.flip();
+		}
+
+		byte get() throws IOException {
+			if(!this.buffer.hasRemaining()){
+				this.fill();
+			}
+			return this.buffer.get();
+		}
+
+		long varint() throws IOException {
+			long ret = 0;
+			for(int shift=0; shift<64; shift+=7){
+				byte b = this.get();
+				ret |= (long)(b & 0x7F)<<shift;
+				if((b & 0x80)==0){
+					return ret;
+				}
+			}
+			throw new IOException("malformed stream, variable length integer too long");
+		}
+
+		int length() throws IOException {
+			long ret = this.varint();
+			if(ret<0 || ret>Integer.MAX_VALUE){
+				throw new IOException("malformed stream, invalid length " + ret);
+			}
+			return (int)ret;
+		}
+
+		long fixed(int length) throws IOException {
+			long ret = 0;
+			for(int k=0; k<length; k++){
+				ret |= (long)(this.get() & 0xFF)<<(8*k);
+			}
+			return ret;
+		}
+
+		String string() throws IOException {
+			return new String(this.bytes(this.length()), StandardCharsets.UTF_8);
+		}
+
+		byte[] bytes(int length) throws IOException {
+			//the length is read from the stream, so the array only grows with the bytes that actually arrive
+			byte[] ret = new byte[Math.min(length, CHUNK)];
+			int done = 0;
+			while(done<length){
+				if(done==ret.length){
+					ret = Arrays.copyOf(ret, (int)Math.min(length, 2L*ret.length));
+				}
+				if(this.buffer.hasRemaining()){
+					int count = Math.min(ret.length-done, this.buffer.remaining());
+					this.buffer.get(ret, done, count);
+					done += count;
+				}
+				else{
+					ByteBuffer direct = ByteBuffer.wrap(ret, done, ret.length-done);
+					this.read(direct);
+					done = direct.position();
+				}
+			}
+			return ret;
+		}
+
+		void fill() throws IOException {
+			this.buffer.clear();
+			try{
+				this.read(this.buffer);
+			}
+			finally{
+				this.buffer.flip();
+			}
+		}
+
+		/**
+		 * Reads at least one byte from the channel.
+		 * @param target buffer to read into, must have space remaining
+		 * @throws EOFException at the end of the stream
+		 * @throws IOException if the channel returns no data, which only non-blocking channels do
+		 */
+		void read(ByteBuffer target) throws IOException {
+			int read = this.in.read(target);
+			if(read<0){
+				throw new EOFException("unexpected end of stream");
+			}
+			if(read==0){
+				throw new IOException("channel returned no data, only blocking channels are supported");
+			}
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A secondary index of a table column, mapping the values of the column to the rows holding them.
+ *
+ * <p>
+ * A hash index supports equality lookups, a sorted index supports equality and range lookups.
+ * Sorted indexes order values by a comparator or, if none is given, by their natural ordering.
+ * Null values are not indexed.
+ * The index is maintained by the table it belongs to, see {@link FlatTable#addIndex(Object, ColumnIndex.Type)}.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public final class ColumnIndex {
+
+	/** Types of column indexes */
+	public enum Type {
+		/** index supporting equality lookups */
+		HASH,
+
+		/** index supporting equality and range lookups */
+		SORTED;
+	}
+
+	/** Type of the index */
+	final Type type;
+
+	/** Values mapped to the paths of the rows holding them */
+	final Map<Object, Set<String>> entries;
+
+	/**
+	 * Creates a new index.
+	 * @param type type of the index
+	 * @param comparator comparator for a sorted index, null for natural ordering, ignored for hash indexes
+	 * @throws IllegalArgumentException if type is null
+	 */
+	@SuppressWarnings("unchecked")
+	ColumnIndex(Type type, Comparator<?> comparator){
+		if(type==null){
+			throw new IllegalArgumentException("index type must not be null");
+		}
+		this.type = type;
+		if(type==Type.SORTED){
+			this.entries = new TreeMap<Object, Set<String>>((Comparator<Object>)comparator);
+		}
+		else{
+			this.entries = new HashMap<Object, Set<String>>();
+		}
+	}
+
+	/**
+	 * Returns a copy of the index.
+	 * @return new index with the same type, ordering and entries
+	 */
+	ColumnIndex copy(){
+		ColumnIndex ret = new ColumnIndex(this.type, this.comparator());
+		for(Map.Entry<Object, Set<String>> entry : this.entries.entrySet()){
+			ret.entries.put(entry.getKey(), new LinkedHashSet<String>(entry.getValue()));
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the name of a column as used in table paths.
+	 * @param column column, for instance an attribute key or its name
+	 * @return column name, null if column is null
+	 */
+	static String column(Object column){
+		if(column==null){
+			return null;
+		}
+		String ret = Table.tableJoiner.transform(new Pair<Object, Object>(null, column)).toString();
+		return ret.substring(Table.defaulSeparator.length());
+	}
+
+	/**
+	 * Finds rows by scanning a column, used for lookups without an index.
+	 * @param rows paths of all rows
+	 * @param value returns the value of the column for a row path
+	 * @param filter test for the values of the column, null values are never tested
+	 * @return new set of row paths in row order
+	 */
+	static Set<String> scan(Iterable<String> rows, Function<String, Object> value, Predicate<Object> filter){
+		Set<String> ret = new LinkedHashSet<String>();
+		for(String row : rows){
+			Object v = value.apply(row);
+			if(v!=null && filter.test(v)){
+				ret.add(row);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns a test for values within a range, using their natural ordering.
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if the lowest value is included
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if the highest value is included
+	 * @return new test, throwing a ClassCastException for values that are not comparable
+	 */
+	static Predicate<Object> between(Object from, boolean fromInclusive, Object to, boolean toInclusive){
+		return ColumnIndex.between(null, from, fromInclusive, to, toInclusive);
+	}
+
+	/**
+	 * Returns a test for values within a range, using the ordering of a comparator.
+	 * @param comparator ordering of the values, null for natural ordering
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if the lowest value is included
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if the highest value is included
+	 * @return new test, throwing a ClassCastException for values the ordering cannot compare
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	static Predicate<Object> between(Comparator<?> comparator, Object from, boolean fromInclusive, Object to, boolean toInclusive){
+		Comparator<Object> order = (comparator==null)?(Comparator)Comparator.naturalOrder():(Comparator<Object>)comparator;
+		return v -> {
+			if(from!=null){
+				int c = order.compare(v, from);
+				if(c<0 || (c==0 && !fromInclusive)){
+					return false;
+				}
+			}
+			if(to!=null){
+				int c = order.compare(v, to);
+				if(c>0 || (c==0 && !toInclusive)){
+					return false;
+				}
+			}
+			return true;
+		};
+	}
+
+	/**
+	 * Returns the type of the index.
+	 * @return index type
+	 */
+	public Type getType(){
+		return this.type;
+	}
+
+	/**
+	 * Returns the ordering of a sorted index.
+	 * @return comparator, null for natural ordering or a hash index
+	 */
+	Comparator<?> comparator(){
+		return (this.type==Type.SORTED)?((TreeMap<Object, Set<String>>)this.entries).comparator():null;
+	}
+
+	/**
+	 * Adds a row for a value.
+	 * @param value cell value, nothing is added if null
+	 * @param row row path
+	 */
+	void add(Object value, String row){
+		if(value!=null){
+			Set<String> rows = this.entries.get(value);
+			if(rows==null){
+				rows = new LinkedHashSet<String>();
+				this.entries.put(value, rows);
+			}
+			rows.add(row);
+		}
+	}
+
+	/**
+	 * Removes a row for a value.
+	 * @param value cell value, nothing is removed if null
+	 * @param row row path
+	 */
+	void remove(Object value, String row){
+		if(value!=null){
+			Set<String> rows = this.entries.get(value);
+			if(rows!=null && rows.remove(row) && rows.isEmpty()){
+				this.entries.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * Changes the value of a row.
+	 * @param oldValue old cell value
+	 * @param newValue new cell value
+	 * @param row row path
+	 * @throws IllegalArgumentException if a sorted index cannot order the new value, the index is not changed
+	 */
+	void update(Object oldValue, Object newValue, String row){
+		if(oldValue!=newValue){
+			this.remove(oldValue, row);
+			try{
+				this.add(newValue, row);
+			}
+			catch(ClassCastException ex){
+				this.add(oldValue, row);
+				throw new IllegalArgumentException("sorted index cannot order value <" + newValue + ">", ex);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear(){
+		this.entries.clear();
+	}
+
+	/**
+	 * Returns the rows holding a value.
+	 * @param value cell value
+	 * @return read-only view of the row paths, empty if no row holds the value
+	 */
+	public Set<String> get(Object value){
+		Set<String> ret = (value==null)?null:this.entries.get(value);
+		return (ret==null)?Collections.<String>emptySet():Collections.unmodifiableSet(ret);
+	}
+
+	/**
+	 * Returns the rows holding a value within a range, ordered by value.
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if rows holding the lowest value are returned
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if rows holding the highest value are returned
+	 * @return new set of row paths, empty if no row holds a value in the range
+	 * @throws UnsupportedOperationException if the index is not sorted
+	 */
+	public Set<String> range(Object from, boolean fromInclusive, Object to, boolean toInclusive){
+		Set<String> ret = new LinkedHashSet<String>();
+		for(Set<String> rows : this.sorted(from, fromInclusive, to, toInclusive).values()){
+			ret.addAll(rows);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the entries of a sorted index within a range.
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if the lowest value is included
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if the highest value is included
+	 * @return range view of the entries
+	 * @throws UnsupportedOperationException if the index is not sorted
+	 */
+	NavigableMap<Object, Set<String>> sorted(Object from, boolean fromInclusive, Object to, boolean toInclusive){
+		if(this.type!=Type.SORTED){
+			throw new UnsupportedOperationException("range lookups need a sorted index");
+		}
+		NavigableMap<Object, Set<String>> ret = (TreeMap<Object, Set<String>>)this.entries;
+		if(from!=null){
+			ret = ret.tailMap(from, fromInclusive);
+		}
+		if(to!=null){
+			ret = ret.headMap(to, toInclusive);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of distinct values in the index.
+	 * @return number of values
+	 */
+	public int size(){
+		return this.entries.size();
+	}
+}
@@ -0,0 +1,563 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.Skb_ObjectUtils;
+import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * A column oriented implementation of the {@link Table}.
+ * Rows are interned to a dense row id, each column keeps its values in one array indexed by that id.
+ * Cells are not stored as individual map entries, so a table of R rows and C columns needs R keys and C arrays instead of R*(C+1) map entries.
+ * Towards clients the table behaves like a {@link FlatTable}: rows and cells are addressed by their paths and {@link #keys()} returns the row and cell paths.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class ColumnTable<E> implements Table<E> {
+
+	/** Initial number of row slots */
+	static final int INITIAL_CAPACITY = 16;
+
+	/** Code returned by {@link #locate(String)} for paths that are neither a row nor a cell */
+	static final long NOT_FOUND = -1L;
+
+	/** table columns */
+	protected Set<IsAttributeKey> columns;
+
+	/** strategy for the table columns */
+	protected IsSetStrategy strategy;
+
+	/** Column names in column order */
+	String[] columnNames;
+
+	/** Column names mapped to their column number */
+	Map<String, Integer> columnIds;
+
+	/** Row paths mapped to their row id */
+	Map<String, Integer> rowIds;
+
+	/** Row paths by row id, null for unused ids */
+	String[] rowKeys;
+
+	/** Cell values, one array per column indexed by row id */
+	Object[][] cells;
+
+	/** Row ids of removed rows, reused before new ids are taken */
+	int[] free;
+
+	/** Number of ids in {@link #free} */
+	int freeCount;
+
+	/** Lowest row id that was never used */
+	int next;
+
+	/** Listeners and pending events, null as long as no listener is registered */
+	TreeEvents<E> events;
+
+	/** Creates a new table with default strategy and a single default column */
+	public ColumnTable(){
+		this.init(null, null);
+	}
+
+	/**
+	 * Creates a new column table.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 */
+	public ColumnTable(IsSetStrategy strategy, Collection<IsAttributeKey> columns){
+		this.init(strategy, columns);
+	}
+
+	/**
+	 * Creates a new column table.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 */
+	public ColumnTable(IsSetStrategy strategy, IsAttributeKey[] columns){
+		if(columns!=null){
+			this.init(strategy, Arrays.asList(columns));
+		}
+		else{
+			this.init(strategy, null);
+		}
+	}
+
+	/**
+	 * Initialize the table (used by the constructors).
+	 * @param strategy strategy for the table, default is {@link SetStrategy#LINKED_HASH_SET}
+	 * @param columns columns for each table row (default is a single column named "default-column")
+	 */
+	private void init(IsSetStrategy strategy, Collection<IsAttributeKey> columns){
+		if(strategy!=null){
+			this.strategy = strategy;
+		}
+		else{
+			this.strategy = SetStrategy.LINKED_HASH_SET;
+		}
+		this.columns = this.strategy.get(this.columns=null);
+
+		if(columns==null){
+			this.columns.add(EAttributeKeys.DEFAULT);
+		}
+		else{
+			for(IsAttributeKey key:columns){
+				if(key!=null){
+					this.columns.add(key);
+				}
+			}
+		}
+
+		this.columnIds = new HashMap<String, Integer>();
+		for(IsAttributeKey key : this.columns){
+			if(!this.columnIds.containsKey(key.key())){
+				this.columnIds.put(key.key(), this.columnIds.size());
+			}
+		}
+		this.columnNames = new String[this.columnIds.size()];
+		for(Map.Entry<String, Integer> entry : this.columnIds.entrySet()){
+			this.columnNames[entry.getValue()] = entry.getKey();
+		}
+
+		this.rowIds = new HashMap<String, Integer>();
+		this.rowKeys = new String[INITIAL_CAPACITY];
+		this.cells = new Object[this.columnNames.length][INITIAL_CAPACITY];
+		this.free = new int[0];
+		this.freeCount = 0;
+		this.next = 0;
+	}
+
+	/**
+	 * Locates a row or a cell.
+	 * @param fqpn path of the row or cell
+	 * @return {@link #NOT_FOUND} if no such row or cell exists, otherwise the row id in the upper and the column number in the lower 32 bit, the column number is -1 for a row
+	 */
+	long locate(String fqpn){
+		int sep = fqpn.indexOf(Table.defaulSeparator, 1);
+		Integer row = this.rowIds.get((sep==-1)?fqpn:fqpn.substring(0, sep));
+		if(row==null){
+			return NOT_FOUND;
+		}
+		if(sep==-1){
+			return ((long)row<<32) | 0xFFFFFFFFL;
+		}
+		Integer column = this.columnIds.get(fqpn.substring(sep+1));
+		if(column==null){
+			return NOT_FOUND;
+		}
+		return ((long)row<<32) | column;
+	}
+
+	/**
+	 * Locates a cell.
+	 * @param row row name
+	 * @param column column name
+	 * @return code as described in {@link #locate(String)}
+	 */
+	long locate(Object row, Object column){
+		return this.locate(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+	}
+
+	@Override
+	public boolean addRow(Object row) {
+		String key = Table.rowPath(row);
+		if(key==null || this.rowIds.containsKey(key)){
+			return false;
+		}
+
+		int id;
+		if(this.freeCount>0){
+			id = this.free[--this.freeCount];
+		}
+		else{
+			if(this.next==this.rowKeys.length){
+				int capacity = this.rowKeys.length + (this.rowKeys.length>>1);
+				this.rowKeys = Arrays.copyOf(this.rowKeys, capacity);
+				for(int i=0; i<this.cells.length; i++){
+					this.cells[i] = Arrays.copyOf(this.cells[i], capacity);
+				}
+			}
+			id = this.next++;
+		}
+		this.rowKeys[id] = key;
+		this.rowIds.put(key, id);
+
+		if(this.events!=null){
+			TreeEvents.rowAdded(this.events, key, this.columns);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean addRowsAll(Object rows) {
+		return TreeEvents.batch(this.events, () -> {
+			Object[] r = (rows==null)?null:Skb_ObjectUtils.CONVERT(rows, Object[].class, null, null);
+			if(r==null){
+				return false;
+			}
+			for(Object row : r){
+				this.addRow(row);
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Registers a listener that is notified about all changes of the table.
+	 * As long as no listener is registered, changes do not create any events.
+	 * @param listener new listener
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addListener(TreeListener<E> listener) {
+		this.events = TreeEvents.addListener(this.events, this, listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener listener to remove
+	 */
+	public void removeListener(TreeListener<E> listener) {
+		this.events = TreeEvents.removeListener(this.events, listener);
+	}
+
+	/**
+	 * Runs changes of the table as one batch, listeners are notified once with all events when the changes are done.
+	 * @param changes changes to run
+	 */
+	public void batch(Runnable changes) {
+		TreeEvents.batch(this.events, () -> {
+			changes.run();
+			return null;
+		});
+	}
+
+	@Override
+	public void clear() {
+		boolean empty = this.rowIds.isEmpty();
+		this.rowIds.clear();
+		this.rowKeys = new String[INITIAL_CAPACITY];
+		this.cells = new Object[this.columnNames.length][INITIAL_CAPACITY];
+		this.free = new int[0];
+		this.freeCount = 0;
+		this.next = 0;
+		if(this.events!=null && !empty){
+			TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, Table.defaulSeparator, null, null);
+		}
+	}
+
+	@Override
+	public boolean columnValue(Object row, Object column, E value) {
+		long cell = this.locate(row, column);
+		if(cell==NOT_FOUND || (int)cell==-1){
+			return false;
+		}
+		this.set((int)(cell>>>32), (int)cell, value);
+		return true;
+	}
+
+	/**
+	 * Sets the value of a cell.
+	 * @param cell precompiled path of the cell, that is row and column
+	 * @param value new value for the cell
+	 * @return true if successful, false otherwise (i.e. cell does not exist)
+	 */
+	public boolean columnValue(PathKey cell, E value) {
+		if(cell==null){
+			return false;
+		}
+		long code = this.locate(cell.key());
+		if(code==NOT_FOUND || (int)code==-1){
+			return false;
+		}
+		this.set((int)(code>>>32), (int)code, value);
+		return true;
+	}
+
+	/**
+	 * Sets a cell value and notifies listeners.
+	 * @param row row id
+	 * @param column column number
+	 * @param value new value
+	 */
+	private void set(int row, int column, E value){
+		@SuppressWarnings("unchecked")
+		E old = (E)this.cells[column][row];
+		this.cells[column][row] = value;
+		if(this.events!=null && !Objects.equals(old, value)){
+			TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, this.rowKeys[row] + Table.defaulSeparator + this.columnNames[column], old, value);
+		}
+	}
+
+	@Override
+	public boolean contains(Object row) {
+		return row!=null && this.locate(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString())!=NOT_FOUND;
+	}
+
+	@Override
+	public boolean contains(Object row, Object column) {
+		return this.locate(row, column)!=NOT_FOUND;
+	}
+
+	/**
+	 * Tests if a row or a cell exists.
+	 * @param key precompiled path of the row or cell
+	 * @return true if the row or cell exists, false otherwise
+	 */
+	public boolean contains(PathKey key) {
+		return key!=null && this.locate(key.key())!=NOT_FOUND;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned map is a read-only view of the row, reading values from the column arrays.
+	 */
+	@Override
+	public Map<String, E> get(Object row) {
+		String key = Table.rowPath(row);
+		Integer id = (key==null)?null:this.rowIds.get(key);
+		if(id==null){
+			return Collections.emptyMap();
+		}
+		int r = id;
+		String stored = this.rowKeys[r];
+		String[] cells = new String[this.columnNames.length];
+		for(int i=0; i<cells.length; i++){
+			cells[i] = stored + Table.defaulSeparator + this.columnNames[i];
+		}
+		return new RowView<E>(cells, i -> this.cell(r, i), () -> r<this.rowKeys.length && this.rowKeys[r]==stored);
+	}
+
+	@Override
+	public E get(Object row, Object column) {
+		long cell = this.locate(row, column);
+		if(cell==NOT_FOUND || (int)cell==-1){
+			return null;
+		}
+		return this.cell((int)(cell>>>32), (int)cell);
+	}
+
+	/**
+	 * Returns the value of a cell.
+	 * @param cell precompiled path of the cell, that is row and column
+	 * @return value of the cell
+	 */
+	public E getValue(PathKey cell) {
+		if(cell==null){
+			return null;
+		}
+		long code = this.locate(cell.key());
+		if(code==NOT_FOUND || (int)code==-1){
+			return null;
+		}
+		return this.cell((int)(code>>>32), (int)code);
+	}
+
+	/**
+	 * Returns a cell value.
+	 * @param row row id
+	 * @param column column number
+	 * @return cell value
+	 */
+	@SuppressWarnings("unchecked")
+	E cell(int row, int column){
+		return (E)this.cells[column][row];
+	}
+
+	/**
+	 * Runs an action for every row of a column, in row id order.
+	 * The values of a column are kept in a single array, so this is the fastest way to scan a column.
+	 * @param column column name
+	 * @param action action called with row path and cell value
+	 * @return true if the column exists, false otherwise
+	 */
+	public boolean forEachInColumn(Object column, BiConsumer<String, ? super E> action){
+		Integer id = (column==null)?null:this.columnIds.get(column.toString());
+		if(id==null && column instanceof IsAttributeKey){
+			id = this.columnIds.get(((IsAttributeKey)column).key());
+		}
+		if(id==null){
+			return false;
+		}
+		Object[] values = this.cells[id];
+		for(int i=0; i<this.next; i++){
+			if(this.rowKeys[i]!=null){
+				@SuppressWarnings("unchecked")
+				E value = (E)values[i];
+				action.accept(this.rowKeys[i], value);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public ColumnTable<E> getCopy() {
+		ColumnTable<E> ret = new ColumnTable<E>(this.strategy, this.columns);
+		ret.rowIds.putAll(this.rowIds);
+		ret.rowKeys = this.rowKeys.clone();
+		ret.cells = new Object[this.cells.length][];
+		for(int i=0; i<this.cells.length; i++){
+			ret.cells[i] = this.cells[i].clone();
+		}
+		ret.free = Arrays.copyOf(this.free, this.freeCount);
+		ret.freeCount = this.freeCount;
+		ret.next = this.next;
+		return ret;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.rowIds.isEmpty();
+	}
+
+	@Override
+	public Set<String> keys() {
+		return new AbstractSet<String>(){
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>(){
+					/** current row id */
+					int row = -1;
+
+					/** next column, -1 for the row itself */
+					int column = ColumnTable.this.columnNames.length;
+
+					@Override
+					public boolean hasNext() {
+						if(this.column<ColumnTable.this.columnNames.length){
+							return true;
+						}
+						for(int i=this.row+1; i<ColumnTable.this.next; i++){
+							if(ColumnTable.this.rowKeys[i]!=null){
+								return true;
+							}
+						}
+						return false;
+					}
+
+					@Override
+					public String next() {
+						if(this.column<ColumnTable.this.columnNames.length){
+							return ColumnTable.this.rowKeys[this.row] + Table.defaulSeparator + ColumnTable.this.columnNames[this.column++];
+						}
+						do{
+							this.row++;
+						} while(this.row<ColumnTable.this.next && ColumnTable.this.rowKeys[this.row]==null);
+						if(this.row>=ColumnTable.this.next){
+							throw new NoSuchElementException();
+						}
+						this.column = 0;
+						return ColumnTable.this.rowKeys[this.row];
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return (o instanceof String) && ((String)o).startsWith(Table.defaulSeparator) && ColumnTable.this.locate((String)o)!=NOT_FOUND;
+			}
+
+			@Override
+			public int size() {
+				return ColumnTable.this.size();
+			}
+		};
+	}
+
+	@Override
+	public boolean removeColumnValue(Object row, Object column) {
+		return this.columnValue(row, column, null);
+	}
+
+	@Override
+	public boolean removeRow(Object row) {
+		String key = Table.rowPath(row);
+		if(key==null){
+			return false;
+		}
+		Integer id = this.rowIds.remove(key);
+		if(id!=null){
+			this.rowKeys[id] = null;
+			for(Object[] column : this.cells){
+				column[id] = null;
+			}
+			if(this.freeCount==this.free.length){
+				this.free = Arrays.copyOf(this.free, Math.max(INITIAL_CAPACITY, this.free.length<<1));
+			}
+			this.free[this.freeCount++] = id;
+			if(this.events!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, key, null, null);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.rowIds.size() * (this.columnNames.length + 1);
+	}
+
+	/**
+	 * Returns an estimate of the heap used by this table, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		long keys = 0;
+		long values = 0;
+		long ids = 0;
+		for(int i=0; i<this.next; i++){
+			if(this.rowKeys[i]!=null){
+				keys += Footprint.string(this.rowKeys[i]);
+				ids += Footprint.value(i);
+				for(Object[] column : this.cells){
+					values += Footprint.value(column[i]);
+				}
+			}
+		}
+		long overhead = ids + Footprint.hashMap(this.rowIds.size()) + Footprint.array(this.rowKeys.length, Footprint.REF)
+				+ Footprint.array(this.cells.length, Footprint.REF) + Footprint.array(this.free.length, 4)
+				+ this.cells.length * Footprint.array(this.rowKeys.length, Footprint.REF);
+		return new Footprint(this.rowIds.size(), keys, values, overhead, 0);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, E> ret = new LinkedHashMap<String, E>();
+		for(String key : this.keys()){
+			long code = this.locate(key);
+			ret.put(key, ((int)code==-1)?null:this.cell((int)(code>>>32), (int)code));
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(ret);
+	}
+}
@@ -209,6 +209,14 @@ public class ComCollection<E> implements Com_Node, Collection<E> {
 		return this.sval.toArray(array);
 	}
 
+	/**
+	 * Returns an estimate of the heap used by this collection, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		return new Footprint(this.size(), 0, Footprint.elements(this.sval), 0, Footprint.collection(this));
+	}
+
 	@Override
 	public String toString() {
 		return Skb_CollectionTransformer.COLLECTION_TO_TEXT(this.sval);
@@ -0,0 +1,520 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+import org.apache.commons.lang3.text.StrBuilder;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * A multi-value implementation of the {@link Tree} with a compact storage of values.
+ *
+ * <p>
+ * A {@link FlatMultiTree} creates a {@link ComCollection} for every node with a value.
+ * This tree stores a single value directly in the node, a few values in an array,
+ * and creates a collection only if a node gets more than {@link #MAX_ARRAY} values.
+ * A node is also changed to a collection when its collection is requested with {@link #getValueMulti(Object)},
+ * so that changes of the returned collection are changes of the tree just as for a flat multi tree.
+ * For trees where most nodes have a single value this saves the collection, its list, and the array of the list for every node.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class CompactMultiTree<E> implements Tree<E> {
+
+	/** Maximum number of values stored in an array, more values are stored in a collection */
+	public static final int MAX_ARRAY = 8;
+
+	/** Array for a node whose values were all removed */
+	static final Object[] EMPTY = new Object[0];
+
+	/** Map maintaining all tree elements, values are null, a single value, an array of values, or a collection */
+	protected PathMap<Object> sval;
+
+	final boolean autoRoot=true;
+
+	/** Creates a new compact multi tree */
+	public CompactMultiTree(){
+		this.sval = new PathMap<Object>();
+	}
+
+	@Override
+	public void clear() {
+		this.sval.clear();
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Tests if the tree contains a path.
+	 * @param key precompiled path to be tested
+	 * @return true if the path exists, false otherwise
+	 */
+	public boolean containsNode(PathKey key) {
+		return key!=null && this.sval.containsKey(key.key());
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Returns the direct children of a node.
+	 * @param fqpn path of the node
+	 * @return paths of all direct children in sorted order, empty if none found
+	 * @see FlatMultiTree#getDirectChildren(Object)
+	 */
+	public List<String> getDirectChildren(Object fqpn) {
+		return this.getDescendants(fqpn, 1);
+	}
+
+	/**
+	 * Returns all descendants of a node up to a maximum depth.
+	 * @param fqpn path of the node
+	 * @param maxDepth maximum depth relative to the node, 1 for direct children only
+	 * @return paths of all descendants up to the maximum depth in sorted order, empty if none found
+	 * @see FlatMultiTree#getDescendants(Object, int)
+	 */
+	public List<String> getDescendants(Object fqpn, int maxDepth) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), maxDepth);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Arrays of values are shared by both trees, they are never changed. Collections are shared as for a {@link FlatMultiTree}.
+	 */
+	@Override
+	public CompactMultiTree<E> getCopy() {
+		CompactMultiTree<E> ret = new CompactMultiTree<E>();
+		ret.sval.putAll(this.sval);
+		return ret;
+	}
+
+	@Override
+	public CompactMultiTree<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	@Override
+	public CompactMultiTree<E> getSubtree(Object path, Object name) {
+		CompactMultiTree<E> ret = new CompactMultiTree<E>();
+		for(String key : this.sval.subPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())){
+			ret.sval.put(key, this.sval.get(key));
+		}
+		return ret;
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		return CompactMultiTree.first(this.sval.get(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString()));
+	}
+
+	/**
+	 * Returns the first value of a node.
+	 * @param key precompiled path of the node
+	 * @return first value, null if the node does not exist or has no value
+	 */
+	public E getValue(PathKey key) {
+		return (key==null)?null:CompactMultiTree.first(this.sval.get(key.key()));
+	}
+
+	/**
+	 * Returns all values of a node, the node is changed to store its values in the returned collection.
+	 * @param fqpn path of the node
+	 * @return collection of values, changes are changes of the tree, null if the node does not exist or has no value
+	 */
+	public ComCollection<E> getValueMulti(Object fqpn){
+		return this.getValueMulti(null, fqpn);
+	}
+
+	/**
+	 * Returns all values of a node, the node is changed to store its values in the returned collection.
+	 * @param path path of the node
+	 * @param name name of the node
+	 * @return collection of values, changes are changes of the tree, null if the node does not exist or has no value
+	 */
+	public ComCollection<E> getValueMulti(Object path, Object name){
+		return this.collection(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Returns all values of a node, the node is changed to store its values in the returned collection.
+	 * @param key precompiled path of the node
+	 * @return collection of values, changes are changes of the tree, null if the node does not exist or has no value
+	 */
+	public ComCollection<E> getValueMulti(PathKey key){
+		return (key==null)?null:this.collection(key.key());
+	}
+
+	/**
+	 * Returns the number of values of a node without changing the node.
+	 * @param fqpn path of the node
+	 * @return number of values, 0 if the node does not exist or has no value
+	 */
+	public int getValueCount(Object fqpn){
+		return CompactMultiTree.count(this.sval.get(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString()));
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Tests if the given path has children.
+	 * @param key precompiled path to test
+	 * @return true if the path has children, false otherwise
+	 */
+	public boolean hasChildren(PathKey key) {
+		return key!=null && this.sval.hasChildren(key.key());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.sval.isEmpty();
+	}
+
+	@Override
+	public Set<String> keys() {
+		return this.sval.keySet();
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, this.autoRoot);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		StrBuilder fqpn = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name));
+		Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
+		PathMap.Node<Object> node = this.sval.node(fqpn.toString());
+		if(node==null){
+			return false;
+		}
+		node.value = CompactMultiTree.add(node.value, value);
+		return true;
+	}
+
+	/**
+	 * Adds a node with a value, the value is added to existing values of the node.
+	 * @param key precompiled path of the node
+	 * @param value value to be added
+	 * @return true if the value was added, false otherwise
+	 */
+	public boolean addNodeWithValue(PathKey key, E value) {
+		if(!Tree.addNodeWithNull(key, this.sval)){
+			return false;
+		}
+		PathMap.Node<Object> node = this.sval.node(key.key());
+		node.value = CompactMultiTree.add(node.value, value);
+		return true;
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, Tree.defaulSeparator);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, Tree.defaulSeparator);
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		if(this.sval.containsKey(key)){
+			this.sval.put(key, null);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a specific value from a node.
+	 * @param fqpn path of the node
+	 * @param value value to be removed
+	 * @return true if the node has values, false otherwise
+	 */
+	public boolean removeMultiValue(Object fqpn, E value) {
+		return this.removeMultiValue(null, fqpn, value);
+	}
+
+	/**
+	 * Removes a specific value from a node.
+	 * @param path path of the node
+	 * @param name name of the node
+	 * @param value value to be removed
+	 * @return true if the node has values, false otherwise
+	 */
+	public boolean removeMultiValue(Object path, Object name, E value) {
+		PathMap.Node<Object> node = this.sval.node(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(node==null || node.value==null){
+			return false;
+		}
+		node.value = CompactMultiTree.remove(node.value, value);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.sval.size();
+	}
+
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this.sval::childPaths, this.sval.size(), order, maxDepth);
+	}
+
+	/**
+	 * Returns an estimate of the heap used by this tree, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		long keys = 0;
+		long values = 0;
+		long collections = 0;
+		for(Map.Entry<String, Object> entry : this.sval.entrySet()){
+			keys += Footprint.string(entry.getKey());
+			Object stored = entry.getValue();
+			if(stored instanceof ComCollection){
+				collections += Footprint.collection((ComCollection<?>)stored);
+				values += Footprint.elements((ComCollection<?>)stored);
+			}
+			else if(stored instanceof Object[]){
+				//the shared empty array is not counted
+				Object[] array = (Object[])stored;
+				collections += (array.length==0)?0:Footprint.array(array.length, Footprint.REF);
+				for(Object value : array){
+					values += Footprint.value(value);
+				}
+			}
+			else{
+				values += Footprint.value(stored);
+			}
+		}
+		return new Footprint(this.sval.size(), keys, values, Footprint.pathMap(this.sval.size()), collections);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, List<E>> ret = new LinkedHashMap<String, List<E>>();
+		for(Map.Entry<String, Object> entry : this.sval.entrySet()){
+			ret.put(entry.getKey(), (entry.getValue()==null)?null:CompactMultiTree.values(entry.getValue()));
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(ret);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a compact multi tree. Nodes missing in this tree are added with their values,
+	 * values of existing nodes are appended unless they are null or a {@link NullObject}.
+	 * Use a {@link TreeMerger} for other conflict policies, parallel merges, or merge statistics.
+	 */
+	@Override
+	public boolean merge(Tree<?> tree){
+		return new TreeMerger<E>(MergePolicy.APPEND()).merge(this, tree)!=null;
+	}
+
+	/**
+	 * Returns the values of a node as collection, changing the node to store its values in that collection.
+	 * @param key path of the node
+	 * @return collection, null if the node does not exist or has no value
+	 */
+	@SuppressWarnings("unchecked")
+	ComCollection<E> collection(String key){
+		PathMap.Node<Object> node = this.sval.node(key);
+		if(node==null || node.value==null){
+			return null;
+		}
+		if(!(node.value instanceof ComCollection)){
+			node.value = new ComCollection<E>(null, CompactMultiTree.<E>values(node.value));
+		}
+		return (ComCollection<E>)node.value;
+	}
+
+	/**
+	 * Tests if a value can be stored directly in a node.
+	 * @param value the value
+	 * @return true if the value cannot be confused with an array or collection of values
+	 */
+	static boolean inline(Object value){
+		return value!=null && !(value instanceof Object[]) && !(value instanceof ComCollection);
+	}
+
+	/**
+	 * Returns the stored values of a node with a value added.
+	 * @param stored stored values
+	 * @param value value to add
+	 * @return new stored values
+	 */
+	@SuppressWarnings("unchecked")
+	static Object add(Object stored, Object value){
+		if(stored==null){
+			return (CompactMultiTree.inline(value))?value:new Object[]{value};
+		}
+		if(stored instanceof ComCollection){
+			((ComCollection<Object>)stored).add(value);
+			return stored;
+		}
+		Object[] array = (stored instanceof Object[])?(Object[])stored:new Object[]{stored};
+		if(array.length<MAX_ARRAY){
+			Object[] ret = Arrays.copyOf(array, array.length+1);
+			ret[array.length] = value;
+			return ret;
+		}
+		ComCollection<Object> ret = new ComCollection<Object>(null, new ArrayList<Object>(Arrays.asList(array)));
+		ret.add(value);
+		return ret;
+	}
+
+	/**
+	 * Returns the stored values of a node with the first occurrence of a value removed.
+	 * @param stored stored values, not null
+	 * @param value value to remove
+	 * @return new stored values
+	 */
+	static Object remove(Object stored, Object value){
+		if(stored instanceof ComCollection){
+			((ComCollection<?>)stored).remove(value);
+			return stored;
+		}
+		if(!(stored instanceof Object[])){
+			return (stored.equals(value))?EMPTY:stored;
+		}
+		Object[] array = (Object[])stored;
+		for(int i=0; i<array.length; i++){
+			if((value==null)?array[i]==null:value.equals(array[i])){
+				if(array.length==2 && CompactMultiTree.inline(array[1-i])){
+					return array[1-i];
+				}
+				Object[] ret = new Object[array.length-1];
+				System.arraycopy(array, 0, ret, 0, i);
+				System.arraycopy(array, i+1, ret, i, array.length-i-1);
+				return ret;
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * Returns the first stored value.
+	 * @param stored stored values
+	 * @param <E> type of the values
+	 * @return first value, null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> E first(Object stored){
+		if(stored instanceof ComCollection){
+			return ((ComCollection<E>)stored).getFirst();
+		}
+		if(stored instanceof Object[]){
+			Object[] array = (Object[])stored;
+			return (array.length==0)?null:(E)array[0];
+		}
+		return (E)stored;
+	}
+
+	/**
+	 * Returns the number of stored values.
+	 * @param stored stored values
+	 * @return number of values
+	 */
+	static int count(Object stored){
+		if(stored==null){
+			return 0;
+		}
+		if(stored instanceof ComCollection){
+			return ((ComCollection<?>)stored).size();
+		}
+		if(stored instanceof Object[]){
+			return ((Object[])stored).length;
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns all stored values as list.
+	 * @param stored stored values
+	 * @param <E> type of the values
+	 * @return new list with all values, empty if there are none
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> List<E> values(Object stored){
+		if(stored==null){
+			return new ArrayList<E>();
+		}
+		if(stored instanceof ComCollection){
+			return new ArrayList<E>((ComCollection<E>)stored);
+		}
+		if(stored instanceof Object[]){
+			return new ArrayList<E>((List<E>)Arrays.asList((Object[])stored));
+		}
+		return new ArrayList<E>(Collections.singletonList((E)stored));
+	}
+}
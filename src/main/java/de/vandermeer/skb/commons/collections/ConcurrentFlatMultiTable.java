@@ -0,0 +1,235 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.Skb_ObjectUtils;
+import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * A thread safe multi-value implementation of the {@link Table}.
+ *
+ * <p>
+ * The table uses the same locking as {@link ConcurrentFlatTable}. Value collections are never changed once they are in the table,
+ * appending a value to a cell replaces the collection of the cell with a changed copy under the lock of the row.
+ * Concurrent appends to the same cell are therefore never lost, and readers never see a collection while it is being changed.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class ConcurrentFlatMultiTable<E> implements Table<E> {
+	/** Store maintaining all table elements */
+	final ConcurrentPathStore<ComCollection<E>> sval;
+
+	/** table columns */
+	protected Set<IsAttributeKey> columns;
+
+	/** strategy for the table columns */
+	protected IsSetStrategy strategy;
+
+	/** Creates a new table with default strategy, a single default column and the default number of lock stripes */
+	public ConcurrentFlatMultiTable(){
+		this(null, (Collection<IsAttributeKey>)null, ConcurrentPathStore.DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new concurrent table with the default number of lock stripes.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 */
+	public ConcurrentFlatMultiTable(IsSetStrategy strategy, IsAttributeKey[] columns){
+		this(strategy, (columns!=null)?Arrays.asList(columns):null, ConcurrentPathStore.DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new concurrent table.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 * @param stripes number of lock stripes for writers
+	 */
+	public ConcurrentFlatMultiTable(IsSetStrategy strategy, Collection<IsAttributeKey> columns, int stripes){
+		this.sval = new ConcurrentPathStore<ComCollection<E>>(stripes);
+		this.strategy = (strategy!=null)?strategy:SetStrategy.LINKED_HASH_SET;
+		this.columns = this.strategy.get(this.columns=null);
+		if(columns==null){
+			this.columns.add(EAttributeKeys.DEFAULT);
+		}
+		else{
+			for(IsAttributeKey key:columns){
+				if(key!=null){
+					this.columns.add(key);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean addRow(Object row) {
+		String key = Table.rowPath(row);
+		return key!=null && this.sval.create(key, ConcurrentFlatTable.cells(key, this.columns));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Each row is added atomically, the set of rows as a whole is not.
+	 */
+	@Override
+	public boolean addRowsAll(Object rows) {
+		Object[] r = (rows==null)?null:Skb_ObjectUtils.CONVERT(rows, Object[].class, null, null);
+		if(r==null){
+			return false;
+		}
+		for(Object row : r){
+			this.addRow(row);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.sval.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The value is appended to the values of the cell.
+	 */
+	@Override
+	public boolean columnValue(Object row, Object column, E value) {
+		return this.sval.replace(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString(), current -> ConcurrentFlatMultiTree.append(current, value));
+	}
+
+	@Override
+	public boolean contains(Object row) {
+		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString());
+	}
+
+	@Override
+	public boolean contains(Object row, Object column) {
+		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned map is a copy of the row with the first value of each cell, as seen at one point in time.
+	 */
+	@Override
+	public Map<String, E> get(Object row) {
+		Map<String, E> ret = new LinkedHashMap<String, E>();
+		for(Map.Entry<String, ComCollection<E>> entry : this.sval.snapshot(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString()).entrySet()){
+			ret.put(entry.getKey(), (entry.getValue()==null)?null:entry.getValue().getFirst());
+		}
+		return ret;
+	}
+
+	@Override
+	public E get(Object row, Object column) {
+		ComCollection<E> coll = this.sval.get(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+		if(coll!=null){
+			return coll.getFirst();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the values of a cell identified by row and column.
+	 * Changes of the returned collection are not reflected in the table.
+	 * @param row row of the cell
+	 * @param column column of the cell
+	 * @return copy of the values of the cell, null if none found
+	 */
+	public Collection<E> getMulti(Object row, Object column){
+		ComCollection<E> coll = this.sval.get(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+		if(coll!=null){
+			return coll.getCopy();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a complete row will all columns and associated values, as seen at one point in time.
+	 * Changes of the returned map or collections are not reflected in the table.
+	 * @param row row identifier
+	 * @return copy of the row
+	 */
+	public Map<String, ComCollection<E>> getRow(Object row) {
+		Map<String, ComCollection<E>> ret = this.sval.snapshot(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString());
+		for(Map.Entry<String, ComCollection<E>> entry : ret.entrySet()){
+			if(entry.getValue()!=null){
+				entry.setValue(entry.getValue().getCopy());
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public ConcurrentFlatMultiTable<E> getCopy() {
+		ConcurrentFlatMultiTable<E> ret = new ConcurrentFlatMultiTable<E>(this.strategy, this.columns, this.sval.stripes.length);
+		ret.sval.load(this.sval.snapshot(null));
+		return ret;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.sval.size()==0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only, weakly consistent view in sorted order.
+	 */
+	@Override
+	public Set<String> keys() {
+		return this.sval.keys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * All values of the cell are removed.
+	 */
+	@Override
+	public boolean removeColumnValue(Object row, Object column) {
+		return this.sval.replace(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString(), current -> null);
+	}
+
+	@Override
+	public boolean removeRow(Object row) {
+		String key = Table.rowPath(row);
+		return key!=null && this.sval.removeSubtree(key);
+	}
+
+	@Override
+	public int size() {
+		return this.sval.size();
+	}
+
+	@Override
+	public String toString(){
+		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval.snapshot(null));
+	}
+}
@@ -0,0 +1,203 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.Skb_ObjectUtils;
+import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * A thread safe implementation of the {@link Table}.
+ *
+ * <p>
+ * The table keeps its cells in a {@link ConcurrentPathStore}. The store selects a lock stripe by the first segment of a path,
+ * which for a table is the row, so a row and all its cells are always guarded by the same stripe.
+ * Adding and removing a row is atomic, readers never see a row with only some of its cells.
+ * Writers of different rows only block each other if their rows share a stripe, reads never block.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class ConcurrentFlatTable<E> implements Table<E> {
+	/** Store maintaining all table elements */
+	final ConcurrentPathStore<E> sval;
+
+	/** table columns */
+	protected Set<IsAttributeKey> columns;
+
+	/** strategy for the table columns */
+	protected IsSetStrategy strategy;
+
+	/** Creates a new table with default strategy, a single default column and the default number of lock stripes */
+	public ConcurrentFlatTable(){
+		this(null, (Collection<IsAttributeKey>)null, ConcurrentPathStore.DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new concurrent table with the default number of lock stripes.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 */
+	public ConcurrentFlatTable(IsSetStrategy strategy, IsAttributeKey[] columns){
+		this(strategy, (columns!=null)?Arrays.asList(columns):null, ConcurrentPathStore.DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new concurrent table.
+	 * @param strategy strategy for the table
+	 * @param columns columns for each table row
+	 * @param stripes number of lock stripes for writers
+	 */
+	public ConcurrentFlatTable(IsSetStrategy strategy, Collection<IsAttributeKey> columns, int stripes){
+		this.sval = new ConcurrentPathStore<E>(stripes);
+		this.strategy = (strategy!=null)?strategy:SetStrategy.LINKED_HASH_SET;
+		this.columns = this.strategy.get(this.columns=null);
+		if(columns==null){
+			this.columns.add(EAttributeKeys.DEFAULT);
+		}
+		else{
+			for(IsAttributeKey key:columns){
+				if(key!=null){
+					this.columns.add(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the paths of all cells of a row.
+	 * @param row row path
+	 * @param columns table columns
+	 * @return cell paths in column order
+	 */
+	static String[] cells(String row, Set<IsAttributeKey> columns){
+		String[] ret = new String[columns.size()];
+		int i = 0;
+		for(IsAttributeKey col : columns){
+			ret[i++] = row + Table.defaulSeparator + col.key();
+		}
+		return ret;
+	}
+
+	@Override
+	public boolean addRow(Object row) {
+		String key = Table.rowPath(row);
+		return key!=null && this.sval.create(key, ConcurrentFlatTable.cells(key, this.columns));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Each row is added atomically, the set of rows as a whole is not.
+	 */
+	@Override
+	public boolean addRowsAll(Object rows) {
+		Object[] r = (rows==null)?null:Skb_ObjectUtils.CONVERT(rows, Object[].class, null, null);
+		if(r==null){
+			return false;
+		}
+		for(Object row : r){
+			this.addRow(row);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.sval.clear();
+	}
+
+	@Override
+	public boolean columnValue(Object row, Object column, E value) {
+		return this.sval.replace(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString(), current -> value);
+	}
+
+	@Override
+	public boolean contains(Object row) {
+		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString());
+	}
+
+	@Override
+	public boolean contains(Object row, Object column) {
+		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned map is a copy of the row as seen at one point in time.
+	 */
+	@Override
+	public Map<String, E> get(Object row) {
+		return this.sval.snapshot(Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString());
+	}
+
+	@Override
+	public E get(Object row, Object column) {
+		return this.sval.get(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
+	}
+
+	@Override
+	public ConcurrentFlatTable<E> getCopy() {
+		ConcurrentFlatTable<E> ret = new ConcurrentFlatTable<E>(this.strategy, this.columns, this.sval.stripes.length);
+		ret.sval.load(this.sval.snapshot(null));
+		return ret;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.sval.size()==0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only, weakly consistent view in sorted order.
+	 */
+	@Override
+	public Set<String> keys() {
+		return this.sval.keys();
+	}
+
+	@Override
+	public boolean removeColumnValue(Object row, Object column) {
+		return this.columnValue(row, column, null);
+	}
+
+	@Override
+	public boolean removeRow(Object row) {
+		String key = Table.rowPath(row);
+		return key!=null && this.sval.removeSubtree(key);
+	}
+
+	@Override
+	public int size() {
+		return this.sval.size();
+	}
+
+	@Override
+	public String toString(){
+		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval.snapshot(null));
+	}
+}
@@ -0,0 +1,217 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * A thread safe implementation of the {@link Tree} for many readers and occasional writers.
+ *
+ * <p>
+ * Reads of a single node never block. Writes are guarded by locks striped by the top level segment of a path,
+ * so writers in different top level subtrees do not block each other.
+ * A tree below a single top level node should be created with a deeper stripe depth, see {@link #ConcurrentFlatTree(int, int)}.
+ * Adding a node with its ancestors and removing a subtree both look atomic to readers.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class ConcurrentFlatTree<E> implements Tree<E> {
+	/** Store maintaining all tree elements */
+	final ConcurrentPathStore<E> sval;
+
+	final boolean autoRoot=true;
+
+	/** Creates a new concurrent tree with the default number of lock stripes. */
+	public ConcurrentFlatTree(){
+		this(ConcurrentPathStore.DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new concurrent tree.
+	 * @param stripes number of lock stripes for writers
+	 */
+	public ConcurrentFlatTree(int stripes){
+		this(stripes, ConcurrentPathStore.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new concurrent tree with writers striped by the first segments of a path.
+	 * Trees below a single top level node should use a depth of 2 or more, otherwise all writers share one stripe.
+	 * @param stripes number of lock stripes for writers
+	 * @param depth number of path segments selecting the stripe of a writer
+	 */
+	public ConcurrentFlatTree(int stripes, int depth){
+		this.sval = new ConcurrentPathStore<E>(stripes, depth);
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return this.addNode(null, fqpn);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		this.sval.put(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), null);
+		return true;
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		this.sval.put(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), current -> value);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.sval.clear();
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.containsNode(null, fqpn);
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.getChildrenNames(null, fqpn);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		return this.sval.subPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public ConcurrentFlatTree<E> getCopy() {
+		ConcurrentFlatTree<E> ret = new ConcurrentFlatTree<E>(this.sval.stripes.length, this.sval.depth);
+		ret.sval.load(this.sval.snapshot(null));
+		return ret;
+	}
+
+	@Override
+	public ConcurrentFlatTree<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	@Override
+	public ConcurrentFlatTree<E> getSubtree(Object path, Object name) {
+		ConcurrentFlatTree<E> ret = new ConcurrentFlatTree<E>(this.sval.stripes.length, this.sval.depth);
+		ret.sval.load(this.sval.snapshot(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString()));
+		return ret;
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		return this.sval.get(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.hasChildren(null, fqpn);
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.sval.size()==0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only, weakly consistent view in sorted order.
+	 */
+	@Override
+	public Set<String> keys() {
+		return this.sval.keys();
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		return this.sval.removeSubtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		return this.sval.replace(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), current -> null);
+	}
+
+	@Override
+	public int size() {
+		return this.sval.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The spliterator is weakly consistent, nodes added or removed while iterating may or may not be returned.
+	 */
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this.sval::childPaths, this.sval.size(), order, maxDepth);
+	}
+
+	@Override
+	public String toString(){
+		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval.snapshot(null));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a concurrent tree. Nodes missing in this tree are added with their value,
+	 * existing nodes are overwritten if the new value is not null and not a {@link NullObject}.
+	 * Each node is merged atomically, the merge as a whole is not.
+	 */
+	@Override
+	public boolean merge(Tree<?> tree){
+		return new TreeMerger<E>(MergePolicy.OVERWRITE_IF_SET()).merge(this, tree)!=null;
+	}
+}
@@ -0,0 +1,483 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread safe store of path names and values, used by the concurrent trees.
+ *
+ * <p>
+ * All entries are kept in a concurrent skip list, so single lookups never block and sub paths can be found as a range of keys.
+ * Writes are guarded by a set of striped locks. The stripe of a path is selected by its first segments, one by default,
+ * so writes into different subtrees at that depth do not block each other. Writes to paths with fewer segments than the
+ * stripe depth, for instance the root path, or removing such a subtree lock all stripes.
+ * </p>
+ *
+ * <p>
+ * With the default depth, a tree that has a single top level node (as configurations usually have, for instance "/config/...")
+ * uses a single stripe for all its paths, so all writers are serialized as with one global lock.
+ * Such trees should use a stripe depth that reaches below the common prefix, e.g. 2 for "/config/component/...".
+ * The deeper the stripe depth, the more writes to the nodes above it lock all stripes.
+ * </p>
+ *
+ * <p>
+ * Adding a node creates all missing ancestors top down before the node itself, removing a subtree removes the deepest paths first.
+ * A reader can therefore never see a node without its ancestors. Reads of more than one path (sub paths, snapshots) use optimistic
+ * reads on the stripe locks and are repeated under a read lock if a writer interfered, so they always see a state before or after
+ * a complete write operation.
+ * </p>
+ *
+ * @param <V> type of the values
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+final class ConcurrentPathStore<V> {
+
+	/** Default number of lock stripes */
+	static final int DEFAULT_STRIPES = 16;
+
+	/** Default number of path segments selecting a stripe */
+	static final int DEFAULT_DEPTH = 1;
+
+	/** Marker for null values, the skip list does not support null */
+	private static final Object NULL = new Object();
+
+	/** All entries */
+	final ConcurrentSkipListMap<String, Object> map;
+
+	/** Stripe locks for writers */
+	final StampedLock[] stripes;
+
+	/** Number of path segments selecting a stripe */
+	final int depth;
+
+	/** Number of entries, the size of the skip list is not a constant time operation */
+	final AtomicInteger size;
+
+	/**
+	 * Creates a new store with stripes selected by the first segment of a path.
+	 * @param stripes number of lock stripes, the default is used if less than 1
+	 */
+	ConcurrentPathStore(int stripes){
+		this(stripes, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new store.
+	 * @param stripes number of lock stripes, the default is used if less than 1
+	 * @param depth number of path segments selecting a stripe, the default is used if less than 1
+	 */
+	ConcurrentPathStore(int stripes, int depth){
+		this.depth = (depth<1)?DEFAULT_DEPTH:depth;
+		this.map = new ConcurrentSkipListMap<String, Object>();
+		this.stripes = new StampedLock[(stripes<1)?DEFAULT_STRIPES:stripes];
+		for(int i=0; i<this.stripes.length; i++){
+			this.stripes[i] = new StampedLock();
+		}
+		this.size = new AtomicInteger();
+	}
+
+	/**
+	 * Returns the value of a path.
+	 * @param key path
+	 * @return value, null if the path does not exist or has a null value
+	 */
+	V get(String key){
+		return this.unmask(this.map.get(key));
+	}
+
+	/**
+	 * Tests if a path exists.
+	 * @param key path
+	 * @return true if it exists, false otherwise
+	 */
+	boolean containsKey(String key){
+		return this.map.containsKey(key);
+	}
+
+	/**
+	 * Tests if a path exists and has children.
+	 * @param key path
+	 * @return true if the path exists and has children, false otherwise
+	 */
+	boolean hasChildren(String key){
+		if(!this.map.containsKey(key)){
+			return false;
+		}
+		String prefix = PathMap.subPathPrefix(key);
+		String child = this.map.higherKey(prefix);
+		return child!=null && child.startsWith(prefix);
+	}
+
+	/**
+	 * Creates a path and all its ancestors, and sets the value of the path.
+	 * @param key path
+	 * @param update function computing the new value from the current value, null to keep the current value
+	 * @return the new value of the path
+	 */
+	V put(String key, UnaryOperator<V> update){
+		return this.compute(key, (exists, current) -> (update==null)?current:update.apply(current));
+	}
+
+	/**
+	 * Creates a path and all its ancestors, and sets the value of the path computed from the current state of the path.
+	 * @param key path
+	 * @param update function computing the new value from a flag telling if the path existed and the current value
+	 * @return the new value of the path
+	 */
+	V compute(String key, BiFunction<Boolean, V, V> update){
+		long[] stamps = this.writeLock(key);
+		try{
+			int start = 1;
+			while(start<key.length()){
+				int end = key.indexOf(PathMap.SEPARATOR, start);
+				if(end<0){
+					break;
+				}
+				if(this.map.putIfAbsent(key.substring(0, end), NULL)==null){
+					this.size.incrementAndGet();
+				}
+				start = end + 1;
+			}
+
+			Object current = this.map.get(key);
+			if(current==null){
+				this.size.incrementAndGet();
+			}
+			V value = update.apply(current!=null, this.unmask(current));
+			this.map.put(key, (value==null)?NULL:value);
+			return value;
+		}
+		finally{
+			this.unlock(stamps);
+		}
+	}
+
+	/**
+	 * Creates a path and a set of its sub paths with null values, if the path does not exist yet.
+	 * Ancestors of the path are not created, the sub paths are expected to be below the path.
+	 * @param key path
+	 * @param paths sub paths to create together with the path
+	 * @return true if the paths were created, false if the path did already exist
+	 */
+	boolean create(String key, String[] paths){
+		long[] stamps = this.writeLock(key);
+		try{
+			if(this.map.containsKey(key)){
+				return false;
+			}
+			for(String path : paths){
+				if(this.map.putIfAbsent(path, NULL)==null){
+					this.size.incrementAndGet();
+				}
+			}
+			this.map.put(key, NULL);
+			this.size.incrementAndGet();
+			return true;
+		}
+		finally{
+			this.unlock(stamps);
+		}
+	}
+
+	/**
+	 * Changes the value of an existing path.
+	 * @param key path
+	 * @param update function computing the new value from the current value
+	 * @return true if the path exists and was changed, false otherwise
+	 */
+	boolean replace(String key, UnaryOperator<V> update){
+		long[] stamps = this.writeLock(key);
+		try{
+			Object current = this.map.get(key);
+			if(current==null){
+				return false;
+			}
+			V value = update.apply(this.unmask(current));
+			this.map.put(key, (value==null)?NULL:value);
+			return true;
+		}
+		finally{
+			this.unlock(stamps);
+		}
+	}
+
+	/**
+	 * Removes a path and all its sub paths.
+	 * @param key path
+	 * @return true if the path does not exist anymore
+	 */
+	boolean removeSubtree(String key){
+		long[] stamps = this.writeLock(key);
+		try{
+			Iterator<String> it = this.range(key).descendingKeySet().iterator();
+			while(it.hasNext()){
+				it.next();
+				it.remove();
+				this.size.decrementAndGet();
+			}
+			if(this.map.remove(key)!=null){
+				this.size.decrementAndGet();
+			}
+			return !this.map.containsKey(key);
+		}
+		finally{
+			this.unlock(stamps);
+		}
+	}
+
+	/**
+	 * Removes all paths.
+	 */
+	void clear(){
+		long[] stamps = this.writeLock(null);
+		try{
+			this.map.clear();
+			this.size.set(0);
+		}
+		finally{
+			this.unlock(stamps);
+		}
+	}
+
+	/**
+	 * Returns all sub paths of a path as seen at one point in time.
+	 * @param key path
+	 * @return list of sub paths in sorted order
+	 */
+	List<String> subPaths(String key){
+		return this.read(key, () -> new ArrayList<String>(this.range(key).keySet()));
+	}
+
+	/**
+	 * Returns the direct children of a path, deeper sub paths are skipped in the skip list.
+	 * The result is weakly consistent, children added or removed while searching may or may not be in the result.
+	 * @param key path
+	 * @return list of direct children in sorted order
+	 */
+	List<String> childPaths(String key){
+		List<String> ret = new ArrayList<String>();
+		String prefix = PathMap.subPathPrefix(key);
+		String limit = PathMap.subPathLimit(prefix);
+		String child = this.map.higherKey(prefix);
+		while(child!=null && child.compareTo(limit)<0){
+			int sep = child.indexOf(PathMap.SEPARATOR, prefix.length());
+			if(sep<0){
+				ret.add(child);
+				child = this.map.higherKey(child);
+			}
+			else{
+				child = this.map.ceilingKey(child.substring(0, sep) + (char)(PathMap.SEPARATOR+1));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns all sub paths of a path with their values as seen at one point in time.
+	 * @param key path, null for all paths
+	 * @return map of paths and values in sorted order
+	 */
+	Map<String, V> snapshot(String key){
+		return this.read(key, () -> {
+			Map<String, V> ret = new LinkedHashMap<String, V>();
+			NavigableMap<String, Object> source = (key==null)?this.map:this.range(key);
+			for(Map.Entry<String, Object> entry : source.entrySet()){
+				ret.put(entry.getKey(), this.unmask(entry.getValue()));
+			}
+			return ret;
+		});
+	}
+
+	/**
+	 * Returns a read-only, weakly consistent view of all paths in sorted order.
+	 * @return set view of all paths
+	 */
+	Set<String> keys(){
+		return Collections.unmodifiableSet(this.map.keySet());
+	}
+
+	/**
+	 * Returns the number of paths.
+	 * @return number of paths
+	 */
+	int size(){
+		return this.size.get();
+	}
+
+	/**
+	 * Adds entries to an empty store that is not yet visible to other threads.
+	 * @param entries paths and values to add
+	 */
+	void load(Map<String, ? extends V> entries){
+		for(Map.Entry<String, ? extends V> entry : entries.entrySet()){
+			this.map.put(entry.getKey(), (entry.getValue()==null)?NULL:entry.getValue());
+		}
+		this.size.set(this.map.size());
+	}
+
+	/**
+	 * Returns the value for a stored object.
+	 * @param stored object from the skip list
+	 * @return value, null for the null marker
+	 */
+	@SuppressWarnings("unchecked")
+	private V unmask(Object stored){
+		return (stored==NULL)?null:(V)stored;
+	}
+
+	/**
+	 * Returns the range of sub paths of a path, not including the path itself.
+	 * @param key path
+	 * @return range view of the skip list
+	 */
+	private NavigableMap<String, Object> range(String key){
+		String prefix = PathMap.subPathPrefix(key);
+		return this.map.subMap(prefix, !prefix.equals(key), PathMap.subPathLimit(prefix), false);
+	}
+
+	/**
+	 * Runs a read of multiple paths, first optimistically and then under read locks if a writer interfered.
+	 * @param key path to read, selects the stripe
+	 * @param reader the read operation
+	 * @param <T> type of the read result
+	 * @return result of the read operation
+	 */
+	private <T> T read(String key, Supplier<T> reader){
+		int stripe = (key==null)?-1:this.stripe(key);
+		if(stripe>=0){
+			StampedLock lock = this.stripes[stripe];
+			long stamp = lock.tryOptimisticRead();
+			if(stamp!=0){
+				T ret = reader.get();
+				if(lock.validate(stamp)){
+					return ret;
+				}
+			}
+			stamp = lock.readLock();
+			try{
+				return reader.get();
+			}
+			finally{
+				lock.unlockRead(stamp);
+			}
+		}
+
+		long[] stamps = new long[this.stripes.length];
+		boolean valid = true;
+		for(int i=0; i<this.stripes.length; i++){
+			stamps[i] = this.stripes[i].tryOptimisticRead();
+			valid = valid && stamps[i]!=0;
+		}
+		if(valid){
+			T ret = reader.get();
+			for(int i=0; i<this.stripes.length; i++){
+				valid = valid && this.stripes[i].validate(stamps[i]);
+			}
+			if(valid){
+				return ret;
+			}
+		}
+		for(int i=0; i<this.stripes.length; i++){
+			stamps[i] = this.stripes[i].readLock();
+		}
+		try{
+			return reader.get();
+		}
+		finally{
+			for(int i=this.stripes.length-1; i>=0; i--){
+				this.stripes[i].unlockRead(stamps[i]);
+			}
+		}
+	}
+
+	/**
+	 * Acquires the write lock for a path.
+	 * @param key path, null or a path with fewer segments than the stripe depth lock all stripes
+	 * @return stamps for all stripes, 0 for stripes that are not locked
+	 */
+	private long[] writeLock(String key){
+		long[] ret = new long[this.stripes.length];
+		int stripe = (key==null)?-1:this.stripe(key);
+		if(stripe>=0){
+			ret[stripe] = this.stripes[stripe].writeLock();
+		}
+		else{
+			for(int i=0; i<this.stripes.length; i++){
+				ret[i] = this.stripes[i].writeLock();
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Releases write locks.
+	 * @param stamps stamps as returned by {@link #writeLock(String)}
+	 */
+	private void unlock(long[] stamps){
+		for(int i=stamps.length-1; i>=0; i--){
+			if(stamps[i]!=0){
+				this.stripes[i].unlockWrite(stamps[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the stripe for a path, computed from its first segments up to the stripe depth without creating a new string.
+	 * @param key path
+	 * @return stripe index, -1 if the path has fewer segments than the stripe depth (e.g. the root path)
+	 */
+	int stripe(String key){
+		int start = 0;
+		while(start<key.length() && key.charAt(start)==PathMap.SEPARATOR){
+			start++;
+		}
+		if(start==key.length()){
+			return -1;
+		}
+		int hash = 0;
+		int segments = 1;
+		for(int i=start; i<key.length(); i++){
+			char c = key.charAt(i);
+			if(c==PathMap.SEPARATOR){
+				if(segments==this.depth){
+					break;
+				}
+				segments++;
+			}
+			hash = 31*hash + c;
+		}
+		if(segments<this.depth){
+			return -1;
+		}
+		hash ^= (hash>>>16);
+		return (hash & 0x7fffffff) % this.stripes.length;
+	}
+}
@@ -0,0 +1,111 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A tree with double values, for instance for measurements or ratios.
+ *
+ * <p>
+ * Values are not boxed, use {@link #getDouble(Object)} and {@link #addNodeWithValue(Object, double)} to read and write them.
+ * The tree is also a {@code Tree<Number>}, reading a value with {@link #getValue(Object)} returns a {@link Double}.
+ * Values are stored as their raw bits, numbers are converted with {@link Number#doubleValue()}.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class DoubleTree extends PrimitiveTree {
+
+	/** Creates a new empty tree. */
+	public DoubleTree(){
+		super();
+	}
+
+	/**
+	 * Creates a copy of a tree.
+	 * @param tree tree to copy
+	 */
+	DoubleTree(DoubleTree tree){
+		super(tree);
+	}
+
+	@Override
+	Number box(long bits){
+		return Double.valueOf(Double.longBitsToDouble(bits));
+	}
+
+	@Override
+	long bits(Number value){
+		return Double.doubleToRawLongBits(value.doubleValue());
+	}
+
+	/**
+	 * Returns the value of a node.
+	 * @param fqpn path of the node
+	 * @return value, 0.0 if the node does not exist or has no value
+	 */
+	public double getDouble(Object fqpn){
+		return this.getDouble(fqpn, 0.0);
+	}
+
+	/**
+	 * Returns the value of a node.
+	 * @param fqpn path of the node
+	 * @param defaultValue value returned if the node does not exist or has no value
+	 * @return value, default value if the node does not exist or has no value
+	 */
+	public double getDouble(Object fqpn, double defaultValue){
+		return Double.longBitsToDouble(this.get(fqpn, Double.doubleToRawLongBits(defaultValue)));
+	}
+
+	/**
+	 * Adds a node with a value, or sets the value of an existing node.
+	 * @param fqpn path for the value
+	 * @param value value of the node
+	 * @return true if the value was set, false otherwise
+	 */
+	public boolean addNodeWithValue(Object fqpn, double value){
+		return this.put(null, fqpn, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Adds a node with a value, or sets the value of an existing node.
+	 * @param path path for the FQPN
+	 * @param name name for the FQPN
+	 * @param value value of the node
+	 * @return true if the value was set, false otherwise
+	 */
+	public boolean addNodeWithValue(Object path, Object name, double value){
+		return this.put(path, name, Double.doubleToRawLongBits(value));
+	}
+
+	@Override
+	public DoubleTree getCopy() {
+		return new DoubleTree(this);
+	}
+
+	@Override
+	public DoubleTree getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	@Override
+	public DoubleTree getSubtree(Object path, Object name) {
+		return this.subtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), new DoubleTree());
+	}
+}
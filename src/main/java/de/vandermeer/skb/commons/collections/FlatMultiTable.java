@@ -17,14 +17,15 @@ package de.vandermeer.skb.commons.collections;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 import org.antlr.v4.runtime.misc.Pair;
 
-import de.vandermeer.skb.base.categories.IsPath;
 import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.Skb_ObjectUtils;
 import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
 import de.vandermeer.skb.base.utils.collections.SetStrategy;
 import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
@@ -32,6 +33,7 @@ import de.vandermeer.skb.configuration.EAttributeKeys;
 
 /**
  * A multi-value implementation of the {@link Table}.
+ * The table is not thread safe, use {@link ConcurrentFlatMultiTable} for tables shared between threads.
  *
  * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
  * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
@@ -43,6 +45,9 @@ public class FlatMultiTable<E> implements Table<E> {
 	/** table columns */
 	protected Set<IsAttributeKey> columns;
 
+	/** Row index, maps the path of each row to the paths of its cells (the same strings used as keys in sval) */
+	Map<String, String[]> rows;
+
 	/** strategy for the table columns */
 	protected IsSetStrategy strategy;
 
@@ -52,6 +57,9 @@ public class FlatMultiTable<E> implements Table<E> {
 
 	final boolean autoRootArray = false;
 
+	/** Listeners and pending events, null as long as no listener is registered */
+	TreeEvents<E> events;
+
 	public FlatMultiTable(){
 		this.init(null, null);
 	}
@@ -81,31 +89,84 @@ public class FlatMultiTable<E> implements Table<E> {
 
 	@Override
 	public boolean addRow(Object row) {
-		return Table.addRowWithNull(row, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		String[] cells = Table.addRowCells(row, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(cells==null){
+			return false;
+		}
+		this.rows.put(cells[0], Arrays.copyOfRange(cells, 1, cells.length));
+		if(this.events!=null){
+			TreeEvents.rowAdded(this.events, cells[0], this.columns);
+		}
+		return true;
 	}
 
 	@Override
 	public boolean addRowsAll(Object rows) {
-		return Table.addRowsAllWithNull(rows, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		return TreeEvents.batch(this.events, () -> {
+			Object[] r = (rows==null)?null:Skb_ObjectUtils.CONVERT(rows, Object[].class, null, null);
+			if(r==null){
+				return false;
+			}
+			for(Object row : r){
+				this.addRow(row);
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Registers a listener that is notified about all changes of the table.
+	 * As long as no listener is registered, changes do not create any events.
+	 * @param listener new listener
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addListener(TreeListener<E> listener) {
+		this.events = TreeEvents.addListener(this.events, this, listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener listener to remove
+	 */
+	public void removeListener(TreeListener<E> listener) {
+		this.events = TreeEvents.removeListener(this.events, listener);
+	}
+
+	/**
+	 * Runs changes of the table as one batch, listeners are notified once with all events when the changes are done.
+	 * @param changes changes to run
+	 */
+	public void batch(Runnable changes) {
+		TreeEvents.batch(this.events, () -> {
+			changes.run();
+			return null;
+		});
 	}
 
 	@Override
 	public void clear() {
+		this.rows.clear();
+		if(this.events!=null && !this.sval.isEmpty()){
+			this.sval.clear();
+			TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, Table.defaulSeparator, null, null);
+			return;
+		}
 		this.sval.clear();
 	}
 
 	@Override
 	public boolean columnValue(Object row, Object column, E value) {
 		String key = Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString();
-		if(this.sval.containsKey(key)){
-			if(this.sval.get(key)!=null){
-				this.sval.get(key).add(value);
-			}
-			else{
-				ComCollection<E> coll = new ComCollection<E>();
-				coll.add(value);
+		ComCollection<E> coll = this.sval.get(key);
+		if(coll!=null || this.sval.containsKey(key)){
+			if(coll==null){
+				coll = new ComCollection<E>();
 				this.sval.put(key, coll);
 			}
+			coll.add(value);
+			if(value!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, key, null, value);
+			}
 			return true;
 		}
 		return false;
@@ -121,19 +182,22 @@ public class FlatMultiTable<E> implements Table<E> {
 		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The returned map is a read-only view of the row with the first value of each cell, reading values from the table.
+	 */
 	@Override
 	public Map<String, E> get(Object row) {
-		Map<String, E> ret = new HashMap<String, E>();
-		Collection<String> columns = IsPath.GET_SUB_PATHS(Table.defaulSeparator, Table.tableJoiner.transform(new Pair<Object, Object>(null, row)), this.sval.keySet());
-		for(String s : columns){
-			if(this.sval.get(s)==null){
-				ret.put(s, null);
-			}
-			else{
-				ret.put(s, this.sval.get(s).getFirst());
-			}
+		String key = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		String[] cells = this.rows.get(key);
+		if(cells!=null){
+			return new RowView<E>(cells, i -> {
+				ComCollection<E> coll = this.sval.get(cells[i]);
+				return (coll==null)?null:coll.getFirst();
+			}, () -> this.rows.get(key)==cells);
 		}
-		return ret;
+
+		return Collections.emptyMap();
 	}
 
 	@Override
@@ -159,21 +223,24 @@ public class FlatMultiTable<E> implements Table<E> {
 	public FlatMultiTable<E> getCopy() {
 		FlatMultiTable<E> ret = new FlatMultiTable<E>(this.strategy, this.columns);
 		ret.sval.putAll(this.sval);
+		ret.rows.putAll(this.rows);
 		return ret;
 	}
 
 	/**
 	 * Returns a complete row will all columns and asociated values.
+	 * The returned map is a read-only view of the row, reading values from the table.
 	 * @param row row identifier
 	 * @return complete row
 	 */
 	public Map<String, ComCollection<E>> getRow(Object row) {
-		Map<String, ComCollection<E>> ret = new HashMap<String, ComCollection<E>>();
-		Collection<String> columns = IsPath.GET_SUB_PATHS(Table.defaulSeparator, Table.tableJoiner.transform(new Pair<Object, Object>(null, row)), this.sval.keySet());
-		for(String s : columns){
-			ret.put(s, this.sval.get(s));
+		String key = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		String[] cells = this.rows.get(key);
+		if(cells!=null){
+			return new RowView<ComCollection<E>>(cells, i -> this.sval.get(cells[i]), () -> this.rows.get(key)==cells);
 		}
-		return ret;
+
+		return Collections.emptyMap();
 	}
 
 	/**
@@ -183,6 +250,7 @@ public class FlatMultiTable<E> implements Table<E> {
 	 */
 	private void init(IsSetStrategy strategy, Collection<IsAttributeKey> columns){
 		this.sval = new HashMap<String, ComCollection<E>>();
+		this.rows = new HashMap<String, String[]>();
 
 		if(strategy!=null){
 			this.strategy = strategy;
@@ -204,6 +272,13 @@ public class FlatMultiTable<E> implements Table<E> {
 		}
 	}
 
+	/**
+	 * Rebuilds the row index from the entries of the table, used after entries were added without {@link #addRow(Object)}.
+	 */
+	void reindexRows() {
+		this.rows = RowView.index(this.sval.keySet(), this.columns);
+	}
+
 	@Override
 	public boolean isEmpty() {
 		return this.sval.isEmpty();
@@ -221,7 +296,19 @@ public class FlatMultiTable<E> implements Table<E> {
 
 	@Override
 	public boolean removeRow(Object row) {
-		return Table.removeTableRow(row, this.sval, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(row==null){
+			return false;
+		}
+		String key = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		boolean exists = this.sval.containsKey(key);
+		boolean ret = Table.removeTableRow(row, this.sval, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(ret && exists){
+			this.rows.remove(key);
+			if(this.events!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, key, null, null);
+			}
+		}
+		return ret;
 	}
 
 	@Override
@@ -229,6 +316,18 @@ public class FlatMultiTable<E> implements Table<E> {
 		return this.sval.size();
 	}
 
+	/**
+	 * Returns an estimate of the heap used by this table, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		long index = Footprint.hashMap(this.rows.size());
+		for(String[] cells : this.rows.values()){
+			index += Footprint.array(cells.length, Footprint.REF);
+		}
+		return Footprint.ofMulti(this.sval, Footprint.hashMap(this.sval.size()) + index);
+	}
+
 	@Override
 	public String toString(){
 		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval);
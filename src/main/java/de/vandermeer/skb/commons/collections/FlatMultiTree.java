@@ -16,17 +16,14 @@
 package de.vandermeer.skb.commons.collections;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 import org.antlr.v4.runtime.misc.Pair;
 import org.apache.commons.lang3.text.StrBuilder;
 
-import de.vandermeer.skb.base.categories.IsPath;
 import de.vandermeer.skb.base.composite.coin.NullObject;
 import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
-import de.vandermeer.skb.commons.Predicates;
 
 /**
  * A multi-value implementation of the {@link Tree}.
@@ -36,17 +33,25 @@ import de.vandermeer.skb.commons.Predicates;
  */
 public class FlatMultiTree<E> implements Tree<E> {
 	/** Map maintaining all tree elements */
-	protected Map<String, ComCollection<E>>sval;
+	protected PathMap<ComCollection<E>> sval;
 
 	final boolean autoRoot=true;
 
+	/** Listeners and pending events, null as long as no listener is registered */
+	TreeEvents<E> events;
+
 	/** Creates a new multi tree */
 	public FlatMultiTree(){
-		this.sval = new HashMap<String, ComCollection<E>>();
+		this.sval = new PathMap<ComCollection<E>>();
 	}
 
 	@Override
 	public void clear() {
+		if(this.events!=null && !this.sval.isEmpty()){
+			this.sval.clear();
+			TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, Tree.defaulSeparator, null, null);
+			return;
+		}
 		this.sval.clear();
 	}
 
@@ -60,14 +65,45 @@ public class FlatMultiTree<E> implements Tree<E> {
 		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
 	}
 
+	/**
+	 * Tests if the tree contains a path.
+	 * @param key precompiled path to be tested
+	 * @return true if the path exists, false otherwise
+	 */
+	public boolean containsNode(PathKey key) {
+		return key!=null && this.sval.containsKey(key.key());
+	}
+
 	@Override
 	public Collection<String> getChildrenNames(Object fqpn) {
-		return IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval.keySet());
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
 	}
 
 	@Override
 	public Collection<String> getChildrenNames(Object path, Object name) {
-		return IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval.keySet());
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Returns the direct children of a node.
+	 * Deeper sub paths are skipped in the sorted path index, so the cost depends on the number of children only.
+	 * @param fqpn path of the node
+	 * @return paths of all direct children in sorted order, empty if none found
+	 * @see #getDescendants(Object, int)
+	 */
+	public List<String> getDirectChildren(Object fqpn) {
+		return this.getDescendants(fqpn, 1);
+	}
+
+	/**
+	 * Returns all descendants of a node up to a maximum depth.
+	 * Deeper sub paths are skipped in the sorted path index, so the cost depends on the number of returned paths only.
+	 * @param fqpn path of the node
+	 * @param maxDepth maximum depth relative to the node, 1 for direct children only
+	 * @return paths of all descendants up to the maximum depth in sorted order, empty if none found
+	 */
+	public List<String> getDescendants(Object fqpn, int maxDepth) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), maxDepth);
 	}
 
 	@Override
@@ -85,7 +121,7 @@ public class FlatMultiTree<E> implements Tree<E> {
 	@Override
 	public FlatMultiTree<E> getSubtree(Object path, Object name) {
 		FlatMultiTree<E> ret = new FlatMultiTree<E>();
-		for(String key : IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval.keySet())){
+		for(String key : this.sval.subPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())){
 			ret.sval.put(key, this.sval.get(key));
 		}
 		return ret;
@@ -105,6 +141,19 @@ public class FlatMultiTree<E> implements Tree<E> {
 		return null;
 	}
 
+	/**
+	 * Returns the first value of a node.
+	 * @param key precompiled path of the node
+	 * @return value, null can mean that the node does not exist or that the value of the node is null
+	 */
+	public E getValue(PathKey key) {
+		ComCollection<E> coll = this.getValueMulti(key);
+		if(coll!=null){
+			return coll.getFirst();
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the values associated with the FQPN.
 	 * @param fqpn path name to look for
@@ -124,14 +173,32 @@ public class FlatMultiTree<E> implements Tree<E> {
 		return this.sval.get(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
 	}
 
+	/**
+	 * Returns the values associated with a precompiled path.
+	 * @param key precompiled path to look for
+	 * @return collection of values associated with the path
+	 */
+	public ComCollection<E> getValueMulti(PathKey key){
+		return (key==null)?null:this.sval.get(key.key());
+	}
+
 	@Override
 	public boolean hasChildren(Object fqpn) {
-		return Predicates.CONTAINS_STRINGS_STARTING_WITH(this.sval.keySet()).test(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
 	}
 
 	@Override
 	public boolean hasChildren(Object path, Object name) {
-		return Predicates.CONTAINS_STRINGS_STARTING_WITH(this.sval.keySet()).test(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Tests if the given path has children.
+	 * @param key precompiled path to test
+	 * @return true if the path has children, false otherwise
+	 */
+	public boolean hasChildren(PathKey key) {
+		return key!=null && this.sval.hasChildren(key.key());
 	}
 
 	@Override
@@ -147,12 +214,28 @@ public class FlatMultiTree<E> implements Tree<E> {
 
 	@Override
 	public boolean addNode(Object fqpn) {
-		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, this.autoRoot);
+		return this.addNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
 	}
 
 	@Override
 	public boolean addNode(Object path, Object name) {
-		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
+		return this.addNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+	}
+
+	/**
+	 * Adds a node and all missing ancestors, listeners are notified about every added node.
+	 * @param fqpn path of the node
+	 * @return true if node is in tree, false otherwise
+	 */
+	private boolean addNode(StrBuilder fqpn) {
+		if(this.events==null || fqpn==null){
+			return Tree.addNodeWithNull(fqpn, this.sval, this.autoRoot);
+		}
+		String key = fqpn.toString();
+		List<String> missing = TreeEvents.missing(this.events, key, this.sval);
+		boolean ret = Tree.addNodeWithNull(fqpn, this.sval, this.autoRoot);
+		TreeEvents.appended(this.events, missing, this.sval, key, null);
+		return ret;
 	}
 
 	@Override
@@ -163,6 +246,7 @@ public class FlatMultiTree<E> implements Tree<E> {
 	@Override
 	public boolean addNodeWithValue(Object path, Object name, E value) {
 		StrBuilder fqpn = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name));
+		List<String> missing = TreeEvents.missing(this.events, fqpn.toString(), this.sval);
 		Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
 		String key = fqpn.toString();
 		if(this.sval.containsKey(key)){
@@ -174,18 +258,90 @@ public class FlatMultiTree<E> implements Tree<E> {
 				add.add(value);
 				this.sval.put(fqpn.toString(), add);
 			}
+			TreeEvents.appended(this.events, missing, this.sval, key, value);
 		}
 		return this.sval.containsKey(fqpn.toString());
 	}
 
+	/**
+	 * Adds a node with a value.
+	 * @param key precompiled path of the node
+	 * @param value value to be processed
+	 * @return true if the value was added, false otherwise
+	 */
+	public boolean addNodeWithValue(PathKey key, E value) {
+		List<String> missing = (key==null)?null:TreeEvents.missing(this.events, key.key(), this.sval);
+		if(!Tree.addNodeWithNull(key, this.sval)){
+			return false;
+		}
+		ComCollection<E> coll = this.sval.get(key.key());
+		if(coll!=null){
+			coll.add(value);
+		}
+		else{
+			coll = new ComCollection<E>();
+			coll.add(value);
+			this.sval.put(key.key(), coll);
+		}
+		TreeEvents.appended(this.events, missing, this.sval, key.key(), value);
+		return true;
+	}
+
+	/**
+	 * Registers a listener that is notified about all changes of the tree.
+	 * As long as no listener is registered, changes do not create any events.
+	 * @param listener new listener
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addListener(TreeListener<E> listener) {
+		this.events = TreeEvents.addListener(this.events, this, listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener listener to remove
+	 */
+	public void removeListener(TreeListener<E> listener) {
+		this.events = TreeEvents.removeListener(this.events, listener);
+	}
+
+	/**
+	 * Runs changes of the tree as one batch, listeners are notified once with all events when the changes are done.
+	 * @param changes changes to run
+	 */
+	public void batch(Runnable changes) {
+		TreeEvents.batch(this.events, () -> {
+			changes.run();
+			return null;
+		});
+	}
+
 	@Override
 	public boolean removeNode(Object fqpn) {
-		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, Tree.defaulSeparator);
+		return this.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
 	}
 
 	@Override
 	public boolean removeNode(Object path, Object name) {
-		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, Tree.defaulSeparator);
+		return this.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+	}
+
+	/**
+	 * Removes a node and all its children, listeners are notified with a single event.
+	 * @param fqpn path of the node
+	 * @return true if the node does not exist anymore, false otherwise
+	 */
+	private boolean removeNode(StrBuilder fqpn) {
+		if(this.events==null || fqpn==null){
+			return Tree.removeNode(fqpn, this.sval, Tree.defaulSeparator);
+		}
+		String key = fqpn.toString();
+		TreeEvent.Type type = TreeEvents.removal(this.events, key, this.sval);
+		boolean ret = Tree.removeNode(fqpn, this.sval, Tree.defaulSeparator);
+		if(type!=null){
+			TreeEvents.fire(this.events, type, key, null, null);
+		}
+		return ret;
 	}
 
 	@Override
@@ -197,7 +353,7 @@ public class FlatMultiTree<E> implements Tree<E> {
 	public boolean removeValue(Object path, Object name) {
 		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
 		if(this.sval.containsKey(key)){
-			this.sval.put(key, null);
+			TreeEvents.values(this.events, key, this.sval.put(key, null), null);
 			return true;
 		}
 		return false;
@@ -224,7 +380,9 @@ public class FlatMultiTree<E> implements Tree<E> {
 		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
 		ComCollection<E> coll=this.sval.get(key);
 		if(coll!=null){
-			coll.remove(value);
+			if(coll.remove(value)){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, key, value, null);
+			}
 			return true;
 		}
 		return false;
@@ -235,32 +393,32 @@ public class FlatMultiTree<E> implements Tree<E> {
 		return this.sval.size();
 	}
 
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this.sval::childPaths, this.sval.size(), order, maxDepth);
+	}
+
+	/**
+	 * Returns an estimate of the heap used by this tree, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		return Footprint.ofMulti(this.sval, Footprint.pathMap(this.sval.size()));
+	}
+
 	@Override
 	public String toString(){
 		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a flat multi tree. Nodes missing in this tree are added with all their values,
+	 * values of existing nodes are appended if they are not null and not a {@link NullObject}.
+	 * Use a {@link TreeMerger} for other conflict policies, parallel merges, or merge statistics.
+	 */
 	@Override
 	public boolean merge(Tree<?> tree){
-		boolean ret = false;
-		try{
-			Map<String, ComCollection<E>>source=((FlatMultiTree<E>)tree).sval;
-			for(String key : source.keySet()){
-				if(!this.sval.containsKey(key)){
-					this.sval.put(key, source.get(key));
-				}
-				else{
-					for(E col : source.get(key)){
-						if(col!=null && !(col instanceof NullObject)){
-							this.sval.get(key).add(col);
-						}
-					}
-				}
-			}
-			ret=true;
-		}
-		catch(Exception ignore){}
-		return ret;
+		return new TreeMerger<E>(MergePolicy.APPEND()).merge(this, tree)!=null;
 	}
 }
@@ -17,14 +17,17 @@ package de.vandermeer.skb.commons.collections;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.antlr.v4.runtime.misc.Pair;
 
-import de.vandermeer.skb.base.categories.IsPath;
 import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.Skb_ObjectUtils;
 import de.vandermeer.skb.base.utils.collections.IsSetStrategy;
 import de.vandermeer.skb.base.utils.collections.SetStrategy;
 import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
@@ -32,6 +35,7 @@ import de.vandermeer.skb.configuration.EAttributeKeys;
 
 /**
  * A classic implementation of the {@link Table}.
+ * The table is not thread safe, use {@link ConcurrentFlatTable} for tables shared between threads.
  *
  * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
  * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
@@ -43,6 +47,9 @@ public class FlatTable<E> implements Table<E> {
 	/** table columns */
 	protected Set<IsAttributeKey> columns;
 
+	/** Row index, maps the path of each row to the paths of its cells (the same strings used as keys in sval) */
+	Map<String, String[]> rows;
+
 	/** strategy for the table columns */
 	protected IsSetStrategy strategy;
 
@@ -52,6 +59,12 @@ public class FlatTable<E> implements Table<E> {
 
 	final boolean autoRootArray = false;
 
+	/** Listeners and pending events, null as long as no listener is registered */
+	TreeEvents<E> events;
+
+	/** Secondary indexes by column name, null as long as no index is declared */
+	Map<String, ColumnIndex> indexes;
+
 	/** Creates a new table with default strategy and a single default table */
 	public FlatTable(){
 		this.init(null, null);
@@ -82,24 +95,276 @@ public class FlatTable<E> implements Table<E> {
 
 	@Override
 	public boolean addRow(Object row) {
-		return Table.addRowWithNull(row, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		String[] cells = Table.addRowCells(row, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(cells==null){
+			return false;
+		}
+		this.rows.put(cells[0], Arrays.copyOfRange(cells, 1, cells.length));
+		if(this.events!=null){
+			TreeEvents.rowAdded(this.events, cells[0], this.columns);
+		}
+		return true;
 	}
 
 	@Override
 	public boolean addRowsAll(Object rows) {
-		return Table.addRowsAllWithNull(rows, this.sval, this.columns, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		return TreeEvents.batch(this.events, () -> {
+			Object[] r = (rows==null)?null:Skb_ObjectUtils.CONVERT(rows, Object[].class, null, null);
+			if(r==null){
+				return false;
+			}
+			for(Object row : r){
+				this.addRow(row);
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Registers a listener that is notified about all changes of the table.
+	 * As long as no listener is registered, changes do not create any events.
+	 * @param listener new listener
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addListener(TreeListener<E> listener) {
+		this.events = TreeEvents.addListener(this.events, this, listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener listener to remove
+	 */
+	public void removeListener(TreeListener<E> listener) {
+		this.events = TreeEvents.removeListener(this.events, listener);
+	}
+
+	/**
+	 * Runs changes of the table as one batch, listeners are notified once with all events when the changes are done.
+	 * @param changes changes to run
+	 */
+	public void batch(Runnable changes) {
+		TreeEvents.batch(this.events, () -> {
+			changes.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Declares a secondary index for a column.
+	 * The index is built from the current rows and maintained by all later changes of the table.
+	 * @param column column to index
+	 * @param type type of the index, sorted indexes use the natural ordering of the values
+	 * @return the index of the column, an existing index is replaced
+	 * @throws IllegalArgumentException if the column is not a column of the table, type is null, or a sorted index cannot order the current values
+	 */
+	public ColumnIndex addIndex(Object column, ColumnIndex.Type type) {
+		return this.addIndex(column, new ColumnIndex(type, null));
+	}
+
+	/**
+	 * Declares a sorted secondary index for a column.
+	 * @param column column to index
+	 * @param comparator ordering of the values
+	 * @return the index of the column, an existing index is replaced
+	 * @throws IllegalArgumentException if the column is not a column of the table, or the comparator cannot order the current values
+	 */
+	public ColumnIndex addIndex(Object column, Comparator<? super E> comparator) {
+		return this.addIndex(column, new ColumnIndex(ColumnIndex.Type.SORTED, comparator));
+	}
+
+	/**
+	 * Adds a new index and fills it from the current rows.
+	 * @param column column to index
+	 * @param index new index
+	 * @return the index
+	 */
+	private ColumnIndex addIndex(Object column, ColumnIndex index) {
+		String name = ColumnIndex.column(column);
+		if(name==null || !this.hasColumn(name)){
+			throw new IllegalArgumentException("unknown column <" + column + ">");
+		}
+		this.fill(name, index);
+		if(this.indexes==null){
+			this.indexes = new HashMap<String, ColumnIndex>();
+		}
+		this.indexes.put(name, index);
+		return index;
+	}
+
+	/**
+	 * Adds the values of all rows of a column to an index.
+	 * @param column column name
+	 * @param index index to fill
+	 */
+	private void fill(String column, ColumnIndex index) {
+		for(String row : this.rows.keySet()){
+			Object value = this.sval.get(row + Table.defaulSeparator + column);
+			try{
+				index.add(value, row);
+			}
+			catch(ClassCastException ex){
+				throw new IllegalArgumentException("sorted index of column <" + column + "> cannot order value <" + value + ">", ex);
+			}
+		}
+	}
+
+	/**
+	 * Tests if a column name is a column of the table.
+	 * @param name column name
+	 * @return true if it is a column, false otherwise
+	 */
+	private boolean hasColumn(String name) {
+		for(IsAttributeKey key : this.columns){
+			if(key.key().equals(name)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the secondary index of a column.
+	 * @param column column
+	 * @return index, null if none is declared for the column
+	 */
+	public ColumnIndex getIndex(Object column) {
+		return (this.indexes==null)?null:this.indexes.get(ColumnIndex.column(column));
+	}
+
+	/**
+	 * Removes the secondary index of a column.
+	 * @param column column
+	 * @return true if an index was removed, false otherwise
+	 */
+	public boolean removeIndex(Object column) {
+		boolean ret = this.indexes!=null && this.indexes.remove(ColumnIndex.column(column))!=null;
+		if(this.indexes!=null && this.indexes.isEmpty()){
+			this.indexes = null;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns all rows in which a column has a value.
+	 * Uses the index of the column if one is declared, otherwise all rows are scanned.
+	 * @param column column
+	 * @param value value to look for, null is never found
+	 * @return read-only set of row paths
+	 */
+	public Set<String> getRows(Object column, E value) {
+		ColumnIndex index = this.getIndex(column);
+		if(index!=null){
+			return index.get(value);
+		}
+		String name = ColumnIndex.column(column);
+		return Collections.unmodifiableSet(ColumnIndex.scan(this.rows.keySet(), row -> this.sval.get(row + Table.defaulSeparator + name), v -> v.equals(value)));
+	}
+
+	/**
+	 * Returns all rows in which a column has a value within a range.
+	 * Uses the index of the column if a sorted index is declared, the rows are then ordered by value.
+	 * Otherwise all rows are scanned and the values are compared by their natural ordering.
+	 * @param column column
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if rows holding the lowest value are returned
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if rows holding the highest value are returned
+	 * @return read-only set of row paths
+	 */
+	public Set<String> getRows(Object column, E from, boolean fromInclusive, E to, boolean toInclusive) {
+		ColumnIndex index = this.getIndex(column);
+		if(index!=null && index.getType()==ColumnIndex.Type.SORTED){
+			return Collections.unmodifiableSet(index.range(from, fromInclusive, to, toInclusive));
+		}
+		String name = ColumnIndex.column(column);
+		return Collections.unmodifiableSet(ColumnIndex.scan(this.rows.keySet(), row -> this.sval.get(row + Table.defaulSeparator + name), ColumnIndex.between(from, fromInclusive, to, toInclusive)));
+	}
+
+	/**
+	 * Updates the index of a cell after its value changed.
+	 * @param key path of the cell
+	 * @param oldValue old value
+	 * @param newValue new value
+	 */
+	private void indexed(String key, E oldValue, E newValue) {
+		int sep = key.indexOf(Table.defaulSeparator, 1);
+		if(sep>0){
+			ColumnIndex index = this.indexes.get(key.substring(sep+1));
+			if(index!=null){
+				index.update(oldValue, newValue, key.substring(0, sep));
+			}
+		}
+	}
+
+	/**
+	 * Copies the indexes of another table, used when copying tables.
+	 * @param table table to copy the indexes from
+	 */
+	void copyIndexes(FlatTable<E> table) {
+		if(table.indexes!=null){
+			this.indexes = new HashMap<String, ColumnIndex>();
+			for(Map.Entry<String, ColumnIndex> entry : table.indexes.entrySet()){
+				this.indexes.put(entry.getKey(), entry.getValue().copy());
+			}
+		}
 	}
 
 	@Override
 	public void clear() {
+		this.rows.clear();
+		if(this.indexes!=null){
+			for(ColumnIndex index : this.indexes.values()){
+				index.clear();
+			}
+		}
+		if(this.events!=null && !this.sval.isEmpty()){
+			this.sval.clear();
+			TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, Table.defaulSeparator, null, null);
+			return;
+		}
 		this.sval.clear();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalArgumentException if the column has a sorted index that cannot order the value, the cell is not changed
+	 */
 	@Override
 	public boolean columnValue(Object row, Object column, E value) {
 		String key = Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString();
 		if(this.sval.containsKey(key)){
+			E old = this.sval.get(key);
+			if(this.indexes!=null){
+				//the index rejects values it cannot order before the cell is changed
+				this.indexed(key, old, value);
+			}
 			this.sval.put(key, value);
+			if(this.events!=null && !Objects.equals(old, value)){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, key, old, value);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the value of a cell.
+	 * @param cell precompiled path of the cell, that is row and column
+	 * @param value new value for the cell
+	 * @return true if successful, false otherwise (i.e. cell does not exist)
+	 * @throws IllegalArgumentException if the column has a sorted index that cannot order the value, the cell is not changed
+	 */
+	public boolean columnValue(PathKey cell, E value) {
+		if(cell!=null && this.sval.containsKey(cell.key())){
+			E old = this.sval.get(cell.key());
+			if(this.indexes!=null){
+				//the index rejects values it cannot order before the cell is changed
+				this.indexed(cell.key(), old, value);
+			}
+			this.sval.put(cell.key(), value);
+			if(this.events!=null && !Objects.equals(old, value)){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, cell.key(), old, value);
+			}
 			return true;
 		}
 		return false;
@@ -115,15 +380,28 @@ public class FlatTable<E> implements Table<E> {
 		return this.sval.containsKey(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
 	}
 
+	/**
+	 * Tests if a row or a cell exists.
+	 * @param key precompiled path of the row or cell
+	 * @return true if the row or cell exists, false otherwise
+	 */
+	public boolean contains(PathKey key) {
+		return key!=null && this.sval.containsKey(key.key());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned map is a read-only view of the row, reading values from the table.
+	 */
 	@Override
 	public Map<String, E> get(Object row) {
-		Map<String, E> ret = new HashMap<String, E>();
-
-		Collection<String> columns = IsPath.GET_SUB_PATHS(Table.defaulSeparator, Table.tableJoiner.transform(new Pair<Object, Object>(null,row)), this.sval.keySet());
-		for(String s : columns){
-			ret.put(s, this.sval.get(s));
+		String key = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		String[] cells = this.rows.get(key);
+		if(cells!=null){
+			return new RowView<E>(cells, i -> this.sval.get(cells[i]), () -> this.rows.get(key)==cells);
 		}
-		return ret;
+
+		return Collections.emptyMap();
 	}
 
 	@Override
@@ -131,10 +409,21 @@ public class FlatTable<E> implements Table<E> {
 		return this.sval.get(Table.tableJoiner.transform(new Pair<Object, Object>(row, column)).toString());
 	}
 
+	/**
+	 * Returns the value of a cell.
+	 * @param cell precompiled path of the cell, that is row and column
+	 * @return value of the cell
+	 */
+	public E getValue(PathKey cell) {
+		return (cell==null)?null:this.sval.get(cell.key());
+	}
+
 	@Override
 	public FlatTable<E> getCopy() {
 		FlatTable<E> ret = new FlatTable<E>(this.strategy, this.columns);
 		ret.sval.putAll(this.sval);
+		ret.rows.putAll(this.rows);
+		ret.copyIndexes(this);
 		return ret;
 	}
 
@@ -145,6 +434,7 @@ public class FlatTable<E> implements Table<E> {
 	 */
 	private void init(IsSetStrategy strategy, Collection<IsAttributeKey> columns){
 		this.sval = new HashMap<String, E>();
+		this.rows = new HashMap<String, String[]>();
 
 		if(strategy!=null){
 			this.strategy = strategy;
@@ -166,6 +456,19 @@ public class FlatTable<E> implements Table<E> {
 		}
 	}
 
+	/**
+	 * Rebuilds the row index from the entries of the table, used after entries were added without {@link #addRow(Object)}.
+	 */
+	void reindexRows() {
+		this.rows = RowView.index(this.sval.keySet(), this.columns);
+		if(this.indexes!=null){
+			for(Map.Entry<String, ColumnIndex> entry : this.indexes.entrySet()){
+				entry.getValue().clear();
+				this.fill(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
 	@Override
 	public boolean isEmpty() {
 		return this.sval.isEmpty();
@@ -183,7 +486,24 @@ public class FlatTable<E> implements Table<E> {
 
 	@Override
 	public boolean removeRow(Object row) {
-		return Table.removeTableRow(row, this.sval, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(row==null){
+			return false;
+		}
+		String key = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		boolean exists = this.sval.containsKey(key);
+		if(exists && this.indexes!=null){
+			for(Map.Entry<String, ColumnIndex> entry : this.indexes.entrySet()){
+				entry.getValue().remove(this.sval.get(key + Table.defaulSeparator + entry.getKey()), key);
+			}
+		}
+		boolean ret = Table.removeTableRow(row, this.sval, Table.defaulSeparator, this.autoClean, this.autoRoot);
+		if(ret && exists){
+			this.rows.remove(key);
+			if(this.events!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, key, null, null);
+			}
+		}
+		return ret;
 	}
 
 	@Override
@@ -191,6 +511,18 @@ public class FlatTable<E> implements Table<E> {
 		return this.sval.size();
 	}
 
+	/**
+	 * Returns an estimate of the heap used by this table, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		long index = Footprint.hashMap(this.rows.size());
+		for(String[] cells : this.rows.values()){
+			index += Footprint.array(cells.length, Footprint.REF);
+		}
+		return Footprint.of(this.sval, Footprint.hashMap(this.sval.size()) + index);
+	}
+
 	@Override
 	public String toString(){
 		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval);
@@ -16,17 +16,14 @@
 package de.vandermeer.skb.commons.collections;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 import org.antlr.v4.runtime.misc.Pair;
 import org.apache.commons.lang3.text.StrBuilder;
 
-import de.vandermeer.skb.base.categories.IsPath;
 import de.vandermeer.skb.base.composite.coin.NullObject;
 import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
-import de.vandermeer.skb.commons.Predicates;
 
 /**
  * A classic implementation of the {@link Tree}.
@@ -36,23 +33,42 @@ import de.vandermeer.skb.commons.Predicates;
  */
 public class FlatTree<E> implements Tree<E> {
 	/** Map maintaining all tree elements */
-	protected Map<String, E>sval;
+	protected PathMap<E> sval;
 
 	final boolean autoRoot=true;
 
+	/** Listeners and pending events, null as long as no listener is registered */
+	TreeEvents<E> events;
+
 	/** Creates a new classic tree. */
 	public FlatTree(){
-		this.sval = new HashMap<String, E>();
+		this.sval = new PathMap<E>();
 	}
 
 	@Override
 	public boolean addNode(Object fqpn) {
-		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, this.autoRoot);
+		return this.addNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
 	}
 
 	@Override
 	public boolean addNode(Object path, Object name) {
-		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
+		return this.addNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+	}
+
+	/**
+	 * Adds a node and all missing ancestors, listeners are notified about every added node.
+	 * @param fqpn path of the node
+	 * @return true if node is in tree, false otherwise
+	 */
+	private boolean addNode(StrBuilder fqpn) {
+		if(this.events==null || fqpn==null){
+			return Tree.addNodeWithNull(fqpn, this.sval, this.autoRoot);
+		}
+		String key = fqpn.toString();
+		List<String> missing = TreeEvents.missing(this.events, key, this.sval);
+		boolean ret = Tree.addNodeWithNull(fqpn, this.sval, this.autoRoot);
+		TreeEvents.added(this.events, missing, this.sval, key, null, null);
+		return ret;
 	}
 
 	@Override
@@ -63,13 +79,67 @@ public class FlatTree<E> implements Tree<E> {
 	@Override
 	public boolean addNodeWithValue(Object path, Object name, E value) {
 		StrBuilder fqpn = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name));
+		List<String> missing = TreeEvents.missing(this.events, fqpn.toString(), this.sval);
+		E old = (this.events==null)?null:this.sval.get(fqpn.toString());
 		Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
 		this.sval.put(fqpn.toString(), value);
+		TreeEvents.added(this.events, missing, this.sval, fqpn.toString(), old, value);
 		return this.sval.containsKey(fqpn.toString());
 	}
 
+	/**
+	 * Adds a node with a value.
+	 * @param key precompiled path of the node
+	 * @param value value to be processed
+	 * @return true if the value was added/put, false otherwise
+	 */
+	public boolean addNodeWithValue(PathKey key, E value) {
+		List<String> missing = (key==null)?null:TreeEvents.missing(this.events, key.key(), this.sval);
+		E old = (this.events==null || key==null)?null:this.sval.get(key.key());
+		if(!Tree.addNodeWithNull(key, this.sval)){
+			return false;
+		}
+		this.sval.put(key.key(), value);
+		TreeEvents.added(this.events, missing, this.sval, key.key(), old, value);
+		return true;
+	}
+
+	/**
+	 * Registers a listener that is notified about all changes of the tree.
+	 * As long as no listener is registered, changes do not create any events.
+	 * @param listener new listener
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addListener(TreeListener<E> listener) {
+		this.events = TreeEvents.addListener(this.events, this, listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener listener to remove
+	 */
+	public void removeListener(TreeListener<E> listener) {
+		this.events = TreeEvents.removeListener(this.events, listener);
+	}
+
+	/**
+	 * Runs changes of the tree as one batch, listeners are notified once with all events when the changes are done.
+	 * @param changes changes to run
+	 */
+	public void batch(Runnable changes) {
+		TreeEvents.batch(this.events, () -> {
+			changes.run();
+			return null;
+		});
+	}
+
 	@Override
 	public void clear() {
+		if(this.events!=null && !this.sval.isEmpty()){
+			this.sval.clear();
+			TreeEvents.fire(this.events, TreeEvent.Type.SUBTREE_REMOVED, Tree.defaulSeparator, null, null);
+			return;
+		}
 		this.sval.clear();
 	}
 
@@ -83,18 +153,49 @@ public class FlatTree<E> implements Tree<E> {
 		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
 	}
 
+	/**
+	 * Tests if the tree contains a path.
+	 * @param key precompiled path to be tested
+	 * @return true if the path exists, false otherwise
+	 */
+	public boolean containsNode(PathKey key) {
+		return key!=null && this.sval.containsKey(key.key());
+	}
+
 	@Override
 	public Collection<String> getChildrenNames(Object fqpn) {
-		return IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval.keySet());
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
 //		return TreeUtils.getChildrenNames(TreeUtils.fqpnBuilderTree, TreeUtils.fqpnBuilderTree.join(fqpn), this.sval.keySet());
 	}
 
 	@Override
 	public Collection<String> getChildrenNames(Object path, Object name) {
-		return IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval.keySet());
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
 //		return TreeUtils.getChildrenNames(TreeUtils.fqpnBuilderTree, TreeUtils.fqpnBuilderTree.join(path, name), this.sval.keySet());
 	}
 
+	/**
+	 * Returns the direct children of a node.
+	 * Deeper sub paths are skipped in the sorted path index, so the cost depends on the number of children only.
+	 * @param fqpn path of the node
+	 * @return paths of all direct children in sorted order, empty if none found
+	 * @see #getDescendants(Object, int)
+	 */
+	public List<String> getDirectChildren(Object fqpn) {
+		return this.getDescendants(fqpn, 1);
+	}
+
+	/**
+	 * Returns all descendants of a node up to a maximum depth.
+	 * Deeper sub paths are skipped in the sorted path index, so the cost depends on the number of returned paths only.
+	 * @param fqpn path of the node
+	 * @param maxDepth maximum depth relative to the node, 1 for direct children only
+	 * @return paths of all descendants up to the maximum depth in sorted order, empty if none found
+	 */
+	public List<String> getDescendants(Object fqpn, int maxDepth) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), maxDepth);
+	}
+
 	@Override
 	public FlatTree<E> getCopy() {
 		FlatTree<E> ret = new FlatTree<E>();
@@ -110,7 +211,7 @@ public class FlatTree<E> implements Tree<E> {
 	@Override
 	public FlatTree<E> getSubtree(Object path, Object name) {
 		FlatTree<E> ret = new FlatTree<E>();
-		for(String key : IsPath.GET_SUB_PATHS(Tree.defaulSeparator, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval.keySet())){
+		for(String key : this.sval.subPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())){
 			ret.sval.put(key, this.sval.get(key));
 //			ret.put(StringUtils.substringAfter(key, fqpn.toString()), map.get(key));
 		}
@@ -127,14 +228,32 @@ public class FlatTree<E> implements Tree<E> {
 		return this.sval.get(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
 	}
 
+	/**
+	 * Returns the value of a node.
+	 * @param key precompiled path of the node
+	 * @return value, null can mean that the node does not exist or that the value of the node is null
+	 */
+	public E getValue(PathKey key) {
+		return (key==null)?null:this.sval.get(key.key());
+	}
+
 	@Override
 	public boolean hasChildren(Object fqpn) {
-		return Predicates.CONTAINS_STRINGS_STARTING_WITH(this.sval.keySet()).test(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
 	}
 
 	@Override
 	public boolean hasChildren(Object path, Object name) {
-		return Predicates.CONTAINS_STRINGS_STARTING_WITH(this.sval.keySet()).test(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Tests if the given path has children.
+	 * @param key precompiled path to test
+	 * @return true if the path has children, false otherwise
+	 */
+	public boolean hasChildren(PathKey key) {
+		return key!=null && this.sval.hasChildren(key.key());
 	}
 
 	@Override
@@ -150,12 +269,31 @@ public class FlatTree<E> implements Tree<E> {
 
 	@Override
 	public boolean removeNode(Object fqpn) {
-		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, Tree.defaulSeparator);
+		return this.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)));
 	}
 
 	@Override
 	public boolean removeNode(Object path, Object name) {
-		return Tree.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, Tree.defaulSeparator);
+		return this.removeNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)));
+	}
+
+	/**
+	 * Removes a node and all its children, listeners are notified with a single event.
+	 * @param fqpn path of the node
+	 * @return true if the node does not exist anymore, false otherwise
+	 */
+	private boolean removeNode(StrBuilder fqpn) {
+		if(this.events==null || fqpn==null){
+			return Tree.removeNode(fqpn, this.sval, Tree.defaulSeparator);
+		}
+		String key = fqpn.toString();
+		TreeEvent.Type type = TreeEvents.removal(this.events, key, this.sval);
+		E old = this.sval.get(key);
+		boolean ret = Tree.removeNode(fqpn, this.sval, Tree.defaulSeparator);
+		if(type!=null){
+			TreeEvents.fire(this.events, type, key, old, null);
+		}
+		return ret;
 	}
 
 	@Override
@@ -167,7 +305,26 @@ public class FlatTree<E> implements Tree<E> {
 	public boolean removeValue(Object path, Object name) {
 		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
 		if(this.sval.containsKey(key)){
-			this.sval.put(key, null);
+			E old = this.sval.put(key, null);
+			if(old!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, key, old, null);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the value for the node.
+	 * @param key precompiled path of the node
+	 * @return true if value was removed, false otherwise
+	 */
+	public boolean removeValue(PathKey key) {
+		if(key!=null && this.sval.containsKey(key.key())){
+			E old = this.sval.put(key.key(), null);
+			if(old!=null){
+				TreeEvents.fire(this.events, TreeEvent.Type.VALUE_CHANGED, key.key(), old, null);
+			}
 			return true;
 		}
 		return false;
@@ -178,32 +335,33 @@ public class FlatTree<E> implements Tree<E> {
 		return this.sval.size();
 	}
 
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this.sval::childPaths, this.sval.size(), order, maxDepth);
+	}
+
+	/**
+	 * Returns an estimate of the heap used by this tree, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		return Footprint.of(this.sval, Footprint.pathMap(this.sval.size()));
+	}
+
 	@Override
 	public String toString(){
 		return Skb_CollectionTransformer.MAP_TO_TEXT(this.sval);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a flat tree. Nodes missing in this tree are added with their value,
+	 * existing nodes are overwritten if the new value is not null and not a {@link NullObject}.
+	 * Use a {@link TreeMerger} for other conflict policies, parallel merges, or merge statistics.
+	 */
 	@Override
 	public boolean merge(Tree<?> tree){
-		boolean ret=false;
-		try{
-			Map<String, E> source = ((FlatTree<E>)tree).sval;
-			for(String key : source.keySet()){
-				if(!this.sval.containsKey(key)){
-					this.sval.put(key, source.get(key));
-				}
-				else{
-					E val = source.get(key);
-					if(val!=null && !(val instanceof NullObject)){
-						this.sval.put(key, val);
-					}
-				}
-			}
-			ret = true;
-		}
-		catch(Exception ignore){}
-		return ret;
+		return new TreeMerger<E>(MergePolicy.OVERWRITE_IF_SET()).merge(this, tree)!=null;
 	}
 }
 
@@ -0,0 +1,956 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * An implementation of the {@link Tree} that keeps all paths and values in memory mapped files outside of the Java heap.
+ *
+ * <p>
+ * The tree uses two files. The data file holds one record per node with its path, links to its parent, its first child and its siblings,
+ * and the offset of its value. Values are converted to bytes by a {@link ValueCodec} and appended to the data file.
+ * The index file is an open addressing hash table mapping the hash of a path to the offset of its record.
+ * Both files are mapped in chunks of a fixed size, so they can grow beyond 2GB.
+ * </p>
+ *
+ * <p>
+ * The files are the complete state of the tree, opening an existing file continues with the tree as it was written.
+ * If the index file is missing it is rebuilt from the data file.
+ * Changing a value or removing a node leaves the old bytes in the data file, they are not reused.
+ * The tree can be read by multiple threads, for instance with a parallel stream, but it must not be changed while it is read.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class MappedTree<E> implements Tree<E>, Closeable {
+
+	/** Default size of a mapped chunk, 64MB */
+	public static final int DEFAULT_CHUNK_SIZE = 1<<26;
+
+	/** Smallest allowed size of a mapped chunk */
+	static final int MIN_CHUNK_SIZE = 1<<12;
+
+	/** Initial number of index slots */
+	static final long DEFAULT_INDEX_CAPACITY = 1<<10;
+
+	/** Marker at the start of data and index file */
+	static final int MAGIC = 0x534b4254;
+
+	/** File format version */
+	static final int VERSION = 1;
+
+	/** Offset value for a missing record or value */
+	static final long NONE = -1;
+
+	/** Data header: magic, version, chunk bits, end of data, number of nodes, first top level node */
+	static final int H_MAGIC = 0, H_VERSION = 4, H_CHUNK_BITS = 8, H_END = 16, H_SIZE = 24, H_FIRST = 32, HEADER_BYTES = 64;
+
+	/** Record: parent, first child, next and previous sibling, value, hash of the path, length of the path, path bytes */
+	static final int R_PARENT = 0, R_FIRST = 8, R_NEXT = 16, R_PREV = 24, R_VALUE = 32, R_HASH = 40, R_KEY_LENGTH = 44, R_KEY = 48;
+
+	/** Index header: magic, capacity, used slots */
+	static final int I_MAGIC = 0, I_CAPACITY = 8, I_USED = 16, I_SLOTS = 64;
+
+	/** Bytes of one index slot: record offset and hash */
+	static final int SLOT_BYTES = 16;
+
+	/** Index slot that was never used */
+	static final long SLOT_EMPTY = 0;
+
+	/** Index slot of a removed record */
+	static final long SLOT_DELETED = -1;
+
+	/** Codec for values */
+	protected final ValueCodec<E> codec;
+
+	/** The data file */
+	protected final File file;
+
+	/** The index file */
+	protected final File indexFile;
+
+	/** Mapped data file */
+	protected final Region data;
+
+	/** Mapped index file */
+	protected Region index;
+
+	final boolean autoRoot=true;
+
+	/**
+	 * Opens a tree with the default chunk size, creating the files if they do not exist.
+	 * @param file the data file, the index file uses the same name with ".idx" appended
+	 * @param codec codec for values
+	 * @throws IOException if the files cannot be opened or mapped
+	 */
+	public MappedTree(File file, ValueCodec<E> codec) throws IOException {
+		this(file, codec, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Opens a tree, creating the files if they do not exist.
+	 * @param file the data file, the index file uses the same name with ".idx" appended
+	 * @param codec codec for values
+	 * @param chunkSize size of mapped chunks for a new file, a power of two of at least 4096; existing files keep their chunk size
+	 * @throws IOException if the files cannot be opened or mapped, or if the file is not a tree file
+	 * @throws IllegalArgumentException if file or codec are null or the chunk size is not valid
+	 */
+	public MappedTree(File file, ValueCodec<E> codec, int chunkSize) throws IOException {
+		if(file==null || codec==null){
+			throw new IllegalArgumentException("file and codec must not be null");
+		}
+		if(chunkSize<MIN_CHUNK_SIZE || Integer.bitCount(chunkSize)!=1){
+			throw new IllegalArgumentException("chunk size must be a power of two of at least " + MIN_CHUNK_SIZE + ", got " + chunkSize);
+		}
+		this.codec = codec;
+		this.file = file;
+		this.indexFile = new File(file.getPath() + ".idx");
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if(channel.size()>=HEADER_BYTES){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			channel.read(header, 0);
+			if(header.getInt(H_MAGIC)!=MAGIC || header.getInt(H_VERSION)!=VERSION){
+				channel.close();
+				throw new IOException("not a tree file: " + file);
+			}
+			this.data = new Region(channel, header.getInt(H_CHUNK_BITS));
+			this.index = this.openIndex();
+		}
+		else{
+			this.data = new Region(channel, Integer.numberOfTrailingZeros(chunkSize));
+			this.data.putInt(H_MAGIC, MAGIC);
+			this.data.putInt(H_VERSION, VERSION);
+			this.data.putInt(H_CHUNK_BITS, this.data.chunkBits);
+			this.resetData();
+			this.index = this.buildIndex(DEFAULT_INDEX_CAPACITY);
+		}
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return this.addNode(null, fqpn);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		return this.ensure(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())!=NONE;
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		long record = this.ensure(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(record==NONE){
+			return false;
+		}
+		this.setValue(record, value);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.resetData();
+		this.replaceIndex(DEFAULT_INDEX_CAPACITY);
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.containsNode(null, fqpn);
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		return this.find(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())!=NONE;
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.getChildrenNames(null, fqpn);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		List<String> ret = new ArrayList<String>();
+		Iterator<Long> it = this.subtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		while(it.hasNext()){
+			ret.add(this.readKey(it.next()));
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The copy is a {@link FlatTree} on the heap, all values are decoded.
+	 */
+	@Override
+	public FlatTree<E> getCopy() {
+		FlatTree<E> ret = new FlatTree<E>();
+		Iterator<Long> it = new RecordIterator(this.data.getLong(H_FIRST), NONE);
+		while(it.hasNext()){
+			long record = it.next();
+			ret.sval.put(this.readKey(record), this.readValue(record));
+		}
+		return ret;
+	}
+
+	@Override
+	public FlatTree<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The subtree is a {@link FlatTree} on the heap, all values are decoded.
+	 */
+	@Override
+	public FlatTree<E> getSubtree(Object path, Object name) {
+		FlatTree<E> ret = new FlatTree<E>();
+		Iterator<Long> it = this.subtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		while(it.hasNext()){
+			long record = it.next();
+			ret.sval.put(this.readKey(record), this.readValue(record));
+		}
+		return ret;
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		long record = this.find(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		return (record==NONE)?null:this.readValue(record);
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.hasChildren(null, fqpn);
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		long record = this.find(key);
+		if(record==NONE){
+			return false;
+		}
+		if(Tree.defaulSeparator.equals(key)){
+			return this.size()>1;
+		}
+		return this.data.getLong(record + R_FIRST)!=NONE;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.data.getLong(H_SIZE)==0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only view, the tree must not be changed while iterating.
+	 */
+	@Override
+	public Set<String> keys() {
+		return new AbstractSet<String>(){
+			@Override public Iterator<String> iterator(){
+				final Iterator<Long> it = new RecordIterator(MappedTree.this.data.getLong(H_FIRST), NONE);
+				return new Iterator<String>(){
+					@Override public boolean hasNext(){return it.hasNext();}
+					@Override public String next(){return MappedTree.this.readKey(it.next());}
+				};
+			}
+			@Override public int size(){return MappedTree.this.size();}
+			@Override public boolean contains(Object o){return (o instanceof String) && MappedTree.this.find((String)o)!=NONE;}
+		};
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		if(Tree.defaulSeparator.equals(key)){
+			this.clear();
+			return true;
+		}
+		long record = this.find(key);
+		if(record==NONE){
+			return true;
+		}
+
+		this.unlink(record);
+		long removed = 1;
+		this.removeSlot(record);
+		Iterator<Long> it = new RecordIterator(this.data.getLong(record + R_FIRST), record);
+		while(it.hasNext()){
+			this.removeSlot(it.next());
+			removed++;
+		}
+		this.data.putLong(H_SIZE, this.data.getLong(H_SIZE) - removed);
+		return true;
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		long record = this.find(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(record==NONE){
+			return false;
+		}
+		this.data.putLong(record + R_VALUE, NONE);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return (int)Math.min(Integer.MAX_VALUE, this.data.getLong(H_SIZE));
+	}
+
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this::childPaths, this.size(), order, maxDepth);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, E> map = new LinkedHashMap<String, E>();
+		Iterator<Long> it = new RecordIterator(this.data.getLong(H_FIRST), NONE);
+		while(it.hasNext()){
+			long record = it.next();
+			map.put(this.readKey(record), this.readValue(record));
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(map);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a mapped tree. Nodes missing in this tree are added with their value,
+	 * existing nodes are overwritten if the new value is not null and not a {@link NullObject}.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean merge(Tree<?> tree){
+		if(tree==null){
+			return false;
+		}
+		for(String key : tree.keys()){
+			E val = (E)tree.getValue(key);
+			long record = this.find(key);
+			if(record==NONE){
+				this.setValue(this.ensure(key), val);
+			}
+			else if(val!=null && !(val instanceof NullObject)){
+				this.setValue(record, val);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes all changes to the files.
+	 */
+	public void flush(){
+		this.data.force();
+		this.index.force();
+	}
+
+	/**
+	 * Writes all changes to the files and closes them, the tree cannot be used afterwards.
+	 * @throws IOException from library call
+	 */
+	@Override
+	public void close() throws IOException {
+		this.flush();
+		this.index.close();
+		this.data.close();
+	}
+
+	/**
+	 * Returns the data file of the tree.
+	 * @return data file
+	 */
+	public File getFile(){
+		return this.file;
+	}
+
+	/**
+	 * Returns the record of a path, creating it and all its ancestors if required.
+	 * @param key path
+	 * @return offset of the record, NONE if the path is not valid
+	 */
+	protected long ensure(String key){
+		if(key==null || key.length()==0){
+			return NONE;
+		}
+		long parent = NONE;
+		int end = key.indexOf(PathMap.SEPARATOR, 1);
+		while(end>0){
+			parent = this.ensure(key.substring(0, end), parent);
+			end = key.indexOf(PathMap.SEPARATOR, end+1);
+		}
+		return this.ensure(key, parent);
+	}
+
+	/**
+	 * Returns the record of a path, creating it if required.
+	 * @param key path
+	 * @param parent offset of the parent record, NONE for a top level path
+	 * @return offset of the record
+	 */
+	private long ensure(String key, long parent){
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		int hash = key.hashCode();
+		long slot = this.findSlot(bytes, hash);
+		if(slot!=NONE){
+			return this.index.getLong(slot);
+		}
+
+		long record = this.allocate(R_KEY + bytes.length);
+		long head = (parent==NONE)?this.data.getLong(H_FIRST):this.data.getLong(parent + R_FIRST);
+		this.data.putLong(record + R_PARENT, parent);
+		this.data.putLong(record + R_FIRST, NONE);
+		this.data.putLong(record + R_NEXT, head);
+		this.data.putLong(record + R_PREV, NONE);
+		this.data.putLong(record + R_VALUE, NONE);
+		this.data.putInt(record + R_HASH, hash);
+		this.data.putInt(record + R_KEY_LENGTH, bytes.length);
+		this.data.putBytes(record + R_KEY, bytes);
+		if(head!=NONE){
+			this.data.putLong(head + R_PREV, record);
+		}
+		this.data.putLong((parent==NONE)?H_FIRST:parent + R_FIRST, record);
+		this.data.putLong(H_SIZE, this.data.getLong(H_SIZE) + 1);
+
+		long used = this.index.getLong(I_USED);
+		if((used+1)*2 > this.index.getLong(I_CAPACITY)){
+			this.replaceIndex(Math.max(this.index.getLong(I_CAPACITY), MappedTree.capacityFor(this.data.getLong(H_SIZE))));
+		}
+		else{
+			this.insertSlot(this.index, record, hash);
+		}
+		return record;
+	}
+
+	/**
+	 * Sets the value of a record, appending the encoded value to the data file.
+	 * @param record offset of the record
+	 * @param value new value
+	 */
+	protected void setValue(long record, E value){
+		if(value==null){
+			this.data.putLong(record + R_VALUE, NONE);
+			return;
+		}
+		byte[] bytes = this.codec.encode(value);
+		long offset = this.allocate(4 + bytes.length);
+		this.data.putInt(offset, bytes.length);
+		this.data.putBytes(offset + 4, bytes);
+		this.data.putLong(record + R_VALUE, offset);
+	}
+
+	/**
+	 * Reads and decodes the value of a record.
+	 * @param record offset of the record
+	 * @return value, null if the record has no value
+	 */
+	protected E readValue(long record){
+		long offset = this.data.getLong(record + R_VALUE);
+		if(offset==NONE){
+			return null;
+		}
+		return this.codec.decode(this.data.slice(offset + 4, this.data.getInt(offset)));
+	}
+
+	/**
+	 * Reads the path of a record.
+	 * @param record offset of the record
+	 * @return path
+	 */
+	protected String readKey(long record){
+		return new String(this.data.getBytes(record + R_KEY, this.data.getInt(record + R_KEY_LENGTH)), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Finds the record of a path.
+	 * @param key path
+	 * @return offset of the record, NONE if not found
+	 */
+	protected long find(String key){
+		long slot = this.findSlot(key.getBytes(StandardCharsets.UTF_8), key.hashCode());
+		return (slot==NONE)?NONE:this.index.getLong(slot);
+	}
+
+	/**
+	 * Returns an iterator over the records of all sub paths of a path, not including the path itself.
+	 * @param key path
+	 * @return iterator over record offsets
+	 */
+	protected Iterator<Long> subtree(String key){
+		if(Tree.defaulSeparator.equals(key)){
+			return new RecordIterator(this.data.getLong(H_FIRST), NONE);
+		}
+		long record = this.find(key);
+		if(record==NONE){
+			return new RecordIterator(NONE, NONE);
+		}
+		return new RecordIterator(this.data.getLong(record + R_FIRST), record);
+	}
+
+	/**
+	 * Returns the direct children of a path in lexicographical order.
+	 * @param key path
+	 * @return list of direct children
+	 */
+	protected List<String> childPaths(String key){
+		List<String> ret = new ArrayList<String>();
+		boolean root = Tree.defaulSeparator.equals(key);
+		long record = (root)?NONE:this.find(key);
+		if(!root && record==NONE){
+			return ret;
+		}
+		long child = (root)?this.data.getLong(H_FIRST):this.data.getLong(record + R_FIRST);
+		while(child!=NONE){
+			String path = this.readKey(child);
+			if(!root || !Tree.defaulSeparator.equals(path)){
+				ret.add(path);
+			}
+			child = this.data.getLong(child + R_NEXT);
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	/**
+	 * Finds the index slot of a path.
+	 * @param key bytes of the path
+	 * @param hash hash of the path
+	 * @return slot address in the index file, NONE if not found
+	 */
+	private long findSlot(byte[] key, int hash){
+		long mask = this.index.getLong(I_CAPACITY) - 1;
+		long i = MappedTree.spread(hash) & mask;
+		while(true){
+			long slot = I_SLOTS + i*SLOT_BYTES;
+			long record = this.index.getLong(slot);
+			if(record==SLOT_EMPTY){
+				return NONE;
+			}
+			if(record!=SLOT_DELETED && this.index.getInt(slot + 8)==hash && this.keyEquals(record, key)){
+				return slot;
+			}
+			i = (i+1) & mask;
+		}
+	}
+
+	/**
+	 * Removes the index slot of a record.
+	 * @param record offset of the record
+	 */
+	private void removeSlot(long record){
+		long slot = this.findSlot(this.data.getBytes(record + R_KEY, this.data.getInt(record + R_KEY_LENGTH)), this.data.getInt(record + R_HASH));
+		if(slot!=NONE){
+			this.index.putLong(slot, SLOT_DELETED);
+		}
+	}
+
+	/**
+	 * Adds a record to an index, the path must not be in the index.
+	 * @param region index
+	 * @param record offset of the record
+	 * @param hash hash of the path
+	 */
+	private void insertSlot(Region region, long record, int hash){
+		long mask = region.getLong(I_CAPACITY) - 1;
+		long i = MappedTree.spread(hash) & mask;
+		while(true){
+			long slot = I_SLOTS + i*SLOT_BYTES;
+			long current = region.getLong(slot);
+			if(current==SLOT_EMPTY || current==SLOT_DELETED){
+				region.putLong(slot, record);
+				region.putInt(slot + 8, hash);
+				if(current==SLOT_EMPTY){
+					region.putLong(I_USED, region.getLong(I_USED) + 1);
+				}
+				return;
+			}
+			i = (i+1) & mask;
+		}
+	}
+
+	/**
+	 * Tests if the path of a record equals the given bytes.
+	 * @param record offset of the record
+	 * @param key bytes of the path
+	 * @return true if equal, false otherwise
+	 */
+	private boolean keyEquals(long record, byte[] key){
+		if(this.data.getInt(record + R_KEY_LENGTH)!=key.length){
+			return false;
+		}
+		long offset = record + R_KEY;
+		for(int i=0; i<key.length; i++){
+			if(this.data.getByte(offset + i)!=key[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a record from the child list of its parent.
+	 * @param record offset of the record
+	 */
+	private void unlink(long record){
+		long parent = this.data.getLong(record + R_PARENT);
+		long next = this.data.getLong(record + R_NEXT);
+		long prev = this.data.getLong(record + R_PREV);
+		if(prev!=NONE){
+			this.data.putLong(prev + R_NEXT, next);
+		}
+		else{
+			this.data.putLong((parent==NONE)?H_FIRST:parent + R_FIRST, next);
+		}
+		if(next!=NONE){
+			this.data.putLong(next + R_PREV, prev);
+		}
+	}
+
+	/**
+	 * Reserves space in the data file, a reserved block never crosses a chunk boundary.
+	 * @param length number of bytes
+	 * @return offset of the reserved block
+	 */
+	private long allocate(int length){
+		long chunkSize = 1L<<this.data.chunkBits;
+		long size = (length + 7) & ~7L;
+		if(size>chunkSize){
+			throw new IllegalArgumentException("record of " + length + " bytes does not fit into a chunk of " + chunkSize + " bytes");
+		}
+		long ret = this.data.getLong(H_END);
+		if((ret & (chunkSize-1)) + size > chunkSize){
+			ret = (ret | (chunkSize-1)) + 1;
+		}
+		this.data.putLong(H_END, ret + size);
+		return ret;
+	}
+
+	/**
+	 * Resets the data header to an empty tree.
+	 */
+	private void resetData(){
+		this.data.putLong(H_END, HEADER_BYTES);
+		this.data.putLong(H_SIZE, 0);
+		this.data.putLong(H_FIRST, NONE);
+	}
+
+	/**
+	 * Opens the index file, rebuilding it if it is missing or not valid.
+	 * @return mapped index
+	 * @throws IOException if the index cannot be opened or built
+	 */
+	private Region openIndex() throws IOException {
+		if(this.indexFile.length()>=I_SLOTS){
+			FileChannel channel = FileChannel.open(this.indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			Region ret = new Region(channel, this.data.chunkBits);
+			if(ret.getInt(I_MAGIC)==MAGIC){
+				return ret;
+			}
+			ret.close();
+		}
+		return this.buildIndex(MappedTree.capacityFor(this.data.getLong(H_SIZE)));
+	}
+
+	/**
+	 * Builds a new index file with all records of the data file.
+	 * @param capacity number of slots, a power of two
+	 * @return mapped index
+	 * @throws IOException if the index cannot be built
+	 */
+	private Region buildIndex(long capacity) throws IOException {
+		File tmp = new File(this.indexFile.getPath() + ".tmp");
+		Files.deleteIfExists(tmp.toPath());
+		Region ret = new Region(FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE), this.data.chunkBits);
+		ret.putLong(I_CAPACITY, capacity);
+		ret.putLong(I_USED, 0);
+		Iterator<Long> it = new RecordIterator(this.data.getLong(H_FIRST), NONE);
+		while(it.hasNext()){
+			long record = it.next();
+			this.insertSlot(ret, record, this.data.getInt(record + R_HASH));
+		}
+		ret.putInt(I_MAGIC, MAGIC);
+		ret.force();
+		Files.move(tmp.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return ret;
+	}
+
+	/**
+	 * Replaces the index with a new index of the given capacity.
+	 * @param capacity number of slots, a power of two
+	 */
+	private void replaceIndex(long capacity){
+		try{
+			Region old = this.index;
+			this.index = this.buildIndex(capacity);
+			old.close();
+		}
+		catch(IOException ex){
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Returns the index capacity for a number of records.
+	 * @param size number of records
+	 * @return capacity, a power of two with at most a quarter of all slots used
+	 */
+	static long capacityFor(long size){
+		long ret = DEFAULT_INDEX_CAPACITY;
+		while(ret < size*4){
+			ret <<= 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Spreads the bits of a hash.
+	 * @param hash original hash
+	 * @return spread hash
+	 */
+	static int spread(int hash){
+		return (hash ^ (hash>>>16)) & 0x7fffffff;
+	}
+
+	/**
+	 * Iterates records in depth first order, following child and sibling links.
+	 */
+	protected class RecordIterator implements Iterator<Long> {
+		/** Next record, NONE if done */
+		long next;
+
+		/** Record at which the iteration stops climbing up, NONE for the whole tree */
+		final long top;
+
+		/**
+		 * Creates a new iterator.
+		 * @param first first record
+		 * @param top parent of the first record at which to stop, NONE for the whole tree
+		 */
+		RecordIterator(long first, long top){
+			this.next = first;
+			this.top = top;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next!=NONE;
+		}
+
+		@Override
+		public Long next() {
+			if(this.next==NONE){
+				throw new NoSuchElementException();
+			}
+			long ret = this.next;
+			long record = MappedTree.this.data.getLong(ret + R_FIRST);
+			if(record==NONE){
+				record = ret;
+				while(record!=this.top){
+					long sibling = MappedTree.this.data.getLong(record + R_NEXT);
+					if(sibling!=NONE){
+						break;
+					}
+					record = MappedTree.this.data.getLong(record + R_PARENT);
+				}
+				record = (record==this.top)?NONE:MappedTree.this.data.getLong(record + R_NEXT);
+			}
+			this.next = record;
+			return ret;
+		}
+	}
+
+	/**
+	 * A file mapped in chunks of equal size, chunks are mapped when they are first used.
+	 * Reads from multiple threads are safe, mapping a new chunk is synchronized.
+	 */
+	static final class Region {
+		/** Channel of the file */
+		final FileChannel channel;
+
+		/** Size of a chunk as power of two */
+		final int chunkBits;
+
+		/** Mapped chunks, replaced by a larger array when new chunks are mapped */
+		volatile MappedByteBuffer[] chunks;
+
+		/**
+		 * Creates a new region.
+		 * @param channel channel of the file
+		 * @param chunkBits size of a chunk as power of two
+		 */
+		Region(FileChannel channel, int chunkBits){
+			this.channel = channel;
+			this.chunkBits = chunkBits;
+			this.chunks = new MappedByteBuffer[0];
+		}
+
+		/**
+		 * Returns the chunk of an offset, mapping it if required.
+		 * @param offset offset in the file
+		 * @return mapped chunk
+		 */
+		MappedByteBuffer chunk(long offset){
+			int idx = (int)(offset>>>this.chunkBits);
+			MappedByteBuffer[] current = this.chunks;
+			if(idx<current.length){
+				return current[idx];
+			}
+			return this.map(idx);
+		}
+
+		/**
+		 * Maps all chunks up to and including the given chunk.
+		 * @param idx index of the chunk
+		 * @return mapped chunk
+		 */
+		synchronized MappedByteBuffer map(int idx){
+			MappedByteBuffer[] current = this.chunks;
+			if(idx<current.length){
+				return current[idx];
+			}
+			MappedByteBuffer[] ret = Arrays.copyOf(current, idx+1);
+			try{
+				for(int i=current.length; i<=idx; i++){
+					ret[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, ((long)i)<<this.chunkBits, 1L<<this.chunkBits);
+				}
+			}
+			catch(IOException ex){
+				throw new UncheckedIOException(ex);
+			}
+			this.chunks = ret;
+			return ret[idx];
+		}
+
+		/**
+		 * Returns the position of an offset in its chunk.
+		 * @param offset offset in the file
+		 * @return position in the chunk
+		 */
+		int position(long offset){
+			return (int)(offset & ((1L<<this.chunkBits)-1));
+		}
+
+		byte getByte(long offset){
+			return this.chunk(offset).get(this.position(offset));
+		}
+
+		int getInt(long offset){
+			return this.chunk(offset).getInt(this.position(offset));
+		}
+
+		void putInt(long offset, int value){
+			this.chunk(offset).putInt(this.position(offset), value);
+		}
+
+		long getLong(long offset){
+			return this.chunk(offset).getLong(this.position(offset));
+		}
+
+		void putLong(long offset, long value){
+			this.chunk(offset).putLong(this.position(offset), value);
+		}
+
+		byte[] getBytes(long offset, int length){
+			byte[] ret = new byte[length];
+			ByteBuffer buffer = this.chunk(offset).duplicate();
+			buffer.position(this.position(offset));
+			buffer.get(ret);
+			return ret;
+		}
+
+		void putBytes(long offset, byte[] bytes){
+			ByteBuffer buffer = this.chunk(offset).duplicate();
+			buffer.position(this.position(offset));
+			buffer.put(bytes);
+		}
+
+		/**
+		 * Returns a read-only view of a block, without copying.
+		 * @param offset offset of the block
+		 * @param length length of the block
+		 * @return buffer with the block between position and limit
+		 */
+		ByteBuffer slice(long offset, int length){
+			ByteBuffer ret = this.chunk(offset).asReadOnlyBuffer();
+			ret.position(this.position(offset));
+			ret.limit(this.position(offset) + length);
+			return ret.slice();
+		}
+
+		void force(){
+			for(MappedByteBuffer chunk : this.chunks){
+				chunk.force();
+			}
+		}
+
+		void close() throws IOException {
+			this.force();
+			this.chunks = new MappedByteBuffer[0];
+			this.channel.close();
+		}
+	}
+}
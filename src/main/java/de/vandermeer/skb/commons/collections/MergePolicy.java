@@ -0,0 +1,100 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+
+/**
+ * Resolves conflicts when a node exists in both trees of a merge.
+ *
+ * <p>
+ * A policy is called for every node that exists in the target and in the source tree, nodes that do not exist in the target
+ * are always added with the value of the source. Multi-value targets append the values of the source instead of resolving them
+ * if {@link #appends()} is true.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+@FunctionalInterface
+public interface MergePolicy<E> {
+
+	/**
+	 * Returns the value a node has after the merge.
+	 * @param key path of the node
+	 * @param current value of the node in the target, can be null
+	 * @param incoming value of the node in the source, can be null
+	 * @return new value of the node, returning current leaves the node unchanged
+	 */
+	E resolve(String key, E current, E incoming);
+
+	/**
+	 * Tests if multi-value targets append source values instead of resolving conflicts.
+	 * @return true if values are appended, false otherwise (default)
+	 */
+	default boolean appends(){
+		return false;
+	}
+
+	/**
+	 * Returns a policy that keeps the value of the target.
+	 * @param <E> type of the values
+	 * @return new policy
+	 */
+	static <E> MergePolicy<E> KEEP(){
+		return (key, current, incoming) -> current;
+	}
+
+	/**
+	 * Returns a policy that always uses the value of the source, even if it is null.
+	 * @param <E> type of the values
+	 * @return new policy
+	 */
+	static <E> MergePolicy<E> OVERWRITE(){
+		return (key, current, incoming) -> incoming;
+	}
+
+	/**
+	 * Returns a policy that uses the value of the source if it is not null and not a {@link NullObject}.
+	 * This is the policy used by {@link FlatTree#merge(Tree)}.
+	 * @param <E> type of the values
+	 * @return new policy
+	 */
+	static <E> MergePolicy<E> OVERWRITE_IF_SET(){
+		return (key, current, incoming) -> (incoming!=null && !(incoming instanceof NullObject))?incoming:current;
+	}
+
+	/**
+	 * Returns a policy that appends all values of the source that are not null and not a {@link NullObject} to multi-value targets.
+	 * For single value targets it behaves like {@link #OVERWRITE_IF_SET()}.
+	 * This is the policy used by {@link FlatMultiTree#merge(Tree)}.
+	 * @param <E> type of the values
+	 * @return new policy
+	 */
+	static <E> MergePolicy<E> APPEND(){
+		return new MergePolicy<E>(){
+			@Override
+			public E resolve(String key, E current, E incoming) {
+				return (incoming!=null && !(incoming instanceof NullObject))?incoming:current;
+			}
+
+			@Override
+			public boolean appends() {
+				return true;
+			}
+		};
+	}
+}
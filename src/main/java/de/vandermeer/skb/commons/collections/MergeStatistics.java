@@ -0,0 +1,95 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+/**
+ * Statistics of a tree merge, counting nodes by the way they were merged.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class MergeStatistics {
+
+	/** Nodes added to the target */
+	long added;
+
+	/** Nodes with a changed value */
+	long overwritten;
+
+	/** Nodes with values appended */
+	long appended;
+
+	/** Nodes left unchanged */
+	long kept;
+
+	/**
+	 * Returns the number of nodes that did not exist in the target and were added.
+	 * @return number of added nodes
+	 */
+	public long getAdded(){
+		return this.added;
+	}
+
+	/**
+	 * Returns the number of nodes that existed in the target and got a new value.
+	 * @return number of overwritten nodes
+	 */
+	public long getOverwritten(){
+		return this.overwritten;
+	}
+
+	/**
+	 * Returns the number of nodes that existed in a multi-value target and got new values appended.
+	 * @return number of nodes with appended values
+	 */
+	public long getAppended(){
+		return this.appended;
+	}
+
+	/**
+	 * Returns the number of nodes that existed in the target and were not changed.
+	 * @return number of unchanged nodes
+	 */
+	public long getKept(){
+		return this.kept;
+	}
+
+	/**
+	 * Returns the number of nodes of the source that have been merged.
+	 * @return number of merged nodes
+	 */
+	public long getTotal(){
+		return this.added + this.overwritten + this.appended + this.kept;
+	}
+
+	/**
+	 * Adds the numbers of other statistics to these statistics.
+	 * @param stats other statistics
+	 * @return self to allow chaining
+	 */
+	MergeStatistics add(MergeStatistics stats){
+		this.added += stats.added;
+		this.overwritten += stats.overwritten;
+		this.appended += stats.appended;
+		this.kept += stats.kept;
+		return this;
+	}
+
+	@Override
+	public String toString(){
+		return "added=" + this.added + ", overwritten=" + this.overwritten + ", appended=" + this.appended + ", kept=" + this.kept;
+	}
+}
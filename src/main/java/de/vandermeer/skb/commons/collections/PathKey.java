@@ -0,0 +1,214 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A precompiled path for trees and tables.
+ *
+ * <p>
+ * Every accessor of a tree or table that takes an object path joins and normalizes the path on each call.
+ * A path key is normalized once when created, and caches its path string, hash code and segments.
+ * Trees and tables in this package provide overloads that take a path key directly, so that repeated lookups
+ * of the same path (for instance in a loop) do not need to create any objects.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public final class PathKey implements Comparable<PathKey> {
+
+	/** The normalized path */
+	private final String key;
+
+	/** Cached hash code of the path */
+	private final int hash;
+
+	/** Path segments */
+	private final String[] segments;
+
+	/** Paths of all ancestors and the path itself, created on first use */
+	private String[] paths;
+
+	/** Paths of the children for the columns last asked for, created on first use */
+	private Cells cells;
+
+	/**
+	 * Creates a new path key from a normalized path.
+	 * @param key normalized path
+	 */
+	private PathKey(String key){
+		this.key = key;
+		this.hash = key.hashCode();
+
+		List<String> list = new ArrayList<String>();
+		int start = 0;
+		while(start<key.length()){
+			int end = key.indexOf(PathMap.SEPARATOR, start);
+			if(end<0){
+				end = key.length();
+			}
+			if(end>start){
+				list.add(key.substring(start, end));
+			}
+			start = end + 1;
+		}
+		this.segments = list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 * Returns a new path key for a fully qualified path name.
+	 * @param fqpn path name, normalized the same way as by all tree and table methods
+	 * @return new path key
+	 */
+	public static PathKey create(Object fqpn){
+		return PathKey.create(null, fqpn);
+	}
+
+	/**
+	 * Returns a new path key for a path and a name.
+	 * @param path path element
+	 * @param name name element
+	 * @return new path key
+	 */
+	public static PathKey create(Object path, Object name){
+		return new PathKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Returns a new path key for a child of this path.
+	 * @param name name of the child, can be a path itself
+	 * @return new path key
+	 */
+	public PathKey child(Object name){
+		return PathKey.create(this.key, name);
+	}
+
+	/**
+	 * Returns the normalized path.
+	 * @return path
+	 */
+	public String key(){
+		return this.key;
+	}
+
+	/**
+	 * Returns the number of segments of the path.
+	 * @return depth of the path, 0 for the root path
+	 */
+	public int depth(){
+		return this.segments.length;
+	}
+
+	/**
+	 * Returns a segment of the path.
+	 * @param index index of the segment, starting with 0
+	 * @return segment
+	 */
+	public String segment(int index){
+		return this.segments[index];
+	}
+
+	/**
+	 * Returns the paths of all ancestors of this path followed by the path itself.
+	 * @return array of paths, starting with the top most ancestor, must not be modified
+	 */
+	String[] paths(){
+		if(this.paths==null && this.segments.length==0){
+			this.paths = new String[]{this.key};
+		}
+		else if(this.paths==null){
+			String[] ret = new String[this.segments.length];
+			StringBuilder sb = new StringBuilder(this.key.length());
+			for(int i=0; i<this.segments.length; i++){
+				sb.append(PathMap.SEPARATOR).append(this.segments[i]);
+				ret[i] = (i==this.segments.length-1)?this.key:sb.toString();
+			}
+			this.paths = ret;
+		}
+		return this.paths;
+	}
+
+	/**
+	 * Returns the paths of children of this path, for instance the cells of a table row.
+	 * The paths are cached for the last array of names asked for, so callers should pass a constant array.
+	 * @param names names of the children, must not be modified
+	 * @return array of child paths in the order of the names, must not be modified
+	 */
+	String[] cells(String[] names){
+		Cells ret = this.cells;
+		if(ret==null || ret.names!=names){
+			String[] paths = new String[names.length];
+			for(int i=0; i<names.length; i++){
+				paths[i] = this.key + PathMap.SEPARATOR + names[i];
+			}
+			ret = new Cells(names, paths);
+			this.cells = ret;
+		}
+		return ret.paths;
+	}
+
+	@Override
+	public int compareTo(PathKey o) {
+		return this.key.compareTo(o.key);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this==obj){
+			return true;
+		}
+		if(!(obj instanceof PathKey)){
+			return false;
+		}
+		PathKey other = (PathKey)obj;
+		return this.hash==other.hash && this.key.equals(other.key);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	/**
+	 * Returns the normalized path, so that a path key can also be used with all methods that take an object path.
+	 * @return path
+	 */
+	@Override
+	public String toString() {
+		return this.key;
+	}
+
+	/**
+	 * Child paths cached together with the names they were created for, so that readers always see a matching pair.
+	 */
+	static final class Cells {
+		/** Names of the children */
+		final String[] names;
+
+		/** Paths of the children */
+		final String[] paths;
+
+		Cells(String[] names, String[] paths){
+			this.names = names;
+			this.paths = paths;
+		}
+	}
+}
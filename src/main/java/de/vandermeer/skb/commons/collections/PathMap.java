@@ -0,0 +1,582 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A map with path names as keys that keeps a sorted index of all keys.
+ *
+ * <p>
+ * Values are kept in a hash map for constant time lookup. All keys are also kept in a sorted set, so that all
+ * sub paths of a path (the complete subtree below it) can be found in O(log n + k) with k being the number of sub paths.
+ * Each entry also maintains the number of its direct children, so testing for children is a constant time operation.
+ * The map is used as the backing map for trees and tables in this package.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class PathMap<V> extends AbstractMap<String, V> {
+
+	/** The path separator used to compute sub paths */
+	public static final char SEPARATOR = Tree.defaulSeparator.charAt(0);
+
+	/** Map with all entries */
+	protected final Map<String, Node<V>> nodes;
+
+	/** Sorted set of all keys, used for prefix queries */
+	protected final NavigableSet<String> sorted;
+
+	/** Creates a new empty path map. */
+	public PathMap(){
+		this.nodes = new HashMap<String, Node<V>>();
+		this.sorted = new TreeSet<String>();
+	}
+
+	@Override
+	public void clear() {
+		this.nodes.clear();
+		this.sorted.clear();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.nodes.containsKey(key);
+	}
+
+	@Override
+	public V get(Object key) {
+		Node<V> node = this.nodes.get(key);
+		if(node!=null){
+			return node.value;
+		}
+		return null;
+	}
+
+	@Override
+	public V put(String key, V value) {
+		Node<V> node = this.nodes.get(key);
+		if(node!=null){
+			V ret = node.value;
+			node.value = value;
+			return ret;
+		}
+
+		node = new Node<V>(key, value);
+		this.nodes.put(key, node);
+		this.sorted.add(key);
+		Node<V> parent = this.parentNode(key);
+		if(parent!=null){
+			parent.children++;
+		}
+		//children can exist if they have been added before their parent, e.g. in a merge
+		node.children = this.countChildren(key);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void putAll(Map<? extends String, ? extends V> map) {
+		if(map instanceof PathMap && this.isEmpty()){
+			//sorted to sorted is linear time for an empty target set, child counts can be copied
+			for(Node<? extends V> node : ((PathMap<? extends V>)map).nodes.values()){
+				Node<V> copy = new Node<V>(node.key, node.value);
+				copy.children = node.children;
+				this.nodes.put(copy.key, copy);
+			}
+			this.sorted.addAll(((PathMap<?>)map).sorted);
+		}
+		else{
+			super.putAll(map);
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		Node<V> node = this.nodes.remove(key);
+		if(node!=null){
+			this.sorted.remove(key);
+			this.unlink(node);
+			return node.value;
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return this.nodes.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>(){
+			@Override public Iterator<String> iterator(){
+				final Iterator<Entry<String, V>> it = PathMap.this.entrySet().iterator();
+				return new Iterator<String>(){
+					@Override public boolean hasNext(){return it.hasNext();}
+					@Override public String next(){return it.next().getKey();}
+					@Override public void remove(){it.remove();}
+				};
+			}
+			@Override public int size(){return PathMap.this.size();}
+			@Override public boolean contains(Object o){return PathMap.this.containsKey(o);}
+			@Override public boolean remove(Object o){
+				if(PathMap.this.containsKey(o)){
+					PathMap.this.remove(o);
+					return true;
+				}
+				return false;
+			}
+			@Override public void clear(){PathMap.this.clear();}
+		};
+	}
+
+	@Override
+	public Set<Entry<String, V>> entrySet() {
+		return new AbstractSet<Entry<String, V>>(){
+			@Override public Iterator<Entry<String, V>> iterator(){
+				final Iterator<Node<V>> it = PathMap.this.nodes.values().iterator();
+				return new Iterator<Entry<String, V>>(){
+					Node<V> current;
+					@Override public boolean hasNext(){return it.hasNext();}
+					@Override public Entry<String, V> next(){return this.current = it.next();}
+					@Override public void remove(){
+						it.remove();
+						PathMap.this.sorted.remove(this.current.key);
+						PathMap.this.unlink(this.current);
+					}
+				};
+			}
+			@Override public int size(){return PathMap.this.size();}
+			@Override public void clear(){PathMap.this.clear();}
+		};
+	}
+
+	/**
+	 * Loads a batch of paths into an empty map, missing ancestors are added with null values.
+	 * Each path and each ancestor is looked up once, child counts are counted while nodes are created,
+	 * and the sorted index is built once at the end instead of for every put.
+	 * @param keys paths to load, in any order and with duplicates
+	 * @param action called for every path in the order of the list with its index and its node, used to set or combine values
+	 * @throws IllegalStateException if the map is not empty
+	 */
+	void load(List<String> keys, ObjIntConsumer<Node<V>> action){
+		if(!this.isEmpty()){
+			throw new IllegalStateException("bulk load requires an empty map");
+		}
+		for(int i=0; i<keys.size(); i++){
+			String key = keys.get(i);
+			Node<V> node = this.nodes.get(key);
+			if(node==null){
+				node = new Node<V>(key, null);
+				this.nodes.put(key, node);
+				String parent = PathMap.parentPath(key);
+				while(parent!=null){
+					Node<V> exists = this.nodes.get(parent);
+					if(exists!=null){
+						exists.children++;
+						break;
+					}
+					if(parent.length()==1){
+						//the root path is not added automatically
+						break;
+					}
+					exists = new Node<V>(parent, null);
+					exists.children = 1;
+					this.nodes.put(parent, exists);
+					parent = PathMap.parentPath(parent);
+				}
+			}
+			action.accept(node, i);
+		}
+		String[] sorted = this.nodes.keySet().toArray(new String[this.nodes.size()]);
+		Arrays.sort(sorted);
+		this.sorted.addAll(new SortedKeys(sorted));
+		Node<V> root = this.nodes.get(Tree.defaulSeparator);
+		if(root!=null){
+			//the root path can be loaded after some of its children
+			root.children = this.countChildren(root.key);
+		}
+	}
+
+	/**
+	 * Returns the entry of a key, changes of its value are changes of the map.
+	 * @param key key to look for
+	 * @return entry, null if the key is not in the map
+	 */
+	Node<V> node(String key){
+		return this.nodes.get(key);
+	}
+
+	/**
+	 * Returns a sorted, read-only view of all keys.
+	 * @return sorted keys, changes of the map are reflected in the view
+	 */
+	public NavigableSet<String> sortedKeys(){
+		return Collections.unmodifiableNavigableSet(this.sorted);
+	}
+
+	/**
+	 * Returns a sorted, read-only view of all sub paths of a path, not including the path itself.
+	 * @param fqpn path to look for
+	 * @return view of all sub paths, empty if none found
+	 */
+	public NavigableSet<String> subPaths(String fqpn){
+		if(fqpn==null){
+			return Collections.emptyNavigableSet();
+		}
+		String prefix = PathMap.subPathPrefix(fqpn);
+		return Collections.unmodifiableNavigableSet(this.sorted.subSet(prefix, !prefix.equals(fqpn), PathMap.subPathLimit(prefix), false));
+	}
+
+	/**
+	 * Returns all sub paths of a path, not including the path itself.
+	 * @param fqpn path to look for
+	 * @return new collection with all sub paths, empty if none found
+	 */
+	public Collection<String> getSubPaths(String fqpn){
+		return new ArrayList<String>(this.subPaths(fqpn));
+	}
+
+	/**
+	 * Returns the direct children of a path, deeper sub paths are skipped in the sorted index.
+	 * @param fqpn path
+	 * @return new list with the direct children in sorted order, empty if none found
+	 */
+	List<String> childPaths(String fqpn){
+		return this.getSubPaths(fqpn, 1);
+	}
+
+	/**
+	 * Returns all sub paths of a path up to a maximum depth, not including the path itself.
+	 * Sub paths deeper than the maximum depth are skipped in the sorted index,
+	 * so the cost is O(r log n) with r being the number of returned paths.
+	 * @param fqpn path to look for
+	 * @param maxDepth maximum depth relative to the path, 1 for direct children only
+	 * @return new list with the sub paths in sorted order, empty if none found
+	 */
+	public List<String> getSubPaths(String fqpn, int maxDepth){
+		List<String> ret = new ArrayList<String>();
+		if(fqpn==null || maxDepth<1){
+			return ret;
+		}
+		String prefix = PathMap.subPathPrefix(fqpn);
+		String limit = PathMap.subPathLimit(prefix);
+		String key = this.sorted.higher(prefix);
+		while(key!=null && key.compareTo(limit)<0){
+			int sep = prefix.length() - 1;
+			for(int i=0; i<maxDepth && sep>=0; i++){
+				sep = key.indexOf(SEPARATOR, sep + 1);
+			}
+			if(sep<0){
+				ret.add(key);
+				key = this.sorted.higher(key);
+			}
+			else{
+				key = this.sorted.ceiling(key.substring(0, sep) + (char)(SEPARATOR+1));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes a path and all its sub paths from the map.
+	 * @param fqpn path to be removed
+	 * @return true if the path does not exist anymore, false otherwise
+	 */
+	public boolean removeSubtree(String fqpn){
+		if(fqpn==null){
+			return false;
+		}
+		String prefix = PathMap.subPathPrefix(fqpn);
+		Iterator<String> it = this.sorted.subSet(prefix, !prefix.equals(fqpn), PathMap.subPathLimit(prefix), false).iterator();
+		while(it.hasNext()){
+			//parents of all nodes in the subtree are removed as well, no need to unlink
+			this.nodes.remove(it.next());
+			it.remove();
+		}
+		this.remove(fqpn);
+		return !this.containsKey(fqpn);
+	}
+
+	/**
+	 * Tests if a path has direct children.
+	 * @param fqpn path to test
+	 * @return true if the path is in the map and has children, false otherwise
+	 */
+	public boolean hasChildren(String fqpn){
+		Node<V> node = this.nodes.get(fqpn);
+		return node!=null && node.children>0;
+	}
+
+	/**
+	 * Returns the number of direct children of a path.
+	 * @param fqpn path
+	 * @return number of direct children, 0 if the path is not in the map
+	 */
+	public int getChildCount(String fqpn){
+		Node<V> node = this.nodes.get(fqpn);
+		return (node==null)?0:node.children;
+	}
+
+	/**
+	 * Counts the direct children of a path in the sorted index.
+	 * Deeper sub paths are skipped, so the cost is O(c log n) with c being the number of direct children.
+	 * @param fqpn path
+	 * @return number of direct children
+	 */
+	private int countChildren(String fqpn){
+		String prefix = PathMap.subPathPrefix(fqpn);
+		String limit = PathMap.subPathLimit(prefix);
+		int ret = 0;
+		String key = this.seekChild(prefix, limit, this.sorted.higher(prefix));
+		while(key!=null){
+			ret++;
+			key = this.seekChild(prefix, limit, this.sorted.higher(key));
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the first key that is a direct child of the prefix, starting from the given key and skipping deeper sub paths.
+	 * @param prefix prefix of all children, ending with the separator
+	 * @param limit upper bound for sub paths of the prefix
+	 * @param key key to start with
+	 * @return first direct child at or after the key, null if none found
+	 */
+	String seekChild(String prefix, String limit, String key){
+		while(key!=null && key.compareTo(limit)<0){
+			int sep = key.indexOf(SEPARATOR, prefix.length());
+			if(sep<0){
+				return key;
+			}
+			key = this.sorted.ceiling(key.substring(0, sep) + (char)(SEPARATOR+1));
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the node of the parent of a path.
+	 * @param fqpn path
+	 * @return parent node, null if the path has no parent or the parent is not in the map
+	 */
+	private Node<V> parentNode(String fqpn){
+		String parent = PathMap.parentPath(fqpn);
+		if(parent==null){
+			return null;
+		}
+		return this.nodes.get(parent);
+	}
+
+	/**
+	 * Updates the child count of the parent of a removed node.
+	 * @param node removed node
+	 */
+	private void unlink(Node<V> node){
+		Node<V> parent = this.parentNode(node.key);
+		if(parent!=null){
+			parent.children--;
+		}
+	}
+
+	/**
+	 * Returns the parent path of a path.
+	 * @param fqpn path
+	 * @return parent path, null if the path has no parent
+	 */
+	static String parentPath(String fqpn){
+		int idx = fqpn.lastIndexOf(SEPARATOR);
+		if(idx<0 || idx==fqpn.length()-1){
+			return null;
+		}
+		if(idx==0){
+			return Tree.defaulSeparator;
+		}
+		return fqpn.substring(0, idx);
+	}
+
+	/**
+	 * Returns the prefix all sub paths of a path start with.
+	 * @param fqpn path
+	 * @return path with a trailing separator
+	 */
+	static String subPathPrefix(String fqpn){
+		if(fqpn.length()>0 && fqpn.charAt(fqpn.length()-1)==SEPARATOR){
+			return fqpn;
+		}
+		return fqpn + SEPARATOR;
+	}
+
+	/**
+	 * Returns the exclusive upper bound for all strings starting with the prefix.
+	 * @param prefix prefix ending with the separator
+	 * @return prefix with its trailing separator replaced by the next character
+	 */
+	static String subPathLimit(String prefix){
+		return prefix.substring(0, prefix.length()-1) + (char)(SEPARATOR+1);
+	}
+
+	/**
+	 * A sorted array of keys as read-only sorted set, so that an empty tree set adds all keys in linear time.
+	 * Views returned by {@link #subSet(String, String)}, {@link #headSet(String)} and {@link #tailSet(String)} share the array,
+	 * bounds outside the range of a view are limited to that range.
+	 */
+	static final class SortedKeys extends AbstractSet<String> implements SortedSet<String> {
+		/** Keys in natural order */
+		final String[] keys;
+
+		/** First index of the keys in this set, inclusive */
+		final int from;
+
+		/** Last index of the keys in this set, exclusive */
+		final int to;
+
+		SortedKeys(String[] keys){
+			this(keys, 0, keys.length);
+		}
+
+		/**
+		 * Creates a view on a range of sorted keys.
+		 * @param keys keys in natural order
+		 * @param from first index, inclusive
+		 * @param to last index, exclusive
+		 */
+		SortedKeys(String[] keys, int from, int to){
+			this.keys = keys;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override public Iterator<String> iterator(){return Arrays.asList(this.keys).subList(this.from, this.to).iterator();}
+		@Override public int size(){return this.to - this.from;}
+		@Override public boolean contains(Object o){return (o instanceof String) && Arrays.binarySearch(this.keys, this.from, this.to, o)>=0;}
+		@Override public Comparator<? super String> comparator(){return null;}
+
+		@Override
+		public SortedSet<String> subSet(String fromElement, String toElement){
+			if(fromElement.compareTo(toElement)>0){
+				throw new IllegalArgumentException("fromElement <" + fromElement + "> is greater than toElement <" + toElement + ">");
+			}
+			return new SortedKeys(this.keys, this.index(fromElement), this.index(toElement));
+		}
+
+		@Override public SortedSet<String> headSet(String toElement){return new SortedKeys(this.keys, this.from, this.index(toElement));}
+		@Override public SortedSet<String> tailSet(String fromElement){return new SortedKeys(this.keys, this.index(fromElement), this.to);}
+
+		@Override
+		public String first(){
+			if(this.from==this.to){
+				throw new NoSuchElementException();
+			}
+			return this.keys[this.from];
+		}
+
+		@Override
+		public String last(){
+			if(this.from==this.to){
+				throw new NoSuchElementException();
+			}
+			return this.keys[this.to-1];
+		}
+
+		/**
+		 * Returns the index of the first key not less than an element within this set.
+		 * @param element element to search for
+		 * @return index of the element or the index it would be inserted at
+		 * @throws NullPointerException if element is null
+		 */
+		private int index(String element){
+			if(element==null){
+				throw new NullPointerException();
+			}
+			int ret = Arrays.binarySearch(this.keys, this.from, this.to, element);
+			return (ret<0)?-(ret+1):ret;
+		}
+	}
+
+	/**
+	 * An entry of the map.
+	 * @param <V> type of the value
+	 */
+	static final class Node<V> implements Entry<String, V> {
+		/** Key of the entry */
+		final String key;
+
+		/** Value of the entry */
+		V value;
+
+		/** Number of direct children */
+		int children;
+
+		Node(String key, V value){
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String getKey() {
+			return this.key;
+		}
+
+		@Override
+		public V getValue() {
+			return this.value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			V ret = this.value;
+			this.value = value;
+			return ret;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Entry)){
+				return false;
+			}
+			Entry<?, ?> entry = (Entry<?, ?>)obj;
+			return this.key.equals(entry.getKey()) && (this.value==null?entry.getValue()==null:this.value.equals(entry.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.key.hashCode() ^ (this.value==null?0:this.value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return this.key + "=" + this.value;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A compiled path pattern to find nodes in a tree.
+ *
+ * <p>
+ * A pattern is a path whose segments can use wildcards:
+ * a segment "*" matches any one segment, "*" and "?" inside a segment match any characters or one character of a segment name,
+ * and a segment "**" matches any number of segments including none.
+ * For instance "/skb/context/*&#47;value.type" finds the value type of all children of "/skb/context",
+ * and "/a/**&#47;b" finds all nodes named "b" in the subtree of "/a".
+ * </p>
+ *
+ * <p>
+ * A pattern is compiled once and can then be used on any number of trees.
+ * A search walks the tree from the root and only follows branches that can still match:
+ * literal segments are appended without looking at other children, wildcard segments ask the tree for the direct children of a node.
+ * Children are found with the same lookup the tree uses for {@link Tree#spliterator(Object, TreeSpliterator.Order, int)},
+ * so for trees with a sorted index or a trie only the children of visited nodes are read and the rest of the tree is never scanned.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public final class PathQuery {
+
+	/** Segment matching any number of segments */
+	public static final String ANY_DEPTH = "**";
+
+	/** The pattern as given */
+	final String pattern;
+
+	/** Segments of the pattern, a string for literal segments, a regular expression for wildcard segments, null for "**" */
+	final Object[] segments;
+
+	/**
+	 * Returns a new query.
+	 * @param pattern the pattern
+	 * @param segments compiled segments
+	 */
+	private PathQuery(String pattern, Object[] segments){
+		this.pattern = pattern;
+		this.segments = segments;
+	}
+
+	/**
+	 * Compiles a pattern.
+	 * Empty segments are ignored, so "a//b" and "/a/b/" are the same as "/a/b", and consecutive "**" segments are merged.
+	 * @param pattern the pattern
+	 * @return compiled query
+	 * @throws IllegalArgumentException if pattern is null
+	 */
+	public static PathQuery compile(String pattern){
+		if(pattern==null){
+			throw new IllegalArgumentException("pattern must not be null");
+		}
+		List<Object> segments = new ArrayList<Object>();
+		for(String segment : StringUtils.split(pattern, PathMap.SEPARATOR)){
+			if(ANY_DEPTH.equals(segment)){
+				if(segments.isEmpty() || segments.get(segments.size()-1)!=null){
+					segments.add(null);
+				}
+			}
+			else if(segment.indexOf('*')<0 && segment.indexOf('?')<0){
+				segments.add(segment);
+			}
+			else{
+				segments.add(PathQuery.glob(segment));
+			}
+		}
+		return new PathQuery(pattern, segments.toArray());
+	}
+
+	/**
+	 * Translates a segment with wildcards into a regular expression.
+	 * @param segment segment with "*" and "?" wildcards
+	 * @return compiled regular expression
+	 */
+	static Pattern glob(String segment){
+		StringBuilder ret = new StringBuilder();
+		int start = 0;
+		for(int i=0; i<segment.length(); i++){
+			char c = segment.charAt(i);
+			if(c=='*' || c=='?'){
+				if(i>start){
+					ret.append(Pattern.quote(segment.substring(start, i)));
+				}
+				ret.append((c=='*')?"[^/]*":"[^/]");
+				start = i + 1;
+			}
+		}
+		if(start<segment.length()){
+			ret.append(Pattern.quote(segment.substring(start)));
+		}
+		return Pattern.compile(ret.toString());
+	}
+
+	/**
+	 * Returns the pattern of the query.
+	 * @return pattern as given to {@link #compile(String)}
+	 */
+	public String getPattern(){
+		return this.pattern;
+	}
+
+	/**
+	 * Tests if a path matches the pattern.
+	 * @param fqpn path to test
+	 * @return true if the path matches, false otherwise
+	 */
+	public boolean matches(String fqpn){
+		if(fqpn==null){
+			return false;
+		}
+		return this.matches(StringUtils.split(fqpn, PathMap.SEPARATOR), 0, 0);
+	}
+
+	/**
+	 * Tests if the remaining names of a path match the remaining segments.
+	 * @param names names of the path
+	 * @param name index of the next name
+	 * @param segment index of the next segment
+	 * @return true on a match, false otherwise
+	 */
+	private boolean matches(String[] names, int name, int segment){
+		if(segment==this.segments.length){
+			return name==names.length;
+		}
+		Object current = this.segments[segment];
+		if(current==null){
+			for(int i=name; i<=names.length; i++){
+				if(this.matches(names, i, segment+1)){
+					return true;
+				}
+			}
+			return false;
+		}
+		return name<names.length && PathQuery.matches(current, names[name]) && this.matches(names, name+1, segment+1);
+	}
+
+	/**
+	 * Tests if a name matches a literal or wildcard segment.
+	 * @param segment literal or compiled segment
+	 * @param name name to test
+	 * @return true on a match, false otherwise
+	 */
+	static boolean matches(Object segment, String name){
+		if(segment instanceof Pattern){
+			return ((Pattern)segment).matcher(name).matches();
+		}
+		return segment.equals(name);
+	}
+
+	/**
+	 * Returns all paths of a tree that match the pattern.
+	 * @param tree the tree to search
+	 * @return matching paths in sorted order, empty if none found or tree is null
+	 */
+	public List<String> find(Tree<?> tree){
+		return this.find(tree, null);
+	}
+
+	/**
+	 * Returns all paths of a tree that match the pattern and whose value matches a filter.
+	 * For multi-value trees the filter is applied to the first value of a node.
+	 * @param tree the tree to search
+	 * @param filter filter for values, for instance Objects::nonNull, null for no filter
+	 * @param <E> type of the values
+	 * @return matching paths in sorted order, empty if none found or tree is null
+	 */
+	public <E> List<String> find(Tree<E> tree, Predicate<? super E> filter){
+		if(tree==null){
+			return new ArrayList<String>();
+		}
+		NavigableSet<String> ret = new TreeSet<String>();
+		//a spliterator without depth gives the child lookup of the tree without visiting anything
+		Function<String, ? extends Collection<String>> children = tree.spliterator(Tree.defaulSeparator, TreeSpliterator.Order.DEPTH_FIRST, 0).children;
+		this.walk(tree, children, filter, Tree.defaulSeparator, 0, ret);
+		return new ArrayList<String>(ret);
+	}
+
+	/**
+	 * Follows all branches of a node that can match the remaining segments.
+	 * Nodes are not tested on the way, so literal segments cost nothing, only the final path is looked up in the tree.
+	 * @param tree the tree
+	 * @param children child lookup of the tree
+	 * @param filter filter for values, null for no filter
+	 * @param fqpn path of the current node
+	 * @param segment index of the next segment
+	 * @param ret set to add matches to
+	 * @param <E> type of the values
+	 */
+	private <E> void walk(Tree<E> tree, Function<String, ? extends Collection<String>> children, Predicate<? super E> filter, String fqpn, int segment, NavigableSet<String> ret){
+		if(segment==this.segments.length){
+			if(tree.containsNode(fqpn) && (filter==null || filter.test(tree.getValue(fqpn)))){
+				ret.add(fqpn);
+			}
+			return;
+		}
+		Object current = this.segments[segment];
+		if(current==null){
+			this.walk(tree, children, filter, fqpn, segment+1, ret);
+			if(segment+1==this.segments.length){
+				//trailing "**", the complete subtree matches
+				tree.spliterator(fqpn).forEachRemaining(path -> {
+					if(filter==null || filter.test(tree.getValue(path))){
+						ret.add(path);
+					}
+				});
+				return;
+			}
+			for(String child : children.apply(fqpn)){
+				this.walk(tree, children, filter, child, segment, ret);
+			}
+		}
+		else if(current instanceof Pattern){
+			int start = PathMap.subPathPrefix(fqpn).length();
+			for(String child : children.apply(fqpn)){
+				if(PathQuery.matches(current, child.substring(start))){
+					this.walk(tree, children, filter, child, segment+1, ret);
+				}
+			}
+		}
+		else{
+			this.walk(tree, children, filter, PathMap.subPathPrefix(fqpn) + current, segment+1, ret);
+		}
+	}
+
+	@Override
+	public String toString(){
+		return this.pattern;
+	}
+}
@@ -0,0 +1,573 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * A persistent implementation of the {@link Tree} with constant time copies.
+ *
+ * <p>
+ * All nodes are kept in an immutable treap (a randomized binary search tree) ordered by their full path.
+ * A change never modifies existing treap nodes, it creates new nodes along the search path and shares everything else
+ * with the previous version. Adding or removing a node therefore copies O(log n) treap nodes, and {@link #getCopy()}
+ * only copies the reference to the current treap root. Old copies stay valid and unchanged while the tree is changed.
+ * </p>
+ *
+ * <p>
+ * Since all sub paths of a path are one range of the treap, {@link #getSubtree(Object, Object)} and {@link #removeNode(Object, Object)}
+ * split the treap in O(log n) as well, the subtree returned shares all its nodes with this tree.
+ * Treap priorities are computed from the path, so the same set of paths always results in the same treap.
+ * </p>
+ *
+ * <p>
+ * Copies can be handed to other threads, a single tree must not be changed by multiple threads.
+ * The values themselves are shared between copies and should not be changed.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class PersistentTree<E> implements Tree<E> {
+
+	/** Root of the treap of the current version, null if the tree is empty */
+	protected Node<E> root;
+
+	final boolean autoRoot=true;
+
+	/** Creates a new persistent tree. */
+	public PersistentTree(){
+		this.root = null;
+	}
+
+	/**
+	 * Creates a new persistent tree with the given treap.
+	 * @param root root of the treap, can be null
+	 */
+	protected PersistentTree(Node<E> root){
+		this.root = root;
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return this.addNode(null, fqpn);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		return this.add(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), false, null);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		return this.add(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), true, value);
+	}
+
+	@Override
+	public void clear() {
+		this.root = null;
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.containsNode(null, fqpn);
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		return PersistentTree.find(this.root, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())!=null;
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.getChildrenNames(null, fqpn);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		Collection<String> ret = new ArrayList<String>();
+		for(Iterator<Node<E>> it = new NodeIterator<E>(this.subtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())); it.hasNext(); ){
+			ret.add(it.next().key);
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The copy is created in constant time and shares all nodes with this tree.
+	 */
+	@Override
+	public PersistentTree<E> getCopy() {
+		return new PersistentTree<E>(this.root);
+	}
+
+	@Override
+	public PersistentTree<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The subtree is created in O(log n) and shares its nodes with this tree.
+	 */
+	@Override
+	public PersistentTree<E> getSubtree(Object path, Object name) {
+		return new PersistentTree<E>(this.subtree(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString()));
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		Node<E> node = PersistentTree.find(this.root, Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		return (node==null)?null:node.value;
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.hasChildren(null, fqpn);
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		if(PersistentTree.find(this.root, key)==null){
+			return false;
+		}
+		String prefix = PathMap.subPathPrefix(key);
+		Node<E> child = PersistentTree.ceiling(this.root, prefix, !prefix.equals(key));
+		return child!=null && child.key.startsWith(prefix);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.root==null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only view in sorted order. An iterator always iterates the version of the tree
+	 * that was current when the iterator was created, so the tree can be changed while iterating.
+	 */
+	@Override
+	public Set<String> keys() {
+		return new AbstractSet<String>(){
+			@Override public Iterator<String> iterator(){
+				final Iterator<Node<E>> it = new NodeIterator<E>(PersistentTree.this.root);
+				return new Iterator<String>(){
+					@Override public boolean hasNext(){return it.hasNext();}
+					@Override public String next(){return it.next().key;}
+				};
+			}
+			@Override public int size(){return PersistentTree.this.size();}
+			@Override public boolean contains(Object o){return (o instanceof String) && PersistentTree.find(PersistentTree.this.root, (String)o)!=null;}
+		};
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		String prefix = PathMap.subPathPrefix(key);
+		this.root = PersistentTree.removeRange(this.root, prefix, PathMap.subPathLimit(prefix));
+		this.root = PersistentTree.removeRange(this.root, key, key + '\0');
+		return true;
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		if(PersistentTree.find(this.root, key)!=null){
+			this.root = PersistentTree.put(this.root, key, null, PersistentTree.priority(key), true);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return PersistentTree.size(this.root);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The spliterator iterates the version of the tree that was current when it was created, so the tree can be changed while iterating.
+	 */
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		final Node<E> root = this.root;
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), path -> PersistentTree.childPaths(root, path), PersistentTree.size(root), order, maxDepth);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, E> map = new LinkedHashMap<String, E>();
+		for(Iterator<Node<E>> it = new NodeIterator<E>(this.root); it.hasNext(); ){
+			Node<E> node = it.next();
+			map.put(node.key, node.value);
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(map);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a persistent tree. Nodes missing in this tree are added with their value,
+	 * existing nodes are overwritten if the new value is not null and not a {@link NullObject}.
+	 * Merging a persistent tree into an empty persistent tree takes constant time.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean merge(Tree<?> tree){
+		if(tree==null){
+			return false;
+		}
+		if(this.root==null && tree instanceof PersistentTree){
+			this.root = ((PersistentTree<E>)tree).root;
+			return true;
+		}
+		for(String key : tree.keys()){
+			E val = (E)tree.getValue(key);
+			boolean replace = (val!=null && !(val instanceof NullObject));
+			this.root = PersistentTree.put(this.root, key, val, PersistentTree.priority(key), replace);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a node and all its ancestors.
+	 * @param key path of the node
+	 * @param setValue true to set the value of the node, false to only create it
+	 * @param value new value of the node
+	 * @return true if the node was added, false otherwise
+	 */
+	protected boolean add(String key, boolean setValue, E value){
+		if(key==null || key.length()==0){
+			return false;
+		}
+		Node<E> ret = this.root;
+		int end = key.indexOf(PathMap.SEPARATOR, 1);
+		while(end>0){
+			String ancestor = key.substring(0, end);
+			ret = PersistentTree.put(ret, ancestor, null, PersistentTree.priority(ancestor), false);
+			end = key.indexOf(PathMap.SEPARATOR, end+1);
+		}
+		this.root = PersistentTree.put(ret, key, value, PersistentTree.priority(key), setValue);
+		return true;
+	}
+
+	/**
+	 * Returns the treap with all sub paths of a path, not including the path itself.
+	 * @param key path
+	 * @return treap sharing its nodes with this tree, null if there are no sub paths
+	 */
+	protected Node<E> subtree(String key){
+		String prefix = PathMap.subPathPrefix(key);
+		return PersistentTree.atLeast(PersistentTree.lessThan(this.root, PathMap.subPathLimit(prefix)), prefix);
+	}
+
+	/**
+	 * Returns the treap priority of a path.
+	 * @param key path
+	 * @return priority computed from the hash of the path
+	 */
+	static int priority(String key){
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h>>>16);
+	}
+
+	/**
+	 * Returns the number of nodes in a treap.
+	 * @param node treap root, can be null
+	 * @return number of nodes
+	 */
+	static int size(Node<?> node){
+		return (node==null)?0:node.size;
+	}
+
+	/**
+	 * Finds a path in a treap.
+	 * @param node treap root
+	 * @param key path to find
+	 * @param <E> type of the values
+	 * @return treap node of the path, null if not found
+	 */
+	static <E> Node<E> find(Node<E> node, String key){
+		while(node!=null){
+			int cmp = key.compareTo(node.key);
+			if(cmp==0){
+				return node;
+			}
+			node = (cmp<0)?node.left:node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the smallest path in a treap that is greater than (or equal to) the given path.
+	 * @param node treap root
+	 * @param key path to compare to
+	 * @param inclusive true to include the path itself
+	 * @param <E> type of the values
+	 * @return treap node, null if none found
+	 */
+	static <E> Node<E> ceiling(Node<E> node, String key, boolean inclusive){
+		Node<E> ret = null;
+		while(node!=null){
+			int cmp = key.compareTo(node.key);
+			if(cmp==0 && inclusive){
+				return node;
+			}
+			if(cmp<0){
+				ret = node;
+				node = node.left;
+			}
+			else{
+				node = node.right;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the direct children of a path in a treap, deeper sub paths are skipped.
+	 * @param node treap root
+	 * @param key path
+	 * @param <E> type of the values
+	 * @return list of direct children in sorted order
+	 */
+	static <E> List<String> childPaths(Node<E> node, String key){
+		List<String> ret = new ArrayList<String>();
+		String prefix = PathMap.subPathPrefix(key);
+		String limit = PathMap.subPathLimit(prefix);
+		Node<E> child = PersistentTree.ceiling(node, prefix, false);
+		while(child!=null && child.key.compareTo(limit)<0){
+			int sep = child.key.indexOf(PathMap.SEPARATOR, prefix.length());
+			if(sep<0){
+				ret.add(child.key);
+				child = PersistentTree.ceiling(node, child.key, false);
+			}
+			else{
+				child = PersistentTree.ceiling(node, child.key.substring(0, sep) + (char)(PathMap.SEPARATOR+1), true);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds or changes a path in a treap, copying only the nodes on the search path.
+	 * @param node treap root
+	 * @param key path
+	 * @param value value for the path
+	 * @param priority priority of the path
+	 * @param replace true to replace the value of an existing path, false to keep it
+	 * @param <E> type of the values
+	 * @return new treap root, the same root if nothing was changed
+	 */
+	static <E> Node<E> put(Node<E> node, String key, E value, int priority, boolean replace){
+		if(node==null){
+			return new Node<E>(key, value, priority, null, null);
+		}
+		int cmp = key.compareTo(node.key);
+		if(cmp==0){
+			if(!replace || node.value==value){
+				return node;
+			}
+			return new Node<E>(key, value, node.priority, node.left, node.right);
+		}
+		if(priority>node.priority){
+			//a node with higher priority cannot exist below this node, so the path is new and becomes the root of this treap
+			return new Node<E>(key, value, priority, PersistentTree.lessThan(node, key), PersistentTree.atLeast(node, key));
+		}
+		if(cmp<0){
+			Node<E> left = PersistentTree.put(node.left, key, value, priority, replace);
+			return (left==node.left)?node:new Node<E>(node.key, node.value, node.priority, left, node.right);
+		}
+		Node<E> right = PersistentTree.put(node.right, key, value, priority, replace);
+		return (right==node.right)?node:new Node<E>(node.key, node.value, node.priority, node.left, right);
+	}
+
+	/**
+	 * Returns a treap with all paths less than the given path.
+	 * @param node treap root
+	 * @param key upper bound, exclusive
+	 * @param <E> type of the values
+	 * @return new treap root sharing unchanged nodes
+	 */
+	static <E> Node<E> lessThan(Node<E> node, String key){
+		if(node==null){
+			return null;
+		}
+		if(node.key.compareTo(key)<0){
+			Node<E> right = PersistentTree.lessThan(node.right, key);
+			return (right==node.right)?node:new Node<E>(node.key, node.value, node.priority, node.left, right);
+		}
+		return PersistentTree.lessThan(node.left, key);
+	}
+
+	/**
+	 * Returns a treap with all paths greater than or equal to the given path.
+	 * @param node treap root
+	 * @param key lower bound, inclusive
+	 * @param <E> type of the values
+	 * @return new treap root sharing unchanged nodes
+	 */
+	static <E> Node<E> atLeast(Node<E> node, String key){
+		if(node==null){
+			return null;
+		}
+		if(node.key.compareTo(key)>=0){
+			Node<E> left = PersistentTree.atLeast(node.left, key);
+			return (left==node.left)?node:new Node<E>(node.key, node.value, node.priority, left, node.right);
+		}
+		return PersistentTree.atLeast(node.right, key);
+	}
+
+	/**
+	 * Joins two treaps, all paths of the first treap must be less than all paths of the second treap.
+	 * @param left treap with the lower paths
+	 * @param right treap with the higher paths
+	 * @param <E> type of the values
+	 * @return new treap root
+	 */
+	static <E> Node<E> join(Node<E> left, Node<E> right){
+		if(left==null){
+			return right;
+		}
+		if(right==null){
+			return left;
+		}
+		if(left.priority>right.priority){
+			return new Node<E>(left.key, left.value, left.priority, left.left, PersistentTree.join(left.right, right));
+		}
+		return new Node<E>(right.key, right.value, right.priority, PersistentTree.join(left, right.left), right.right);
+	}
+
+	/**
+	 * Removes a range of paths from a treap.
+	 * @param node treap root
+	 * @param from lower bound, inclusive
+	 * @param to upper bound, exclusive
+	 * @param <E> type of the values
+	 * @return new treap root, the same root if no path was in the range
+	 */
+	static <E> Node<E> removeRange(Node<E> node, String from, String to){
+		Node<E> ceiling = PersistentTree.ceiling(node, from, true);
+		if(ceiling==null || ceiling.key.compareTo(to)>=0){
+			return node;
+		}
+		return PersistentTree.join(PersistentTree.lessThan(node, from), PersistentTree.atLeast(node, to));
+	}
+
+	/**
+	 * An immutable treap node.
+	 * @param <E> type of the value
+	 */
+	protected static final class Node<E> {
+		/** Full path */
+		final String key;
+
+		/** Value of the path */
+		final E value;
+
+		/** Treap priority, a node has a priority not less than any node below it */
+		final int priority;
+
+		/** Treap with the lower paths */
+		final Node<E> left;
+
+		/** Treap with the higher paths */
+		final Node<E> right;
+
+		/** Number of nodes in this treap */
+		final int size;
+
+		Node(String key, E value, int priority, Node<E> left, Node<E> right){
+			this.key = key;
+			this.value = value;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			this.size = 1 + PersistentTree.size(left) + PersistentTree.size(right);
+		}
+	}
+
+	/**
+	 * Iterates all nodes of a treap in order of their paths.
+	 * @param <E> type of the values
+	 */
+	static final class NodeIterator<E> implements Iterator<Node<E>> {
+		/** Nodes whose left treap has been visited */
+		final Deque<Node<E>> stack = new ArrayDeque<Node<E>>();
+
+		NodeIterator(Node<E> root){
+			this.pushLeft(root);
+		}
+
+		private void pushLeft(Node<E> node){
+			while(node!=null){
+				this.stack.push(node);
+				node = node.left;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !this.stack.isEmpty();
+		}
+
+		@Override
+		public Node<E> next() {
+			if(this.stack.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			Node<E> ret = this.stack.pop();
+			this.pushLeft(ret.right);
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from paths to primitive values, used by the primitive trees.
+ *
+ * <p>
+ * Keys and values are kept in two parallel arrays with linear probing, so a value needs no entry object and no boxing.
+ * All values are stored as long, ints are widened and doubles are stored as their raw bits.
+ * Removed keys are filled by shifting later entries of the same probe sequence back, so the map needs no tombstones.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+final class PrimitiveMap {
+
+	/** Minimum capacity */
+	static final int MIN_CAPACITY = 16;
+
+	/** Keys, null for free slots */
+	String[] keys;
+
+	/** Values of the keys */
+	long[] values;
+
+	/** Number of keys */
+	int size;
+
+	/** Creates a new empty map. */
+	PrimitiveMap(){
+		this.keys = new String[MIN_CAPACITY];
+		this.values = new long[MIN_CAPACITY];
+	}
+
+	/**
+	 * Returns a copy of a map.
+	 * @param map map to copy
+	 */
+	PrimitiveMap(PrimitiveMap map){
+		this.keys = map.keys.clone();
+		this.values = map.values.clone();
+		this.size = map.size;
+	}
+
+	/**
+	 * Returns the first slot of the probe sequence of a key.
+	 * @param key the key
+	 * @param mask capacity minus one
+	 * @return home slot of the key
+	 */
+	private static int home(String key, int mask){
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ (h>>>16)) & mask;
+	}
+
+	/**
+	 * Returns the slot of a key, or the free slot where it would be stored.
+	 * @param keys key array
+	 * @param key the key
+	 * @return slot index
+	 */
+	private static int slot(String[] keys, String key){
+		int mask = keys.length - 1;
+		int ret = PrimitiveMap.home(key, mask);
+		while(keys[ret]!=null && !keys[ret].equals(key)){
+			ret = (ret + 1) & mask;
+		}
+		return ret;
+	}
+
+	/**
+	 * Tests if the map contains a key.
+	 * @param key the key
+	 * @return true if the key has a value, false otherwise
+	 */
+	boolean containsKey(String key){
+		return this.keys[PrimitiveMap.slot(this.keys, key)]!=null;
+	}
+
+	/**
+	 * Returns the value of a key.
+	 * @param key the key
+	 * @param defaultValue value returned if the key is not in the map
+	 * @return value of the key, default value if the key is not in the map
+	 */
+	long get(String key, long defaultValue){
+		int slot = PrimitiveMap.slot(this.keys, key);
+		return (this.keys[slot]==null)?defaultValue:this.values[slot];
+	}
+
+	/**
+	 * Sets the value of a key.
+	 * @param key the key
+	 * @param value new value
+	 */
+	void put(String key, long value){
+		int slot = PrimitiveMap.slot(this.keys, key);
+		if(this.keys[slot]==null){
+			if((this.size+1)*4 > this.keys.length*3){
+				this.resize(this.keys.length*2);
+				slot = PrimitiveMap.slot(this.keys, key);
+			}
+			this.keys[slot] = key;
+			this.size++;
+		}
+		this.values[slot] = value;
+	}
+
+	/**
+	 * Removes a key.
+	 * @param key the key
+	 * @return true if the key was removed, false if it was not in the map
+	 */
+	boolean remove(String key){
+		int slot = PrimitiveMap.slot(this.keys, key);
+		if(this.keys[slot]==null){
+			return false;
+		}
+		int mask = this.keys.length - 1;
+		int free = slot;
+		int next = (free + 1) & mask;
+		while(this.keys[next]!=null){
+			int home = PrimitiveMap.home(this.keys[next], mask);
+			//move the entry back if its home slot is not between the free slot and its current slot
+			if(((next - home) & mask) >= ((next - free) & mask)){
+				this.keys[free] = this.keys[next];
+				this.values[free] = this.values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this.keys[free] = null;
+		this.size--;
+		return true;
+	}
+
+	/** Removes all keys. */
+	void clear(){
+		Arrays.fill(this.keys, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of keys.
+	 * @return number of keys
+	 */
+	int size(){
+		return this.size;
+	}
+
+	/**
+	 * Changes the capacity of the map.
+	 * @param capacity new capacity, a power of two
+	 */
+	private void resize(int capacity){
+		String[] keys = new String[capacity];
+		long[] values = new long[capacity];
+		for(int i=0; i<this.keys.length; i++){
+			if(this.keys[i]!=null){
+				int slot = PrimitiveMap.slot(keys, this.keys[i]);
+				keys[slot] = this.keys[i];
+				values[slot] = this.values[i];
+			}
+		}
+		this.keys = keys;
+		this.values = values;
+	}
+}
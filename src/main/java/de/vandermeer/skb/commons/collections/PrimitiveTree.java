@@ -0,0 +1,324 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+import org.apache.commons.lang3.text.StrBuilder;
+
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * Base of trees with primitive values.
+ *
+ * <p>
+ * The paths of the tree are kept in a {@link PathMap} without values, the values are kept unboxed in an open addressing map.
+ * Subclasses add getters and setters for their primitive type, for instance {@link IntTree#getInt(Object)}.
+ * All primitive trees are also a {@code Tree<Number>}: values are boxed when read with {@link #getValue(Object)}
+ * and converted to the primitive type when written with {@link #addNodeWithValue(Object, Number)}.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public abstract class PrimitiveTree implements Tree<Number> {
+
+	/** Map maintaining all tree elements, values are not used */
+	protected final PathMap<Void> sval;
+
+	/** Values of all nodes with a value */
+	final PrimitiveMap values;
+
+	final boolean autoRoot=true;
+
+	/** Creates a new empty tree. */
+	protected PrimitiveTree(){
+		this.sval = new PathMap<Void>();
+		this.values = new PrimitiveMap();
+	}
+
+	/**
+	 * Creates a copy of a tree.
+	 * @param tree tree to copy
+	 */
+	protected PrimitiveTree(PrimitiveTree tree){
+		this.sval = new PathMap<Void>();
+		this.sval.putAll(tree.sval);
+		this.values = new PrimitiveMap(tree.values);
+	}
+
+	/**
+	 * Converts a stored value to a number.
+	 * @param bits stored value
+	 * @return boxed value
+	 */
+	abstract Number box(long bits);
+
+	/**
+	 * Converts a number to a stored value.
+	 * @param value the number, not null
+	 * @return stored value
+	 */
+	abstract long bits(Number value);
+
+	/**
+	 * Adds all nodes of the subtree of a path to another tree of the same type.
+	 * @param fqpn path of the subtree
+	 * @param ret tree to add nodes to
+	 * @param <T> type of the tree
+	 * @return the other tree
+	 */
+	<T extends PrimitiveTree> T subtree(String fqpn, T ret){
+		for(String key : this.sval.subPaths(fqpn)){
+			ret.sval.put(key, null);
+			if(this.values.containsKey(key)){
+				ret.values.put(key, this.values.get(key, 0));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Sets the primitive value of a node, adding the node if required.
+	 * @param path path for the FQPN
+	 * @param name name for the FQPN
+	 * @param bits stored value
+	 * @return true if the value was set, false otherwise
+	 */
+	boolean put(Object path, Object name, long bits){
+		StrBuilder fqpn = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name));
+		if(!Tree.addNodeWithNull(fqpn, this.sval, this.autoRoot)){
+			return false;
+		}
+		//the key instance of the path map is used, so the path is not kept twice
+		this.values.put(this.sval.node(fqpn.toString()).key, bits);
+		return true;
+	}
+
+	/**
+	 * Returns the stored value of a node.
+	 * @param fqpn path of the node
+	 * @param defaultValue value returned if the node has no value
+	 * @return stored value, default value if the node does not exist or has no value
+	 */
+	long get(Object fqpn, long defaultValue){
+		return this.values.get(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), defaultValue);
+	}
+
+	/**
+	 * Tests if a node has a value.
+	 * @param fqpn path of the node
+	 * @return true if the node exists and has a value, false otherwise
+	 */
+	public boolean hasValue(Object fqpn){
+		return this.values.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public void clear() {
+		this.sval.clear();
+		this.values.clear();
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		return this.sval.containsKey(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	/**
+	 * Returns the direct children of a node.
+	 * @param fqpn path of the node
+	 * @return paths of all direct children in sorted order, empty if none found
+	 */
+	public List<String> getDirectChildren(Object fqpn) {
+		return this.sval.getSubPaths(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The value is boxed, use the primitive getter of the tree to avoid boxing.
+	 */
+	@Override
+	public Number getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The value is boxed, use the primitive getter of the tree to avoid boxing.
+	 */
+	@Override
+	public Number getValue(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		return (this.values.containsKey(key))?this.box(this.values.get(key, 0)):null;
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString());
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		return this.sval.hasChildren(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.sval.isEmpty();
+	}
+
+	@Override
+	public Set<String> keys() {
+		return this.sval.keySet();
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)), this.sval, this.autoRoot);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		return Tree.addNodeWithNull(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)), this.sval, this.autoRoot);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, Number value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The value is converted to the primitive type of the tree, a null value removes the value of the node.
+	 */
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, Number value) {
+		if(value==null){
+			return this.addNode(path, name) && this.removeValue(path, name);
+		}
+		return this.put(path, name, this.bits(value));
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		StrBuilder fqpn = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name));
+		if(this.values.size()>0){
+			for(String key : this.sval.subPaths(fqpn.toString())){
+				this.values.remove(key);
+			}
+			this.values.remove(fqpn.toString());
+		}
+		return Tree.removeNode(fqpn, this.sval, Tree.defaulSeparator);
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		if(this.sval.containsKey(key)){
+			this.values.remove(key);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.sval.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a primitive tree. Nodes missing in this tree are added,
+	 * values are set if they are numbers and converted to the primitive type of the tree. Other values are ignored.
+	 */
+	@Override
+	public boolean merge(Tree<?> tree){
+		if(tree==null){
+			return false;
+		}
+		TreeMerger.<Object>forEach(tree, (key, values) -> {
+			Object value = TreeMerger.first(values);
+			if(value instanceof Number){
+				this.put(null, key, this.bits((Number)value));
+			}
+			else{
+				this.addNode(key);
+			}
+		});
+		return true;
+	}
+
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this.sval::childPaths, this.sval.size(), order, maxDepth);
+	}
+
+	/**
+	 * Returns an estimate of the heap used by this tree, see {@link Footprint}.
+	 * @return new footprint
+	 */
+	public Footprint footprint(){
+		long keys = 0;
+		for(String key : this.sval.keySet()){
+			keys += Footprint.string(key);
+		}
+		//values are the used long slots, the rest of both arrays is overhead
+		long values = 8L*this.values.size();
+		long overhead = Footprint.pathMap(this.sval.size()) + Footprint.align(Footprint.HEADER + 2*Footprint.REF + 4)
+				+ Footprint.array(this.values.keys.length, Footprint.REF) + Footprint.array(this.values.values.length, 8) - values;
+		return new Footprint(this.sval.size(), keys, values, overhead, 0);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, Number> ret = new LinkedHashMap<String, Number>();
+		for(String key : this.sval.keySet()){
+			ret.put(key, this.getValue(key));
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(ret);
+	}
+}
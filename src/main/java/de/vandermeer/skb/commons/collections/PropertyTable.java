@@ -15,6 +15,8 @@
 
 package de.vandermeer.skb.commons.collections;
 
+import org.antlr.v4.runtime.misc.Pair;
+
 import de.vandermeer.skb.base.categories.IsPath;
 import de.vandermeer.skb.base.composite.Com_Coin;
 import de.vandermeer.skb.base.composite.coin.NONull;
@@ -33,6 +35,12 @@ import de.vandermeer.skb.configuration.EAttributeKeys;
  */
 public class PropertyTable extends FlatTable<Object> {
 
+	/** Columns holding the value of a property, in the order they are tested by {@link #getPropertyValue(Object)} */
+	static final EAttributeKeys[] VALUE_KEYS = new EAttributeKeys[]{EAttributeKeys.VALUE_SET, EAttributeKeys.VALUE_CLI, EAttributeKeys.VALUE_FILE, EAttributeKeys.VALUE_DEFAULT};
+
+	/** Names of the value columns, in the same order */
+	static final String[] VALUE_COLUMNS = new String[]{EAttributeKeys.VALUE_SET.key(), EAttributeKeys.VALUE_CLI.key(), EAttributeKeys.VALUE_FILE.key(), EAttributeKeys.VALUE_DEFAULT.key()};
+
 	/**
 	 * Constructor, initializes the property table with a strategy for handling its array.
 	 * @param strategy property table array strategy
@@ -52,28 +60,38 @@ public class PropertyTable extends FlatTable<Object> {
 	 * will be returned.
 	 */
 	public Object getPropertyValue(Object property) {
-		Object ret;
-
-		ret = this.getPropertyColumn(property, EAttributeKeys.VALUE_SET);
-		if(!(ret instanceof Com_Coin)){
-			return ret;
-		}
-
-		ret = this.getPropertyColumn(property, EAttributeKeys.VALUE_CLI);
-		if(!(ret instanceof Com_Coin)){
-			return ret;
+		String[] cells = new String[VALUE_COLUMNS.length];
+		for(int i=0; i<cells.length; i++){
+			cells[i] = Table.tableJoiner.transform(new Pair<Object, Object>(property, VALUE_KEYS[i])).toString();
 		}
+		return this.getPropertyValue(cells);
+	}
 
-		ret = this.getPropertyColumn(property, EAttributeKeys.VALUE_FILE);
-		if(!(ret instanceof Com_Coin)){
-			return ret;
+	/**
+	 * Returns the value of the specified property, using a precompiled path for the property.
+	 * The paths of the value cells are cached in the path key, so repeated lookups do not create any objects.
+	 * @param property precompiled path of the property (the table row)
+	 * @return the value as described in {@link #getPropertyValue(Object)}
+	 */
+	public Object getPropertyValue(PathKey property) {
+		if(property==null){
+			return NONull.get;
 		}
+		return this.getPropertyValue(property.cells(VALUE_COLUMNS));
+	}
 
-		ret = this.getPropertyColumn(property, EAttributeKeys.VALUE_DEFAULT);
-		if(!(ret instanceof Com_Coin)){
-			return ret;
+	/**
+	 * Returns the first value that is set in the value cells of a property.
+	 * @param cells paths of the value cells in the order of {@link #VALUE_COLUMNS}
+	 * @return the value as described in {@link #getPropertyValue(Object)}
+	 */
+	private Object getPropertyValue(String[] cells) {
+		for(String cell : cells){
+			Object ret = this.sval.get(cell);
+			if(ret!=null && !(ret instanceof Com_Coin)){
+				return ret;
+			}
 		}
-
 		return NONull.get;
 	}
 
@@ -123,6 +141,15 @@ public class PropertyTable extends FlatTable<Object> {
 		return this.contains(property);
 	}
 
+	/**
+	 * Tests if the map has a specified property.
+	 * @param property precompiled path of the property
+	 * @return true if property is set, false otherwise
+	 */
+	public boolean hasProperty(PathKey property) {
+		return this.contains(property);
+	}
+
 	/**
 	 * Tests if the map has a specified property and a value for it.
 	 * @param property property name
@@ -159,6 +186,8 @@ public class PropertyTable extends FlatTable<Object> {
 	public PropertyTable getCopy() {
 		PropertyTable ret = new PropertyTable(this.strategy);
 		ret.sval.putAll(this.sval);
+		ret.rows.putAll(this.rows);
+		ret.copyIndexes(this);
 		return ret;
 	}
 
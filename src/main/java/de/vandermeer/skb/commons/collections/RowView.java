@@ -0,0 +1,183 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+
+/**
+ * A read-only view of a table row, mapping the paths of the row's cells to their values.
+ * The view does not copy anything, values are read from the table when they are requested.
+ * Once the row is removed from the table the view is empty.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+final class RowView<V> extends AbstractMap<String, V> {
+
+	/** Paths of the cells of the row, in column order */
+	final String[] cells;
+
+	/** Returns the value of the cell with the given column number */
+	final IntFunction<V> value;
+
+	/** Tests if the row still exists in the table */
+	final BooleanSupplier live;
+
+	/**
+	 * Creates a new row view.
+	 * @param cells paths of the cells of the row, in column order
+	 * @param value returns the value of the cell with the given column number
+	 * @param live tests if the row still exists in the table
+	 */
+	RowView(String[] cells, IntFunction<V> value, BooleanSupplier live){
+		this.cells = cells;
+		this.value = value;
+		this.live = live;
+	}
+
+	/**
+	 * Builds a row index from the keys of a table map, used for tables whose entries were not added row by row.
+	 * Rows are all paths with one element, cells are all paths with two elements whose row exists.
+	 * The cells of a row are ordered like the table columns, cells that are not a table column follow in key order.
+	 * @param keys keys of the table map, the returned index uses the same string instances
+	 * @param columns table columns
+	 * @return new row index, mapping row paths to the paths of their cells
+	 */
+	static Map<String, String[]> index(Set<String> keys, Set<IsAttributeKey> columns){
+		Map<String, Integer> order = new HashMap<String, Integer>();
+		for(IsAttributeKey column : columns){
+			if(!order.containsKey(column.key())){
+				order.put(column.key(), order.size());
+			}
+		}
+
+		Map<String, List<String>> cells = new HashMap<String, List<String>>();
+		for(String key : keys){
+			if(key.length()>1 && key.indexOf(Table.defaulSeparator, 1)==-1){
+				cells.put(key, new ArrayList<String>(order.size()));
+			}
+		}
+		for(String key : keys){
+			int sep = key.indexOf(Table.defaulSeparator, 1);
+			if(sep>0 && key.indexOf(Table.defaulSeparator, sep+1)==-1){
+				List<String> row = cells.get(key.substring(0, sep));
+				if(row!=null){
+					row.add(key);
+				}
+			}
+		}
+
+		Map<String, String[]> ret = new HashMap<String, String[]>();
+		for(String key : keys){
+			List<String> row = cells.get(key);
+			if(row!=null){
+				int start = key.length() + 1;
+				row.sort((a, b) -> {
+					Integer ia = order.get(a.substring(start));
+					Integer ib = order.get(b.substring(start));
+					if(ia!=null && ib!=null){
+						return ia - ib;
+					}
+					if(ia==null && ib==null){
+						return a.compareTo(b);
+					}
+					return (ia==null)?1:-1;
+				});
+				ret.put(key, row.toArray(new String[row.size()]));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the column number of a cell path.
+	 * @param key cell path
+	 * @return column number, -1 if the key is not a cell of the row or the row does not exist anymore
+	 */
+	int column(Object key){
+		if(key!=null && this.live.getAsBoolean()){
+			for(int i=0; i<this.cells.length; i++){
+				if(this.cells[i].equals(key)){
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.column(key)!=-1;
+	}
+
+	@Override
+	public V get(Object key) {
+		int column = this.column(key);
+		return (column==-1)?null:this.value.apply(column);
+	}
+
+	@Override
+	public int size() {
+		return (this.live.getAsBoolean())?this.cells.length:0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, V>> entrySet() {
+		return new AbstractSet<Map.Entry<String, V>>(){
+			@Override
+			public Iterator<Map.Entry<String, V>> iterator() {
+				return new Iterator<Map.Entry<String, V>>(){
+					/** next column */
+					int column = 0;
+
+					/** number of columns to iterate, 0 if the row does not exist */
+					final int size = RowView.this.size();
+
+					@Override
+					public boolean hasNext() {
+						return this.column<this.size;
+					}
+
+					@Override
+					public Map.Entry<String, V> next() {
+						if(this.column>=this.size){
+							throw new NoSuchElementException();
+						}
+						int i = this.column++;
+						return new AbstractMap.SimpleImmutableEntry<String, V>(RowView.this.cells[i], RowView.this.value.apply(i));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return RowView.this.size();
+			}
+		};
+	}
+}
@@ -0,0 +1,381 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * A live view of a subtree of another tree.
+ *
+ * <p>
+ * The view contains all sub paths of its root path, not including the root path itself, with the same paths as in the parent tree.
+ * This is the same content as {@link Tree#getSubtree(Object)} returns, but nothing is copied: creating a view is O(1)
+ * and all lookups and changes are forwarded to the parent tree.
+ * Changes of the parent tree are visible in the view.
+ * For trees using a {@link PathMap} the paths of the view are a range of the sorted index, so no other paths are visited.
+ * </p>
+ *
+ * <p>
+ * Paths outside the subtree are not part of the view: lookups return null or false and changes are ignored.
+ * Adding a node can create missing ancestors of the root path in the parent tree.
+ * A read-only view throws an {@link UnsupportedOperationException} for all changes.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class SubtreeView<E> implements Tree<E> {
+
+	/** The parent tree */
+	final Tree<E> parent;
+
+	/** Root path of the view */
+	final String root;
+
+	/** Prefix of all paths in the view */
+	final String prefix;
+
+	/** Flag for read-only views */
+	final boolean readOnly;
+
+	/**
+	 * Returns a new view.
+	 * @param parent the parent tree
+	 * @param fqpn root path of the view
+	 * @param readOnly true for a read-only view, false otherwise
+	 * @throws IllegalArgumentException if parent is null
+	 */
+	public SubtreeView(Tree<E> parent, Object fqpn, boolean readOnly){
+		if(parent==null){
+			throw new IllegalArgumentException("parent tree must not be null");
+		}
+		this.parent = parent;
+		this.root = Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString();
+		this.prefix = PathMap.subPathPrefix(this.root);
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Returns the parent tree of the view.
+	 * @return parent tree
+	 */
+	public Tree<E> getParent(){
+		return this.parent;
+	}
+
+	/**
+	 * Returns the root path of the view.
+	 * @return root path
+	 */
+	public String getRoot(){
+		return this.root;
+	}
+
+	/**
+	 * Tests if the view is read-only.
+	 * @return true if changes are not supported, false otherwise
+	 */
+	public boolean isReadOnly(){
+		return this.readOnly;
+	}
+
+	/**
+	 * Tests if a path is part of the view.
+	 * @param key path
+	 * @return true if the path is a sub path of the root path, false otherwise
+	 */
+	boolean inside(String key){
+		return key.length()>this.prefix.length() && key.startsWith(this.prefix);
+	}
+
+	/**
+	 * Tests if a path is the root path or one of its ancestors.
+	 * @param key path
+	 * @return true if the path covers the whole view, false otherwise
+	 */
+	boolean covers(String key){
+		return this.root.equals(key) || this.root.startsWith(PathMap.subPathPrefix(key));
+	}
+
+	/**
+	 * Throws an exception for a read-only view.
+	 * @throws UnsupportedOperationException if the view is read-only
+	 */
+	void checkWrite(){
+		if(this.readOnly){
+			throw new UnsupportedOperationException("subtree view of <" + this.root + "> is read-only");
+		}
+	}
+
+	/**
+	 * Returns all paths of the view.
+	 * For trees using a {@link PathMap} this is a live range of the sorted index, otherwise the children of the root path in the parent tree.
+	 * @return paths of the view
+	 */
+	Collection<String> paths(){
+		PathMap<?> index = SubtreeView.index(this.parent);
+		if(index!=null){
+			return index.subPaths(this.root);
+		}
+		return this.parent.getChildrenNames(this.root);
+	}
+
+	/**
+	 * Returns the path index of a tree.
+	 * @param tree the tree
+	 * @return index of the tree, null if the tree does not use a {@link PathMap}
+	 */
+	static PathMap<?> index(Tree<?> tree){
+		if(tree instanceof FlatTree){
+			return ((FlatTree<?>)tree).sval;
+		}
+		if(tree instanceof FlatMultiTree){
+			return ((FlatMultiTree<?>)tree).sval;
+		}
+		if(tree instanceof CompactMultiTree){
+			return ((CompactMultiTree<?>)tree).sval;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a path.
+	 * @param path path for the FQPN
+	 * @param name name for the FQPN
+	 * @return path as string
+	 */
+	static String key(Object path, Object name){
+		return Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+	}
+
+	@Override
+	public void clear() {
+		this.checkWrite();
+		for(String key : Tree.directChildren(this.parent, this.root)){
+			this.parent.removeNode(key);
+		}
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.containsNode(null, fqpn);
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		String key = SubtreeView.key(path, name);
+		return this.inside(key) && this.parent.containsNode(key);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.getChildrenNames(null, fqpn);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		String key = SubtreeView.key(path, name);
+		if(this.inside(key)){
+			return this.parent.getChildrenNames(key);
+		}
+		if(this.covers(key)){
+			return new ArrayList<String>(this.paths());
+		}
+		return new ArrayList<String>();
+	}
+
+	/**
+	 * Returns a new tree with all nodes of the view, using {@link Tree#getSubtree(Object)} of the parent tree.
+	 * @return new tree, independent of the parent tree
+	 */
+	@Override
+	public Tree<E> getCopy() {
+		return this.parent.getSubtree(this.root);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned subtree is a view with the same parent and the same read-only flag.
+	 */
+	@Override
+	public SubtreeView<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned subtree is a view with the same parent and the same read-only flag.
+	 */
+	@Override
+	public SubtreeView<E> getSubtree(Object path, Object name) {
+		String key = SubtreeView.key(path, name);
+		return new SubtreeView<E>(this.parent, (this.covers(key))?this.root:key, this.readOnly);
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		String key = SubtreeView.key(path, name);
+		return (this.inside(key))?this.parent.getValue(key):null;
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.hasChildren(null, fqpn);
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		String key = SubtreeView.key(path, name);
+		if(this.inside(key)){
+			return this.parent.hasChildren(key);
+		}
+		return this.covers(key) && !this.isEmpty();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if(this.prefix.equals(this.root)){
+			return this.parent.isEmpty();
+		}
+		return !this.parent.hasChildren(this.root);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The returned set is a read-only view, changes of the parent tree are reflected in it.
+	 */
+	@Override
+	public Set<String> keys() {
+		return new AbstractSet<String>(){
+			@Override public Iterator<String> iterator(){
+				Iterator<String> it = SubtreeView.this.paths().iterator();
+				return new Iterator<String>(){
+					@Override public boolean hasNext(){return it.hasNext();}
+					@Override public String next(){return it.next();}
+				};
+			}
+			@Override public int size(){return SubtreeView.this.size();}
+			@Override public boolean contains(Object o){return (o instanceof String) && SubtreeView.this.containsNode(o);}
+		};
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return this.addNode(null, fqpn);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		this.checkWrite();
+		String key = SubtreeView.key(path, name);
+		return this.inside(key) && this.parent.addNode(key);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		this.checkWrite();
+		String key = SubtreeView.key(path, name);
+		return this.inside(key) && this.parent.addNodeWithValue(key, value);
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		this.checkWrite();
+		String key = SubtreeView.key(path, name);
+		return this.inside(key) && this.parent.removeNode(key);
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		this.checkWrite();
+		String key = SubtreeView.key(path, name);
+		return this.inside(key) && this.parent.removeValue(key);
+	}
+
+	@Override
+	public int size() {
+		if(this.prefix.equals(this.root)){
+			return this.parent.size();
+		}
+		return this.paths().size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Only the nodes of the source tree that are part of this view are merged into the parent tree.
+	 */
+	@Override
+	public boolean merge(Tree<?> tree) {
+		this.checkWrite();
+		if(tree==null){
+			return false;
+		}
+		return this.parent.merge(tree.getSubtree(this.root));
+	}
+
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString();
+		if(this.inside(key)){
+			return this.parent.spliterator(key, order, maxDepth);
+		}
+		if(this.covers(key)){
+			//paths between the start node and the root path are not in the view
+			int offset = TreeSpliterator.depth(this.root) - TreeSpliterator.depth(key);
+			return this.parent.spliterator(this.root, order, (maxDepth==Integer.MAX_VALUE)?maxDepth:maxDepth-offset);
+		}
+		return Tree.super.spliterator(key, order, maxDepth);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, E> ret = new LinkedHashMap<String, E>();
+		for(String key : this.paths()){
+			ret.put(key, this.parent.getValue(key));
+		}
+		return Skb_CollectionTransformer.MAP_TO_TEXT(ret);
+	}
+}
@@ -111,6 +111,14 @@ public interface Table<E> extends Com_Node {
 	 */
 	Set<String> keys();
 
+	/**
+	 * Starts a query on the table.
+	 * @return new query returning all rows with all columns, see {@link TableQuery}
+	 */
+	default TableQuery<E> query(){
+		return new TableQuery<E>(this);
+	}
+
 	/**
 	 * Removes the value of a column, that is sets it to null
 	 * @param row row
@@ -132,6 +140,22 @@ public interface Table<E> extends Com_Node {
 	 */
 	int size();
 
+	/**
+	 * Returns the path of a row, that is the row name joined to the table root.
+	 * @param row row name
+	 * @return row path, null if row is null or not a single path element
+	 */
+	public static String rowPath(Object row){
+		if(row==null){
+			return null;
+		}
+		String ret = Table.tableJoiner.transform(new Pair<Object, Object>(null, row)).toString();
+		if(ret.length()<2 || ret.indexOf(Table.defaulSeparator, 1)!=-1){
+			return null;
+		}
+		return ret;
+	}
+
 	/**
 	 * Adds a complete row with null values for each column.
 	 * @param row name of the row
@@ -143,21 +167,39 @@ public interface Table<E> extends Com_Node {
 	 * @return true on success, false otherwise
 	 */
 	public static boolean addRowWithNull(Object row, Map<String, ?> map, Set<IsAttributeKey> columns, String separator, Boolean doClean, Boolean setRoot){
+		return Table.addRowCells(row, map, columns, separator, doClean, setRoot)!=null;
+	}
+
+	/**
+	 * Adds a complete row with null values for each column and returns the paths used as keys for the new entries.
+	 * @param row name of the row
+	 * @param map map to add the row to
+	 * @param columns set of columns for the row
+	 * @param separator path separator
+	 * @param doClean clean the final path from excessive elements
+	 * @param setRoot set a root separator to the final path
+	 * @return path of the row followed by the paths of its cells in column order, null if the row was not added
+	 */
+	public static String[] addRowCells(Object row, Map<String, ?> map, Set<IsAttributeKey> columns, String separator, Boolean doClean, Boolean setRoot){
 		if(row==null || map==null || columns==null){
-			return false;
+			return null;
 		}
 		StrBuilder fqpn = IsPath.JOIN_PATH_ELEMENTS(separator, doClean, setRoot).transform(new Pair<Object, Object>(null, row));
 		if(IsPath.PATH_TO_LEVELS(separator).transform(fqpn)==1){
 			String rowKey = IsPath.forMaxDepth(fqpn, 1, separator).toString();
 			if(!map.containsKey(rowKey)){
+				String[] ret = new String[columns.size()+1];
+				ret[0] = rowKey;
+				int i = 1;
 				for(IsAttributeKey col : columns){
-					map.put(rowKey + separator + col.key(), null);
+					ret[i] = rowKey + separator + col.key();
+					map.put(ret[i++], null);
 				}
 				map.put(rowKey, null);
-				return true;
+				return ret;
 			}
 		}
-		return false;
+		return null;
 	}
 
 	/**
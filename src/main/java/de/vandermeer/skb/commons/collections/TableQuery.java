@@ -0,0 +1,547 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A query on a table: filter rows, project columns, order and limit the result.
+ *
+ * <p>
+ * A query is built with {@link Table#query()} and the methods of this class, for instance
+ * <code>table.query().whereEquals(type, "string").select(name, value).orderBy(name).limit(10).stream()</code>.
+ * Conditions on several columns must all be true for a row to be returned.
+ * Each result row is a map from cell paths to values, like {@link Table#get(Object)}, restricted to the selected columns.
+ * </p>
+ *
+ * <p>
+ * The result is computed lazily when the stream or the iterator ({@link #iterator()}) is read, a query can be read any number of times.
+ * If the table has a secondary index (see {@link ColumnIndex}) for a column with an equality or range condition,
+ * only the rows found in the index are looked at. If the result is ordered by a column with a sorted index,
+ * rows are read in index order and reading stops when the limit is reached. Otherwise an ordered and limited query
+ * keeps only the best n rows while reading the table, so the table is never copied or sorted as a whole.
+ * </p>
+ *
+ * <p>
+ * A query reads the table while its result is read, the table must not be changed at the same time unless it is a concurrent table.
+ * </p>
+ *
+ * @param <E> type of the table values
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public final class TableQuery<E> implements Iterable<Map<String, E>> {
+
+	/** The table to query */
+	final Table<E> table;
+
+	/** Conditions on column values */
+	final List<Condition> conditions = new ArrayList<Condition>();
+
+	/** Names of the selected columns, null for all columns */
+	String[] select;
+
+	/** Name of the column the result is ordered by, null for table order */
+	String orderBy;
+
+	/** Ordering of the values of the order column, null for natural ordering */
+	Comparator<Object> comparator;
+
+	/** True for descending order */
+	boolean descending;
+
+	/** Maximum number of result rows, -1 for no limit */
+	long limit = -1;
+
+	/**
+	 * A condition on the value of a column.
+	 */
+	static final class Condition {
+
+		/** Column name */
+		final String column;
+
+		/** True for equality conditions */
+		final boolean equality;
+
+		/** Value for equality conditions */
+		final Object equals;
+
+		/** True for range conditions */
+		final boolean range;
+
+		/** Range bounds */
+		final Object from, to;
+
+		/** Range bound flags */
+		final boolean fromInclusive, toInclusive;
+
+		/** Test for the column value, never called with null */
+		final Predicate<Object> test;
+
+		/**
+		 * Creates a new condition.
+		 * @param column column name
+		 * @param equality true for equality conditions
+		 * @param equals value for equality conditions
+		 * @param range true for range conditions
+		 * @param from lower bound of a range
+		 * @param fromInclusive true if the lower bound is included
+		 * @param to upper bound of a range
+		 * @param toInclusive true if the upper bound is included
+		 * @param test test for the column value
+		 */
+		Condition(String column, boolean equality, Object equals, boolean range, Object from, boolean fromInclusive, Object to, boolean toInclusive, Predicate<Object> test){
+			this.column = column;
+			this.equality = equality;
+			this.equals = equals;
+			this.range = range;
+			this.from = from;
+			this.fromInclusive = fromInclusive;
+			this.to = to;
+			this.toInclusive = toInclusive;
+			this.test = test;
+		}
+	}
+
+	/**
+	 * Creates a new query returning all rows of a table.
+	 * @param table table to query
+	 * @throws IllegalArgumentException if table is null
+	 */
+	TableQuery(Table<E> table){
+		if(table==null){
+			throw new IllegalArgumentException("table must not be null");
+		}
+		this.table = table;
+	}
+
+	/**
+	 * Returns the name of a column.
+	 * @param column column
+	 * @return column name
+	 * @throws IllegalArgumentException if column is null
+	 */
+	private static String name(Object column){
+		if(column==null){
+			throw new IllegalArgumentException("column must not be null");
+		}
+		return ColumnIndex.column(column);
+	}
+
+	/**
+	 * Adds a condition: only rows in which the value of the column passes a test are returned.
+	 * @param column column
+	 * @param test test for the value, rows with a null value are not returned
+	 * @return this query
+	 * @throws IllegalArgumentException if column or test is null
+	 */
+	@SuppressWarnings("unchecked")
+	public TableQuery<E> where(Object column, Predicate<? super E> test){
+		if(test==null){
+			throw new IllegalArgumentException("test must not be null");
+		}
+		this.conditions.add(new Condition(TableQuery.name(column), false, null, false, null, false, null, false, v -> test.test((E)v)));
+		return this;
+	}
+
+	/**
+	 * Adds a condition: only rows in which the column has the value are returned.
+	 * @param column column
+	 * @param value value, null matches no row
+	 * @return this query
+	 * @throws IllegalArgumentException if column is null
+	 */
+	public TableQuery<E> whereEquals(Object column, E value){
+		this.conditions.add(new Condition(TableQuery.name(column), true, value, false, null, false, null, false, v -> v.equals(value)));
+		return this;
+	}
+
+	/**
+	 * Adds a condition: only rows in which the value of the column is within a range are returned.
+	 * Values are compared by their natural ordering, or by the ordering of a sorted index of the column.
+	 * @param column column
+	 * @param from lowest value, null for no lower bound
+	 * @param fromInclusive true if rows holding the lowest value are returned
+	 * @param to highest value, null for no upper bound
+	 * @param toInclusive true if rows holding the highest value are returned
+	 * @return this query
+	 * @throws IllegalArgumentException if column is null
+	 */
+	public TableQuery<E> whereBetween(Object column, E from, boolean fromInclusive, E to, boolean toInclusive){
+		this.conditions.add(new Condition(TableQuery.name(column), false, null, true, from, fromInclusive, to, toInclusive, ColumnIndex.between(from, fromInclusive, to, toInclusive)));
+		return this;
+	}
+
+	/**
+	 * Sets the columns of the result rows, all columns are returned if no columns are selected.
+	 * @param columns selected columns
+	 * @return this query
+	 * @throws IllegalArgumentException if a column is null
+	 */
+	public TableQuery<E> select(Object ... columns){
+		if(columns==null || columns.length==0){
+			this.select = null;
+			return this;
+		}
+		this.select = new String[columns.length];
+		for(int i=0; i<columns.length; i++){
+			this.select[i] = TableQuery.name(columns[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * Orders the result rows by the natural ordering of the values of a column, in ascending order.
+	 * Rows with a null value are returned last.
+	 * @param column column
+	 * @return this query
+	 * @throws IllegalArgumentException if column is null
+	 */
+	public TableQuery<E> orderBy(Object column){
+		return this.orderBy(column, true);
+	}
+
+	/**
+	 * Orders the result rows by the natural ordering of the values of a column.
+	 * Rows with a null value are returned last.
+	 * @param column column
+	 * @param ascending true for ascending, false for descending order
+	 * @return this query
+	 * @throws IllegalArgumentException if column is null
+	 */
+	public TableQuery<E> orderBy(Object column, boolean ascending){
+		this.orderBy = TableQuery.name(column);
+		this.comparator = null;
+		this.descending = !ascending;
+		return this;
+	}
+
+	/**
+	 * Orders the result rows by the values of a column, in ascending order of a comparator.
+	 * Rows with a null value are returned last.
+	 * @param column column
+	 * @param comparator ordering of the values
+	 * @return this query
+	 * @throws IllegalArgumentException if column or comparator is null
+	 */
+	@SuppressWarnings("unchecked")
+	public TableQuery<E> orderBy(Object column, Comparator<? super E> comparator){
+		if(comparator==null){
+			throw new IllegalArgumentException("comparator must not be null");
+		}
+		this.orderBy = TableQuery.name(column);
+		this.comparator = (Comparator<Object>)comparator;
+		this.descending = false;
+		return this;
+	}
+
+	/**
+	 * Limits the number of result rows.
+	 * @param n maximum number of rows
+	 * @return this query
+	 * @throws IllegalArgumentException if n is negative
+	 */
+	public TableQuery<E> limit(long n){
+		if(n<0){
+			throw new IllegalArgumentException("limit must not be negative");
+		}
+		this.limit = n;
+		return this;
+	}
+
+	/**
+	 * Returns the result of the query as a stream, the query is evaluated while the stream is read.
+	 * @return stream of result rows
+	 */
+	public Stream<Map<String, E>> stream(){
+		ColumnIndex order = this.orderIndex();
+		Stream<String> rows;
+		if(order!=null){
+			rows = this.indexOrder(order);
+		}
+		else{
+			rows = this.candidates();
+		}
+		List<Predicate<Object>> tests = this.tests();
+		rows = rows.filter(row -> this.matches(row, tests));
+
+		if(this.orderBy!=null && order==null){
+			Comparator<String> comparator = this.rowComparator();
+			if(this.limit>=0){
+				Stream<String> source = rows;
+				rows = Stream.<Supplier<List<String>>>of(() -> TableQuery.top(source, comparator, this.limit)).flatMap(s -> s.get().stream());
+			}
+			else{
+				rows = rows.sorted(comparator);
+			}
+		}
+		if(this.limit>=0){
+			rows = rows.limit(this.limit);
+		}
+		return rows.map(this::project);
+	}
+
+	/**
+	 * Returns a cursor over the result of the query, the query is evaluated while the cursor is read.
+	 * @return iterator over the result rows
+	 */
+	@Override
+	public Iterator<Map<String, E>> iterator(){
+		return this.stream().iterator();
+	}
+
+	/**
+	 * Evaluates the query completely.
+	 * @return new list of all result rows
+	 */
+	public List<Map<String, E>> list(){
+		return this.stream().collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the paths of all rows of the table.
+	 * @return stream of row paths
+	 */
+	Stream<String> rows(){
+		if(this.table instanceof FlatTable){
+			return ((FlatTable<E>)this.table).rows.keySet().stream();
+		}
+		if(this.table instanceof FlatMultiTable){
+			return ((FlatMultiTable<E>)this.table).rows.keySet().stream();
+		}
+		if(this.table instanceof ColumnTable){
+			return ((ColumnTable<E>)this.table).rowIds.keySet().stream();
+		}
+		return this.table.keys().stream().filter(key -> key.length()>1 && key.indexOf(Table.defaulSeparator, 1)==-1);
+	}
+
+	/**
+	 * Returns the secondary index of a column, if the table supports indexes.
+	 * @param column column name
+	 * @return index, null if none exists
+	 */
+	ColumnIndex index(String column){
+		if(this.table instanceof FlatTable){
+			return ((FlatTable<E>)this.table).getIndex(column);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the rows that can match the conditions, using an index if possible.
+	 * Equality conditions are preferred over range conditions.
+	 * @return stream of row paths
+	 */
+	Stream<String> candidates(){
+		Set<String> ret = null;
+		for(Condition condition : this.conditions){
+			ColumnIndex index = this.index(condition.column);
+			if(index==null){
+				continue;
+			}
+			if(condition.equality){
+				return (condition.equals==null)?Stream.<String>empty():index.get(condition.equals).stream();
+			}
+			if(condition.range && ret==null && index.getType()==ColumnIndex.Type.SORTED){
+				ret = index.range(condition.from, condition.fromInclusive, condition.to, condition.toInclusive);
+			}
+		}
+		return (ret!=null)?ret.stream():this.rows();
+	}
+
+	/**
+	 * Returns the index that can be read to return rows in the requested order.
+	 * No index is used for the order if an equality condition can use an index.
+	 * @return sorted index of the order column with the requested ordering, null if there is none
+	 */
+	ColumnIndex orderIndex(){
+		if(this.orderBy==null){
+			return null;
+		}
+		for(Condition condition : this.conditions){
+			if(condition.equality && this.index(condition.column)!=null){
+				//the rows of one value are usually fewer than all rows in index order
+				return null;
+			}
+		}
+		ColumnIndex index = this.index(this.orderBy);
+		if(index==null || index.getType()!=ColumnIndex.Type.SORTED || index.comparator()!=this.comparator){
+			return null;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns all rows in the order of a sorted index, followed by the rows with a null value in the order column.
+	 * @param index sorted index of the order column
+	 * @return stream of row paths
+	 */
+	Stream<String> indexOrder(ColumnIndex index){
+		NavigableMap<Object, Set<String>> entries = index.sorted(null, true, null, true);
+		if(this.descending){
+			entries = entries.descendingMap();
+		}
+		Stream<String> nulls = Stream.<Supplier<Stream<String>>>of(() -> this.rows().filter(row -> this.value(row, this.orderBy)==null)).flatMap(Supplier::get);
+		return Stream.concat(entries.values().stream().flatMap(Set::stream), nulls);
+	}
+
+	/**
+	 * Returns a comparator for rows using the order column.
+	 * @return row comparator, rows with null values last
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	Comparator<String> rowComparator(){
+		Comparator<Object> values = (this.comparator!=null)?this.comparator:(Comparator)Comparator.naturalOrder();
+		if(this.descending){
+			values = values.reversed();
+		}
+		Comparator<Object> nullsLast = Comparator.nullsLast(values);
+		return (a, b) -> nullsLast.compare(this.value(a, this.orderBy), this.value(b, this.orderBy));
+	}
+
+	/**
+	 * Returns the first n rows of a stream in the order of a comparator, keeping no more than n rows at any time.
+	 * @param rows stream of row paths
+	 * @param comparator row order
+	 * @param n number of rows
+	 * @return list of the first rows in order
+	 */
+	static List<String> top(Stream<String> rows, Comparator<String> comparator, long n){
+		if(n==0){
+			return Collections.emptyList();
+		}
+		//the head of the queue is the worst of the kept rows
+		PriorityQueue<String> queue = new PriorityQueue<String>(11, comparator.reversed());
+		rows.forEachOrdered(row -> {
+			if(queue.size()<n){
+				queue.add(row);
+			}
+			else if(comparator.compare(row, queue.peek())<0){
+				queue.poll();
+				queue.add(row);
+			}
+		});
+		List<String> ret = new ArrayList<String>(queue);
+		ret.sort(comparator);
+		return ret;
+	}
+
+	/**
+	 * Returns the tests of all conditions, range conditions on a column with a sorted index use the ordering of the index.
+	 * @return tests in the order of the conditions
+	 */
+	List<Predicate<Object>> tests(){
+		List<Predicate<Object>> ret = new ArrayList<Predicate<Object>>(this.conditions.size());
+		for(Condition condition : this.conditions){
+			ColumnIndex index = (condition.range)?this.index(condition.column):null;
+			if(index!=null && index.getType()==ColumnIndex.Type.SORTED && index.comparator()!=null){
+				ret.add(ColumnIndex.between(index.comparator(), condition.from, condition.fromInclusive, condition.to, condition.toInclusive));
+			}
+			else{
+				ret.add(condition.test);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Tests if a row passes all conditions.
+	 * @param row row path
+	 * @param tests tests of the conditions as returned by {@link #tests()}
+	 * @return true if the row passes, false otherwise
+	 */
+	boolean matches(String row, List<Predicate<Object>> tests){
+		for(int i=0; i<tests.size(); i++){
+			Object value = this.value(row, this.conditions.get(i).column);
+			if(value==null || !tests.get(i).test(value)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of a cell.
+	 * @param row row path
+	 * @param column column name
+	 * @return value of the cell
+	 */
+	E value(String row, String column){
+		if(this.table instanceof FlatTable){
+			return ((FlatTable<E>)this.table).sval.get(row + Table.defaulSeparator + column);
+		}
+		return this.table.get(row, column);
+	}
+
+	/**
+	 * Returns a result row with the selected columns.
+	 * @param row row path
+	 * @return map of cell paths and values
+	 */
+	Map<String, E> project(String row){
+		if(this.select==null){
+			return this.table.get(row);
+		}
+		Map<String, E> ret = new LinkedHashMap<String, E>();
+		for(String column : this.select){
+			ret.put(row + Table.defaulSeparator + column, this.value(row, column));
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder ret = new StringBuilder();
+		ret.append("rows of ").append(this.table.getClass().getSimpleName());
+		for(Condition condition : this.conditions){
+			ret.append(" where ").append(condition.column);
+			if(condition.range){
+				ret.append(condition.fromInclusive?" [":" (").append(Objects.toString(condition.from, "")).append(", ").append(Objects.toString(condition.to, "")).append(condition.toInclusive?"]":")");
+			}
+			else if(condition.equality){
+				ret.append(" = ").append(condition.equals);
+			}
+			else{
+				ret.append(" matches");
+			}
+		}
+		if(this.select!=null){
+			ret.append(" select ").append(String.join(", ", this.select));
+		}
+		if(this.orderBy!=null){
+			ret.append(" order by ").append(this.orderBy).append(this.descending?" desc":"");
+		}
+		if(this.limit>=0){
+			ret.append(" limit ").append(this.limit);
+		}
+		return ret.toString();
+	}
+}
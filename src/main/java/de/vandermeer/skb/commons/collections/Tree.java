@@ -15,10 +15,15 @@
 
 package de.vandermeer.skb.commons.collections;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.antlr.v4.runtime.misc.Pair;
 import org.apache.commons.lang3.text.StrBuilder;
@@ -214,6 +219,109 @@ public interface Tree<E> extends Com_Node {
 	 */
 	boolean merge(Tree<?> tree);
 
+	/**
+	 * Returns a live view of a subtree, see {@link SubtreeView}.
+	 * The view has the same content as {@link #getSubtree(Object)}, but nothing is copied and changes are forwarded to this tree.
+	 * @param fqpn root node of the view
+	 * @return new view, created in O(1)
+	 */
+	default SubtreeView<E> subtreeView(Object fqpn){
+		return new SubtreeView<E>(this, fqpn, false);
+	}
+
+	/**
+	 * Returns a live view of a subtree, see {@link SubtreeView}.
+	 * @param fqpn root node of the view
+	 * @param readOnly true for a view that does not allow changes, false otherwise
+	 * @return new view, created in O(1)
+	 */
+	default SubtreeView<E> subtreeView(Object fqpn, boolean readOnly){
+		return new SubtreeView<E>(this, fqpn, readOnly);
+	}
+
+	/**
+	 * Returns all paths matching a pattern with wildcards, see {@link PathQuery}.
+	 * The pattern is compiled for every call, use {@link PathQuery#compile(String)} to run the same query several times.
+	 * @param pattern the pattern, for instance "/a/*&#47;b" or "/a/**"
+	 * @return matching paths in sorted order, empty if none found
+	 * @throws IllegalArgumentException if pattern is null
+	 */
+	default List<String> query(String pattern){
+		return PathQuery.compile(pattern).find(this);
+	}
+
+	/**
+	 * Returns all paths matching a pattern with wildcards whose value matches a filter, see {@link PathQuery}.
+	 * @param pattern the pattern, for instance "/a/*&#47;b" or "/a/**"
+	 * @param filter filter for values, null for no filter
+	 * @return matching paths in sorted order, empty if none found
+	 * @throws IllegalArgumentException if pattern is null
+	 */
+	default List<String> query(String pattern, Predicate<? super E> filter){
+		return PathQuery.compile(pattern).find(this, filter);
+	}
+
+	/**
+	 * Returns a depth first spliterator over all sub paths of a node, not including the node itself.
+	 * Children of a node are visited in lexicographical order.
+	 * @param fqpn path of the start node, the root path for the whole tree
+	 * @return new spliterator
+	 */
+	default TreeSpliterator spliterator(Object fqpn){
+		return this.spliterator(fqpn, TreeSpliterator.Order.DEPTH_FIRST, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a spliterator over all sub paths of a node, not including the node itself.
+	 * Children of a node are visited in lexicographical order.
+	 * The default implementation finds the children of a node with {@link #getChildrenNames(Object)},
+	 * implementations should use a faster lookup.
+	 * @param fqpn path of the start node, the root path for the whole tree
+	 * @param order traversal order
+	 * @param maxDepth maximum depth of returned paths relative to the start node, 1 for direct children only
+	 * @return new spliterator
+	 */
+	default TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth){
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), path -> Tree.directChildren(this, path), this.size(), order, maxDepth);
+	}
+
+	/**
+	 * Returns a sequential stream of all sub paths of a node in depth first order, not including the node itself.
+	 * @param fqpn path of the start node, the root path for the whole tree
+	 * @return new stream
+	 */
+	default Stream<String> stream(Object fqpn){
+		return StreamSupport.stream(this.spliterator(fqpn), false);
+	}
+
+	/**
+	 * Returns a parallel stream of all sub paths of a node in depth first order, not including the node itself.
+	 * The stream is split by subtrees.
+	 * @param fqpn path of the start node, the root path for the whole tree
+	 * @return new stream
+	 */
+	default Stream<String> parallelStream(Object fqpn){
+		return StreamSupport.stream(this.spliterator(fqpn), true);
+	}
+
+	/**
+	 * Returns the direct children of a node using only the tree interface.
+	 * @param tree the tree
+	 * @param fqpn path of the node
+	 * @return paths of the direct children in lexicographical order
+	 */
+	static List<String> directChildren(Tree<?> tree, String fqpn){
+		int depth = TreeSpliterator.depth(fqpn) + 1;
+		List<String> ret = new ArrayList<String>();
+		for(String path : tree.getChildrenNames(fqpn)){
+			if(TreeSpliterator.depth(path)==depth){
+				ret.add(path);
+			}
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
 	/**
 	 * Adds the node to the map with null value.
 	 * @param fqpn name of the node to be added
@@ -236,6 +344,26 @@ public interface Tree<E> extends Com_Node {
 		return map.containsKey(fqpnArray.get(fqpnArray.size()-1));
 	}
 
+	/**
+	 * Adds the node given by a path key to the map with null value.
+	 * The paths of all ancestors are cached in the key, so no new paths are created.
+	 * @param fqpn path of the node to be added
+	 * @param map map to add the node to
+	 * @return true on success, false otherwise
+	 */
+	static boolean addNodeWithNull(PathKey fqpn, Map<String, ?> map){
+		if(fqpn==null||map==null){
+			return false;
+		}
+
+		for(String elem : fqpn.paths()){
+			if(!map.containsKey(elem)){
+				map.put(elem, null);
+			}
+		}
+		return map.containsKey(fqpn.key());
+	}
+
 	/**
 	 * Removes a node and all its children from the map
 	 * @param fqpn node to be removed
@@ -248,6 +376,10 @@ public interface Tree<E> extends Com_Node {
 			return false;
 		}
 
+		if(map instanceof PathMap && Tree.defaulSeparator.equals(separator)){
+			return ((PathMap<?>)map).removeSubtree(fqpn.toString());
+		}
+
 		for(String s:IsPath.GET_SUB_PATHS(separator, fqpn, map.keySet())){
 			map.remove(s);
 		}
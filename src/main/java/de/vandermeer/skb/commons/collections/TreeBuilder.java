@@ -0,0 +1,189 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A builder that loads a batch of paths and values into a new tree.
+ *
+ * <p>
+ * Adding nodes one by one with {@link Tree#addNodeWithValue(Object, Object)} computes all ancestor paths of every node
+ * and looks each of them up, and the backing {@link PathMap} updates its sorted index and child counts for every new node.
+ * The builder collects all paths first. A build then creates every node and every missing ancestor once,
+ * counts children while creating nodes, and sorts all paths once for the index.
+ * The resulting tree is the same as adding all nodes in the order they were given to the builder.
+ * </p>
+ *
+ * <p>
+ * A builder can be used for several builds, each build creates a new tree.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class TreeBuilder<E> {
+
+	/** Marker for nodes added without a value */
+	private static final Object NO_VALUE = new Object();
+
+	/** Paths in the order they were added */
+	final List<String> keys;
+
+	/** Values for the paths, {@link #NO_VALUE} for nodes without value */
+	final List<Object> values;
+
+	/** Creates a new builder. */
+	public TreeBuilder(){
+		this(16);
+	}
+
+	/**
+	 * Creates a new builder.
+	 * @param expectedSize expected number of nodes and values
+	 */
+	public TreeBuilder(int expectedSize){
+		this.keys = new ArrayList<String>(Math.max(expectedSize, 0));
+		this.values = new ArrayList<Object>(Math.max(expectedSize, 0));
+	}
+
+	/**
+	 * Adds a node without a value.
+	 * @param fqpn path of the node
+	 * @return self to allow chaining
+	 */
+	public TreeBuilder<E> addNode(Object fqpn){
+		return this.append(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), NO_VALUE);
+	}
+
+	/**
+	 * Adds a node with a value.
+	 * @param fqpn path of the node
+	 * @param value value of the node
+	 * @return self to allow chaining
+	 */
+	public TreeBuilder<E> add(Object fqpn, E value){
+		return this.append(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), value);
+	}
+
+	/**
+	 * Adds a node with a value.
+	 * @param path path for the FQPN
+	 * @param name name for the FQPN
+	 * @param value value of the node
+	 * @return self to allow chaining
+	 */
+	public TreeBuilder<E> add(Object path, Object name, E value){
+		return this.append(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString(), value);
+	}
+
+	/**
+	 * Adds nodes with values.
+	 * @param map map of paths to values, nothing is added if null
+	 * @return self to allow chaining
+	 */
+	public TreeBuilder<E> addAll(Map<?, ? extends E> map){
+		if(map!=null){
+			for(Entry<?, ? extends E> entry : map.entrySet()){
+				this.add(entry.getKey(), entry.getValue());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a path with a value.
+	 * @param key path
+	 * @param value value, {@link #NO_VALUE} for nodes without value
+	 * @return self to allow chaining
+	 */
+	private TreeBuilder<E> append(String key, Object value){
+		this.keys.add(key);
+		this.values.add(value);
+		return this;
+	}
+
+	/**
+	 * Returns the number of nodes and values added to the builder.
+	 * @return number of added nodes and values
+	 */
+	public int size(){
+		return this.keys.size();
+	}
+
+	/**
+	 * Removes all nodes and values from the builder.
+	 */
+	public void clear(){
+		this.keys.clear();
+		this.values.clear();
+	}
+
+	/**
+	 * Builds a new flat tree, a node added several times has the last value added for it.
+	 * @return new tree
+	 */
+	@SuppressWarnings("unchecked")
+	public FlatTree<E> buildFlatTree(){
+		FlatTree<E> ret = new FlatTree<E>();
+		ret.sval.load(this.keys, (node, i) -> {
+			Object value = this.values.get(i);
+			if(value!=NO_VALUE){
+				node.value = (E)value;
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Builds a new flat multi tree, all values of a node are added in the order they were added to the builder.
+	 * @return new tree
+	 */
+	@SuppressWarnings("unchecked")
+	public FlatMultiTree<E> buildFlatMultiTree(){
+		FlatMultiTree<E> ret = new FlatMultiTree<E>();
+		ret.sval.load(this.keys, (node, i) -> {
+			Object value = this.values.get(i);
+			if(value!=NO_VALUE){
+				if(node.value==null){
+					node.value = new ComCollection<E>();
+				}
+				node.value.add((E)value);
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Builds a new compact multi tree, all values of a node are added in the order they were added to the builder.
+	 * @return new tree
+	 */
+	public CompactMultiTree<E> buildCompactMultiTree(){
+		CompactMultiTree<E> ret = new CompactMultiTree<E>();
+		ret.sval.load(this.keys, (node, i) -> {
+			Object value = this.values.get(i);
+			if(value!=NO_VALUE){
+				node.value = CompactMultiTree.add(node.value, value);
+			}
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,316 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Differences between two trees: paths added, removed, and paths with changed values.
+ *
+ * <p>
+ * A diff is computed in a single merge pass over the paths of both trees in sorted order.
+ * Flat, concurrent and persistent trees provide their paths already sorted, so the diff costs O(n) plus the value lookups,
+ * other trees are sorted first.
+ * Values are compared with {@link Object#equals(Object)}, multi-value trees compare all values of a node in order.
+ * </p>
+ *
+ * <p>
+ * A diff can be applied as a patch to any tree, which turns a tree equal to the first tree into a tree equal to the second one.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class TreeDiff<E> {
+
+	/** Paths only in the second tree with their values, in sorted order */
+	final Map<String, List<E>> added = new LinkedHashMap<String, List<E>>();
+
+	/** Paths only in the first tree, in sorted order */
+	final Set<String> removed = new LinkedHashSet<String>();
+
+	/** Paths in both trees with different values, with the values of the second tree, in sorted order */
+	final Map<String, List<E>> changed = new LinkedHashMap<String, List<E>>();
+
+	/** Creates a new, empty diff. */
+	TreeDiff(){}
+
+	/**
+	 * Computes the differences between two trees.
+	 * @param from first tree, for instance the tree currently in use
+	 * @param to second tree, for instance a newly loaded tree
+	 * @param <E> type of the values
+	 * @return differences from the first to the second tree
+	 * @throws IllegalArgumentException if a tree is null
+	 */
+	public static <E> TreeDiff<E> compute(Tree<? extends E> from, Tree<? extends E> to){
+		if(from==null || to==null){
+			throw new IllegalArgumentException("trees must not be null");
+		}
+		TreeDiff<E> ret = new TreeDiff<E>();
+		Iterator<Entry<String, List<E>>> left = TreeDiff.entries(from);
+		Iterator<Entry<String, List<E>>> right = TreeDiff.entries(to);
+		Entry<String, List<E>> l = TreeDiff.next(left);
+		Entry<String, List<E>> r = TreeDiff.next(right);
+		while(l!=null || r!=null){
+			int cmp = (l==null)?1:(r==null)?-1:l.getKey().compareTo(r.getKey());
+			if(cmp<0){
+				ret.removed.add(l.getKey());
+				l = TreeDiff.next(left);
+			}
+			else if(cmp>0){
+				ret.added.put(r.getKey(), r.getValue());
+				r = TreeDiff.next(right);
+			}
+			else{
+				if(!l.getValue().equals(r.getValue())){
+					ret.changed.put(r.getKey(), r.getValue());
+				}
+				l = TreeDiff.next(left);
+				r = TreeDiff.next(right);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the paths that exist only in the second tree.
+	 * @return read-only set of added paths in sorted order
+	 */
+	public Set<String> getAdded(){
+		return Collections.unmodifiableSet(this.added.keySet());
+	}
+
+	/**
+	 * Returns the paths that exist only in the first tree.
+	 * @return read-only set of removed paths in sorted order
+	 */
+	public Set<String> getRemoved(){
+		return Collections.unmodifiableSet(this.removed);
+	}
+
+	/**
+	 * Returns the paths that exist in both trees with different values.
+	 * @return read-only set of changed paths in sorted order
+	 */
+	public Set<String> getChanged(){
+		return Collections.unmodifiableSet(this.changed.keySet());
+	}
+
+	/**
+	 * Returns the values an added or changed path has in the second tree.
+	 * @param path added or changed path
+	 * @return read-only list of values, empty if the path has no value, null if the path was not added or changed
+	 */
+	public List<E> getValues(String path){
+		List<E> ret = this.added.get(path);
+		if(ret==null){
+			ret = this.changed.get(path);
+		}
+		return (ret==null)?null:Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * Returns the value an added or changed path has in the second tree, the first value for multi-value trees.
+	 * @param path added or changed path
+	 * @return value, null if the path has no value or was not added or changed
+	 */
+	public E getValue(String path){
+		List<E> values = this.getValues(path);
+		return (values==null || values.isEmpty())?null:values.get(0);
+	}
+
+	/**
+	 * Tests if both trees were equal.
+	 * @return true if there are no differences, false otherwise
+	 */
+	public boolean isEmpty(){
+		return this.size()==0;
+	}
+
+	/**
+	 * Returns the number of differences.
+	 * @return number of added, removed and changed paths
+	 */
+	public int size(){
+		return this.added.size() + this.removed.size() + this.changed.size();
+	}
+
+	/**
+	 * Applies the differences to a tree.
+	 * Removed paths are removed with all their sub paths, added paths are created, and added or changed paths get the values of the second tree.
+	 * Multi-value trees get all values of a path, other trees the first value.
+	 * Listeners of the tree are notified with a single batch.
+	 * @param target tree to change
+	 * @return true if the differences were applied, false if target was null
+	 */
+	public boolean apply(Tree<E> target){
+		if(target==null){
+			return false;
+		}
+		boolean multi = (target instanceof FlatMultiTree || target instanceof CompactMultiTree || target instanceof ConcurrentFlatMultiTree);
+		return TreeEvents.batch(TreeMerger.target(target).events(), () -> {
+			String root = null;
+			for(String path : this.removed){
+				//sub paths of a removed path are gone already
+				if(root==null || !path.startsWith(PathMap.subPathPrefix(root))){
+					target.removeNode(path);
+					root = path;
+				}
+			}
+			for(Entry<String, List<E>> entry : this.added.entrySet()){
+				TreeDiff.set(target, entry.getKey(), entry.getValue(), multi);
+			}
+			for(Entry<String, List<E>> entry : this.changed.entrySet()){
+				TreeDiff.set(target, entry.getKey(), entry.getValue(), multi);
+			}
+			return true;
+		});
+	}
+
+	@Override
+	public String toString(){
+		return "added=" + this.added.keySet() + ", removed=" + this.removed + ", changed=" + this.changed.keySet();
+	}
+
+	/**
+	 * Sets the values of a path in a tree, creating the path if required.
+	 * @param target tree to change
+	 * @param path path to set
+	 * @param values new values, empty to clear the value
+	 * @param multi true if the tree is a multi-value tree
+	 * @param <E> type of the values
+	 */
+	static <E> void set(Tree<E> target, String path, List<E> values, boolean multi){
+		if(values.isEmpty() || multi){
+			target.addNode(path);
+			target.removeValue(path);
+		}
+		if(multi){
+			for(E value : values){
+				target.addNodeWithValue(path, value);
+			}
+		}
+		else if(!values.isEmpty()){
+			target.addNodeWithValue(path, values.get(0));
+		}
+	}
+
+	/**
+	 * Returns the next element of an iterator.
+	 * @param it iterator
+	 * @param <T> type of the elements
+	 * @return next element, null if there is none
+	 */
+	static <T> T next(Iterator<T> it){
+		return (it.hasNext())?it.next():null;
+	}
+
+	/**
+	 * Returns all paths of a tree with their values in sorted order.
+	 * @param tree the tree
+	 * @param <E> type of the values
+	 * @return iterator over paths and values, nodes without value have an empty list
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> Iterator<Entry<String, List<E>>> entries(Tree<?> tree){
+		if(tree instanceof FlatTree){
+			PathMap<?> map = ((FlatTree<?>)tree).sval;
+			return TreeDiff.entries(map.sortedKeys().iterator(), key -> TreeDiff.<E>single(map.get(key)));
+		}
+		if(tree instanceof FlatMultiTree){
+			PathMap<? extends Collection<?>> map = ((FlatMultiTree<?>)tree).sval;
+			return TreeDiff.entries(map.sortedKeys().iterator(), key -> TreeDiff.<E>multi(map.get(key)));
+		}
+		if(tree instanceof CompactMultiTree){
+			PathMap<?> map = ((CompactMultiTree<?>)tree).sval;
+			return TreeDiff.entries(map.sortedKeys().iterator(), key -> CompactMultiTree.<E>values(map.get(key)));
+		}
+		if(tree instanceof ConcurrentFlatTree){
+			Map<String, ?> map = ((ConcurrentFlatTree<?>)tree).sval.snapshot(null);
+			return TreeDiff.entries(map.keySet().iterator(), key -> TreeDiff.<E>single(map.get(key)));
+		}
+		if(tree instanceof ConcurrentFlatMultiTree){
+			Map<String, ? extends Collection<?>> map = ((ConcurrentFlatMultiTree<?>)tree).sval.snapshot(null);
+			return TreeDiff.entries(map.keySet().iterator(), key -> TreeDiff.<E>multi(map.get(key)));
+		}
+		if(tree instanceof SubtreeView){
+			return TreeDiff.entries(((SubtreeView<?>)tree).getCopy());
+		}
+		if(tree instanceof PersistentTree){
+			final PersistentTree.NodeIterator<?> it = new PersistentTree.NodeIterator<Object>(((PersistentTree<Object>)tree).root);
+			return new Iterator<Entry<String, List<E>>>(){
+				@Override public boolean hasNext(){return it.hasNext();}
+				@Override public Entry<String, List<E>> next(){
+					PersistentTree.Node<?> node = it.next();
+					return new SimpleImmutableEntry<String, List<E>>(node.key, TreeDiff.<E>single(node.value));
+				}
+			};
+		}
+		return TreeDiff.entries(new TreeSet<String>(tree.keys()).iterator(), key -> TreeDiff.<E>single(tree.getValue(key)));
+	}
+
+	/**
+	 * Returns an iterator over paths and their values.
+	 * @param keys paths in sorted order
+	 * @param values function returning the values of a path
+	 * @param <E> type of the values
+	 * @return new iterator
+	 */
+	static <E> Iterator<Entry<String, List<E>>> entries(Iterator<String> keys, Function<String, List<E>> values){
+		return new Iterator<Entry<String, List<E>>>(){
+			@Override public boolean hasNext(){return keys.hasNext();}
+			@Override public Entry<String, List<E>> next(){
+				String key = keys.next();
+				return new SimpleImmutableEntry<String, List<E>>(key, values.apply(key));
+			}
+		};
+	}
+
+	/**
+	 * Returns the value list of a single value.
+	 * @param value the value
+	 * @param <E> type of the values
+	 * @return empty list if value is null, a list with the value otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> List<E> single(Object value){
+		return (value==null)?Collections.<E>emptyList():Collections.singletonList((E)value);
+	}
+
+	/**
+	 * Returns the value list of a multi-value node.
+	 * @param values values of the node
+	 * @param <E> type of the values
+	 * @return empty list if values is null, a list with all values otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> List<E> multi(Collection<?> values){
+		return (values==null || values.isEmpty())?Collections.<E>emptyList():new ArrayList<E>((Collection<E>)values);
+	}
+}
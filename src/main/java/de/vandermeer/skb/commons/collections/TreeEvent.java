@@ -0,0 +1,122 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+/**
+ * A change of a tree or table, delivered to a {@link TreeListener}.
+ *
+ * <p>
+ * For multi-value trees and tables a value change describes a single value: a value added to a node has the new value set,
+ * a value removed from a node has the old value set. Nodes of multi-value trees and tables are added without a value,
+ * followed by a value change for every value they were added with.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public final class TreeEvent<E> {
+
+	/** Types of changes. */
+	public enum Type {
+		/** A node was added, its new value is set if the node was added with a value */
+		NODE_ADDED,
+
+		/** The value of an existing node was changed */
+		VALUE_CHANGED,
+
+		/** A node without children was removed, its old value is set */
+		NODE_REMOVED,
+
+		/** A node and all its sub paths were removed, the root path for a cleared tree or table */
+		SUBTREE_REMOVED;
+	}
+
+	/** Tree or table that was changed */
+	private final Object source;
+
+	/** Type of the change */
+	private final Type type;
+
+	/** Path of the changed node */
+	private final String path;
+
+	/** Value before the change */
+	private final E oldValue;
+
+	/** Value after the change */
+	private final E newValue;
+
+	/**
+	 * Creates a new event.
+	 * @param source tree or table that was changed
+	 * @param type type of the change
+	 * @param path path of the changed node
+	 * @param oldValue value before the change, can be null
+	 * @param newValue value after the change, can be null
+	 */
+	TreeEvent(Object source, Type type, String path, E oldValue, E newValue){
+		this.source = source;
+		this.type = type;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	/**
+	 * Returns the tree or table that was changed.
+	 * @return source of the event
+	 */
+	public Object getSource(){
+		return this.source;
+	}
+
+	/**
+	 * Returns the type of the change.
+	 * @return change type
+	 */
+	public Type getType(){
+		return this.type;
+	}
+
+	/**
+	 * Returns the path of the changed node.
+	 * @return path
+	 */
+	public String getPath(){
+		return this.path;
+	}
+
+	/**
+	 * Returns the value before the change.
+	 * @return old value, null if not known or not set
+	 */
+	public E getOldValue(){
+		return this.oldValue;
+	}
+
+	/**
+	 * Returns the value after the change.
+	 * @return new value, null if not set
+	 */
+	public E getNewValue(){
+		return this.newValue;
+	}
+
+	@Override
+	public String toString(){
+		return this.type + " " + this.path + " (" + this.oldValue + " -> " + this.newValue + ")";
+	}
+}
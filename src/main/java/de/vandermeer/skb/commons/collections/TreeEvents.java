@@ -0,0 +1,308 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+
+/**
+ * Listeners and pending events of a tree or table.
+ *
+ * <p>
+ * Trees and tables keep a reference to this class only while listeners are registered.
+ * All methods that are called by a changing tree or table exist in a static form that accepts a null reference,
+ * so that a change without listeners costs a single null test.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+final class TreeEvents<E> {
+
+	/** Tree or table that is observed */
+	final Object source;
+
+	/** Registered listeners */
+	final List<TreeListener<E>> listeners = new CopyOnWriteArrayList<TreeListener<E>>();
+
+	/** Events waiting for the end of the current batch */
+	List<TreeEvent<E>> pending = new ArrayList<TreeEvent<E>>();
+
+	/** Number of open batches */
+	int depth;
+
+	/**
+	 * Creates new event support.
+	 * @param source tree or table that is observed
+	 */
+	TreeEvents(Object source){
+		this.source = source;
+	}
+
+	/**
+	 * Adds a listener.
+	 * @param events current event support, null if none exists
+	 * @param source tree or table that is observed
+	 * @param listener new listener
+	 * @param <E> type of the values
+	 * @return event support with the listener added
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	static <E> TreeEvents<E> addListener(TreeEvents<E> events, Object source, TreeListener<E> listener){
+		if(listener==null){
+			throw new IllegalArgumentException("listener must not be null");
+		}
+		TreeEvents<E> ret = (events==null)?new TreeEvents<E>(source):events;
+		ret.listeners.add(listener);
+		return ret;
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param events current event support, null if none exists
+	 * @param listener listener to remove
+	 * @param <E> type of the values
+	 * @return event support, null if no listener is left and no batch is open
+	 */
+	static <E> TreeEvents<E> removeListener(TreeEvents<E> events, TreeListener<E> listener){
+		if(events==null){
+			return null;
+		}
+		events.listeners.remove(listener);
+		return (events.listeners.isEmpty() && events.depth==0)?null:events;
+	}
+
+	/**
+	 * Adds an event, it is delivered at the end of the current batch or immediately if no batch is open.
+	 * @param events event support, nothing happens if null
+	 * @param type type of the change
+	 * @param path path of the changed node
+	 * @param oldValue value before the change
+	 * @param newValue value after the change
+	 * @param <E> type of the values
+	 */
+	static <E> void fire(TreeEvents<E> events, TreeEvent.Type type, String path, E oldValue, E newValue){
+		if(events!=null){
+			events.pending.add(new TreeEvent<E>(events.source, type, path, oldValue, newValue));
+			if(events.depth==0){
+				events.deliver();
+			}
+		}
+	}
+
+	/**
+	 * Runs changes as a single batch, all events are delivered together when the changes are done.
+	 * Batches can be nested, events are delivered at the end of the outermost batch.
+	 * @param events event support, the changes are simply run if null
+	 * @param changes changes to run
+	 * @param <E> type of the values
+	 * @param <T> type of the result
+	 * @return result of the changes
+	 */
+	static <E, T> T batch(TreeEvents<E> events, Supplier<T> changes){
+		if(events==null){
+			return changes.get();
+		}
+		events.depth++;
+		try{
+			return changes.get();
+		}
+		finally{
+			events.depth--;
+			if(events.depth==0){
+				events.deliver();
+			}
+		}
+	}
+
+	/**
+	 * Returns a path and all its ancestors that are not yet in a map, excluding the root path.
+	 * @param events event support, nothing is computed if null
+	 * @param key path
+	 * @param map map to test
+	 * @return missing paths with the top most path first, null if events was null
+	 */
+	static List<String> missing(TreeEvents<?> events, String key, Map<String, ?> map){
+		if(events==null){
+			return null;
+		}
+		List<String> ret = new ArrayList<String>();
+		for(String path=key; path!=null && !map.containsKey(path); path=PathMap.parentPath(path)){
+			if(!ret.isEmpty() && Tree.defaulSeparator.equals(path)){
+				break;
+			}
+			ret.add(path);
+		}
+		Collections.reverse(ret);
+		return ret;
+	}
+
+	/**
+	 * Fires the events for a path that was added or got a new value.
+	 * Paths that were missing and are now in the map are reported as added, the path itself with its new value.
+	 * If the path existed before, a value change is reported if the value changed.
+	 * @param events event support, nothing happens if null
+	 * @param missing paths missing before the change, see {@link #missing(TreeEvents, String, Map)}
+	 * @param map map after the change
+	 * @param key changed path
+	 * @param oldValue value of the path before the change
+	 * @param newValue value of the path after the change
+	 * @param <E> type of the values
+	 */
+	static <E> void added(TreeEvents<E> events, List<String> missing, Map<String, ?> map, String key, E oldValue, E newValue){
+		if(events==null){
+			return;
+		}
+		TreeEvents.batch(events, () -> {
+			if(!TreeEvents.nodesAdded(events, missing, map, key, newValue) && map.containsKey(key) && !Objects.equals(oldValue, newValue)){
+				TreeEvents.fire(events, TreeEvent.Type.VALUE_CHANGED, key, oldValue, newValue);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Fires the events for a path of a multi-value map that was added or got a value appended.
+	 * Paths that were missing and are now in the map are reported as added, the appended value as a value change.
+	 * @param events event support, nothing happens if null
+	 * @param missing paths missing before the change, see {@link #missing(TreeEvents, String, Map)}
+	 * @param map map after the change
+	 * @param key changed path
+	 * @param value value appended to the path, null if no value was appended
+	 * @param <E> type of the values
+	 */
+	static <E> void appended(TreeEvents<E> events, List<String> missing, Map<String, ?> map, String key, E value){
+		if(events==null){
+			return;
+		}
+		TreeEvents.batch(events, () -> {
+			TreeEvents.nodesAdded(events, missing, map, key, null);
+			if(value!=null && map.containsKey(key)){
+				TreeEvents.fire(events, TreeEvent.Type.VALUE_CHANGED, key, null, value);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Fires a value change for every value removed from and every value added to a path of a multi-value map.
+	 * @param events event support, nothing happens if null
+	 * @param key changed path
+	 * @param removed removed values, can be null
+	 * @param added added values, can be null
+	 * @param <E> type of the values
+	 */
+	static <E> void values(TreeEvents<E> events, String key, Collection<E> removed, Collection<E> added){
+		if(events==null){
+			return;
+		}
+		TreeEvents.batch(events, () -> {
+			if(removed!=null){
+				for(E value : removed){
+					TreeEvents.fire(events, TreeEvent.Type.VALUE_CHANGED, key, value, null);
+				}
+			}
+			if(added!=null){
+				for(E value : added){
+					TreeEvents.fire(events, TreeEvent.Type.VALUE_CHANGED, key, null, value);
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Fires an added event for all missing paths that are now in the map.
+	 * @param events event support
+	 * @param missing paths missing before the change
+	 * @param map map after the change
+	 * @param key changed path
+	 * @param value value reported for the changed path
+	 * @param <E> type of the values
+	 * @return true if the changed path was added, false otherwise
+	 */
+	private static <E> boolean nodesAdded(TreeEvents<E> events, List<String> missing, Map<String, ?> map, String key, E value){
+		boolean ret = false;
+		for(String path : missing){
+			if(map.containsKey(path)){
+				boolean self = path.equals(key);
+				ret = ret || self;
+				TreeEvents.fire(events, TreeEvent.Type.NODE_ADDED, path, null, (self)?value:null);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Fires the events for a table row that was added with all its columns.
+	 * @param events event support, nothing happens if null
+	 * @param row path of the row
+	 * @param columns columns of the row
+	 * @param <E> type of the values
+	 */
+	static <E> void rowAdded(TreeEvents<E> events, String row, Set<IsAttributeKey> columns){
+		if(events==null){
+			return;
+		}
+		TreeEvents.batch(events, () -> {
+			TreeEvents.fire(events, TreeEvent.Type.NODE_ADDED, row, null, null);
+			for(IsAttributeKey col : columns){
+				TreeEvents.fire(events, TreeEvent.Type.NODE_ADDED, row + Table.defaulSeparator + col.key(), null, null);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the type of event for removing a path and all its sub paths.
+	 * @param events event support, nothing is computed if null
+	 * @param key path to be removed
+	 * @param map map the path is removed from
+	 * @return type of event, null if events was null or nothing will be removed
+	 */
+	static TreeEvent.Type removal(TreeEvents<?> events, String key, PathMap<?> map){
+		if(events==null){
+			return null;
+		}
+		if(!map.subPaths(key).isEmpty()){
+			return TreeEvent.Type.SUBTREE_REMOVED;
+		}
+		return (map.containsKey(key))?TreeEvent.Type.NODE_REMOVED:null;
+	}
+
+	/**
+	 * Delivers all pending events to all listeners.
+	 */
+	void deliver(){
+		if(this.pending.isEmpty()){
+			return;
+		}
+		List<TreeEvent<E>> events = Collections.unmodifiableList(this.pending);
+		this.pending = new ArrayList<TreeEvent<E>>();
+		for(TreeListener<E> listener : this.listeners){
+			listener.changed(events);
+		}
+	}
+}
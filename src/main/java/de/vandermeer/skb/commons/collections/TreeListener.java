@@ -0,0 +1,41 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.List;
+
+/**
+ * Listener for changes of a tree or table.
+ *
+ * <p>
+ * Events are delivered in batches after a change is done.
+ * A batch contains all events of a single method call, for instance all nodes created by adding a path,
+ * or all events of a {@code batch()} call of the tree or table.
+ * Listeners are called in the thread that changed the tree or table.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+@FunctionalInterface
+public interface TreeListener<E> {
+
+	/**
+	 * Called after a tree or table was changed.
+	 * @param events read-only list of events in the order of the changes, never empty
+	 */
+	void changed(List<TreeEvent<E>> events);
+}
@@ -0,0 +1,709 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+
+/**
+ * Merges any tree into any other tree, resolving conflicts with a {@link MergePolicy}.
+ *
+ * <p>
+ * Source and target can be of different types, for instance a {@link FlatTree} can be merged into a {@link FlatMultiTree}.
+ * The values of multi-value sources are all merged, single value targets use the first value.
+ * Trees of this package are read and written directly, so every node of the source costs a single lookup in the target.
+ * </p>
+ *
+ * <p>
+ * If a fork/join pool is given, the top level subtrees of the source are merged in parallel.
+ * {@link ConcurrentFlatTree} and {@link ConcurrentFlatMultiTree} are changed from all tasks in parallel.
+ * For {@link FlatTree} and {@link FlatMultiTree} the tasks only look up nodes and resolve conflicts in parallel,
+ * the resulting changes are then applied by the calling thread. All other trees are merged sequentially.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class TreeMerger<E> {
+
+	/** Policy for conflicts */
+	protected final MergePolicy<E> policy;
+
+	/** Pool for parallel merges, null for sequential merges */
+	protected final ForkJoinPool pool;
+
+	/**
+	 * Creates a new sequential merger.
+	 * @param policy policy for conflicts
+	 */
+	public TreeMerger(MergePolicy<E> policy){
+		this(policy, null);
+	}
+
+	/**
+	 * Creates a new merger.
+	 * @param policy policy for conflicts
+	 * @param pool pool to merge top level subtrees in parallel, null to merge sequentially
+	 * @throws IllegalArgumentException if policy is null
+	 */
+	public TreeMerger(MergePolicy<E> policy, ForkJoinPool pool){
+		if(policy==null){
+			throw new IllegalArgumentException("policy must not be null");
+		}
+		this.policy = policy;
+		this.pool = pool;
+	}
+
+	/**
+	 * Merges a source tree into a target tree.
+	 * Nodes that do not exist in the target are added, conflicts are resolved by the policy of this merger.
+	 * @param target tree to merge into
+	 * @param source tree to merge from, not changed
+	 * @return statistics of the merge, null if target or source was null
+	 */
+	public MergeStatistics merge(Tree<E> target, Tree<?> source){
+		if(target==null || source==null){
+			return null;
+		}
+		Target<E> adapter = TreeMerger.target(target);
+		return TreeEvents.batch(adapter.events(), () -> this.merge(adapter, source));
+	}
+
+	/**
+	 * Merges a source tree into a target.
+	 * @param adapter adapter of the target tree
+	 * @param source tree to merge from, not changed
+	 * @return statistics of the merge
+	 */
+	private MergeStatistics merge(Target<E> adapter, Tree<?> source){
+		MergeStatistics ret = new MergeStatistics();
+		if(this.pool==null || !adapter.parallel()){
+			TreeMerger.<E>forEach(source, (key, values) -> adapter.merge(key, values, this.policy, ret, null));
+			return ret;
+		}
+
+		Map<String, List<SourceNode<E>>> groups = new LinkedHashMap<String, List<SourceNode<E>>>();
+		TreeMerger.<E>forEach(source, (key, values) -> {
+			String top = TreeMerger.topLevel(key);
+			List<SourceNode<E>> group = groups.get(top);
+			if(group==null){
+				group = new ArrayList<SourceNode<E>>();
+				groups.put(top, group);
+			}
+			group.add(new SourceNode<E>(key, values));
+		});
+
+		List<ForkJoinTask<Batch>> tasks = new ArrayList<ForkJoinTask<Batch>>(groups.size());
+		for(List<SourceNode<E>> group : groups.values()){
+			tasks.add(this.pool.submit(() -> {
+				Batch batch = new Batch(adapter.concurrent());
+				for(SourceNode<E> node : group){
+					adapter.merge(node.key, node.values, this.policy, batch.stats, batch.writes);
+				}
+				return batch;
+			}));
+		}
+		//all tasks must have finished reading the target before the first deferred write changes it
+		List<Batch> batches = new ArrayList<Batch>(tasks.size());
+		for(ForkJoinTask<Batch> task : tasks){
+			batches.add(task.join());
+		}
+		for(Batch batch : batches){
+			ret.add(batch.stats);
+			if(batch.writes!=null){
+				for(Runnable write : batch.writes){
+					write.run();
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Calls an action for all nodes of a tree with their values.
+	 * Nodes are visited in sorted path order, so a parent is always merged before its children and targets
+	 * do not create it as an empty ancestor first.
+	 * @param source tree
+	 * @param action action called with the path and a list of values, a single value tree provides a list with one value
+	 * @param <E> type of the values
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> void forEach(Tree<?> source, BiConsumer<String, List<E>> action){
+		PathMap<?> index = SubtreeView.index(source);
+		if(index!=null){
+			TreeMerger.<E>forEach(source, index.sortedKeys(), action);
+		}
+		else if(source instanceof ConcurrentFlatTree){
+			for(Entry<String, ?> entry : ((ConcurrentFlatTree<?>)source).sval.snapshot(null).entrySet()){
+				action.accept(entry.getKey(), Collections.singletonList((E)entry.getValue()));
+			}
+		}
+		else if(source instanceof ConcurrentFlatMultiTree){
+			for(Entry<String, ? extends Collection<?>> entry : ((ConcurrentFlatMultiTree<?>)source).sval.snapshot(null).entrySet()){
+				action.accept(entry.getKey(), TreeMerger.<E>values(entry.getValue()));
+			}
+		}
+		else if(source instanceof SubtreeView){
+			SubtreeView<?> view = (SubtreeView<?>)source;
+			index = SubtreeView.index(view.parent);
+			if(index!=null){
+				//the paths of the view are a range of the parent's index, read in place with all values
+				TreeMerger.<E>forEach(view.parent, index.subPaths(view.root), action);
+			}
+			else{
+				//a copy of the subtree keeps all values of multi-value parents
+				TreeMerger.<E>forEach(view.getCopy(), action);
+			}
+		}
+		else{
+			Collection<String> keys = source.keys();
+			for(String key : (keys instanceof SortedSet)?keys:new TreeSet<String>(keys)){
+				action.accept(key, Collections.singletonList((E)source.getValue(key)));
+			}
+		}
+	}
+
+	/**
+	 * Calls an action for nodes of a tree using a {@link PathMap}, reading the map directly.
+	 * @param source a {@link FlatTree}, {@link FlatMultiTree} or {@link CompactMultiTree}
+	 * @param keys paths of the nodes in sorted order
+	 * @param action action called with the path and a list of values
+	 * @param <E> type of the values
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> void forEach(Tree<?> source, Iterable<String> keys, BiConsumer<String, List<E>> action){
+		if(source instanceof FlatMultiTree){
+			PathMap<? extends Collection<?>> sval = ((FlatMultiTree<?>)source).sval;
+			for(String key : keys){
+				action.accept(key, TreeMerger.<E>values(sval.get(key)));
+			}
+		}
+		else if(source instanceof CompactMultiTree){
+			PathMap<?> sval = ((CompactMultiTree<?>)source).sval;
+			for(String key : keys){
+				action.accept(key, CompactMultiTree.<E>values(sval.get(key)));
+			}
+		}
+		else{
+			PathMap<?> sval = ((FlatTree<?>)source).sval;
+			for(String key : keys){
+				action.accept(key, Collections.singletonList((E)sval.get(key)));
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the values of a multi-value node.
+	 * @param values values, can be null
+	 * @param <E> type of the values
+	 * @return copy of the values, empty if there are none
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> List<E> values(Collection<?> values){
+		if(values==null){
+			return Collections.emptyList();
+		}
+		return new ArrayList<E>((Collection<E>)values);
+	}
+
+	/**
+	 * Returns the first value of a list.
+	 * @param values list of values
+	 * @param <E> type of the values
+	 * @return first value, null if the list is empty
+	 */
+	static <E> E first(List<E> values){
+		return (values.isEmpty())?null:values.get(0);
+	}
+
+	/**
+	 * Returns the values that can be appended, all values that are not null and not a {@link NullObject}.
+	 * @param values list of values
+	 * @param <E> type of the values
+	 * @return values to append
+	 */
+	static <E> List<E> appendable(List<E> values){
+		List<E> ret = new ArrayList<E>(values.size());
+		for(E value : values){
+			if(value!=null && !(value instanceof NullObject)){
+				ret.add(value);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Creates a new collection with values.
+	 * @param values values for the collection, null values are ignored
+	 * @param <E> type of the values
+	 * @return new collection, null if there are no values
+	 */
+	static <E> ComCollection<E> collection(List<E> values){
+		ComCollection<E> ret = null;
+		for(E value : values){
+			if(value!=null){
+				if(ret==null){
+					ret = new ComCollection<E>();
+				}
+				ret.add(value);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the top level path of a path.
+	 * @param key path
+	 * @return path of the top level ancestor, the path itself if it is a top level path
+	 */
+	static String topLevel(String key){
+		int idx = key.indexOf(PathMap.SEPARATOR, 1);
+		return (idx<0)?key:key.substring(0, idx);
+	}
+
+	/**
+	 * Returns the adapter for a target tree.
+	 * @param target target tree
+	 * @param <E> type of the values
+	 * @return adapter
+	 */
+	static <E> Target<E> target(Tree<E> target){
+		if(target instanceof FlatTree){
+			return new FlatTarget<E>((FlatTree<E>)target);
+		}
+		if(target instanceof FlatMultiTree){
+			return new FlatMultiTarget<E>((FlatMultiTree<E>)target);
+		}
+		if(target instanceof CompactMultiTree){
+			return new CompactMultiTarget<E>((CompactMultiTree<E>)target);
+		}
+		if(target instanceof ConcurrentFlatTree){
+			return new ConcurrentTarget<E>((ConcurrentFlatTree<E>)target);
+		}
+		if(target instanceof ConcurrentFlatMultiTree){
+			return new ConcurrentMultiTarget<E>((ConcurrentFlatMultiTree<E>)target);
+		}
+		return new TreeTarget<E>(target);
+	}
+
+	/**
+	 * Runs a change now, or adds it to a list of deferred changes.
+	 * @param write the change
+	 * @param deferred list of deferred changes, null to run the change now
+	 */
+	static void write(Runnable write, List<Runnable> deferred){
+		if(deferred==null){
+			write.run();
+		}
+		else{
+			deferred.add(write);
+		}
+	}
+
+	/**
+	 * A node of the source tree.
+	 * @param <E> type of the values
+	 */
+	static final class SourceNode<E> {
+		final String key;
+		final List<E> values;
+
+		SourceNode(String key, List<E> values){
+			this.key = key;
+			this.values = values;
+		}
+	}
+
+	/**
+	 * Result of a parallel merge task.
+	 */
+	static final class Batch {
+		/** Statistics of the task */
+		final MergeStatistics stats = new MergeStatistics();
+
+		/** Deferred changes, null if changes are applied directly */
+		final List<Runnable> writes;
+
+		Batch(boolean concurrent){
+			this.writes = (concurrent)?null:new ArrayList<Runnable>();
+		}
+	}
+
+	/**
+	 * Adapter for the target of a merge.
+	 * @param <E> type of the values
+	 */
+	interface Target<E> {
+
+		/**
+		 * Merges a node of the source into the target.
+		 * @param key path of the node
+		 * @param values values of the node in the source
+		 * @param policy policy for conflicts
+		 * @param stats statistics to update
+		 * @param deferred list for deferred changes, null to change the target directly
+		 */
+		void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred);
+
+		/**
+		 * Tests if the target can be read by multiple threads while no changes are applied.
+		 * @return true if parallel merges are supported
+		 */
+		boolean parallel();
+
+		/**
+		 * Tests if the target can be changed by multiple threads.
+		 * @return true if changes do not need to be deferred
+		 */
+		boolean concurrent();
+
+		/**
+		 * Returns the event support of the target, all events of a merge are delivered as one batch.
+		 * @return event support, null if the target has no listeners (default)
+		 */
+		default TreeEvents<E> events(){
+			return null;
+		}
+	}
+
+	/** Adapter for flat trees. */
+	static final class FlatTarget<E> implements Target<E> {
+		final FlatTree<E> tree;
+
+		FlatTarget(FlatTree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			E incoming = TreeMerger.first(values);
+			PathMap.Node<E> node = this.tree.sval.node(key);
+			if(node==null){
+				stats.added++;
+				TreeMerger.write(() -> {
+					this.tree.sval.put(key, incoming);
+					TreeEvents.fire(this.tree.events, TreeEvent.Type.NODE_ADDED, key, null, incoming);
+				}, deferred);
+				return;
+			}
+			E value = policy.resolve(key, node.value, incoming);
+			if(value==node.value){
+				stats.kept++;
+			}
+			else{
+				stats.overwritten++;
+				TreeMerger.write(() -> {
+					E old = node.value;
+					node.value = value;
+					TreeEvents.fire(this.tree.events, TreeEvent.Type.VALUE_CHANGED, key, old, value);
+				}, deferred);
+			}
+		}
+
+		@Override
+		public TreeEvents<E> events() {
+			return this.tree.events;
+		}
+
+		@Override
+		public boolean parallel() {
+			return true;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return false;
+		}
+	}
+
+	/** Adapter for flat multi-value trees. */
+	static final class FlatMultiTarget<E> implements Target<E> {
+		final FlatMultiTree<E> tree;
+
+		FlatMultiTarget(FlatMultiTree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			PathMap.Node<ComCollection<E>> node = this.tree.sval.node(key);
+			if(node==null){
+				ComCollection<E> coll = TreeMerger.collection(values);
+				stats.added++;
+				TreeMerger.write(() -> {
+					this.tree.sval.put(key, coll);
+					TreeEvents.fire(this.tree.events, TreeEvent.Type.NODE_ADDED, key, null, null);
+					TreeEvents.values(this.tree.events, key, null, coll);
+				}, deferred);
+			}
+			else if(policy.appends()){
+				List<E> append = TreeMerger.appendable(values);
+				if(append.isEmpty()){
+					stats.kept++;
+					return;
+				}
+				stats.appended++;
+				TreeMerger.write(() -> {
+					if(node.value==null){
+						node.value = new ComCollection<E>();
+					}
+					node.value.addAll(append);
+					TreeEvents.values(this.tree.events, key, null, append);
+				}, deferred);
+			}
+			else{
+				E current = (node.value==null)?null:node.value.getFirst();
+				E value = policy.resolve(key, current, TreeMerger.first(values));
+				if(value==current){
+					stats.kept++;
+					return;
+				}
+				stats.overwritten++;
+				ComCollection<E> coll = TreeMerger.collection(Collections.singletonList(value));
+				TreeMerger.write(() -> {
+					ComCollection<E> old = node.value;
+					node.value = coll;
+					TreeEvents.values(this.tree.events, key, old, coll);
+				}, deferred);
+			}
+		}
+
+		@Override
+		public TreeEvents<E> events() {
+			return this.tree.events;
+		}
+
+		@Override
+		public boolean parallel() {
+			return true;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return false;
+		}
+	}
+
+	/** Adapter for compact multi-value trees. */
+	static final class CompactMultiTarget<E> implements Target<E> {
+		final CompactMultiTree<E> tree;
+
+		CompactMultiTarget(CompactMultiTree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			PathMap.Node<Object> node = this.tree.sval.node(key);
+			if(node==null){
+				Object stored = CompactMultiTarget.store(null, values);
+				stats.added++;
+				TreeMerger.write(() -> this.tree.sval.put(key, stored), deferred);
+			}
+			else if(policy.appends()){
+				List<E> append = TreeMerger.appendable(values);
+				if(append.isEmpty()){
+					stats.kept++;
+					return;
+				}
+				stats.appended++;
+				TreeMerger.write(() -> node.value = CompactMultiTarget.store(node.value, append), deferred);
+			}
+			else{
+				E current = CompactMultiTree.first(node.value);
+				E value = policy.resolve(key, current, TreeMerger.first(values));
+				if(value==current){
+					stats.kept++;
+					return;
+				}
+				stats.overwritten++;
+				Object stored = CompactMultiTarget.store(null, Collections.singletonList(value));
+				TreeMerger.write(() -> node.value = stored, deferred);
+			}
+		}
+
+		/**
+		 * Adds values to the stored values of a node.
+		 * @param stored stored values, can be null
+		 * @param values values to add, null values are ignored
+		 * @return new stored values
+		 */
+		static Object store(Object stored, List<?> values){
+			for(Object value : values){
+				if(value!=null){
+					stored = CompactMultiTree.add(stored, value);
+				}
+			}
+			return stored;
+		}
+
+		@Override
+		public boolean parallel() {
+			return true;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return false;
+		}
+	}
+
+	/** Adapter for concurrent trees, each node is merged atomically. */
+	static final class ConcurrentTarget<E> implements Target<E> {
+		final ConcurrentFlatTree<E> tree;
+
+		ConcurrentTarget(ConcurrentFlatTree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			E incoming = TreeMerger.first(values);
+			this.tree.sval.compute(key, (exists, current) -> {
+				if(!exists){
+					stats.added++;
+					return incoming;
+				}
+				E value = policy.resolve(key, current, incoming);
+				if(value==current){
+					stats.kept++;
+				}
+				else{
+					stats.overwritten++;
+				}
+				return value;
+			});
+		}
+
+		@Override
+		public boolean parallel() {
+			return true;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return true;
+		}
+	}
+
+	/** Adapter for concurrent multi-value trees, each node is merged atomically. */
+	static final class ConcurrentMultiTarget<E> implements Target<E> {
+		final ConcurrentFlatMultiTree<E> tree;
+
+		ConcurrentMultiTarget(ConcurrentFlatMultiTree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			this.tree.sval.compute(key, (exists, current) -> {
+				if(!exists){
+					stats.added++;
+					return TreeMerger.collection(values);
+				}
+				if(policy.appends()){
+					List<E> append = TreeMerger.appendable(values);
+					if(append.isEmpty()){
+						stats.kept++;
+						return current;
+					}
+					stats.appended++;
+					ComCollection<E> ret = (current==null)?new ComCollection<E>():current.getCopy();
+					ret.addAll(append);
+					return ret;
+				}
+				E first = (current==null)?null:current.getFirst();
+				E value = policy.resolve(key, first, TreeMerger.first(values));
+				if(value==first){
+					stats.kept++;
+					return current;
+				}
+				stats.overwritten++;
+				return TreeMerger.collection(Collections.singletonList(value));
+			});
+		}
+
+		@Override
+		public boolean parallel() {
+			return true;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return true;
+		}
+	}
+
+	/** Adapter for any other tree, using only the tree interface. */
+	static final class TreeTarget<E> implements Target<E> {
+		final Tree<E> tree;
+
+		TreeTarget(Tree<E> tree){
+			this.tree = tree;
+		}
+
+		@Override
+		public void merge(String key, List<E> values, MergePolicy<E> policy, MergeStatistics stats, List<Runnable> deferred) {
+			E incoming = TreeMerger.first(values);
+			if(!this.tree.containsNode(key)){
+				stats.added++;
+				if(incoming==null){
+					this.tree.addNode(key);
+				}
+				else{
+					this.tree.addNodeWithValue(key, incoming);
+				}
+				return;
+			}
+			E current = this.tree.getValue(key);
+			E value = policy.resolve(key, current, incoming);
+			if(value==current){
+				stats.kept++;
+			}
+			else{
+				stats.overwritten++;
+				if(value==null){
+					this.tree.removeValue(key);
+				}
+				else{
+					this.tree.addNodeWithValue(key, value);
+				}
+			}
+		}
+
+		@Override
+		public boolean parallel() {
+			return false;
+		}
+
+		@Override
+		public boolean concurrent() {
+			return false;
+		}
+	}
+}
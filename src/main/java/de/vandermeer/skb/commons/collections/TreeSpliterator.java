@@ -0,0 +1,220 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator over the sub paths of a tree node.
+ *
+ * <p>
+ * The spliterator keeps a list of pending nodes and asks the tree for the children of a node only when the node is visited,
+ * so nothing is copied up front. In depth first order a split hands over the first half of the pending nodes together with
+ * their complete subtrees, which keeps the encounter order and lets parallel streams work on disjoint subtrees.
+ * Breadth first spliterators do not split.
+ * </p>
+ *
+ * <p>
+ * The depth of the path returned last is available with {@link #getDepth()}, direct children of the start node have depth 1.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class TreeSpliterator implements Spliterator<String> {
+
+	/** Traversal orders. */
+	public static enum Order {
+		/** Depth first, each node followed by its subtree */
+		DEPTH_FIRST,
+
+		/** Breadth first, all nodes of one level before the nodes of the next level */
+		BREADTH_FIRST;
+	}
+
+	/** Function returning the paths of the direct children of a path */
+	protected final Function<String, ? extends Collection<String>> children;
+
+	/** Traversal order */
+	protected final Order order;
+
+	/** Maximum depth of returned paths */
+	protected final int maxDepth;
+
+	/** Pending nodes, the next node first */
+	protected final Deque<Pending> pending;
+
+	/** Estimated number of remaining paths */
+	protected long estimate;
+
+	/** Depth of the path returned last */
+	protected int depth;
+
+	/**
+	 * Creates a new spliterator over all sub paths of a path, not including the path itself.
+	 * @param fqpn path of the start node
+	 * @param children function returning the paths of the direct children of a path in the order they should be visited
+	 * @param estimate estimated number of paths, for instance the size of the tree
+	 * @param order traversal order
+	 * @param maxDepth maximum depth of returned paths relative to the start node, 1 for direct children only
+	 */
+	public TreeSpliterator(String fqpn, Function<String, ? extends Collection<String>> children, long estimate, Order order, int maxDepth){
+		this(children, order, maxDepth, new ArrayDeque<Pending>(), estimate);
+		if(fqpn!=null && maxDepth>0){
+			for(String child : children.apply(fqpn)){
+				this.pending.addLast(new Pending(child, 1, true));
+			}
+		}
+	}
+
+	private TreeSpliterator(Function<String, ? extends Collection<String>> children, Order order, int maxDepth, Deque<Pending> pending, long estimate){
+		this.children = children;
+		this.order = (order==null)?Order.DEPTH_FIRST:order;
+		this.maxDepth = maxDepth;
+		this.pending = pending;
+		this.estimate = estimate;
+		this.depth = 0;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super String> action) {
+		Pending next = this.pending.pollFirst();
+		if(next==null){
+			return false;
+		}
+		if(next.expand && next.depth<this.maxDepth){
+			Collection<String> children = this.children.apply(next.path);
+			if(this.order==Order.DEPTH_FIRST){
+				List<String> list = (children instanceof List)?(List<String>)children:new ArrayList<String>(children);
+				for(int i=list.size()-1; i>=0; i--){
+					this.pending.addFirst(new Pending(list.get(i), next.depth+1, true));
+				}
+			}
+			else{
+				for(String child : children){
+					this.pending.addLast(new Pending(child, next.depth+1, true));
+				}
+			}
+		}
+		this.depth = next.depth;
+		if(this.estimate>0){
+			this.estimate--;
+		}
+		action.accept(next.path);
+		return true;
+	}
+
+	@Override
+	public Spliterator<String> trySplit() {
+		if(this.order!=Order.DEPTH_FIRST || this.pending.isEmpty()){
+			return null;
+		}
+
+		int size = this.pending.size();
+		if(size==1){
+			//a single subtree: hand over its root and keep its children, which can be split next time
+			Pending only = this.pending.pollFirst();
+			Collection<String> children = (only.expand && only.depth<this.maxDepth)?this.children.apply(only.path):new ArrayList<String>();
+			for(String child : children){
+				this.pending.addLast(new Pending(child, only.depth+1, true));
+			}
+			Deque<Pending> split = new ArrayDeque<Pending>(1);
+			split.add(new Pending(only.path, only.depth, false));
+			if(this.pending.isEmpty()){
+				this.pending.add(split.getFirst());
+				return null;
+			}
+			if(this.estimate>0){
+				this.estimate--;
+			}
+			return new TreeSpliterator(this.children, this.order, this.maxDepth, split, 1);
+		}
+
+		int half = size/2;
+		Deque<Pending> split = new ArrayDeque<Pending>(half);
+		for(int i=0; i<half; i++){
+			split.addLast(this.pending.pollFirst());
+		}
+		long estimate = this.estimate*half/size;
+		this.estimate -= estimate;
+		return new TreeSpliterator(this.children, this.order, this.maxDepth, split, estimate);
+	}
+
+	@Override
+	public long estimateSize() {
+		return this.estimate;
+	}
+
+	@Override
+	public int characteristics() {
+		return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+	}
+
+	/**
+	 * Returns the depth of the path returned last, relative to the start node.
+	 * @return depth, 1 for direct children of the start node, 0 if no path has been returned yet
+	 */
+	public int getDepth(){
+		return this.depth;
+	}
+
+	/**
+	 * Returns the number of segments of a path.
+	 * @param fqpn path
+	 * @return number of segments, 0 for the root path
+	 */
+	static int depth(String fqpn){
+		int ret = 0;
+		boolean segment = false;
+		for(int i=0; i<fqpn.length(); i++){
+			if(fqpn.charAt(i)==PathMap.SEPARATOR){
+				segment = false;
+			}
+			else if(!segment){
+				segment = true;
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * A pending node.
+	 */
+	static final class Pending {
+		/** Path of the node */
+		final String path;
+
+		/** Depth relative to the start node */
+		final int depth;
+
+		/** True if the children of the node should be visited */
+		final boolean expand;
+
+		Pending(String path, int depth, boolean expand){
+			this.path = path;
+			this.depth = depth;
+			this.expand = expand;
+		}
+	}
+}
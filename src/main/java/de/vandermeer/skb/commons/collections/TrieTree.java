@@ -0,0 +1,630 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.misc.Pair;
+
+import de.vandermeer.skb.base.composite.coin.NullObject;
+import de.vandermeer.skb.base.utils.collections.Skb_CollectionTransformer;
+
+/**
+ * A trie implementation of the {@link Tree}, sharing path prefixes in memory.
+ *
+ * <p>
+ * Other than {@link FlatTree}, this tree does not store full paths as keys. Every node stores only its own path segment
+ * and a link to its parent, so a common prefix is stored exactly once no matter how many nodes are below it.
+ * Since the tree contract requires every ancestor of a node to be a node itself, each edge of the trie carries exactly one segment.
+ * Equal segments (for instance "value" or "type" that appear under many nodes) are also stored only once per tree.
+ * The tree counts the nodes using a segment, so segments are dropped when their last node is removed,
+ * and copies and subtrees only hold the segments of their own nodes.
+ * Full paths are only created when they are requested, for instance by {@link #keys()} or {@link #getChildrenNames(Object)}.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class TrieTree<E> implements Tree<E> {
+
+	/** Estimated heap size of a String object without its characters (object plus array header) */
+	static final int STRING_BYTES = 40;
+
+	/** Estimated heap size of a hash map entry including its table slot */
+	static final int MAP_ENTRY_BYTES = 36;
+
+	/** Estimated heap size of a hash map without entries */
+	static final int MAP_BYTES = 64;
+
+	/** Estimated heap size of a trie node */
+	static final int NODE_BYTES = 32;
+
+	/** Estimated heap size of a segment with its use count */
+	static final int SEGMENT_BYTES = 24;
+
+	/** Root node of the trie, representing the root path */
+	protected Node<E> root;
+
+	/** Canonical segment strings with the number of nodes using them, each distinct segment is stored only once */
+	protected Map<String, Segment> segments;
+
+	/** Number of nodes in the tree */
+	protected int size;
+
+	final boolean autoRoot=true;
+
+	/** Creates a new trie tree. */
+	public TrieTree(){
+		this.root = new Node<E>(null, null);
+		this.segments = new HashMap<String, Segment>();
+		this.size = 0;
+	}
+
+	@Override
+	public boolean addNode(Object fqpn) {
+		return this.addNode(null, fqpn);
+	}
+
+	@Override
+	public boolean addNode(Object path, Object name) {
+		return this.createNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString())!=null;
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object fqpn, E value) {
+		return this.addNodeWithValue(null, fqpn, value);
+	}
+
+	@Override
+	public boolean addNodeWithValue(Object path, Object name, E value) {
+		Node<E> node = this.createNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(node==null){
+			return false;
+		}
+		node.value = value;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.root = new Node<E>(null, null);
+		this.segments.clear();
+		this.size = 0;
+	}
+
+	@Override
+	public boolean containsNode(Object fqpn) {
+		return this.containsNode(null, fqpn);
+	}
+
+	@Override
+	public boolean containsNode(Object path, Object name) {
+		Node<E> node = this.findNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		return node!=null && node.present;
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object fqpn) {
+		return this.getChildrenNames(null, fqpn);
+	}
+
+	@Override
+	public Collection<String> getChildrenNames(Object path, Object name) {
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		List<String> ret = new ArrayList<String>();
+		Node<E> node = this.findNode(key);
+		if(node!=null){
+			Map<String, E> map = new LinkedHashMap<String, E>();
+			TrieTree.collect(node, new StringBuilder(TrieTree.trimPath(key)), map);
+			map.remove(key);
+			ret.addAll(map.keySet());
+		}
+		return ret;
+	}
+
+	@Override
+	public TrieTree<E> getCopy() {
+		TrieTree<E> ret = new TrieTree<E>();
+		ret.root = this.root.copy(null, ret);
+		ret.size = this.size;
+		return ret;
+	}
+
+	@Override
+	public TrieTree<E> getSubtree(Object fqpn) {
+		return this.getSubtree(null, fqpn);
+	}
+
+	@Override
+	public TrieTree<E> getSubtree(Object path, Object name) {
+		TrieTree<E> ret = new TrieTree<E>();
+		String key = Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString();
+		Node<E> node = this.findNode(key);
+		if(node!=null && node.children!=null){
+			//rebuild the ancestor chain as structural nodes, then copy all children
+			Node<E> target = ret.createStructure(key);
+			target.children = new HashMap<String, Node<E>>(node.children.size()*4/3+1);
+			for(Node<E> child : node.children.values()){
+				Node<E> copy = child.copy(target, ret);
+				target.children.put(copy.segment, copy);
+				ret.size += copy.count();
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public E getValue(Object fqpn) {
+		return this.getValue(null, fqpn);
+	}
+
+	@Override
+	public E getValue(Object path, Object name) {
+		Node<E> node = this.findNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(node!=null){
+			return node.value;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasChildren(Object fqpn) {
+		return this.hasChildren(null, fqpn);
+	}
+
+	@Override
+	public boolean hasChildren(Object path, Object name) {
+		Node<E> node = this.findNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		return node!=null && node.present && node.children!=null && node.children.size()>0;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size==0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Other than the flat trees, this tree does not store full paths. The returned set is a read-only copy created on each call.
+	 */
+	@Override
+	public Set<String> keys() {
+		Map<String, E> map = new LinkedHashMap<String, E>();
+		TrieTree.collect(this.root, new StringBuilder(), map);
+		return Collections.unmodifiableSet(map.keySet());
+	}
+
+	@Override
+	public boolean removeNode(Object fqpn) {
+		return this.removeNode(null, fqpn);
+	}
+
+	@Override
+	public boolean removeNode(Object path, Object name) {
+		Node<E> node = this.findNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(node!=null){
+			this.size -= node.count();
+			if(node.parent==null){
+				this.root = new Node<E>(null, null);
+				this.segments.clear();
+			}
+			else{
+				node.parent.children.remove(node.segment);
+				this.release(node);
+				this.prune(node.parent);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean removeValue(Object fqpn) {
+		return this.removeValue(null, fqpn);
+	}
+
+	@Override
+	public boolean removeValue(Object path, Object name) {
+		Node<E> node = this.findNode(Tree.treeJoiner.transform(new Pair<Object, Object>(path, name)).toString());
+		if(node!=null && node.present){
+			node.value = null;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+		return new TreeSpliterator(Tree.treeJoiner.transform(new Pair<Object, Object>(null, fqpn)).toString(), this::childPaths, this.size, order, maxDepth);
+	}
+
+	@Override
+	public String toString(){
+		Map<String, E> map = new LinkedHashMap<String, E>();
+		TrieTree.collect(this.root, new StringBuilder(), map);
+		return Skb_CollectionTransformer.MAP_TO_TEXT(map);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Any tree can be merged into a trie tree. Nodes missing in this tree are added with their value,
+	 * existing nodes are overwritten if the new value is not null and not a {@link NullObject}.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean merge(Tree<?> tree){
+		if(tree==null){
+			return false;
+		}
+		for(String key : tree.keys()){
+			Node<E> node = this.findNode(key);
+			E val = (E)tree.getValue(key);
+			if(node==null || !node.present){
+				this.createNode(key).value = val;
+			}
+			else if(val!=null && !(val instanceof NullObject)){
+				node.value = val;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns an estimate of the heap a {@link FlatTree} holding the same nodes would use for its keys and map entries.
+	 * @return estimated bytes
+	 */
+	public long estimateFlatBytes(){
+		long[] ret = new long[]{0};
+		TrieTree.estimateFlat(this.root, 0, ret);
+		return ret[0];
+	}
+
+	/**
+	 * Returns an estimate of the heap this tree uses for its nodes, segments and child maps.
+	 * @return estimated bytes
+	 */
+	public long estimateTrieBytes(){
+		long ret = MAP_BYTES;
+		for(String seg : this.segments.keySet()){
+			ret += MAP_ENTRY_BYTES + SEGMENT_BYTES + STRING_BYTES + 2*seg.length();
+		}
+		return ret + TrieTree.estimateNodes(this.root);
+	}
+
+	/**
+	 * Returns an estimate of the heap this tree saves compared to a {@link FlatTree} with the same nodes.
+	 * @return estimated bytes saved, negative if the trie uses more heap (for instance for very flat trees)
+	 */
+	public long estimateSavedBytes(){
+		return this.estimateFlatBytes() - this.estimateTrieBytes();
+	}
+
+	/**
+	 * Finds the node for a path.
+	 * @param fqpn path of the node
+	 * @return node if found (present or structural), null otherwise
+	 */
+	protected Node<E> findNode(String fqpn){
+		Node<E> node = this.root;
+		int start = 0;
+		int length = fqpn.length();
+		while(start<length && node!=null){
+			int end = fqpn.indexOf(PathMap.SEPARATOR, start);
+			if(end<0){
+				end = length;
+			}
+			if(end>start){
+				node = node.child(fqpn.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+
+	/**
+	 * Creates a node and all its ancestors as present nodes.
+	 * @param fqpn path of the node
+	 * @return the node
+	 */
+	protected Node<E> createNode(String fqpn){
+		Node<E> node = this.root;
+		int start = 0;
+		int length = fqpn.length();
+		while(start<length){
+			int end = fqpn.indexOf(PathMap.SEPARATOR, start);
+			if(end<0){
+				end = length;
+			}
+			if(end>start){
+				node = this.getOrCreateChild(node, fqpn.substring(start, end));
+				this.markPresent(node);
+			}
+			start = end + 1;
+		}
+		if(node==this.root){
+			this.markPresent(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Creates the nodes for a path as structural nodes, that is without making them present in the tree.
+	 * @param fqpn path of the node
+	 * @return the node
+	 */
+	protected Node<E> createStructure(String fqpn){
+		Node<E> node = this.root;
+		int start = 0;
+		int length = fqpn.length();
+		while(start<length){
+			int end = fqpn.indexOf(PathMap.SEPARATOR, start);
+			if(end<0){
+				end = length;
+			}
+			if(end>start){
+				node = this.getOrCreateChild(node, fqpn.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+
+	private Node<E> getOrCreateChild(Node<E> node, String segment){
+		Node<E> child = node.child(segment);
+		if(child==null){
+			String canonical = this.intern(segment);
+			child = new Node<E>(canonical, node);
+			if(node.children==null){
+				node.children = new HashMap<String, Node<E>>(4);
+			}
+			node.children.put(canonical, child);
+		}
+		return child;
+	}
+
+	/**
+	 * Returns the canonical string of a segment and counts one more node using it.
+	 * @param segment segment of a new node
+	 * @return canonical segment string
+	 */
+	String intern(String segment){
+		Segment ret = this.segments.get(segment);
+		if(ret==null){
+			ret = new Segment(segment);
+			this.segments.put(segment, ret);
+		}
+		ret.uses++;
+		return ret.name;
+	}
+
+	/**
+	 * Counts the segments of a removed node and all its children as no longer used, unused segments are dropped.
+	 * @param node removed node
+	 */
+	private void release(Node<E> node){
+		Segment segment = this.segments.get(node.segment);
+		if(segment!=null && --segment.uses==0){
+			this.segments.remove(node.segment);
+		}
+		if(node.children!=null){
+			for(Node<E> child : node.children.values()){
+				this.release(child);
+			}
+		}
+	}
+
+	private void markPresent(Node<E> node){
+		if(!node.present){
+			node.present = true;
+			this.size++;
+		}
+	}
+
+	/**
+	 * Removes structural nodes without children, starting at the given node and going up to the root.
+	 * @param node first node to test
+	 */
+	private void prune(Node<E> node){
+		while(node.parent!=null && !node.present && (node.children==null || node.children.size()==0)){
+			node.parent.children.remove(node.segment);
+			this.release(node);
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Returns the direct children of a path in lexicographical order.
+	 * Children of structural nodes (which only exist in subtrees) are returned in place of the structural node.
+	 * @param fqpn path
+	 * @return list of direct children
+	 */
+	protected List<String> childPaths(String fqpn){
+		List<String> ret = new ArrayList<String>();
+		Node<E> node = this.findNode(fqpn);
+		if(node!=null){
+			TrieTree.presentChildren(node, new StringBuilder(TrieTree.trimPath(fqpn)), ret);
+			Collections.sort(ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds the paths of all present children of a node, looking through structural children.
+	 * @param node the node
+	 * @param path path of the node
+	 * @param list list to add paths to
+	 */
+	private static void presentChildren(Node<?> node, StringBuilder path, List<String> list){
+		if(node.children==null){
+			return;
+		}
+		int length = path.length();
+		for(Node<?> child : node.children.values()){
+			path.append(PathMap.SEPARATOR).append(child.segment);
+			if(child.present){
+				list.add(path.toString());
+			}
+			else{
+				TrieTree.presentChildren(child, path, list);
+			}
+			path.setLength(length);
+		}
+	}
+
+	/**
+	 * Collects all present nodes below and including the given node.
+	 * @param node start node
+	 * @param path path of the start node
+	 * @param map map to collect full paths and values in
+	 */
+	static <E> void collect(Node<E> node, StringBuilder path, Map<String, E> map){
+		int length = path.length();
+		if(node.present){
+			map.put(length==0?Tree.defaulSeparator:path.toString(), node.value);
+		}
+		if(node.children!=null){
+			for(Node<E> child : node.children.values()){
+				path.append(PathMap.SEPARATOR).append(child.segment);
+				TrieTree.collect(child, path, map);
+				path.setLength(length);
+			}
+		}
+	}
+
+	private static void estimateFlat(Node<?> node, int pathLength, long[] ret){
+		if(node.present){
+			ret[0] += MAP_ENTRY_BYTES + STRING_BYTES + 2*Math.max(1, pathLength);
+		}
+		if(node.children!=null){
+			for(Node<?> child : node.children.values()){
+				TrieTree.estimateFlat(child, pathLength + 1 + child.segment.length(), ret);
+			}
+		}
+	}
+
+	private static long estimateNodes(Node<?> node){
+		long ret = NODE_BYTES;
+		if(node.children!=null){
+			ret += MAP_BYTES;
+			for(Node<?> child : node.children.values()){
+				ret += MAP_ENTRY_BYTES + TrieTree.estimateNodes(child);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes trailing separators from a path.
+	 * @param fqpn path
+	 * @return path without trailing separator, empty for the root path
+	 */
+	static String trimPath(String fqpn){
+		int end = fqpn.length();
+		while(end>0 && fqpn.charAt(end-1)==PathMap.SEPARATOR){
+			end--;
+		}
+		return fqpn.substring(0, end);
+	}
+
+	/**
+	 * A node of the trie.
+	 * @param <E> type of the node value
+	 */
+	static final class Node<E> {
+		/** The path segment of this node, null for the root */
+		final String segment;
+
+		/** The parent node, null for the root */
+		final Node<E> parent;
+
+		/** Children by segment, null if the node never had children */
+		Map<String, Node<E>> children;
+
+		/** Value of the node */
+		E value;
+
+		/** Flag for nodes that are in the tree, false for nodes that only exist to hold children */
+		boolean present;
+
+		Node(String segment, Node<E> parent){
+			this.segment = segment;
+			this.parent = parent;
+		}
+
+		Node<E> child(String segment){
+			if(this.children==null){
+				return null;
+			}
+			return this.children.get(segment);
+		}
+
+		int count(){
+			int ret = this.present?1:0;
+			if(this.children!=null){
+				for(Node<E> child : this.children.values()){
+					ret += child.count();
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * Copies this node and all its children into another tree.
+		 * @param parent parent of the copy
+		 * @param tree tree the copy belongs to, interns the segments of the copied nodes
+		 * @return the copy
+		 */
+		Node<E> copy(Node<E> parent, TrieTree<E> tree){
+			Node<E> ret = new Node<E>((this.segment==null)?null:tree.intern(this.segment), parent);
+			ret.value = this.value;
+			ret.present = this.present;
+			if(this.children!=null){
+				ret.children = new HashMap<String, Node<E>>(this.children.size()*4/3+1);
+				for(Node<E> child : this.children.values()){
+					Node<E> copy = child.copy(ret, tree);
+					ret.children.put(copy.segment, copy);
+				}
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * A canonical segment string with the number of nodes using it.
+	 */
+	static final class Segment {
+		/** The segment */
+		final String name;
+
+		/** Number of nodes using the segment */
+		int uses;
+
+		Segment(String name){
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts values to bytes and back, used by collections that store their values outside of the Java heap.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public interface ValueCodec<E> {
+
+	/** A codec for strings using UTF-8 */
+	public static final ValueCodec<String> UTF8 = new ValueCodec<String>(){
+		@Override
+		public byte[] encode(String value) {
+			return value.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String decode(ByteBuffer buffer) {
+			byte[] ret = new byte[buffer.remaining()];
+			buffer.get(ret);
+			return new String(ret, StandardCharsets.UTF_8);
+		}
+	};
+
+	/**
+	 * Encodes a value.
+	 * @param value value to encode, never null
+	 * @return encoded value
+	 */
+	byte[] encode(E value);
+
+	/**
+	 * Decodes a value.
+	 * @param buffer buffer with the encoded value between its position and its limit, read-only
+	 * @return decoded value
+	 */
+	E decode(ByteBuffer buffer);
+}
@@ -0,0 +1,254 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * A secondary index of a tree from values to the paths holding them.
+ *
+ * <p>
+ * The index maps the key of each value to the set of paths that hold a value with that key, the key is the value itself
+ * or the result of a key extractor, for instance the class of a handler.
+ * Looking up the paths of a key costs O(1) on average.
+ * Null values and values with a null key are not indexed.
+ * </p>
+ *
+ * <p>
+ * The index registers itself as {@link TreeListener} of a {@link FlatTree} or {@link FlatMultiTree}, so it is maintained
+ * for all changes that create events: adding nodes and values, removing values and nodes, clearing and merging the tree.
+ * Changes of a collection returned by {@link FlatMultiTree#getValueMulti(Object)} do not create events and are not seen by the index.
+ * A tree without index has no extra cost.
+ * </p>
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class ValueIndex<E> implements TreeListener<E> {
+
+	/** The indexed tree */
+	final Tree<E> tree;
+
+	/** Key extractor for values */
+	final Function<? super E, ?> extractor;
+
+	/** Map of keys to paths, with the number of values with that key for each path */
+	final Map<Object, Map<String, Integer>> paths;
+
+	/** Map of paths to the keys of their values, sorted to find all keys of a removed subtree */
+	final NavigableMap<String, List<Object>> keys;
+
+	/**
+	 * Creates an index of values and registers it with the tree.
+	 * @param tree the tree to index, a flat tree or a flat multi tree
+	 * @throws IllegalArgumentException if tree is null or does not support listeners
+	 */
+	public ValueIndex(Tree<E> tree){
+		this(tree, Function.identity());
+	}
+
+	/**
+	 * Creates an index of value keys and registers it with the tree.
+	 * @param tree the tree to index, a flat tree or a flat multi tree
+	 * @param extractor function returning the key of a value
+	 * @throws IllegalArgumentException if tree or extractor is null, or if the tree does not support listeners
+	 */
+	public ValueIndex(Tree<E> tree, Function<? super E, ?> extractor){
+		if(extractor==null){
+			throw new IllegalArgumentException("extractor must not be null");
+		}
+		if(!(tree instanceof FlatTree) && !(tree instanceof FlatMultiTree)){
+			throw new IllegalArgumentException("value index requires a flat tree or flat multi tree, found <" + ((tree==null)?null:tree.getClass().getSimpleName()) + ">");
+		}
+		this.tree = tree;
+		this.extractor = extractor;
+		this.paths = new HashMap<Object, Map<String, Integer>>();
+		this.keys = new TreeMap<String, List<Object>>();
+
+		TreeMerger.<E>forEach(tree, (path, values) -> {
+			for(E value : values){
+				this.add(path, value);
+			}
+		});
+		if(tree instanceof FlatTree){
+			((FlatTree<E>)tree).addListener(this);
+		}
+		else{
+			((FlatMultiTree<E>)tree).addListener(this);
+		}
+	}
+
+	/**
+	 * Returns the indexed tree.
+	 * @return tree
+	 */
+	public Tree<E> getTree(){
+		return this.tree;
+	}
+
+	/**
+	 * Returns all paths holding a value with the given key.
+	 * @param key the key, the value itself for an index without extractor
+	 * @return read-only view of the paths, empty if no path holds a value with that key
+	 */
+	public Set<String> getPaths(Object key){
+		Map<String, Integer> ret = this.paths.get(key);
+		return (ret==null)?Collections.<String>emptySet():Collections.unmodifiableSet(ret.keySet());
+	}
+
+	/**
+	 * Tests if a path holds a value with the given key.
+	 * @param key the key, the value itself for an index without extractor
+	 * @return true if at least one path holds a value with that key, false otherwise
+	 */
+	public boolean containsKey(Object key){
+		return this.paths.containsKey(key);
+	}
+
+	/**
+	 * Returns all indexed keys.
+	 * @return read-only view of all keys
+	 */
+	public Set<Object> keySet(){
+		return Collections.unmodifiableSet(this.paths.keySet());
+	}
+
+	/**
+	 * Removes the index from the tree, the index is not maintained anymore.
+	 */
+	public void close(){
+		if(this.tree instanceof FlatTree){
+			((FlatTree<E>)this.tree).removeListener(this);
+		}
+		else{
+			((FlatMultiTree<E>)this.tree).removeListener(this);
+		}
+	}
+
+	@Override
+	public void changed(List<TreeEvent<E>> events) {
+		for(TreeEvent<E> event : events){
+			switch(event.getType()){
+				case NODE_ADDED:
+					this.add(event.getPath(), event.getNewValue());
+					break;
+				case VALUE_CHANGED:
+					this.remove(event.getPath(), event.getOldValue());
+					this.add(event.getPath(), event.getNewValue());
+					break;
+				case NODE_REMOVED:
+					this.removeAll(event.getPath());
+					break;
+				case SUBTREE_REMOVED:
+					this.removeAll(event.getPath());
+					Iterator<Entry<String, List<Object>>> it = this.keys.subMap(PathMap.subPathPrefix(event.getPath()), true, PathMap.subPathLimit(PathMap.subPathPrefix(event.getPath())), false).entrySet().iterator();
+					while(it.hasNext()){
+						Entry<String, List<Object>> entry = it.next();
+						String path = entry.getKey();
+						List<Object> keys = entry.getValue();
+						it.remove();
+						this.unindex(keys, path);
+					}
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Adds a value of a path to the index.
+	 * @param path the path
+	 * @param value the value, not indexed if it or its key is null
+	 */
+	void add(String path, E value){
+		Object key = (value==null)?null:this.extractor.apply(value);
+		if(key==null){
+			return;
+		}
+		Map<String, Integer> paths = this.paths.get(key);
+		if(paths==null){
+			paths = new HashMap<String, Integer>(4);
+			this.paths.put(key, paths);
+		}
+		paths.merge(path, 1, Integer::sum);
+		List<Object> keys = this.keys.get(path);
+		if(keys==null){
+			keys = new ArrayList<Object>(1);
+			this.keys.put(path, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * Removes one value of a path from the index.
+	 * @param path the path
+	 * @param value the value, ignored if it or its key is null
+	 */
+	void remove(String path, E value){
+		Object key = (value==null)?null:this.extractor.apply(value);
+		List<Object> keys = this.keys.get(path);
+		if(key==null || keys==null || !keys.remove(key)){
+			return;
+		}
+		if(keys.isEmpty()){
+			this.keys.remove(path);
+		}
+		this.unindex(Collections.singletonList(key), path);
+	}
+
+	/**
+	 * Removes all values of a path from the index.
+	 * @param path the path
+	 */
+	void removeAll(String path){
+		List<Object> keys = this.keys.remove(path);
+		if(keys!=null){
+			this.unindex(keys, path);
+		}
+	}
+
+	/**
+	 * Removes keys of a path from the map of keys to paths.
+	 * @param keys keys to remove, a key is listed once for every value with that key
+	 * @param path path of the keys
+	 */
+	private void unindex(List<Object> keys, String path){
+		for(Object key : keys){
+			Map<String, Integer> paths = this.paths.get(key);
+			if(paths==null){
+				continue;
+			}
+			paths.computeIfPresent(path, (p, count) -> (count>1)?count-1:null);
+			if(paths.isEmpty()){
+				this.paths.remove(key);
+			}
+		}
+	}
+
+	@Override
+	public String toString(){
+		return this.paths.toString();
+	}
+}
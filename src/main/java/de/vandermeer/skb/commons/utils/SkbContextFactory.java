@@ -111,8 +111,8 @@ public enum SkbContextFactory implements IsFactory {
 			return null;
 		}
 
-		//check if the tree actually contains configuration (must have the path given by the enum)
-		Tree<?> ret = ((Tree<?>)cc).getSubtree(path.path());
+		//check if the tree actually contains configuration (must have the path given by the enum), a read-only view avoids copying the subtree
+		Tree<?> ret = ((Tree<?>)cc).subtreeView(path.path(), true);
 		if(ret==null){
 			logger.warn("no configuration information in configuration file");
 			this.lastError.add(new Message5WH_Builder().addWhat("no information found").addHow("no configuration information in file <", fileName, "> for path <", path, ">").build());
@@ -0,0 +1,240 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.composite.coin.NONone;
+import de.vandermeer.skb.base.composite.coin.NONull;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * Tests for the binary codec.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_BinaryCodec {
+
+	/** Output collecting all written bytes. */
+	static class Out {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final WritableByteChannel channel = Channels.newChannel(this.bytes);
+
+		ReadableByteChannel in(){
+			return Channels.newChannel(new ByteArrayInputStream(this.bytes.toByteArray()));
+		}
+	}
+
+	@Test public void testFlatTree() throws IOException {
+		FlatTree<Object> tree=new FlatTree<Object>();
+		tree.addNodeWithValue("/config/name", "skb \u00e4\u00f6\u00fc \ud83d\ude00");
+		tree.addNodeWithValue("/config/int", -42);
+		tree.addNodeWithValue("/config/long", Long.MAX_VALUE);
+		tree.addNodeWithValue("/config/double", 3.25);
+		tree.addNodeWithValue("/config/float", -1.5f);
+		tree.addNodeWithValue("/config/short", (short)-7);
+		tree.addNodeWithValue("/config/byte", (byte)-128);
+		tree.addNodeWithValue("/config/char", '\u20ac');
+		tree.addNodeWithValue("/config/true", true);
+		tree.addNodeWithValue("/config/false", false);
+		tree.addNodeWithValue("/config/null", NONull.get);
+		tree.addNodeWithValue("/config/none", NONone.get);
+		tree.addNode("/config/empty/\ud83d\ude00/\ud83d\ude01");
+		ComCollection<Object> coll=new ComCollection<Object>();
+		coll.add("a");
+		coll.add(1);
+		tree.addNodeWithValue("/config/coll", coll);
+
+		//small buffers test reading and writing across buffer boundaries
+		for(BinaryCodec codec : new BinaryCodec[]{new BinaryCodec(), new BinaryCodec(null, 16)}){
+			Out out=new Out();
+			codec.write(tree, out.channel);
+			FlatTree<Object> read=codec.readFlatTree(out.in());
+			assertEquals(tree.size(), read.size());
+			//collections have no value equality, all other values must be equal
+			assertEquals("[/config/coll]", TreeDiff.compute(tree, read).getChanged().toString());
+			assertEquals(Arrays.asList("a", 1), Arrays.asList(((ComCollection<?>)read.getValue("/config/coll")).toArray()));
+			assertTrue(read.getValue("/config/null")==NONull.get);
+			assertEquals(Long.MAX_VALUE, read.getValue("/config/long"));
+			assertEquals(-1.5f, read.getValue("/config/float"));
+		}
+
+		byte[] bytes=new byte[100000];
+		Arrays.fill(bytes, (byte)7);
+		tree.clear();
+		tree.addNodeWithValue("/big", bytes);
+		Out out=new Out();
+		new BinaryCodec(null, 16).write(tree, out.channel);
+		assertTrue(Arrays.equals(bytes, (byte[])new BinaryCodec(null, 16).readFlatTree(out.in()).getValue("/big")));
+	}
+
+	@Test public void testPrefixCompression() throws IOException {
+		FlatTree<Integer> tree=new FlatTree<Integer>();
+		int chars=0;
+		for(int i=0; i<1000; i++){
+			String path="/some/long/common/path/prefix/node" + i;
+			tree.addNodeWithValue(path, i);
+			chars+=path.length();
+		}
+		Out out=new Out();
+		new BinaryCodec().write(tree, out.channel);
+		assertTrue(out.bytes.size()<chars/4);
+		assertTrue(TreeDiff.compute(tree, new BinaryCodec().readFlatTree(out.in())).isEmpty());
+	}
+
+	@Test public void testFlatMultiTree() throws IOException {
+		FlatMultiTree<String> tree=new FlatMultiTree<String>();
+		tree.addNodeWithValue("/a/b", "1");
+		tree.addNodeWithValue("/a/b", "2");
+		tree.addNode("/c");
+
+		Out out=new Out();
+		new BinaryCodec().write(tree, out.channel);
+		FlatMultiTree<String> read=new BinaryCodec().readFlatMultiTree(out.in());
+		assertEquals(3, read.size());
+		assertEquals(Arrays.asList("1", "2"), Arrays.asList(read.getValueMulti("/a/b").toArray()));
+		assertTrue(TreeDiff.compute(tree, read).isEmpty());
+	}
+
+	@Test public void testTables() throws IOException {
+		IsAttributeKey[] c=new IsAttributeKey[]{IsAttributeKey.create("col1"), EAttributeKeys.VALUE_CLI};
+		FlatTable<String> table=new FlatTable<String>(SetStrategy.HASH_SET, c);
+		table.addRowsAll(new String[]{"r1", "r2"});
+		table.columnValue("r1", "col1", "v");
+
+		Out out=new Out();
+		new BinaryCodec().write(table, out.channel);
+		FlatTable<String> read=new BinaryCodec().readFlatTable(out.in());
+		assertEquals(SetStrategy.HASH_SET, read.strategy);
+		assertEquals(2, read.columns.size());
+		assertTrue(read.columns.contains(EAttributeKeys.VALUE_CLI));
+		assertEquals(table.size(), read.size());
+		assertEquals("v", read.get("r1", "col1"));
+		assertTrue(read.contains("r2", "value.cli"));
+		assertEquals(2, read.get("r1").size());
+		assertEquals("v", read.get("r1").get("/r1/col1"));
+		assertEquals(2, read.query().list().size());
+		read.addIndex("col1", ColumnIndex.Type.HASH);
+		assertEquals(1, read.getRows("col1", "v").size());
+		assertEquals(1, read.getRows("col1", "v", true, null, true).size());
+
+		FlatMultiTable<String> multi=new FlatMultiTable<String>(null, c);
+		multi.addRow("r1");
+		multi.columnValue("r1", "col1", "x");
+		multi.columnValue("r1", "col1", "y");
+		out=new Out();
+		new BinaryCodec().write(multi, out.channel);
+		FlatMultiTable<String> mread=new BinaryCodec().readFlatMultiTable(out.in());
+		assertEquals(Arrays.asList("x", "y"), Arrays.asList(mread.getMulti("r1", "col1").toArray()));
+		assertEquals(2, mread.getRow("r1").size());
+		assertEquals("x", mread.get("r1").get("/r1/col1"));
+		assertEquals(1, mread.query().list().size());
+
+		PropertyTable props=new PropertyTable(SetStrategy.LINKED_HASH_SET);
+		props.addRow("p1");
+		props.setPropertyValueDefault("p1", 42);
+		out=new Out();
+		new BinaryCodec().write(props, out.channel);
+		PropertyTable pread=new BinaryCodec().readPropertyTable(out.in());
+		assertEquals(props.size(), pread.size());
+		assertEquals(42, pread.getPropertyValueDefault("p1"));
+		assertEquals(props.get("p1"), pread.get("p1"));
+		assertEquals(1, pread.query().whereEquals(EAttributeKeys.VALUE_DEFAULT, 42).list().size());
+	}
+
+	@Test public void testCollectionAndCustom() throws IOException {
+		ValueCodec<Object> custom=new ValueCodec<Object>(){
+			@Override
+			public byte[] encode(Object value) {
+				return value.toString().getBytes(StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public Object decode(ByteBuffer buffer) {
+				byte[] bytes=new byte[buffer.remaining()];
+				buffer.get(bytes);
+				return new BigDecimal(new String(bytes, StandardCharsets.UTF_8));
+			}
+		};
+		ComCollection<Object> coll=new ComCollection<Object>(SetStrategy.LINKED_HASH_SET);
+		coll.add("a");
+		coll.add(new BigDecimal("1.5"));
+		coll.add(null);
+
+		Out out=new Out();
+		new BinaryCodec(custom, 64).write(coll, out.channel);
+		ComCollection<Object> read=new BinaryCodec(custom, 64).readComCollection(out.in());
+		assertEquals(Arrays.asList("a", new BigDecimal("1.5"), null), Arrays.asList(read.toArray()));
+	}
+
+	@Test(expected=IllegalArgumentException.class) public void testUnsupported() throws IOException {
+		FlatTree<Object> tree=new FlatTree<Object>();
+		tree.addNodeWithValue("/a", new BigDecimal("1"));
+		new BinaryCodec().write(tree, new Out().channel);
+	}
+
+	@Test(expected=IOException.class) public void testWrongKind() throws IOException {
+		Out out=new Out();
+		new BinaryCodec().write(new FlatTree<String>(), out.channel);
+		new BinaryCodec().readFlatMultiTree(out.in());
+	}
+
+	@Test(expected=EOFException.class) public void testCorruptLength() throws IOException {
+		//a string claiming Integer.MAX_VALUE bytes followed by three bytes of data
+		byte[] stream=new byte[]{(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 'a', 'b', 'c'};
+		new BinaryCodec.Input(Channels.newChannel(new ByteArrayInputStream(stream)), 16).string();
+	}
+
+	@Test public void testLongBytes() throws IOException {
+		byte[] data=new byte[3*BinaryCodec.Input.CHUNK + 17];
+		for(int k=0; k<data.length; k++){
+			data[k]=(byte)k;
+		}
+		ComCollection<Object> coll=new ComCollection<Object>();
+		coll.add(data);
+		Out out=new Out();
+		new BinaryCodec(null, 64).write(coll, out.channel);
+		ComCollection<Object> read=new BinaryCodec(null, 64).readComCollection(out.in());
+		assertTrue(Arrays.equals(data, (byte[])read.toArray()[0]));
+	}
+
+	@Test(expected=IOException.class) public void testNonBlocking() throws IOException {
+		ReadableByteChannel empty=new ReadableByteChannel(){
+			@Override public boolean isOpen(){return true;}
+			@Override public void close(){}
+			@Override public int read(ByteBuffer dst){return 0;}
+		};
+		new BinaryCodec().readFlatTree(empty);
+	}
+}
@@ -0,0 +1,162 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * Tests for secondary column indexes of tables.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_ColumnIndex {
+
+	private FlatTable<Integer> table(){
+		FlatTable<Integer> table=new FlatTable<Integer>(SetStrategy.LINKED_HASH_SET, new IsAttributeKey[]{IsAttributeKey.create("type"), IsAttributeKey.create("size")});
+		for(int i=0; i<10; i++){
+			table.addRow("r" + i);
+			table.columnValue("r" + i, "type", i%3);
+			table.columnValue("r" + i, "size", i*10);
+		}
+		return table;
+	}
+
+	@Test public void testHashIndex(){
+		FlatTable<Integer> table=this.table();
+		ColumnIndex index=table.addIndex("type", ColumnIndex.Type.HASH);
+		assertEquals(ColumnIndex.Type.HASH, index.getType());
+		assertEquals(3, index.size());
+		assertEquals(new HashSet<String>(Arrays.asList("/r0", "/r3", "/r6", "/r9")), table.getRows("type", 0));
+		assertTrue(table.getRows("type", 5).isEmpty());
+		assertTrue(table.getRows("type", null).isEmpty());
+
+		//maintained on changes
+		table.columnValue("r0", "type", 5);
+		assertEquals(new HashSet<String>(Arrays.asList("/r0")), table.getRows("type", 5));
+		assertEquals(3, table.getRows("type", 0).size());
+		table.removeColumnValue("r3", "type");
+		assertEquals(2, table.getRows("type", 0).size());
+		table.removeRow("r6");
+		assertEquals(new HashSet<String>(Arrays.asList("/r9")), table.getRows("type", 0));
+		table.columnValue(PathKey.create("/r9/type"), 1);
+		assertTrue(table.getRows("type", 0).isEmpty());
+		assertEquals(3, index.size());
+
+		//same results without index
+		FlatTable<Integer> copy=table.getCopy();
+		assertTrue(copy.removeIndex("type"));
+		assertNull(copy.getIndex("type"));
+		assertEquals(table.getRows("type", 1), copy.getRows("type", 1));
+		copy.columnValue("r1", "type", 7);
+		assertEquals(1, copy.getRows("type", 7).size());
+		assertTrue(table.getRows("type", 7).isEmpty());
+
+		table.clear();
+		assertEquals(0, index.size());
+		table.addRow("n1");
+		table.columnValue("n1", "type", 1);
+		assertEquals(1, table.getRows("type", 1).size());
+	}
+
+	@Test public void testSortedIndex(){
+		FlatTable<Integer> table=this.table();
+		table.addIndex("size", ColumnIndex.Type.SORTED);
+		assertEquals(Arrays.asList("/r2", "/r3", "/r4"), Arrays.asList(table.getRows("size", 20, true, 40, true).toArray()));
+		assertEquals(Arrays.asList("/r3"), Arrays.asList(table.getRows("size", 20, false, 40, false).toArray()));
+		assertEquals(Arrays.asList("/r8", "/r9"), Arrays.asList(table.getRows("size", 75, true, null, true).toArray()));
+		assertEquals(2, table.getRows("size", null, true, 10, true).size());
+		assertEquals(new HashSet<String>(Arrays.asList("/r5")), table.getRows("size", 50));
+
+		table.columnValue("r9", "size", 1);
+		assertEquals(Arrays.asList("/r0", "/r9", "/r1"), Arrays.asList(table.getRows("size", null, true, 10, true).toArray()));
+
+		//range without sorted index scans
+		table.addIndex("type", ColumnIndex.Type.HASH);
+		assertEquals(new HashSet<String>(Arrays.asList("/r1", "/r2", "/r4", "/r5", "/r7", "/r8")), table.getRows("type", 1, true, 2, true));
+
+		//comparator
+		table.addIndex("size", Comparator.<Integer>reverseOrder());
+		assertEquals(Arrays.asList("/r4", "/r3", "/r2"), Arrays.asList(table.getRows("size", 40, true, 20, true).toArray()));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownColumn(){
+		this.table().addIndex("colour", ColumnIndex.Type.HASH);
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testRangeOnHash(){
+		FlatTable<Integer> table=this.table();
+		table.addIndex("size", ColumnIndex.Type.HASH).range(10, true, 20, true);
+	}
+
+	@Test public void testPropertyTable(){
+		PropertyTable table=new PropertyTable(null);
+		table.addRow("p1");
+		table.addRow("p2");
+		table.columnValue("p1", EAttributeKeys.VALUE_CLI, "x");
+		table.addIndex(EAttributeKeys.VALUE_CLI, ColumnIndex.Type.HASH);
+		table.setPropertyValueCli("p2", "x");
+		assertEquals(2, table.getRows(EAttributeKeys.VALUE_CLI, "x").size());
+		PropertyTable copy=table.getCopy();
+		copy.removeRow("p1");
+		assertEquals(1, copy.getRows(EAttributeKeys.VALUE_CLI, "x").size());
+		assertEquals(2, table.getRows(EAttributeKeys.VALUE_CLI, "x").size());
+	}
+
+	@Test public void testSortedMixedTypes(){
+		PropertyTable table=new PropertyTable(null);
+		table.addRow("p1");
+		table.addRow("p2");
+		ColumnIndex index=table.addIndex(EAttributeKeys.VALUE_DEFAULT, ColumnIndex.Type.SORTED);
+		table.setPropertyValueDefault("p1", "a");
+		table.setPropertyValueDefault("p2", "b");
+		try{
+			table.setPropertyValueDefault("p2", 42);
+			fail("mixed value types must be rejected by a sorted index");
+		}
+		catch(IllegalArgumentException ex){}
+		assertEquals("b", table.getPropertyValueDefault("p2"));
+		assertEquals(1, index.get("b").size());
+		assertTrue(index.get("b").contains("/p2"));
+		assertEquals(2, table.getRows(EAttributeKeys.VALUE_DEFAULT, "a", true, "b", true).size());
+
+		//declaring a sorted index over mixed values leaves the table without index
+		table.removeIndex(EAttributeKeys.VALUE_DEFAULT);
+		table.setPropertyValueDefault("p2", 42);
+		try{
+			table.addIndex(EAttributeKeys.VALUE_DEFAULT, ColumnIndex.Type.SORTED);
+			fail("mixed value types must be rejected by a sorted index");
+		}
+		catch(IllegalArgumentException ex){}
+		assertNull(table.getIndex(EAttributeKeys.VALUE_DEFAULT));
+		assertEquals(42, table.getPropertyValueDefault("p2"));
+	}
+}
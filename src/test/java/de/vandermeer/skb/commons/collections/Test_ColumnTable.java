@@ -0,0 +1,194 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * Tests for column table.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_ColumnTable {
+
+	private IsAttributeKey[] columns(){
+		return new IsAttributeKey[]{IsAttributeKey.create("col1"), IsAttributeKey.create("col2"), IsAttributeKey.create("col3")};
+	}
+
+	@Test public void testConstructor(){
+		ColumnTable<String> table=new ColumnTable<String>();
+		assertTrue(table.isEmpty());
+		assertEquals(0, table.size());
+		assertEquals(SetStrategy.LINKED_HASH_SET, table.strategy);
+		assertEquals(1, table.columns.size());
+		assertEquals(EAttributeKeys.DEFAULT, table.columns.iterator().next());
+		assertEquals(null, table.get("/", null));
+	}
+
+	@Test public void testAddRow(){
+		ColumnTable<String> table=new ColumnTable<String>(SetStrategy.HASH_SET, this.columns());
+
+		assertTrue(table.addRow("/test1"));
+		assertFalse(table.addRow("test1"));
+		assertTrue(table.contains("test1"));
+		assertTrue(table.contains("test1", "col1"));
+		assertTrue(table.contains("test1/col3"));
+		assertFalse(table.contains("test1", "col4"));
+
+		assertFalse(table.addRow("t2/illegal"));
+		assertFalse(table.contains("t2"));
+		assertFalse(table.addRow(null));
+		assertFalse(table.contains(null));
+
+		assertTrue(table.addRow("///legal-plus"));
+		assertTrue(table.contains("/legal-plus", "col2"));
+		assertTrue(table.contains("/", "legal-plus"));
+		assertEquals(8, table.size());
+
+		assertTrue(table.addRowsAll(new Object[]{"r1", null, "ill/row", "r2"}));
+		assertEquals(16, table.size());
+		assertFalse(table.addRowsAll(null));
+	}
+
+	@Test public void testValues(){
+		ColumnTable<String> table=new ColumnTable<String>(SetStrategy.HASH_SET, this.columns());
+		table.addRow("r1");
+		table.addRow("r2");
+
+		assertTrue(table.columnValue("r1", "col1", "a"));
+		assertTrue(table.columnValue("r2", IsAttributeKey.create("col2"), "b"));
+		assertFalse(table.columnValue("r3", "col1", "x"));
+		assertFalse(table.columnValue("r1", "col4", "x"));
+		assertFalse(table.columnValue("r1", null, "x"));
+
+		assertEquals("a", table.get("r1", "col1"));
+		assertEquals("b", table.get("/r2", "col2"));
+		assertNull(table.get("r1", "col2"));
+		assertEquals("a", table.getValue(PathKey.create("/r1/col1")));
+		assertEquals(3, table.get("r1").size());
+		assertEquals("a", table.get("r1").get("/r1/col1"));
+		assertTrue(table.get("r3").isEmpty());
+
+		assertTrue(table.removeColumnValue("r1", "col1"));
+		assertNull(table.get("r1", "col1"));
+		assertTrue(table.contains("r1", "col1"));
+	}
+
+	@Test public void testRemoveAndReuse(){
+		ColumnTable<String> table=new ColumnTable<String>(SetStrategy.HASH_SET, this.columns());
+		for(int i=0; i<100; i++){
+			assertTrue(table.addRow("r" + i));
+			table.columnValue("r" + i, "col1", "v" + i);
+		}
+		assertEquals(400, table.size());
+
+		assertTrue(table.removeRow("r5"));
+		assertTrue(table.removeRow("r5"));
+		assertFalse(table.removeRow("a/b"));
+		assertFalse(table.contains("r5"));
+		assertFalse(table.contains("r5", "col1"));
+		assertEquals(396, table.size());
+
+		//the new row reuses the slot of r5 but must not see its values
+		assertTrue(table.addRow("n1"));
+		assertNull(table.get("n1", "col1"));
+		assertEquals("v6", table.get("r6", "col1"));
+
+		List<String> scanned=new ArrayList<String>();
+		assertTrue(table.forEachInColumn("col1", (row, value) -> scanned.add(row + "=" + value)));
+		assertEquals(100, scanned.size());
+		assertTrue(scanned.contains("/n1=null"));
+		assertTrue(scanned.contains("/r99=v99"));
+		assertFalse(table.forEachInColumn("col4", (row, value) -> {}));
+
+		table.clear();
+		assertTrue(table.isEmpty());
+		assertEquals(0, table.keys().size());
+		assertTrue(table.addRow("r1"));
+	}
+
+	@Test public void testSameAsFlatTable(){
+		FlatTable<String> flat=new FlatTable<String>(SetStrategy.HASH_SET, this.columns());
+		ColumnTable<String> column=new ColumnTable<String>(SetStrategy.HASH_SET, this.columns());
+		for(Table<String> table : new ArrayList<Table<String>>(){{add(flat); add(column);}}){
+			table.addRowsAll(new String[]{"r1", "r2", "r3"});
+			table.columnValue("r1", "col1", "a");
+			table.columnValue("r3", "col3", "c");
+			table.removeRow("r2");
+		}
+
+		assertEquals(flat.size(), column.size());
+		assertEquals(flat.keys(), new HashSet<String>(column.keys()));
+		assertEquals(new HashSet<String>(flat.keys()), column.keys());
+		for(String key : flat.keys()){
+			assertTrue(column.contains(key));
+		}
+		assertEquals(flat.get("r1"), column.get("r1"));
+		assertEquals(flat.get("r3"), column.get("r3"));
+
+		ColumnTable<String> copy=column.getCopy();
+		copy.columnValue("r1", "col1", "changed");
+		assertEquals("a", column.get("r1", "col1"));
+		assertEquals(column.size(), copy.size());
+	}
+
+	@Test public void testEvents(){
+		ColumnTable<String> table=new ColumnTable<String>(SetStrategy.LINKED_HASH_SET, new IsAttributeKey[]{IsAttributeKey.create("col1")});
+		List<String> events=new ArrayList<String>();
+		table.addListener(batch -> {
+			for(TreeEvent<String> e : batch){
+				events.add(e.getType() + " " + e.getPath() + " " + e.getOldValue() + " " + e.getNewValue());
+			}
+		});
+		table.addRow("r1");
+		assertEquals("NODE_ADDED /r1 null null", events.get(0));
+		assertEquals("NODE_ADDED /r1/col1 null null", events.get(1));
+		table.columnValue("r1", "col1", "v");
+		assertEquals("VALUE_CHANGED /r1/col1 null v", events.get(2));
+		table.columnValue("r1", "col1", "v");
+		assertEquals(3, events.size());
+		table.removeRow("r1");
+		assertEquals("SUBTREE_REMOVED /r1 null null", events.get(3));
+	}
+
+	@Test public void testFootprint(){
+		IsAttributeKey[] c=new IsAttributeKey[8];
+		for(int i=0; i<c.length; i++){
+			c[i]=IsAttributeKey.create("column" + i);
+		}
+		FlatTable<Boolean> flat=new FlatTable<Boolean>(SetStrategy.HASH_SET, c);
+		ColumnTable<Boolean> column=new ColumnTable<Boolean>(SetStrategy.HASH_SET, c);
+		for(int i=0; i<1000; i++){
+			flat.addRow("row" + i);
+			column.addRow("row" + i);
+		}
+		assertTrue(column.footprint().getTotal() * 5 < flat.footprint().getTotal());
+	}
+}
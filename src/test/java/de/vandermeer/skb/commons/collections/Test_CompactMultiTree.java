@@ -0,0 +1,179 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for compact multi tree.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_CompactMultiTree {
+
+	@Test public void testStorage(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		assertTrue(tree.addNodeWithValue("/a/b", "v1"));
+		assertSame("v1", tree.sval.get("/a/b"));
+		assertNull(tree.sval.get("/a"));
+		assertEquals(1, tree.getValueCount("/a/b"));
+
+		tree.addNodeWithValue("/a/b", "v2");
+		assertTrue(tree.sval.get("/a/b") instanceof Object[]);
+		assertEquals("v1", tree.getValue("/a/b"));
+		assertEquals(2, tree.getValueCount("/a/b"));
+
+		for(int i=3; i<=CompactMultiTree.MAX_ARRAY; i++){
+			tree.addNodeWithValue("/a/b", "v"+i);
+		}
+		assertTrue(tree.sval.get("/a/b") instanceof Object[]);
+		tree.addNodeWithValue("/a/b", "v9");
+		assertTrue(tree.sval.get("/a/b") instanceof ComCollection);
+		assertEquals(9, tree.getValueCount("/a/b"));
+		assertEquals("v1", tree.getValue("/a/b"));
+	}
+
+	@Test public void testGetValueMulti(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		FlatMultiTree<String> flat = new FlatMultiTree<String>();
+		for(String v : new String[]{"x", "y", "z"}){
+			tree.addNodeWithValue("/n", v);
+			flat.addNodeWithValue("/n", v);
+		}
+		tree.addNode("/e");
+		flat.addNode("/e");
+
+		assertNull(tree.getValueMulti("/e"));
+		assertNull(tree.getValueMulti("/missing"));
+		assertEquals(flat.getValue("/n"), tree.getValue("/n"));
+		assertEquals(new ArrayList<String>(flat.getValueMulti("/n")), new ArrayList<String>(tree.getValueMulti("/n")));
+
+		//the returned collection is the storage of the node
+		ComCollection<String> coll = tree.getValueMulti("/n");
+		coll.add("w");
+		assertEquals(4, tree.getValueCount("/n"));
+		assertSame(coll, tree.getValueMulti("/n"));
+	}
+
+	@Test public void testNullValues(){
+		CompactMultiTree<Object> tree = new CompactMultiTree<Object>();
+		tree.addNodeWithValue("/n", null);
+		assertEquals(1, tree.getValueCount("/n"));
+		assertNull(tree.getValue("/n"));
+
+		//arrays are values, not storage
+		Object[] array = new Object[]{"a", "b"};
+		tree.addNodeWithValue("/a", array);
+		assertSame(array, tree.getValue("/a"));
+		assertEquals(1, tree.getValueCount("/a"));
+	}
+
+	@Test public void testRemove(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		tree.addNodeWithValue("/n", "a");
+		tree.addNodeWithValue("/n", "b");
+		tree.addNodeWithValue("/n", "c");
+
+		assertTrue(tree.removeMultiValue("/n", "b"));
+		assertEquals(Arrays.asList("a", "c"), new ArrayList<String>(tree.getValueMulti("/n")));
+		tree.removeValue("/n");
+		tree.addNodeWithValue("/n", "a");
+		tree.addNodeWithValue("/n", "c");
+		assertTrue(tree.removeMultiValue("/n", "a"));
+		assertSame("c", tree.sval.get("/n"));
+		assertTrue(tree.removeMultiValue("/n", "c"));
+		assertEquals(0, tree.getValueCount("/n"));
+		assertNull(tree.getValue("/n"));
+		assertFalse(tree.removeMultiValue("/missing", "c"));
+
+		assertTrue(tree.removeValue("/n"));
+		assertFalse(tree.removeMultiValue("/n", "c"));
+		assertTrue(tree.containsNode("/n"));
+		assertTrue(tree.removeNode("/n"));
+		assertFalse(tree.containsNode("/n"));
+	}
+
+	@Test public void testCopy(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		tree.addNodeWithValue("/a", "1");
+		tree.addNodeWithValue("/a", "2");
+		tree.addNodeWithValue("/a/b", "3");
+
+		CompactMultiTree<String> copy = tree.getCopy();
+		copy.addNodeWithValue("/a", "x");
+		assertEquals(2, tree.getValueCount("/a"));
+		assertEquals(3, copy.getValueCount("/a"));
+
+		CompactMultiTree<String> sub = tree.getSubtree("/a");
+		assertEquals(1, sub.size());
+		assertEquals("3", sub.getValue("/a/b"));
+	}
+
+	@Test public void testPathKey(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		PathKey key = PathKey.create("/a/b");
+		assertTrue(tree.addNodeWithValue(key, "v"));
+		assertTrue(tree.addNodeWithValue(key, "w"));
+		assertTrue(tree.containsNode(key));
+		assertTrue(tree.hasChildren(PathKey.create("/a")));
+		assertEquals("v", tree.getValue(key));
+		assertEquals(2, tree.getValueMulti(key).size());
+	}
+
+	@Test public void testChildrenAndDescendants(){
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		tree.addNode("/a/b/c");
+		tree.addNode("/a/d");
+		assertEquals(Arrays.asList("/a/b", "/a/d"), tree.getDirectChildren("/a"));
+		assertEquals(Arrays.asList("/a/b", "/a/b/c", "/a/d"), tree.getDescendants("/a", 2));
+		assertEquals(3, tree.stream("/a").count());
+	}
+
+	@Test public void testMergeAndDiff(){
+		FlatMultiTree<String> flat = new FlatMultiTree<String>();
+		flat.addNodeWithValue("/a", "1");
+		flat.addNodeWithValue("/a", "2");
+		flat.addNodeWithValue("/a/b", "3");
+		flat.addNode("/c");
+
+		CompactMultiTree<String> tree = new CompactMultiTree<String>();
+		tree.addNodeWithValue("/a", "0");
+		assertTrue(tree.merge(flat));
+		assertEquals(Arrays.asList("0", "1", "2"), new ArrayList<String>(tree.getValueMulti("/a")));
+		assertEquals("3", tree.getValue("/a/b"));
+		assertTrue(tree.containsNode("/c"));
+
+		FlatMultiTree<String> back = new FlatMultiTree<String>();
+		assertTrue(back.merge(tree));
+		assertEquals(3, back.getValueMulti("/a").size());
+
+		TreeDiff<String> diff = TreeDiff.compute(tree, flat);
+		assertEquals("[/a]", diff.getChanged().toString());
+		assertTrue(diff.apply(tree));
+		assertTrue(TreeDiff.compute(tree, flat).isEmpty());
+		assertEquals(Arrays.asList("1", "2"), new ArrayList<String>(tree.getValueMulti("/a")));
+	}
+}
@@ -0,0 +1,164 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.composite.Com_Coin;
+import de.vandermeer.skb.base.composite.Com_Leaf;
+import de.vandermeer.skb.base.composite.Com_Node;
+import de.vandermeer.skb.base.composite.Com_Top;
+
+/**
+ * Tests for concurrent trees.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_ConcurrentFlatTree {
+
+	@Test public void testTypes(){
+		Com_Top t;
+		t=new ConcurrentFlatTree<Object>();
+		assertTrue(t instanceof Tree);
+		assertTrue(t instanceof Com_Node);
+		assertFalse(t instanceof Com_Leaf);
+		assertFalse(t instanceof Com_Coin);
+	}
+
+	@Test public void testAddAndRemove(){
+		ConcurrentFlatTree<String> tree=new ConcurrentFlatTree<String>();
+		assertTrue(tree.isEmpty());
+
+		assertTrue(tree.addNodeWithValue("/a/b/c", "v1"));
+		assertEquals(3, tree.size());		// "/a", "/a/b", "/a/b/c"
+		assertTrue(tree.containsNode("/a/b"));
+		assertEquals("v1", tree.getValue("a/b", "c"));
+		assertTrue(tree.hasChildren("/a"));
+		assertFalse(tree.hasChildren("/a/b/c"));
+		assertEquals(2, tree.getChildrenNames("/a").size());
+
+		assertTrue(tree.removeValue("/a/b/c"));
+		assertTrue(tree.containsNode("/a/b/c"));
+		assertNull(tree.getValue("/a/b/c"));
+
+		assertTrue(tree.removeNode("/a/b"));
+		assertFalse(tree.containsNode("/a/b/c"));
+		assertTrue(tree.containsNode("/a"));
+		assertEquals(1, tree.size());
+	}
+
+	@Test public void testCopyAndMerge(){
+		ConcurrentFlatTree<String> tree=new ConcurrentFlatTree<String>();
+		tree.addNodeWithValue("/a/b", "v1");
+		ConcurrentFlatTree<String> copy=tree.getCopy();
+		tree.addNodeWithValue("/a/b", "v2");
+		assertEquals("v1", copy.getValue("/a/b"));
+
+		FlatTree<String> flat=new FlatTree<String>();
+		flat.addNodeWithValue("/a/b", "v3");
+		flat.addNodeWithValue("/x", "v4");
+		assertTrue(copy.merge(flat));
+		assertEquals("v3", copy.getValue("/a/b"));
+		assertEquals("v4", copy.getValue("/x"));
+	}
+
+	@Test public void testMultiValues(){
+		ConcurrentFlatMultiTree<String> tree=new ConcurrentFlatMultiTree<String>();
+		tree.addNodeWithValue("/a", "v1");
+		tree.addNodeWithValue("/a", "v2");
+		ComCollection<String> values=tree.getValueMulti("/a");
+		assertEquals(2, values.size());
+		assertTrue(tree.removeMultiValue("/a", "v1"));
+		assertFalse(tree.removeMultiValue("/a", "v1"));
+		assertEquals(2, values.size());		// copies are not affected
+		assertEquals("v2", tree.getValue("/a"));
+	}
+
+	@Test public void testConcurrentWriters() throws InterruptedException{
+		this.writers(new ConcurrentFlatTree<Integer>(), "");
+	}
+
+	@Test public void testStripeDepth() throws InterruptedException{
+		ConcurrentPathStore<Integer> top=new ConcurrentPathStore<Integer>(16);
+		ConcurrentPathStore<Integer> deep=new ConcurrentPathStore<Integer>(16, 2);
+		Set<Integer> stripes=new HashSet<Integer>();
+		for(int i=0; i<16; i++){
+			assertEquals(top.stripe("/config"), top.stripe("/config/c" + i + "/x"));
+			assertEquals(deep.stripe("/config/c" + i), deep.stripe("/config/c" + i + "/x/y"));
+			stripes.add(deep.stripe("/config/c" + i));
+		}
+		assertTrue(stripes.size()>1);
+		assertEquals(-1, deep.stripe("/config"));
+		assertEquals(-1, deep.stripe("/"));
+
+		this.writers(new ConcurrentFlatTree<Integer>(16, 2), "/config");
+	}
+
+	/**
+	 * Runs concurrent writers adding and removing subtrees while a reader checks that no node is visible without its parent.
+	 * @param tree tree to write
+	 * @param root common prefix of all paths
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	private void writers(final ConcurrentFlatTree<Integer> tree, final String root) throws InterruptedException{
+		final AtomicBoolean failed=new AtomicBoolean(false);
+		List<Thread> threads=new ArrayList<Thread>();
+		for(int t=0; t<4; t++){
+			final int id=t;
+			threads.add(new Thread(() -> {
+				for(int i=0; i<500; i++){
+					tree.addNodeWithValue(root + "/t" + (i%3) + "/n" + id + "/" + i, i);
+					if(i%10==0){
+						tree.removeNode(root + "/t" + (i%3) + "/n" + id);
+					}
+				}
+			}));
+		}
+		threads.add(new Thread(() -> {
+			for(int i=0; i<2000; i++){
+				for(String key : tree.keys()){
+					String parent=PathMap.parentPath(key);
+					if(parent!=null && !parent.equals(Tree.defaulSeparator) && tree.getValue(key)!=null && !tree.containsNode(parent) && tree.containsNode(key)){
+						failed.set(true);
+					}
+				}
+			}
+		}));
+		for(Thread t : threads){
+			t.start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+		assertFalse(failed.get());
+		for(String key : tree.keys()){
+			String parent=PathMap.parentPath(key);
+			assertTrue(parent==null || parent.equals(Tree.defaulSeparator) || tree.containsNode(parent));
+		}
+	}
+}
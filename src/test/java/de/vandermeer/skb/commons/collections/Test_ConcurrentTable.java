@@ -0,0 +1,163 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+
+/**
+ * Tests for concurrent tables.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_ConcurrentTable {
+
+	private IsAttributeKey[] columns(){
+		return new IsAttributeKey[]{IsAttributeKey.create("col1"), IsAttributeKey.create("col2"), IsAttributeKey.create("col3")};
+	}
+
+	private void runAll(List<Thread> threads) throws InterruptedException{
+		for(Thread t : threads){
+			t.start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+	}
+
+	@Test public void testTable(){
+		ConcurrentFlatTable<String> table=new ConcurrentFlatTable<String>(SetStrategy.LINKED_HASH_SET, this.columns());
+		assertTrue(table.isEmpty());
+
+		assertTrue(table.addRow("/r1"));
+		assertFalse(table.addRow("r1"));
+		assertFalse(table.addRow("t2/illegal"));
+		assertFalse(table.addRow(null));
+		assertTrue(table.contains("r1"));
+		assertTrue(table.contains("r1", "col3"));
+		assertEquals(4, table.size());
+
+		assertTrue(table.columnValue("r1", "col1", "a"));
+		assertFalse(table.columnValue("r2", "col1", "a"));
+		assertEquals("a", table.get("r1", "col1"));
+		assertEquals(3, table.get("r1").size());
+		assertEquals("a", table.get("r1").get("/r1/col1"));
+		assertTrue(table.removeColumnValue("r1", "col1"));
+		assertNull(table.get("r1", "col1"));
+
+		assertTrue(table.addRowsAll(new String[]{"r2", "r3"}));
+		assertEquals(12, table.size());
+		ConcurrentFlatTable<String> copy=table.getCopy();
+		assertTrue(table.removeRow("r2"));
+		assertFalse(table.contains("r2/col1"));
+		assertEquals(8, table.size());
+		assertEquals(12, copy.size());
+
+		table.clear();
+		assertTrue(table.isEmpty());
+		assertTrue(table.keys().isEmpty());
+	}
+
+	@Test public void testMultiTable(){
+		ConcurrentFlatMultiTable<String> table=new ConcurrentFlatMultiTable<String>(SetStrategy.LINKED_HASH_SET, this.columns());
+		assertTrue(table.addRow("r1"));
+		assertTrue(table.columnValue("r1", "col1", "a"));
+		assertTrue(table.columnValue("r1", "col1", "b"));
+		assertFalse(table.columnValue("r1", "col4", "b"));
+		assertEquals("a", table.get("r1", "col1"));
+		assertEquals(2, table.getMulti("r1", "col1").size());
+		assertEquals("a", table.get("r1").get("/r1/col1"));
+
+		//returned collections are copies
+		Map<String, ComCollection<String>> row=table.getRow("r1");
+		row.get("/r1/col1").add("c");
+		table.getMulti("r1", "col1").add("c");
+		assertEquals(2, table.getMulti("r1", "col1").size());
+
+		assertTrue(table.removeColumnValue("r1", "col1"));
+		assertNull(table.getMulti("r1", "col1"));
+		assertTrue(table.removeRow("r1"));
+		assertTrue(table.isEmpty());
+	}
+
+	@Test public void testConcurrentAppends() throws InterruptedException{
+		final ConcurrentFlatMultiTable<Integer> table=new ConcurrentFlatMultiTable<Integer>(SetStrategy.LINKED_HASH_SET, this.columns());
+		List<Thread> threads=new ArrayList<Thread>();
+		for(int t=0; t<4; t++){
+			final int id=t;
+			threads.add(new Thread(() -> {
+				for(int i=0; i<500; i++){
+					table.addRow("r" + (i%10));
+					assertTrue(table.columnValue("r" + (i%10), "col1", id*1000 + i));
+				}
+			}));
+		}
+		this.runAll(threads);
+		int values=0;
+		for(int r=0; r<10; r++){
+			values+=table.getMulti("r" + r, "col1").size();
+		}
+		assertEquals(2000, values);
+	}
+
+	@Test public void testAtomicRows() throws InterruptedException{
+		final ConcurrentFlatTable<Integer> table=new ConcurrentFlatTable<Integer>(SetStrategy.LINKED_HASH_SET, this.columns());
+		final AtomicBoolean failed=new AtomicBoolean(false);
+		List<Thread> threads=new ArrayList<Thread>();
+		for(int t=0; t<4; t++){
+			final int id=t;
+			threads.add(new Thread(() -> {
+				for(int i=0; i<500; i++){
+					String row="t" + id + "r" + (i%20);
+					table.addRow(row);
+					table.columnValue(row, "col2", i);
+					if(i%3==0){
+						table.removeRow(row);
+					}
+				}
+			}));
+		}
+		threads.add(new Thread(() -> {
+			for(int i=0; i<500; i++){
+				for(String key : table.keys()){
+					//a row is either complete or not visible at all
+					if(key.indexOf('/', 1)==-1){
+						Map<String, Integer> row=table.get(key);
+						if(!row.isEmpty() && row.size()!=3){
+							failed.set(true);
+						}
+					}
+				}
+			}
+		}));
+		this.runAll(threads);
+		assertFalse(failed.get());
+		assertEquals(0, table.size() % 4);
+	}
+}
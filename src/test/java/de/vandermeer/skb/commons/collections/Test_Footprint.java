@@ -0,0 +1,212 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.Supplier;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+
+/**
+ * Tests for footprint estimates.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_Footprint {
+
+	@Test public void testTableAndCollection(){
+		FlatTable<String> table = new FlatTable<String>(SetStrategy.HASH_SET, new IsAttributeKey[]{IsAttributeKey.create("c1"), IsAttributeKey.create("c2")});
+		assertEquals(0, table.footprint().getEntries());
+		table.addRow("r1");
+		table.columnValue("r1", IsAttributeKey.create("c1"), "value");
+		Footprint row = table.footprint();
+		assertEquals(3, row.getEntries());
+		assertEquals(Footprint.string("value"), row.getValues());
+		table.addRow("r2");
+		assertTrue(table.footprint().getTotal()>row.getTotal());
+
+		ComCollection<String> coll = new ComCollection<String>();
+		long empty = coll.footprint().getTotal();
+		coll.add("value");
+		coll.add("other");
+		Footprint two = coll.footprint();
+		assertEquals(2, two.getEntries());
+		assertEquals(2 * Footprint.string("value"), two.getValues());
+		assertTrue(two.getTotal()>empty);
+	}
+
+	@Test public void testParts(){
+		FlatTree<String> tree = new FlatTree<String>();
+		Footprint empty = tree.footprint();
+		assertEquals(0, empty.getEntries());
+		assertEquals(0, empty.getKeys());
+		assertEquals(0, empty.getValues());
+		assertTrue(empty.getOverhead()>0);
+
+		tree.addNodeWithValue("/a/b", "x");
+		Footprint two = tree.footprint();
+		assertEquals(2, two.getEntries());
+		assertEquals(Footprint.string("/a") + Footprint.string("/a/b"), two.getKeys());
+		assertEquals(Footprint.string("x"), two.getValues());
+		assertEquals(0, two.getCollections());
+		assertEquals(two.getKeys() + two.getValues() + two.getOverhead(), two.getTotal());
+
+		//shared values are not counted
+		FlatTree<Object> shared = new FlatTree<Object>();
+		shared.addNodeWithValue("/a", Boolean.TRUE);
+		shared.addNodeWithValue("/b", 7);
+		assertEquals(0, shared.footprint().getValues());
+	}
+
+	@Test public void testCompactLayout(){
+		FlatMultiTree<String> flat = new FlatMultiTree<String>();
+		CompactMultiTree<String> compact = new CompactMultiTree<String>();
+		for(int i=0; i<1000; i++){
+			flat.addNodeWithValue("/n" + i, "v");
+			compact.addNodeWithValue("/n" + i, "v");
+		}
+		assertEquals(flat.footprint().getKeys(), compact.footprint().getKeys());
+		assertEquals(flat.footprint().getValues(), compact.footprint().getValues());
+		assertEquals(0, compact.footprint().getCollections());
+		assertTrue(flat.footprint().getCollections()>0);
+	}
+
+	/** Heap measured for {@link #tree()} with heap deltas, SerialGC and compressed references, on Java 8 and on Java 17 */
+	static final long[] MEASURED_TREE = new long[]{216372, 200372};
+
+	/** Heap measured for {@link #table()} with heap deltas, SerialGC and compressed references, on Java 8 and on Java 17 */
+	static final long[] MEASURED_TABLE = new long[]{92724, 85124};
+
+	/** Heap measured for {@link #collection()} with heap deltas, SerialGC and compressed references, on Java 8 and on Java 17 */
+	static final long[] MEASURED_COLLECTION = new long[]{668, 588};
+
+	/** System property that enables the measurement of live heap deltas */
+	static final String MEASURE = "skb.footprint.measure";
+
+	@Test public void testMeasuredBaselines(){
+		//Java 8 stores two bytes per character, Java 9 and later one byte
+		int jvm = (Footprint.CHAR_BYTES==2)?0:1;
+		this.assertWithin(MEASURED_TREE[jvm], tree().footprint().getTotal(), 0.01);
+		this.assertWithin(MEASURED_TABLE[jvm], table().footprint().getTotal(), 0.01);
+		this.assertWithin(MEASURED_COLLECTION[jvm], collection().footprint().getTotal(), 0.01);
+	}
+
+	/**
+	 * Measures the live heap of the fixtures, enabled with -Dskb.footprint.measure=true.
+	 * Run it with -XX:+UseSerialGC, other collectors do not return used heap reliably.
+	 */
+	@Test public void testHeapDelta(){
+		Assume.assumeTrue("live heap measurement is enabled with -D" + MEASURE + "=true", Boolean.getBoolean(MEASURE));
+		this.assertWithin(this.measure(50, Test_Footprint::tree), tree().footprint().getTotal(), 0.02);
+		this.assertWithin(this.measure(100, Test_Footprint::table), table().footprint().getTotal(), 0.02);
+		this.assertWithin(this.measure(20000, Test_Footprint::collection), collection().footprint().getTotal(), 0.02);
+	}
+
+	/**
+	 * Tree with 1000 known paths and distinct string values.
+	 * @return new tree
+	 */
+	static FlatTree<String> tree(){
+		FlatTree<String> ret = new FlatTree<String>();
+		for(int i=0; i<1000; i++){
+			ret.addNodeWithValue("/node" + i, "value" + i);
+		}
+		return ret;
+	}
+
+	/**
+	 * Table with 100 rows and 5 columns, every cell holding a distinct string.
+	 * @return new table
+	 */
+	static FlatTable<String> table(){
+		IsAttributeKey[] columns = new IsAttributeKey[5];
+		for(int c=0; c<columns.length; c++){
+			columns[c] = IsAttributeKey.create("c" + c);
+		}
+		FlatTable<String> ret = new FlatTable<String>(SetStrategy.HASH_SET, columns);
+		for(int r=0; r<100; r++){
+			ret.addRow("r" + r);
+			for(int c=0; c<columns.length; c++){
+				ret.columnValue("r" + r, columns[c], "v" + r + "-" + c);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Collection of 10 distinct strings.
+	 * @return new collection
+	 */
+	static ComCollection<String> collection(){
+		ComCollection<String> ret = new ComCollection<String>();
+		for(int i=0; i<10; i++){
+			ret.add("value" + i);
+		}
+		return ret;
+	}
+
+	/**
+	 * Measures the heap retained by a fixture, averaged over several copies.
+	 * @param copies number of copies to create
+	 * @param fixture creates one copy
+	 * @return retained bytes of one copy
+	 */
+	private long measure(int copies, Supplier<Object> fixture){
+		Object[] keep = new Object[copies];
+		long before = this.used();
+		for(int i=0; i<copies; i++){
+			keep[i] = fixture.get();
+		}
+		long after = this.used();
+		//the array holding the copies is not part of the fixture
+		long ret = (after - before - Footprint.ARRAY_HEADER - (long)Footprint.REF * copies) / copies;
+		assertTrue(keep[copies-1]!=null);
+		return ret;
+	}
+
+	/**
+	 * Returns the used heap after collecting garbage.
+	 * @return used heap in bytes
+	 */
+	private long used(){
+		Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<4; i++){
+			System.gc();
+			try{
+				Thread.sleep(50);
+			}
+			catch(InterruptedException ignore){}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Asserts that an estimate is within a relative tolerance of a measured size.
+	 * @param measured measured bytes
+	 * @param estimate estimated bytes
+	 * @param tolerance relative tolerance
+	 */
+	private void assertWithin(long measured, long estimate, double tolerance){
+		assertEquals(measured, estimate, measured * tolerance);
+	}
+}
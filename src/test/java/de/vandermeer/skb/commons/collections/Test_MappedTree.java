@@ -0,0 +1,146 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.composite.Com_Coin;
+import de.vandermeer.skb.base.composite.Com_Leaf;
+import de.vandermeer.skb.base.composite.Com_Node;
+import de.vandermeer.skb.base.composite.Com_Top;
+
+/**
+ * Tests for memory mapped tree.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_MappedTree {
+
+	private File newFile() throws IOException {
+		File ret=File.createTempFile("skb-mapped-tree", ".dat");
+		ret.delete();
+		ret.deleteOnExit();
+		new File(ret.getPath() + ".idx").deleteOnExit();
+		return ret;
+	}
+
+	@Test public void testTypes() throws IOException {
+		try(MappedTree<String> tree=new MappedTree<String>(this.newFile(), ValueCodec.UTF8, MappedTree.MIN_CHUNK_SIZE)){
+			Com_Top t=tree;
+			assertTrue(t instanceof Tree);
+			assertTrue(t instanceof Com_Node);
+			assertFalse(t instanceof Com_Leaf);
+			assertFalse(t instanceof Com_Coin);
+		}
+	}
+
+	@Test public void testAddAndRemove() throws IOException {
+		try(MappedTree<String> tree=new MappedTree<String>(this.newFile(), ValueCodec.UTF8, MappedTree.MIN_CHUNK_SIZE)){
+			assertTrue(tree.isEmpty());
+
+			assertTrue(tree.addNodeWithValue("/a/b/c", "v1"));
+			assertEquals(3, tree.size());		// "/a", "/a/b", "/a/b/c"
+			assertTrue(tree.containsNode("/a/b"));
+			assertEquals("v1", tree.getValue("a/b", "c"));
+			assertTrue(tree.hasChildren("/a"));
+			assertFalse(tree.hasChildren("/a/b/c"));
+			assertEquals(2, tree.getChildrenNames("/a").size());
+
+			assertTrue(tree.addNodeWithValue("/a/b/c", "v2"));
+			assertEquals("v2", tree.getValue("/a/b/c"));
+			assertEquals(3, tree.size());
+
+			assertTrue(tree.removeValue("/a/b/c"));
+			assertTrue(tree.containsNode("/a/b/c"));
+			assertNull(tree.getValue("/a/b/c"));
+
+			tree.addNode("/a/d");
+			assertTrue(tree.removeNode("/a/b"));
+			assertFalse(tree.containsNode("/a/b/c"));
+			assertFalse(tree.containsNode("/a/b"));
+			assertTrue(tree.containsNode("/a/d"));
+			assertEquals(2, tree.size());
+
+			tree.clear();
+			assertTrue(tree.isEmpty());
+			assertFalse(tree.containsNode("/a"));
+		}
+	}
+
+	@Test public void testReopen() throws IOException {
+		File file=this.newFile();
+		try(MappedTree<String> tree=new MappedTree<String>(file, ValueCodec.UTF8, MappedTree.MIN_CHUNK_SIZE)){
+			for(int i=0; i<3000; i++){
+				tree.addNodeWithValue("/n" + (i%10) + "/m" + i, "value-" + i);
+			}
+			tree.removeNode("/n3");
+		}
+
+		try(MappedTree<String> tree=new MappedTree<String>(file, ValueCodec.UTF8)){
+			assertEquals(2709, tree.size());
+			assertEquals("value-1234", tree.getValue("/n4/m1234"));
+			assertFalse(tree.containsNode("/n3/m3"));
+			tree.addNodeWithValue("/n3/x", "new");
+		}
+
+		//the index is rebuilt from the data file if it is missing
+		assertTrue(new File(file.getPath() + ".idx").delete());
+		try(MappedTree<String> tree=new MappedTree<String>(file, ValueCodec.UTF8)){
+			assertEquals(2711, tree.size());
+			assertEquals("new", tree.getValue("/n3/x"));
+			assertEquals("value-2999", tree.getValue("/n9/m2999"));
+		}
+	}
+
+	@Test public void testAgainstFlatTree() throws IOException {
+		Random random=new Random(42);
+		FlatTree<String> flat=new FlatTree<String>();
+		try(MappedTree<String> tree=new MappedTree<String>(this.newFile(), ValueCodec.UTF8, MappedTree.MIN_CHUNK_SIZE)){
+			for(int i=0; i<5000; i++){
+				String key="/" + random.nextInt(8) + "/" + random.nextInt(8) + "/" + random.nextInt(8);
+				if(random.nextInt(5)==0){
+					key=key.substring(0, key.lastIndexOf('/'));
+					tree.removeNode(key);
+					flat.removeNode(key);
+				}
+				else{
+					tree.addNodeWithValue(key, "v" + i);
+					flat.addNodeWithValue(key, "v" + i);
+				}
+			}
+
+			assertEquals(flat.size(), tree.size());
+			assertEquals(new TreeSet<String>(flat.keys()), new TreeSet<String>(tree.keys()));
+			for(String key : flat.keys()){
+				assertEquals(flat.getValue(key), tree.getValue(key));
+				assertEquals(flat.hasChildren(key), tree.hasChildren(key));
+				assertEquals(new TreeSet<String>(flat.getChildrenNames(key)), new TreeSet<String>(tree.getChildrenNames(key)));
+			}
+			assertEquals(flat.toString().length(), tree.getCopy().toString().length());
+		}
+	}
+}
@@ -19,6 +19,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import de.vandermeer.skb.base.composite.Com_Coin;
@@ -60,4 +62,18 @@ public class Test_MultiTree {
 		assertTrue(tree.keys().isEmpty());		//sval is empty
 		assertTrue(tree.isEmpty());				//tree is empty
 	}
+
+	@Test public void testChildrenAndDescendants(){
+		FlatMultiTree<String> tree=new FlatMultiTree<String>();
+		tree.addNode("/a/b/c");
+		tree.addNode("/a/d");
+		tree.addNode("/e");
+
+		assertEquals(Arrays.asList("/a", "/e"), tree.getDirectChildren("/"));
+		assertEquals(Arrays.asList("/a/b", "/a/d"), tree.getDirectChildren("/a"));
+		assertEquals(Arrays.asList("/a/b", "/a/b/c", "/a/d"), tree.getDescendants("/a", 2));
+		assertEquals(Arrays.asList("/a", "/a/b", "/a/d", "/e"), tree.getDescendants("/", 2));
+		assertTrue(tree.getDirectChildren("/e").isEmpty());
+		assertTrue(tree.getDirectChildren("/x").isEmpty());
+	}
 }
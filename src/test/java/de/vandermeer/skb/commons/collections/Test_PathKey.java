@@ -0,0 +1,105 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+import de.vandermeer.skb.configuration.EAttributeKeys;
+
+/**
+ * Tests for path keys.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_PathKey {
+
+	@Test public void testCreate(){
+		PathKey key=PathKey.create("a/b", "c");
+		assertEquals("/a/b/c", key.key());
+		assertEquals("/a/b/c", key.toString());
+		assertEquals(3, key.depth());
+		assertEquals("b", key.segment(1));
+		assertEquals(PathKey.create("/a/b/c"), key);
+		assertEquals(PathKey.create("/a/b/c").hashCode(), key.hashCode());
+		assertEquals("/a/b/c/d", key.child("d").key());
+
+		String[] paths=key.paths();
+		assertEquals(3, paths.length);
+		assertEquals("/a", paths[0]);
+		assertEquals("/a/b", paths[1]);
+		assertEquals("/a/b/c", paths[2]);
+	}
+
+	@Test public void testTree(){
+		PathKey key=PathKey.create("/a/b/c");
+		FlatTree<String> tree=new FlatTree<String>();
+		assertTrue(tree.addNodeWithValue(key, "v1"));
+		assertEquals(3, tree.size());
+		assertTrue(tree.containsNode(key));
+		assertTrue(tree.hasChildren(PathKey.create("/a")));
+		assertEquals("v1", tree.getValue(key));
+		assertEquals("v1", tree.getValue((Object)key));
+		assertTrue(tree.removeValue(key));
+		assertNull(tree.getValue(key));
+		assertNull(tree.getValue((PathKey)null));
+
+		FlatMultiTree<String> multi=new FlatMultiTree<String>();
+		assertTrue(multi.addNodeWithValue(key, "v1"));
+		assertTrue(multi.addNodeWithValue(key, "v2"));
+		assertEquals("v1", multi.getValue(key));
+		assertEquals(2, multi.getValueMulti(key).size());
+	}
+
+	@Test public void testTable(){
+		IsAttributeKey[] c=new IsAttributeKey[]{IsAttributeKey.create("col1"), IsAttributeKey.create("col2")};
+		FlatTable<String> table=new FlatTable<String>(SetStrategy.HASH_SET, c);
+		table.addRow("row1");
+
+		PathKey cell=PathKey.create("row1", "col1");
+		assertTrue(table.contains(cell));
+		assertTrue(table.columnValue(cell, "v1"));
+		assertEquals("v1", table.getValue(cell));
+		assertEquals("v1", table.get("row1", "col1"));
+		assertFalse(table.columnValue(PathKey.create("row2", "col1"), "v1"));
+	}
+
+	@Test public void testPropertyValue(){
+		PropertyTable table=new PropertyTable(null);
+		table.addRow("p1");
+		PathKey row=PathKey.create("p1");
+		assertEquals(table.getPropertyValue("p1"), table.getPropertyValue(row));
+
+		table.setPropertyValueDefault("p1", "default");
+		assertEquals("default", table.getPropertyValue(row));
+		table.setPropertyValueCli("p1", "cli");
+		assertEquals("cli", table.getPropertyValue(row));
+		assertEquals("cli", table.getPropertyValue("p1"));
+
+		//the cell paths are created once per key
+		String[] cells=row.cells(PropertyTable.VALUE_COLUMNS);
+		table.getPropertyValue(row);
+		assertTrue(cells==row.cells(PropertyTable.VALUE_COLUMNS));
+		assertEquals("/p1/" + EAttributeKeys.VALUE_CLI.key(), cells[1]);
+	}
+}
@@ -0,0 +1,167 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for the path map.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_PathMap {
+
+	private PathMap<String> fill(){
+		PathMap<String> map=new PathMap<String>();
+		map.put("/a", "level1");
+		map.put("/a/b", "level2");
+		map.put("/a/b/c", "level3");
+		map.put("/a/b/c/d", "level4");
+		map.put("/a/b-x", "level2");
+		map.put("/a/b-x/y", "level3");
+		map.put("/ab", "level1");
+		return map;
+	}
+
+	@Test public void testSubPaths(){
+		PathMap<String> map=this.fill();
+		assertEquals(7, map.size());
+
+		Collection<String> sub=map.getSubPaths("/a/b");
+		assertEquals(2, sub.size());
+		assertTrue(sub.contains("/a/b/c"));
+		assertTrue(sub.contains("/a/b/c/d"));
+
+		sub=map.getSubPaths("/a");
+		assertEquals(5, sub.size());
+		assertFalse(sub.contains("/a"));
+		assertFalse(sub.contains("/ab"));
+
+		assertEquals(7, map.getSubPaths("/").size());
+		assertEquals(0, map.getSubPaths("/x").size());
+		assertEquals(0, map.getSubPaths(null).size());
+	}
+
+	@Test public void testSubPathsDepth(){
+		PathMap<String> map=this.fill();
+		assertEquals(Arrays.asList("/a/b", "/a/b-x"), map.getSubPaths("/a", 1));
+		assertEquals(Arrays.asList("/a/b", "/a/b-x", "/a/b-x/y", "/a/b/c"), map.getSubPaths("/a", 2));
+		assertEquals(Arrays.asList("/a/b", "/a/b-x", "/a/b-x/y", "/a/b/c", "/a/b/c/d"), map.getSubPaths("/a", Integer.MAX_VALUE));
+		assertEquals(Arrays.asList("/a", "/ab"), map.getSubPaths("/", 1));
+		assertEquals(0, map.getSubPaths("/a/b/c/d", 1).size());
+		assertEquals(0, map.getSubPaths("/a", 0).size());
+		assertEquals(0, map.getSubPaths(null, 1).size());
+	}
+
+	@Test public void testRemoveSubtree(){
+		PathMap<String> map=this.fill();
+
+		assertTrue(map.removeSubtree("/a/b"));
+		assertFalse(map.containsKey("/a/b"));
+		assertFalse(map.containsKey("/a/b/c"));
+		assertFalse(map.containsKey("/a/b/c/d"));
+		assertTrue(map.containsKey("/a/b-x"));
+		assertEquals(4, map.size());
+		assertEquals(4, map.sortedKeys().size());
+
+		assertTrue(map.removeSubtree("/"));
+		assertTrue(map.isEmpty());
+		assertTrue(map.sortedKeys().isEmpty());
+	}
+
+	@Test public void testKeySetRemove(){
+		PathMap<String> map=this.fill();
+		map.keySet().remove("/ab");
+		assertFalse(map.containsKey("/ab"));
+		assertFalse(map.sortedKeys().contains("/ab"));
+
+		map.keySet().clear();
+		assertTrue(map.sortedKeys().isEmpty());
+	}
+
+	@Test public void testChildCount(){
+		PathMap<String> map=this.fill();
+		assertEquals(2, map.getChildCount("/a"));
+		assertEquals(1, map.getChildCount("/a/b"));
+		assertEquals(0, map.getChildCount("/a/b/c/d"));
+		assertTrue(map.hasChildren("/a/b/c"));
+		assertFalse(map.hasChildren("/a/b/c/d"));
+		assertFalse(map.hasChildren("/x"));
+
+		map.remove("/a/b/c/d");
+		assertFalse(map.hasChildren("/a/b/c"));
+
+		map.removeSubtree("/a/b-x");
+		assertEquals(1, map.getChildCount("/a"));
+
+		//children added before their parent
+		map.put("/n/m/1", null);
+		map.put("/n/m/2/x", null);
+		map.put("/n/m/2", null);
+		map.put("/n/m", null);
+		assertEquals(2, map.getChildCount("/n/m"));
+		assertEquals(1, map.getChildCount("/n/m/2"));
+
+		map.put("/", null);
+		assertEquals(2, map.getChildCount("/"));
+		map.remove("/ab");
+		assertEquals(1, map.getChildCount("/"));
+
+		PathMap<String> copy=new PathMap<String>();
+		copy.putAll(map);
+		assertEquals(2, copy.getChildCount("/n/m"));
+	}
+
+	@Test public void testSortedKeys(){
+		SortedSet<String> keys=new PathMap.SortedKeys(new String[]{"/a", "/a/b", "/a/c", "/b", "/c"});
+		assertEquals(Arrays.asList("/a/b", "/a/c"), new ArrayList<String>(keys.subSet("/a/", "/a0")));
+		assertEquals(Arrays.asList("/a", "/a/b"), new ArrayList<String>(keys.headSet("/a/c")));
+		assertEquals(Arrays.asList("/b", "/c"), new ArrayList<String>(keys.tailSet("/b")));
+		assertEquals(Arrays.asList("/b", "/c"), new ArrayList<String>(keys.tailSet("/a1")));
+		assertTrue(keys.subSet("/x", "/y").isEmpty());
+
+		SortedSet<String> sub=keys.subSet("/a/b", "/c");
+		assertEquals(3, sub.size());
+		assertEquals("/a/b", sub.first());
+		assertEquals("/b", sub.last());
+		assertTrue(sub.contains("/a/c"));
+		assertFalse(sub.contains("/a"));
+		assertFalse(sub.contains("/c"));
+		assertEquals(Arrays.asList("/a/b", "/a/c"), new ArrayList<String>(sub.headSet("/b")));
+		assertEquals(Arrays.asList("/a/b", "/a/c", "/b"), new ArrayList<String>(sub.tailSet("/")));
+
+		//a tree set accepts the keys in linear time and they behave the same
+		TreeSet<String> tree=new TreeSet<String>(keys);
+		assertEquals(tree.subSet("/a/", "/b"), keys.subSet("/a/", "/b"));
+	}
+
+	@Test(expected=NoSuchElementException.class)
+	public void testSortedKeysEmpty(){
+		new PathMap.SortedKeys(new String[]{"/a"}).tailSet("/b").first();
+	}
+}
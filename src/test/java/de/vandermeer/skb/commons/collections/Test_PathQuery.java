@@ -0,0 +1,137 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for path queries.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_PathQuery {
+
+	private static final String[] PATTERNS = new String[]{
+		"/skb/context/*/value.type", "/skb/**", "/skb/**/value.type", "/**/b", "/a/**/b", "/*", "/a/b?", "/a/*-x/**", "**", "/a/b/c", "/missing/**", "/a/**/**/c"
+	};
+
+	private <T extends Tree<String>> T fill(T tree){
+		tree.addNodeWithValue("/skb/context/p1/value.type", "int");
+		tree.addNodeWithValue("/skb/context/p2/value.type", "string");
+		tree.addNodeWithValue("/skb/context/p2/value.default", "x");
+		tree.addNodeWithValue("/skb/context/p3/sub/value.type", "int");
+		tree.addNodeWithValue("/a/b", "ab");
+		tree.addNodeWithValue("/a/b/c", "abc");
+		tree.addNodeWithValue("/a/b1", "ab1");
+		tree.addNodeWithValue("/a/b-x/c/b", "abxcb");
+		tree.addNodeWithValue("/b", "b");
+		return tree;
+	}
+
+	private List<String> scan(PathQuery query, Tree<?> tree){
+		List<String> ret = new ArrayList<String>();
+		for(String key : tree.keys()){
+			if(query.matches(key)){
+				ret.add(key);
+			}
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	@Test public void testMatches(){
+		assertTrue(PathQuery.compile("/a/*/c").matches("/a/b/c"));
+		assertFalse(PathQuery.compile("/a/*/c").matches("/a/b/b/c"));
+		assertTrue(PathQuery.compile("/a/**/c").matches("/a/c"));
+		assertTrue(PathQuery.compile("/a/**/c").matches("/a/b/b/c"));
+		assertTrue(PathQuery.compile("/a/**").matches("/a"));
+		assertTrue(PathQuery.compile("/a/b*.t?pe").matches("/a/bx.type"));
+		assertFalse(PathQuery.compile("/a/b*.t?pe").matches("/a/bx-type"));
+		assertTrue(PathQuery.compile("/a/(b)").matches("/a/(b)"));
+		assertFalse(PathQuery.compile("/a/b").matches(null));
+		assertEquals("/a/**", PathQuery.compile("/a/**").getPattern());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNullPattern(){
+		PathQuery.compile(null);
+	}
+
+	@Test public void testFind(){
+		FlatTree<String> tree = this.fill(new FlatTree<String>());
+		assertEquals(Arrays.asList("/skb/context/p1/value.type", "/skb/context/p2/value.type"), tree.query("/skb/context/*/value.type"));
+		assertEquals(Arrays.asList("/a/b", "/a/b-x/c/b", "/b"), tree.query("/**/b"));
+		assertEquals(Arrays.asList("/skb/context/p1/value.type", "/skb/context/p3/sub/value.type"), tree.query("/skb/**/value.type", "int"::equals));
+		assertTrue(tree.query("/a/b/c/d").isEmpty());
+	}
+
+	@Test public void testAllTrees(){
+		List<Tree<String>> trees = new ArrayList<Tree<String>>();
+		trees.add(this.fill(new FlatTree<String>()));
+		trees.add(this.fill(new FlatMultiTree<String>()));
+		trees.add(this.fill(new CompactMultiTree<String>()));
+		trees.add(this.fill(new ConcurrentFlatTree<String>()));
+		trees.add(this.fill(new TrieTree<String>()));
+		trees.add(this.fill(new PersistentTree<String>()));
+		for(String pattern : PATTERNS){
+			PathQuery query = PathQuery.compile(pattern);
+			for(Tree<String> tree : trees){
+				assertEquals(pattern + " " + tree.getClass().getSimpleName(), this.scan(query, tree), query.find(tree));
+			}
+		}
+	}
+
+	@Test public void testSubtreeView(){
+		FlatTree<String> tree = this.fill(new FlatTree<String>());
+		SubtreeView<String> view = tree.subtreeView("/skb/context/p2");
+		assertEquals(Arrays.asList("/skb/context/p2/value.default", "/skb/context/p2/value.type"), view.query("/**"));
+		assertEquals(Arrays.asList("/skb/context/p2/value.type"), view.query("/**/value.type"));
+		assertTrue(view.query("/a/**").isEmpty());
+	}
+
+	@Test public void testVisitedBranches(){
+		final List<String> visited = new ArrayList<String>();
+		FlatTree<String> tree = new FlatTree<String>(){
+			@Override
+			public TreeSpliterator spliterator(Object fqpn, TreeSpliterator.Order order, int maxDepth) {
+				return new TreeSpliterator(fqpn.toString(), path -> {visited.add(path); return this.sval.childPaths(path);}, this.size(), order, maxDepth);
+			}
+		};
+		this.fill(tree);
+		for(int i=0; i<100; i++){
+			tree.addNodeWithValue("/other/n" + i + "/value.type", "int");
+		}
+
+		assertEquals(2, tree.query("/skb/context/*/value.type").size());
+		assertEquals(Arrays.asList("/skb/context"), visited);
+
+		visited.clear();
+		assertEquals(2, tree.query("/a/**/c").size());
+		for(String path : visited){
+			assertTrue(path, path.startsWith("/a"));
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.composite.Com_Coin;
+import de.vandermeer.skb.base.composite.Com_Leaf;
+import de.vandermeer.skb.base.composite.Com_Node;
+import de.vandermeer.skb.base.composite.Com_Top;
+
+/**
+ * Tests for persistent tree.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_PersistentTree {
+
+	@Test public void testTypes(){
+		Com_Top t;
+		t=new PersistentTree<Object>();
+		assertTrue(t instanceof Tree);
+		assertTrue(t instanceof Com_Node);
+		assertFalse(t instanceof Com_Leaf);
+		assertFalse(t instanceof Com_Coin);
+	}
+
+	@Test public void testAddAndRemove(){
+		PersistentTree<String> tree=new PersistentTree<String>();
+		assertTrue(tree.isEmpty());
+
+		assertTrue(tree.addNodeWithValue("/a/b/c", "v1"));
+		assertEquals(3, tree.size());		// "/a", "/a/b", "/a/b/c"
+		assertTrue(tree.containsNode("/a/b"));
+		assertEquals("v1", tree.getValue("a/b", "c"));
+		assertTrue(tree.hasChildren("/a"));
+		assertFalse(tree.hasChildren("/a/b/c"));
+		assertEquals(2, tree.getChildrenNames("/a").size());
+
+		assertTrue(tree.addNode("/a/b/c"));
+		assertEquals("v1", tree.getValue("/a/b/c"));
+
+		assertTrue(tree.removeValue("/a/b/c"));
+		assertTrue(tree.containsNode("/a/b/c"));
+		assertNull(tree.getValue("/a/b/c"));
+		assertFalse(tree.removeValue("/x"));
+
+		tree.addNode("/a-b");
+		assertTrue(tree.removeNode("/a"));
+		assertFalse(tree.containsNode("/a/b/c"));
+		assertFalse(tree.containsNode("/a"));
+		assertTrue(tree.containsNode("/a-b"));
+		assertEquals(1, tree.size());
+	}
+
+	@Test public void testSnapshots(){
+		PersistentTree<String> tree=new PersistentTree<String>();
+		tree.addNodeWithValue("/a/b", "v1");
+		tree.addNodeWithValue("/c", "v2");
+
+		PersistentTree<String> copy=tree.getCopy();
+		tree.addNodeWithValue("/a/b", "v3");
+		tree.addNode("/d");
+		tree.removeNode("/c");
+
+		assertEquals("v1", copy.getValue("/a/b"));
+		assertEquals("v2", copy.getValue("/c"));
+		assertFalse(copy.containsNode("/d"));
+		assertEquals(3, copy.size());
+		assertEquals("v3", tree.getValue("/a/b"));
+		assertEquals(3, tree.size());
+
+		copy.addNode("/e");
+		assertFalse(tree.containsNode("/e"));
+	}
+
+	@Test public void testSubtreeAndMerge(){
+		PersistentTree<String> tree=new PersistentTree<String>();
+		tree.addNodeWithValue("/a/b", "v1");
+		tree.addNodeWithValue("/a/c/d", "v2");
+		tree.addNodeWithValue("/b", "v3");
+
+		PersistentTree<String> sub=tree.getSubtree("/a");
+		assertEquals(3, sub.size());
+		assertEquals("v2", sub.getValue("/a/c/d"));
+		assertFalse(sub.containsNode("/a"));
+
+		FlatTree<String> flat=new FlatTree<String>();
+		flat.addNodeWithValue("/a/b", "v4");
+		flat.addNodeWithValue("/x", "v5");
+		flat.addNode("/b");
+		assertTrue(tree.merge(flat));
+		assertEquals("v4", tree.getValue("/a/b"));
+		assertEquals("v5", tree.getValue("/x"));
+		assertEquals("v3", tree.getValue("/b"));
+
+		PersistentTree<String> empty=new PersistentTree<String>();
+		assertTrue(empty.merge(tree));
+		assertEquals(tree.size(), empty.size());
+	}
+
+	@Test public void testAgainstFlatTree(){
+		Random random=new Random(42);
+		PersistentTree<Integer> tree=new PersistentTree<Integer>();
+		FlatTree<Integer> flat=new FlatTree<Integer>();
+		List<PersistentTree<Integer>> copies=new ArrayList<PersistentTree<Integer>>();
+		List<TreeSet<String>> states=new ArrayList<TreeSet<String>>();
+
+		for(int i=0; i<2000; i++){
+			String key="/" + random.nextInt(5) + "/" + random.nextInt(5) + "/" + random.nextInt(5);
+			if(random.nextInt(4)==0){
+				key=key.substring(0, key.lastIndexOf('/'));
+				tree.removeNode(key);
+				flat.removeNode(key);
+			}
+			else{
+				tree.addNodeWithValue(key, i);
+				flat.addNodeWithValue(key, i);
+			}
+			if(i%100==0){
+				copies.add(tree.getCopy());
+				states.add(new TreeSet<String>(flat.keys()));
+			}
+		}
+
+		assertEquals(flat.size(), tree.size());
+		assertEquals(new TreeSet<String>(flat.keys()), new TreeSet<String>(tree.keys()));
+		for(String key : flat.keys()){
+			assertEquals(flat.getValue(key), tree.getValue(key));
+			assertEquals(flat.hasChildren(key), tree.hasChildren(key));
+			assertEquals(new TreeSet<String>(flat.getChildrenNames(key)), new TreeSet<String>(tree.getChildrenNames(key)));
+		}
+		this.assertTreap(tree.root);
+
+		//every copy still shows the tree as it was when the copy was taken
+		for(int i=0; i<copies.size(); i++){
+			assertEquals(states.get(i), new TreeSet<String>(copies.get(i).keys()));
+			assertEquals(states.get(i).size(), copies.get(i).size());
+			this.assertTreap(copies.get(i).root);
+		}
+	}
+
+	private void assertTreap(PersistentTree.Node<?> node){
+		if(node==null){
+			return;
+		}
+		assertEquals(1 + PersistentTree.size(node.left) + PersistentTree.size(node.right), node.size);
+		if(node.left!=null){
+			assertTrue(node.left.key.compareTo(node.key)<0);
+			assertTrue(node.left.priority<=node.priority);
+		}
+		if(node.right!=null){
+			assertTrue(node.right.key.compareTo(node.key)>0);
+			assertTrue(node.right.priority<=node.priority);
+		}
+		this.assertTreap(node.left);
+		this.assertTreap(node.right);
+	}
+}
@@ -0,0 +1,147 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for primitive trees.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_PrimitiveTree {
+
+	@Test public void testIntTree(){
+		IntTree tree = new IntTree();
+		assertTrue(tree.addNodeWithValue("/limits/cpu", 4));
+		assertTrue(tree.addNodeWithValue("/limits", "mem", 1024));
+		tree.addNode("/limits/disk");
+
+		assertEquals(4, tree.getInt("/limits/cpu"));
+		assertEquals(1024, tree.getInt("/limits/mem"));
+		assertEquals(0, tree.getInt("/limits/disk"));
+		assertEquals(-1, tree.getInt("/limits/disk", -1));
+		assertEquals(-1, tree.getInt("/missing", -1));
+		assertTrue(tree.hasValue("/limits/cpu"));
+		assertFalse(tree.hasValue("/limits/disk"));
+		assertFalse(tree.hasValue("/limits"));
+		assertEquals(4, tree.size());
+
+		//bridge as Tree<Number>
+		Tree<Number> numbers = tree;
+		assertEquals(Integer.valueOf(4), numbers.getValue("/limits/cpu"));
+		assertNull(numbers.getValue("/limits/disk"));
+		numbers.addNodeWithValue("/limits/cpu", 8.7);
+		assertEquals(8, tree.getInt("/limits/cpu"));
+		numbers.addNodeWithValue("/limits/cpu", null);
+		assertFalse(tree.hasValue("/limits/cpu"));
+		assertTrue(tree.containsNode("/limits/cpu"));
+
+		assertTrue(tree.removeNode("/limits"));
+		assertFalse(tree.hasValue("/limits/mem"));
+		assertTrue(tree.isEmpty());
+	}
+
+	@Test public void testLongAndDoubleTree(){
+		LongTree longs = new LongTree();
+		longs.addNodeWithValue("/a", Long.MAX_VALUE);
+		longs.addNodeWithValue("/b", 3);
+		assertEquals(Long.MAX_VALUE, longs.getLong("/a"));
+		assertEquals(3L, longs.getLong("/b"));
+		assertEquals(Long.valueOf(3), longs.getValue("/b"));
+
+		DoubleTree doubles = new DoubleTree();
+		doubles.addNodeWithValue("/x/y", 0.25);
+		doubles.addNodeWithValue("/x/z", -0.0);
+		doubles.addNodeWithValue("/x/n", Double.NaN);
+		assertEquals(0.25, doubles.getDouble("/x/y"), 0);
+		assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(doubles.getDouble("/x/z")));
+		assertTrue(Double.isNaN(doubles.getDouble("/x/n")));
+		assertEquals(1.5, doubles.getDouble("/x/missing", 1.5), 0);
+		assertEquals(Double.valueOf(0.25), doubles.getValue("/x/y"));
+		assertEquals(Arrays.asList("/x/n", "/x/y", "/x/z"), doubles.getDirectChildren("/x"));
+	}
+
+	@Test public void testCopyAndSubtree(){
+		IntTree tree = new IntTree();
+		tree.addNodeWithValue("/a/b", 1);
+		tree.addNodeWithValue("/a/c", 2);
+		tree.addNodeWithValue("/d", 3);
+
+		IntTree copy = tree.getCopy();
+		copy.addNodeWithValue("/a/b", 10);
+		assertEquals(1, tree.getInt("/a/b"));
+		assertEquals(10, copy.getInt("/a/b"));
+
+		IntTree sub = tree.getSubtree("/a");
+		assertEquals(2, sub.size());
+		assertEquals(2, sub.getInt("/a/c"));
+		assertFalse(sub.containsNode("/d"));
+	}
+
+	@Test public void testMerge(){
+		FlatTree<Object> source = new FlatTree<Object>();
+		source.addNodeWithValue("/n/i", 5);
+		source.addNodeWithValue("/n/d", 2.5);
+		source.addNodeWithValue("/n/s", "text");
+
+		DoubleTree tree = new DoubleTree();
+		assertTrue(tree.merge(source));
+		assertEquals(5.0, tree.getDouble("/n/i"), 0);
+		assertEquals(2.5, tree.getDouble("/n/d"), 0);
+		assertTrue(tree.containsNode("/n/s"));
+		assertFalse(tree.hasValue("/n/s"));
+
+		FlatTree<Number> back = new FlatTree<Number>();
+		back.merge(tree);
+		assertEquals(Double.valueOf(2.5), back.getValue("/n/d"));
+		assertEquals(3, tree.query("/n/*").size());
+	}
+
+	@Test public void testPrimitiveMap(){
+		Random random = new Random(3);
+		PrimitiveMap map = new PrimitiveMap();
+		Map<String, Long> expected = new HashMap<String, Long>();
+		for(int i=0; i<20000; i++){
+			String key = "/k" + random.nextInt(500);
+			if(random.nextInt(3)==0){
+				assertEquals(expected.remove(key)!=null, map.remove(key));
+			}
+			else{
+				long value = random.nextLong();
+				map.put(key, value);
+				expected.put(key, value);
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for(int i=0; i<500; i++){
+			String key = "/k" + i;
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+			assertEquals((expected.containsKey(key))?expected.get(key).longValue():-1L, map.get(key, -1));
+		}
+	}
+}
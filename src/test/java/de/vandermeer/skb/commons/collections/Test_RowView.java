@@ -0,0 +1,130 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+
+/**
+ * Tests for row views of tables.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_RowView {
+
+	private IsAttributeKey[] columns(){
+		return new IsAttributeKey[]{IsAttributeKey.create("col1"), IsAttributeKey.create("col2")};
+	}
+
+	private void assertRow(Table<String> table){
+		table.addRowsAll(new String[]{"r1", "r2"});
+		table.columnValue("r1", "col1", "a");
+
+		Map<String, String> row = table.get("r1");
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("/r1/col1", "a");
+		expected.put("/r1/col2", null);
+		assertEquals(expected, row);
+		assertEquals(2, row.size());
+		assertTrue(row.containsKey("/r1/col2"));
+		assertFalse(row.containsKey("/r2/col2"));
+		assertNull(row.get("/r1/col3"));
+
+		//the view is live
+		table.columnValue("r1", "col2", "b");
+		assertEquals("b", row.get("/r1/col2"));
+
+		try{
+			row.put("/r1/col1", "x");
+			assertTrue(false);
+		}
+		catch(UnsupportedOperationException e){
+			assertEquals("a", table.get("r1", "col1"));
+		}
+
+		//removing the row empties the view, also if the row is added again
+		table.removeRow("r1");
+		assertTrue(row.isEmpty());
+		assertNull(row.get("/r1/col1"));
+		table.addRow("r1");
+		assertTrue(row.isEmpty());
+		assertEquals(2, table.get("r1").size());
+
+		assertTrue(table.get("r3").isEmpty());
+		assertTrue(table.get(null).isEmpty());
+	}
+
+	@Test public void testFlatTable(){
+		this.assertRow(new FlatTable<String>(SetStrategy.LINKED_HASH_SET, this.columns()));
+
+		FlatTable<String> table = new FlatTable<String>(SetStrategy.LINKED_HASH_SET, this.columns());
+		table.addRow("r1");
+		assertEquals(2, table.getCopy().get("r1").size());
+		table.clear();
+		assertTrue(table.get("r1").isEmpty());
+
+		//rows put directly into the map are found once the index is rebuilt
+		table.sval.put("/k1", null);
+		table.sval.put("/k1/l2", "v");
+		assertTrue(table.get("k1").isEmpty());
+		table.reindexRows();
+		assertEquals("v", table.get("k1").get("/k1/l2"));
+	}
+
+	@Test public void testFlatMultiTable(){
+		this.assertRow(new FlatMultiTable<String>(SetStrategy.LINKED_HASH_SET, this.columns()));
+
+		FlatMultiTable<String> table = new FlatMultiTable<String>(SetStrategy.LINKED_HASH_SET, this.columns());
+		table.addRow("r1");
+		table.columnValue("r1", "col1", "a");
+		table.columnValue("r1", "col1", "b");
+		Map<String, ComCollection<String>> row = table.getRow("r1");
+		assertEquals(2, row.size());
+		assertEquals(Arrays.asList("a", "b"), Arrays.asList(row.get("/r1/col1").toArray()));
+		assertNull(row.get("/r1/col2"));
+		assertEquals("a", table.get("r1").get("/r1/col1"));
+	}
+
+	@Test public void testColumnTable(){
+		this.assertRow(new ColumnTable<String>(SetStrategy.LINKED_HASH_SET, this.columns()));
+
+		ColumnTable<String> table = new ColumnTable<String>(SetStrategy.LINKED_HASH_SET, this.columns());
+		table.addRow("r1");
+		Map<String, String> row = table.get("r1");
+		table.clear();
+		assertTrue(row.isEmpty());
+	}
+
+	@Test public void testPropertyTable(){
+		PropertyTable table = new PropertyTable(null);
+		table.addRow("p1");
+		PropertyTable copy = table.getCopy();
+		assertEquals(table.get("p1").size(), copy.get("p1").size());
+		assertFalse(copy.get("p1").isEmpty());
+	}
+}
@@ -0,0 +1,165 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+/**
+ * Tests for subtree views.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_SubtreeView {
+
+	private FlatTree<String> tree(){
+		FlatTree<String> ret = new FlatTree<String>();
+		ret.addNodeWithValue("/a/b", "ab");
+		ret.addNodeWithValue("/a/b/c", "abc");
+		ret.addNodeWithValue("/a/d", "ad");
+		ret.addNodeWithValue("/a-x", "ax");
+		ret.addNodeWithValue("/e", "e");
+		return ret;
+	}
+
+	@Test public void testContent(){
+		FlatTree<String> tree = this.tree();
+		SubtreeView<String> view = tree.subtreeView("/a");
+
+		assertEquals(new ArrayList<String>(tree.getSubtree("/a").sval.sortedKeys()), new ArrayList<String>(view.keys()));
+		assertEquals(3, view.size());
+		assertFalse(view.isEmpty());
+		assertTrue(view.containsNode("/a/b/c"));
+		assertFalse(view.containsNode("/a"));
+		assertFalse(view.containsNode("/a-x"));
+		assertEquals("ab", view.getValue("/a", "b"));
+		assertNull(view.getValue("/e"));
+		assertTrue(view.hasChildren("/a/b"));
+		assertTrue(view.hasChildren("/a"));
+		assertFalse(view.hasChildren("/e"));
+		assertEquals(Arrays.asList("/a/b", "/a/b/c", "/a/d"), new ArrayList<String>(view.getChildrenNames("/")));
+		assertEquals(Arrays.asList("/a/b/c"), new ArrayList<String>(view.getChildrenNames("/a/b")));
+		assertTrue(view.getChildrenNames("/e").isEmpty());
+		assertEquals(Arrays.asList("/a/b", "/a/b/c", "/a/d"), view.stream("/").collect(Collectors.toList()));
+		assertEquals(Arrays.asList("/a/b", "/a/d"), StreamSupport.stream(view.spliterator("/", TreeSpliterator.Order.DEPTH_FIRST, 2), false).collect(Collectors.toList()));
+
+		assertTrue(tree.subtreeView("/missing").isEmpty());
+		assertEquals(0, tree.subtreeView("/missing").size());
+		assertEquals(tree.size(), tree.subtreeView("/").size());
+	}
+
+	@Test public void testLive(){
+		FlatTree<String> tree = this.tree();
+		SubtreeView<String> view = tree.subtreeView("/a");
+
+		tree.addNodeWithValue("/a/f", "af");
+		assertEquals("af", view.getValue("/a/f"));
+		assertEquals(4, view.size());
+
+		assertTrue(view.addNodeWithValue("/a/g", "ag"));
+		assertEquals("ag", tree.getValue("/a/g"));
+		assertFalse(view.addNodeWithValue("/e/x", "ex"));
+		assertFalse(tree.containsNode("/e/x"));
+
+		assertTrue(view.removeNode("/a/b"));
+		assertFalse(tree.containsNode("/a/b/c"));
+		assertFalse(view.removeNode("/e"));
+		assertTrue(tree.containsNode("/e"));
+
+		view.clear();
+		assertTrue(view.isEmpty());
+		assertTrue(tree.containsNode("/a"));
+		assertTrue(tree.containsNode("/a-x"));
+		assertTrue(tree.containsNode("/e"));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnly(){
+		FlatTree<String> tree = this.tree();
+		SubtreeView<String> view = tree.subtreeView("/a", true);
+		assertTrue(view.isReadOnly());
+		assertEquals("ad", view.getValue("/a/d"));
+		view.addNodeWithValue("/a/x", "x");
+	}
+
+	@Test public void testSubtreeAndCopy(){
+		FlatTree<String> tree = this.tree();
+		SubtreeView<String> view = tree.subtreeView("/a", true);
+
+		SubtreeView<String> sub = view.getSubtree("/a/b");
+		assertEquals("/a/b", sub.getRoot());
+		assertTrue(sub.isReadOnly());
+		assertEquals(1, sub.size());
+		assertEquals("/a", view.getSubtree("/").getRoot());
+
+		Tree<String> copy = view.getCopy();
+		assertEquals(3, copy.size());
+		tree.addNodeWithValue("/a/z", "az");
+		assertEquals(3, copy.size());
+		assertEquals(4, view.size());
+	}
+
+	@Test public void testMultiParent(){
+		FlatMultiTree<String> tree = new FlatMultiTree<String>();
+		tree.addNodeWithValue("/a/b", "1");
+		tree.addNodeWithValue("/a/b", "2");
+		tree.addNodeWithValue("/c", "3");
+
+		FlatMultiTree<String> target = new FlatMultiTree<String>();
+		assertTrue(target.merge(tree.subtreeView("/a", true)));
+		assertEquals(2, target.getValueMulti("/a/b").size());
+		assertFalse(target.containsNode("/c"));
+
+		SubtreeView<String> view = tree.subtreeView("/a");
+		FlatTree<String> source = new FlatTree<String>();
+		source.addNodeWithValue("/a/x", "x");
+		source.addNodeWithValue("/c/y", "y");
+		assertTrue(view.merge(source));
+		assertEquals("x", tree.getValue("/a/x"));
+		assertFalse(tree.containsNode("/c/y"));
+
+		assertTrue(TreeDiff.compute(tree.subtreeView("/a"), tree.getSubtree("/a")).isEmpty());
+	}
+
+	@Test public void testMergeWithoutCopy(){
+		FlatMultiTree<String> tree = new FlatMultiTree<String>(){
+			@Override
+			public FlatMultiTree<String> getSubtree(Object path, Object name){
+				throw new AssertionError("merging a view must not copy the subtree");
+			}
+		};
+		tree.addNodeWithValue("/config/a", "1");
+		tree.addNodeWithValue("/config/a", "2");
+		tree.addNodeWithValue("/config/a/b", "3");
+		tree.addNodeWithValue("/other", "4");
+
+		FlatMultiTree<String> target = new FlatMultiTree<String>();
+		assertTrue(target.merge(tree.subtreeView("/config", true)));
+		assertEquals(2, target.getValueMulti("/config/a").size());
+		assertEquals("3", target.getValue("/config/a/b"));
+		assertFalse(target.containsNode("/other"));
+	}
+}
@@ -0,0 +1,147 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+import de.vandermeer.skb.base.utils.collections.SetStrategy;
+
+/**
+ * Tests for table queries.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TableQuery {
+
+	private IsAttributeKey[] columns(){
+		return new IsAttributeKey[]{IsAttributeKey.create("type"), IsAttributeKey.create("size"), IsAttributeKey.create("name")};
+	}
+
+	private <T extends Table<Object>> T fill(T table){
+		for(int i=0; i<20; i++){
+			table.addRow("r" + i);
+			table.columnValue("r" + i, "type", "t" + (i%4));
+			if(i!=7){
+				table.columnValue("r" + i, "size", (i*7)%20);
+			}
+			table.columnValue("r" + i, "name", "n" + i);
+		}
+		return table;
+	}
+
+	private List<String> rows(TableQuery<Object> query){
+		List<String> ret=new ArrayList<String>();
+		for(Map<String, Object> row : query){
+			String key=row.keySet().iterator().next();
+			ret.add(key.substring(0, key.indexOf('/', 1)));
+		}
+		return ret;
+	}
+
+	private void assertQueries(Table<Object> table){
+		assertEquals(20, table.query().list().size());
+		assertEquals(3, table.query().list().get(0).size());
+
+		//where
+		assertEquals(Arrays.asList("/r1", "/r5", "/r9", "/r13", "/r17"), this.rows(table.query().whereEquals("type", "t1").orderBy("name", Comparator.comparing(s -> Integer.parseInt(s.toString().substring(1))))));
+		assertEquals(3, table.query().whereEquals("type", "t1").whereBetween("size", 10, true, 19, true).list().size());
+		assertEquals(0, table.query().whereEquals("type", null).list().size());
+		assertEquals(2, table.query().where("name", n -> n.toString().endsWith("1")).list().size());
+
+		//select
+		Map<String, Object> row=table.query().whereEquals("name", "n3").select("size", "type").list().get(0);
+		assertEquals(Arrays.asList("/r3/size", "/r3/type"), new ArrayList<String>(row.keySet()));
+		assertEquals(1, row.get("/r3/size"));
+
+		//order and limit, size is (i*7)%20 and unique, r7 has no size
+		assertEquals(Arrays.asList("/r0", "/r3", "/r6"), this.rows(table.query().orderBy("size").limit(3)));
+		assertEquals(Arrays.asList("/r17", "/r14", "/r11"), this.rows(table.query().orderBy("size", false).limit(3)));
+		assertEquals("/r7", this.rows(table.query().orderBy("size")).get(19));
+		assertEquals("/r7", this.rows(table.query().orderBy("size", false)).get(19));
+		assertEquals(Arrays.asList("/r3", "/r15"), this.rows(table.query().whereEquals("type", "t3").orderBy("size").limit(2)));
+		assertEquals(0, table.query().orderBy("size").limit(0).list().size());
+		assertEquals(20, table.query().limit(50).list().size());
+		assertEquals(4, table.query().limit(4).stream().count());
+	}
+
+	@Test public void testFlatTable(){
+		this.assertQueries(this.fill(new FlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns())));
+	}
+
+	@Test public void testIndexedFlatTable(){
+		FlatTable<Object> table=this.fill(new FlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns()));
+		table.addIndex("type", ColumnIndex.Type.HASH);
+		table.addIndex("size", ColumnIndex.Type.SORTED);
+		this.assertQueries(table);
+	}
+
+	@Test public void testComparatorIndex(){
+		FlatTable<Object> table=this.fill(new FlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns()));
+		table.addIndex("size", (a, b) -> Integer.compare((Integer)b, (Integer)a));
+		assertEquals(Arrays.asList("/r5", "/r2", "/r19", "/r16"), this.rows(table.query().whereBetween("size", 15, true, 12, true)));
+		assertEquals(Arrays.asList("/r2", "/r19"), this.rows(table.query().whereBetween("size", 15, false, 12, false)));
+
+		//the equality index selects the rows, the range is then tested with the ordering of the size index
+		table.addIndex("type", ColumnIndex.Type.HASH);
+		assertEquals(Arrays.asList("/r5"), this.rows(table.query().whereEquals("type", "t1").whereBetween("size", 15, true, 12, true)));
+	}
+
+	@Test public void testOtherTables(){
+		this.assertQueries(this.fill(new ColumnTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns())));
+		this.assertQueries(this.fill(new FlatMultiTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns())));
+		this.assertQueries(this.fill(new ConcurrentFlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns())));
+	}
+
+	@Test public void testLazy(){
+		FlatTable<Object> table=this.fill(new FlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns()));
+		AtomicInteger tested=new AtomicInteger();
+		TableQuery<Object> query=table.query().where("name", n -> tested.incrementAndGet()>0);
+		assertEquals(0, tested.get());
+		Iterator<Map<String, Object>> cursor=query.limit(2).iterator();
+		cursor.next();
+		assertTrue(tested.get()<20);
+
+		//top-k over a sorted index reads only as many rows as needed
+		table.addIndex("size", ColumnIndex.Type.SORTED);
+		tested.set(0);
+		assertEquals(Arrays.asList("/r0", "/r3"), this.rows(table.query().where("name", n -> tested.incrementAndGet()>0).orderBy("size").limit(2)));
+		assertEquals(2, tested.get());
+	}
+
+	@Test public void testToString(){
+		FlatTable<Object> table=new FlatTable<Object>(SetStrategy.LINKED_HASH_SET, this.columns());
+		assertEquals("rows of FlatTable where type = t1 where size [1, 5) select name order by size desc limit 3",
+				table.query().whereEquals("type", "t1").whereBetween("size", 1, true, 5, false).select("name").orderBy("size", false).limit(3).toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNullColumn(){
+		new FlatTable<Object>().query().orderBy(null);
+	}
+}
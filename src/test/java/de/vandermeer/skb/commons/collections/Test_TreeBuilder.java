@@ -0,0 +1,133 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for tree builder.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TreeBuilder {
+
+	private void assertSameIndex(PathMap<?> expected, PathMap<?> actual){
+		assertEquals(new ArrayList<String>(expected.sortedKeys()), new ArrayList<String>(actual.sortedKeys()));
+		for(String key : expected.keySet()){
+			assertEquals(key, expected.getChildCount(key), actual.getChildCount(key));
+			assertEquals(key, expected.hasChildren(key), actual.hasChildren(key));
+		}
+	}
+
+	@Test public void testFlatTree(){
+		TreeBuilder<String> builder = new TreeBuilder<String>();
+		builder.add("/a/b/c", "abc").add("/a", "b", "ab").addNode("/x/y").add("/a/b/c", "abc2").addNode("/a/b/c").add("/a-z", "az");
+		assertEquals(6, builder.size());
+
+		FlatTree<String> tree = builder.buildFlatTree();
+		FlatTree<String> expected = new FlatTree<String>();
+		expected.addNodeWithValue("/a/b/c", "abc");
+		expected.addNodeWithValue("/a", "b", "ab");
+		expected.addNode("/x/y");
+		expected.addNodeWithValue("/a/b/c", "abc2");
+		expected.addNode("/a/b/c");
+		expected.addNodeWithValue("/a-z", "az");
+
+		this.assertSameIndex(expected.sval, tree.sval);
+		assertEquals(expected.sval, tree.sval);
+		assertEquals("abc2", tree.getValue("/a/b/c"));
+		assertEquals(null, tree.getValue("/a"));
+		assertEquals(2, tree.getDirectChildren("/a").size() + tree.getDirectChildren("/x").size());
+
+		//builds are independent
+		FlatTree<String> again = builder.buildFlatTree();
+		again.removeNode("/a");
+		assertTrue(tree.containsNode("/a/b"));
+	}
+
+	@Test public void testMultiTrees(){
+		TreeBuilder<String> builder = new TreeBuilder<String>();
+		builder.add("/a/b", "1").add("/a/b", "2").addNode("/a/c").add("/a/b", null).add("/d", "3");
+
+		FlatMultiTree<String> flat = builder.buildFlatMultiTree();
+		FlatMultiTree<String> expected = new FlatMultiTree<String>();
+		expected.addNodeWithValue("/a/b", "1");
+		expected.addNodeWithValue("/a/b", "2");
+		expected.addNode("/a/c");
+		expected.addNodeWithValue("/a/b", null);
+		expected.addNodeWithValue("/d", "3");
+		this.assertSameIndex(expected.sval, flat.sval);
+		assertEquals(new ArrayList<String>(expected.getValueMulti("/a/b")), new ArrayList<String>(flat.getValueMulti("/a/b")));
+		assertEquals(null, flat.getValueMulti("/a/c"));
+
+		CompactMultiTree<String> compact = builder.buildCompactMultiTree();
+		this.assertSameIndex(expected.sval, compact.sval);
+		assertEquals(3, compact.getValueCount("/a/b"));
+		assertEquals("3", compact.sval.get("/d"));
+		assertTrue(TreeDiff.compute(flat, compact).isEmpty());
+	}
+
+	@Test public void testRootAfterChildren(){
+		TreeBuilder<String> builder = new TreeBuilder<String>();
+		builder.add("/a", "a").add("/b/c", "bc").add("/", "root");
+		FlatTree<String> tree = builder.buildFlatTree();
+
+		FlatTree<String> expected = new FlatTree<String>();
+		expected.addNodeWithValue("/a", "a");
+		expected.addNodeWithValue("/b/c", "bc");
+		expected.addNodeWithValue("/", "root");
+		this.assertSameIndex(expected.sval, tree.sval);
+		assertEquals("root", tree.getValue("/"));
+	}
+
+	@Test public void testRandom(){
+		Random random = new Random(4711);
+		TreeBuilder<Integer> builder = new TreeBuilder<Integer>(5000);
+		FlatTree<Integer> expected = new FlatTree<Integer>();
+		Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+		for(int i=0; i<5000; i++){
+			StringBuilder path = new StringBuilder();
+			int depth = 1 + random.nextInt(5);
+			for(int d=0; d<depth; d++){
+				path.append('/').append((char)('a' + random.nextInt(4))).append((random.nextBoolean())?"-x":"");
+			}
+			builder.add(path.toString(), i);
+			expected.addNodeWithValue(path.toString(), i);
+			map.put(path.toString(), i);
+		}
+		FlatTree<Integer> tree = builder.buildFlatTree();
+		this.assertSameIndex(expected.sval, tree.sval);
+		assertEquals(expected.sval, tree.sval);
+
+		FlatTree<Integer> fromMap = new TreeBuilder<Integer>().addAll(map).buildFlatTree();
+		assertEquals(expected.sval, fromMap.sval);
+
+		builder.clear();
+		assertEquals(0, builder.size());
+		assertTrue(builder.buildFlatTree().isEmpty());
+		assertFalse(tree.isEmpty());
+	}
+}
@@ -0,0 +1,123 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for tree diff.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TreeDiff {
+
+	private <T extends Tree<String>> T from(T tree){
+		tree.addNodeWithValue("/a", "1");
+		tree.addNodeWithValue("/a/b", "2");
+		tree.addNodeWithValue("/a/b/c", "3");
+		tree.addNodeWithValue("/a-x", "4");
+		tree.addNode("/d");
+		return tree;
+	}
+
+	private <T extends Tree<String>> T to(T tree){
+		tree.addNodeWithValue("/a", "1");
+		tree.addNodeWithValue("/a/b", "changed");
+		tree.addNode("/a-x");
+		tree.addNodeWithValue("/d/e", "5");
+		return tree;
+	}
+
+	private void assertDiff(TreeDiff<String> diff){
+		assertEquals(Arrays.asList("/d/e"), Arrays.asList(diff.getAdded().toArray()));
+		assertEquals(Arrays.asList("/a/b/c"), Arrays.asList(diff.getRemoved().toArray()));
+		assertEquals(Arrays.asList("/a-x", "/a/b"), Arrays.asList(diff.getChanged().toArray()));
+		assertEquals("5", diff.getValue("/d/e"));
+		assertEquals("changed", diff.getValue("/a/b"));
+		assertNull(diff.getValue("/a-x"));
+		assertTrue(diff.getValues("/a-x").isEmpty());
+		assertNull(diff.getValues("/a"));
+		assertEquals(4, diff.size());
+	}
+
+	@Test public void testFlatTree(){
+		FlatTree<String> from=this.from(new FlatTree<String>());
+		FlatTree<String> to=this.to(new FlatTree<String>());
+		TreeDiff<String> diff=TreeDiff.compute(from, to);
+		this.assertDiff(diff);
+
+		assertTrue(TreeDiff.compute(from, from.getCopy()).isEmpty());
+
+		assertTrue(diff.apply(from));
+		assertTrue(TreeDiff.compute(from, to).isEmpty());
+		assertFalse(diff.apply(null));
+	}
+
+	@Test public void testCrossType(){
+		this.assertDiff(TreeDiff.compute(this.from(new PersistentTree<String>()), this.to(new ConcurrentFlatTree<String>())));
+		this.assertDiff(TreeDiff.compute(this.from(new TrieTree<String>()), this.to(new FlatTree<String>())));
+		this.assertDiff(TreeDiff.compute(this.from(new FlatMultiTree<String>()), this.to(new PersistentTree<String>())));
+
+		ConcurrentFlatTree<String> target=this.from(new ConcurrentFlatTree<String>());
+		TreeDiff.compute(this.from(new FlatTree<String>()), this.to(new TrieTree<String>())).apply(target);
+		assertTrue(TreeDiff.compute(target, this.to(new FlatTree<String>())).isEmpty());
+	}
+
+	@Test public void testMultiTree(){
+		FlatMultiTree<String> from=new FlatMultiTree<String>();
+		from.addNodeWithValue("/a", "1");
+		from.addNodeWithValue("/a", "2");
+		from.addNodeWithValue("/b", "3");
+
+		FlatMultiTree<String> to=new FlatMultiTree<String>();
+		to.addNodeWithValue("/a", "1");
+		to.addNodeWithValue("/a", "2");
+		to.addNodeWithValue("/b", "3");
+		to.addNodeWithValue("/b", "4");
+		assertTrue(TreeDiff.compute(from, to.getCopy()).getChanged().contains("/b"));
+
+		TreeDiff<String> diff=TreeDiff.compute(from, to);
+		assertEquals(1, diff.size());
+		assertEquals(Arrays.asList("3", "4"), diff.getValues("/b"));
+
+		diff.apply(from);
+		assertEquals(Arrays.asList("3", "4"), Arrays.asList(from.getValueMulti("/b").toArray()));
+		assertTrue(TreeDiff.compute(from, to).isEmpty());
+	}
+
+	@Test public void testApplyEvents(){
+		FlatTree<String> from=this.from(new FlatTree<String>());
+		List<List<TreeEvent<String>>> batches=new ArrayList<List<TreeEvent<String>>>();
+		from.addListener(batches::add);
+		TreeDiff.compute(from, this.to(new FlatTree<String>())).apply(from);
+		assertEquals(1, batches.size());
+		assertEquals("[NODE_REMOVED /a/b/c (3 -> null), NODE_ADDED /d/e (null -> 5), VALUE_CHANGED /a-x (4 -> null), VALUE_CHANGED /a/b (2 -> changed)]", batches.get(0).toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class) public void testNull(){
+		TreeDiff.compute(new FlatTree<String>(), null);
+	}
+}
@@ -0,0 +1,172 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.categories.kvt.IsAttributeKey;
+
+/**
+ * Tests for tree and table change events.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TreeEvents {
+
+	/** Listener recording all batches as text. */
+	static class Recorder<E> implements TreeListener<E> {
+		final List<List<String>> batches = new ArrayList<List<String>>();
+
+		@Override
+		public void changed(List<TreeEvent<E>> events) {
+			List<String> batch = new ArrayList<String>();
+			for(TreeEvent<E> event : events){
+				batch.add(event.getType() + " " + event.getPath() + " " + event.getOldValue() + " " + event.getNewValue());
+			}
+			this.batches.add(batch);
+		}
+
+		List<String> last(){
+			return this.batches.get(this.batches.size()-1);
+		}
+	}
+
+	@Test public void testFlatTree(){
+		FlatTree<String> tree=new FlatTree<String>();
+		assertNull(tree.events);
+
+		Recorder<String> rec=new Recorder<String>();
+		tree.addListener(rec);
+
+		tree.addNode("/a/b/c");
+		assertEquals(1, rec.batches.size());
+		assertEquals("[NODE_ADDED /a null null, NODE_ADDED /a/b null null, NODE_ADDED /a/b/c null null]", rec.last().toString());
+
+		tree.addNode("/a/b");
+		assertEquals(1, rec.batches.size());
+
+		tree.addNodeWithValue("/a/x", "v1");
+		assertEquals("[NODE_ADDED /a/x null v1]", rec.last().toString());
+		tree.addNodeWithValue("/a/x", "v2");
+		assertEquals("[VALUE_CHANGED /a/x v1 v2]", rec.last().toString());
+		tree.addNodeWithValue(PathKey.create("/a/x"), "v2");
+		assertEquals(3, rec.batches.size());
+		tree.removeValue("/a/x");
+		assertEquals("[VALUE_CHANGED /a/x v2 null]", rec.last().toString());
+
+		tree.removeNode("/a/x");
+		assertEquals("[NODE_REMOVED /a/x null null]", rec.last().toString());
+		tree.removeNode("/a/b");
+		assertEquals("[SUBTREE_REMOVED /a/b null null]", rec.last().toString());
+		int count=rec.batches.size();
+		tree.removeNode("/missing");
+		assertEquals(count, rec.batches.size());
+
+		tree.batch(() -> {
+			tree.addNodeWithValue("/n/1", "1");
+			tree.addNodeWithValue("/n/2", "2");
+		});
+		assertEquals("[NODE_ADDED /n null null, NODE_ADDED /n/1 null 1, NODE_ADDED /n/2 null 2]", rec.last().toString());
+
+		tree.clear();
+		assertEquals("[SUBTREE_REMOVED / null null]", rec.last().toString());
+
+		tree.removeListener(rec);
+		assertNull(tree.events);
+		count=rec.batches.size();
+		tree.addNode("/z");
+		assertEquals(count, rec.batches.size());
+	}
+
+	@Test public void testFlatTreeMerge(){
+		FlatTree<String> tree=new FlatTree<String>();
+		tree.addNodeWithValue("/a", "old");
+		Recorder<String> rec=new Recorder<String>();
+		tree.addListener(rec);
+
+		FlatTree<String> source=new FlatTree<String>();
+		source.addNodeWithValue("/a", "new");
+		source.addNodeWithValue("/a/b", "b");
+		tree.merge(source);
+		assertEquals(1, rec.batches.size());
+		assertEquals("[VALUE_CHANGED /a old new, NODE_ADDED /a/b null b]", rec.last().toString());
+	}
+
+	@Test public void testFlatMultiTree(){
+		FlatMultiTree<String> tree=new FlatMultiTree<String>();
+		Recorder<String> rec=new Recorder<String>();
+		tree.addListener(rec);
+
+		tree.addNodeWithValue("/a/b", "v1");
+		assertEquals("[NODE_ADDED /a null null, NODE_ADDED /a/b null null, VALUE_CHANGED /a/b null v1]", rec.last().toString());
+		tree.addNodeWithValue("/a/b", "v2");
+		assertEquals("[VALUE_CHANGED /a/b null v2]", rec.last().toString());
+		tree.removeMultiValue("/a/b", "v1");
+		assertEquals("[VALUE_CHANGED /a/b v1 null]", rec.last().toString());
+		tree.removeValue("/a/b");
+		assertEquals("[VALUE_CHANGED /a/b v2 null]", rec.last().toString());
+
+		FlatMultiTree<String> source=new FlatMultiTree<String>();
+		source.addNodeWithValue("/a/b", "x");
+		source.addNodeWithValue("/c", "y");
+		int count=rec.batches.size();
+		tree.merge(source);
+		assertEquals(count+1, rec.batches.size());
+		assertEquals("[VALUE_CHANGED /a/b null x, NODE_ADDED /c null null, VALUE_CHANGED /c null y]", rec.last().toString());
+
+		tree.removeNode("/a");
+		assertEquals("[SUBTREE_REMOVED /a null null]", rec.last().toString());
+	}
+
+	@Test public void testTables(){
+		IsAttributeKey[] c=new IsAttributeKey[]{IsAttributeKey.create("col1"), IsAttributeKey.create("col2")};
+		FlatTable<String> table=new FlatTable<String>(null, c);
+		Recorder<String> rec=new Recorder<String>();
+		table.addListener(rec);
+
+		table.addRowsAll(new String[]{"r1", "r2"});
+		assertEquals(1, rec.batches.size());
+		assertEquals(6, rec.last().size());
+		assertEquals("NODE_ADDED /r1 null null", rec.last().get(0));
+		assertEquals("NODE_ADDED /r1/col1 null null", rec.last().get(1));
+
+		table.columnValue("r1", "col1", "v");
+		assertEquals("[VALUE_CHANGED /r1/col1 null v]", rec.last().toString());
+		table.removeColumnValue("r1", "col1");
+		assertEquals("[VALUE_CHANGED /r1/col1 v null]", rec.last().toString());
+		table.removeRow("r2");
+		assertEquals("[SUBTREE_REMOVED /r2 null null]", rec.last().toString());
+
+		FlatMultiTable<String> multi=new FlatMultiTable<String>(null, c);
+		Recorder<String> mrec=new Recorder<String>();
+		multi.addListener(mrec);
+		assertTrue(multi.addRow("r1"));
+		assertEquals(3, mrec.last().size());
+		multi.columnValue("r1", "col2", "a");
+		multi.columnValue("r1", "col2", "b");
+		assertEquals("[VALUE_CHANGED /r1/col2 null b]", mrec.last().toString());
+		multi.clear();
+		assertEquals("[SUBTREE_REMOVED / null null]", mrec.last().toString());
+	}
+}
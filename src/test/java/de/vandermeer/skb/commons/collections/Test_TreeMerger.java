@@ -0,0 +1,191 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for tree merger.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TreeMerger {
+
+	private FlatTree<String> source(){
+		FlatTree<String> ret=new FlatTree<String>();
+		ret.addNodeWithValue("/a/b", "s1");
+		ret.addNodeWithValue("/a/c", "s2");
+		ret.addNode("/d");
+		return ret;
+	}
+
+	private FlatTree<String> target(){
+		FlatTree<String> ret=new FlatTree<String>();
+		ret.addNodeWithValue("/a/b", "t1");
+		ret.addNodeWithValue("/d", "t2");
+		return ret;
+	}
+
+	@Test public void testPolicies(){
+		FlatTree<String> target=this.target();
+		MergeStatistics stats=new TreeMerger<String>(MergePolicy.KEEP()).merge(target, this.source());
+		assertEquals("t1", target.getValue("/a/b"));
+		assertEquals("s2", target.getValue("/a/c"));
+		assertEquals(1, stats.getAdded());
+		assertEquals(3, stats.getKept());
+		assertEquals(0, stats.getOverwritten());
+		assertEquals(4, stats.getTotal());
+
+		target=this.target();
+		stats=new TreeMerger<String>(MergePolicy.OVERWRITE()).merge(target, this.source());
+		assertEquals("s1", target.getValue("/a/b"));
+		assertNull(target.getValue("/d"));
+		assertEquals(2, stats.getOverwritten());
+
+		target=this.target();
+		stats=new TreeMerger<String>(MergePolicy.OVERWRITE_IF_SET()).merge(target, this.source());
+		assertEquals("s1", target.getValue("/a/b"));
+		assertEquals("t2", target.getValue("/d"));
+		assertEquals(1, stats.getOverwritten());
+		assertEquals(2, stats.getKept());
+
+		target=this.target();
+		stats=new TreeMerger<String>((key, current, incoming) -> current + "+" + incoming).merge(target, this.source());
+		assertEquals("t1+s1", target.getValue("/a/b"));
+		assertEquals("t2+null", target.getValue("/d"));
+
+		assertNull(new TreeMerger<String>(MergePolicy.KEEP()).merge(target, null));
+	}
+
+	@Test public void testCrossType(){
+		FlatMultiTree<String> multi=new FlatMultiTree<String>();
+		multi.addNodeWithValue("/a/b", "m1");
+		assertTrue(multi.merge(this.source()));
+		assertEquals(2, multi.getValueMulti("/a/b").size());
+		assertEquals("s2", multi.getValue("/a/c"));
+		assertTrue(multi.containsNode("/d"));
+
+		FlatMultiTree<String> copy=new FlatMultiTree<String>();
+		assertTrue(copy.merge(multi));
+		copy.addNodeWithValue("/a/c", "x");
+		assertEquals(1, multi.getValueMulti("/a/c").size());	// collections are not shared
+
+		FlatTree<String> flat=new FlatTree<String>();
+		assertTrue(flat.merge(multi));
+		assertEquals("m1", flat.getValue("/a/b"));
+		assertEquals(multi.size(), flat.size());
+	}
+
+	@Test public void testParallel(){
+		FlatTree<Integer> source=new FlatTree<Integer>();
+		for(int i=0; i<2000; i++){
+			source.addNodeWithValue("/" + (i%16) + "/" + (i%7) + "/" + i, i);
+		}
+		FlatTree<Integer> sequential=new FlatTree<Integer>();
+		FlatTree<Integer> parallel=new FlatTree<Integer>();
+		ConcurrentFlatTree<Integer> concurrent=new ConcurrentFlatTree<Integer>();
+		for(int i=0; i<2000; i+=3){
+			sequential.addNodeWithValue("/" + (i%16) + "/" + (i%7) + "/" + i, -i);
+			parallel.addNodeWithValue("/" + (i%16) + "/" + (i%7) + "/" + i, -i);
+			concurrent.addNodeWithValue("/" + (i%16) + "/" + (i%7) + "/" + i, -i);
+		}
+
+		MergePolicy<Integer> policy=(key, current, incoming) -> (current==null || incoming==null)?current:Integer.valueOf(Math.max(current, incoming));
+		ForkJoinPool pool=new ForkJoinPool(4);
+		try{
+			MergeStatistics expected=new TreeMerger<Integer>(policy).merge(sequential, source);
+			MergeStatistics stats=new TreeMerger<Integer>(policy, pool).merge(parallel, source);
+			MergeStatistics cstats=new TreeMerger<Integer>(policy, pool).merge(concurrent, source);
+
+			assertEquals(expected.toString(), stats.toString());
+			assertEquals(expected.toString(), cstats.toString());
+			assertEquals(sequential.size(), parallel.size());
+			assertEquals(sequential.size(), concurrent.size());
+			for(String key : sequential.keys()){
+				assertEquals(sequential.getValue(key), parallel.getValue(key));
+				assertEquals(sequential.getValue(key), concurrent.getValue(key));
+				assertEquals(sequential.hasChildren(key), parallel.hasChildren(key));
+			}
+		}
+		finally{
+			pool.shutdown();
+		}
+	}
+
+	@Test public void testParallelKeep(){
+		FlatTree<Integer> target=new FlatTree<Integer>();
+		FlatTree<Integer> source=new FlatTree<Integer>();
+		for(int i=0; i<20000; i++){
+			String key="/" + (i%32) + "/" + (i%11) + "/" + i;
+			if(i%2==0){
+				target.addNodeWithValue(key, -i);
+			}
+			source.addNodeWithValue(key, i);
+		}
+		FlatTree<Integer> before=target.getCopy();
+
+		ForkJoinPool pool=new ForkJoinPool(4);
+		try{
+			MergeStatistics stats=new TreeMerger<Integer>(MergePolicy.<Integer>KEEP(), pool).merge(target, source);
+			for(String key : before.keys()){
+				assertEquals(before.getValue(key), target.getValue(key));
+			}
+			assertEquals(source.size(), target.size());
+			assertEquals(source.size() - before.size(), stats.getAdded());
+			assertEquals(0, stats.getOverwritten());
+		}
+		finally{
+			pool.shutdown();
+		}
+	}
+
+	@Test public void testParentsFirst(){
+		FlatTree<String> source=new FlatTree<String>();
+		for(int i=0; i<50; i++){
+			source.addNodeWithValue("/p" + i, "p" + i);
+			source.addNodeWithValue("/p" + i + "/c", "c" + i);
+			source.addNodeWithValue("/p" + i + "/c/g", "g" + i);
+		}
+		this.assertParentsFirst(new ConcurrentFlatTree<String>(), source, MergePolicy.<String>KEEP());
+		this.assertParentsFirst(new PersistentTree<String>(), source, MergePolicy.<String>KEEP());
+		this.assertParentsFirst(new ConcurrentFlatTree<String>(), source, MergePolicy.<String>OVERWRITE_IF_SET());
+		this.assertParentsFirst(new PersistentTree<String>(), source, MergePolicy.<String>OVERWRITE_IF_SET());
+	}
+
+	/**
+	 * Merges a source with parent and child values into an empty target and checks that all nodes are added with their values.
+	 * @param target empty target
+	 * @param source source with 50 subtrees of 3 nodes
+	 * @param policy merge policy
+	 */
+	private void assertParentsFirst(Tree<String> target, FlatTree<String> source, MergePolicy<String> policy){
+		MergeStatistics stats=new TreeMerger<String>(policy).merge(target, source);
+		for(int i=0; i<50; i++){
+			assertEquals("p" + i, target.getValue("/p" + i));
+			assertEquals("c" + i, target.getValue("/p" + i + "/c"));
+		}
+		assertEquals(150, stats.getAdded());
+		assertEquals(0, stats.getKept());
+		assertEquals(0, stats.getOverwritten());
+	}
+}
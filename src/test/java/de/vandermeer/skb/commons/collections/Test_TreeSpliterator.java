@@ -0,0 +1,128 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * Tests for tree spliterator and streams.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TreeSpliterator {
+
+	private <T extends Tree<String>> T fill(T tree){
+		tree.addNode("/b/y");
+		tree.addNode("/a/x/2");
+		tree.addNode("/a/x/1");
+		tree.addNode("/a-z");
+		tree.addNode("/a/w");
+		return tree;
+	}
+
+	private List<String> expected(){
+		return Arrays.asList("/a", "/a/w", "/a/x", "/a/x/1", "/a/x/2", "/a-z", "/b", "/b/y");
+	}
+
+	private void assertTree(Tree<String> tree){
+		assertEquals(this.expected(), tree.stream("/").collect(Collectors.toList()));
+		assertEquals(this.expected(), tree.parallelStream("/").collect(Collectors.toList()));
+		assertEquals(Arrays.asList("/a/w", "/a/x", "/a/x/1", "/a/x/2"), tree.stream("/a").collect(Collectors.toList()));
+		assertEquals(0, tree.stream("/a/w").count());
+		assertEquals(0, tree.stream("/missing").count());
+
+		List<String> level=new ArrayList<String>();
+		tree.spliterator("/", TreeSpliterator.Order.DEPTH_FIRST, 1).forEachRemaining(level::add);
+		assertEquals(Arrays.asList("/a", "/a-z", "/b"), level);
+
+		List<String> bfs=new ArrayList<String>();
+		tree.spliterator("/", TreeSpliterator.Order.BREADTH_FIRST, Integer.MAX_VALUE).forEachRemaining(bfs::add);
+		assertEquals(Arrays.asList("/a", "/a-z", "/b", "/a/w", "/a/x", "/b/y", "/a/x/1", "/a/x/2"), bfs);
+	}
+
+	@Test public void testTrees() throws IOException {
+		this.assertTree(this.fill(new FlatTree<String>()));
+		this.assertTree(this.fill(new FlatMultiTree<String>()));
+		this.assertTree(this.fill(new ConcurrentFlatTree<String>()));
+		this.assertTree(this.fill(new ConcurrentFlatMultiTree<String>()));
+		this.assertTree(this.fill(new PersistentTree<String>()));
+		this.assertTree(this.fill(new TrieTree<String>()));
+
+		File file=File.createTempFile("skb-spliterator", ".dat");
+		file.delete();
+		file.deleteOnExit();
+		new File(file.getPath() + ".idx").deleteOnExit();
+		try(MappedTree<String> tree=new MappedTree<String>(file, ValueCodec.UTF8, MappedTree.MIN_CHUNK_SIZE)){
+			this.assertTree(this.fill(tree));
+		}
+	}
+
+	@Test public void testDirectChildren(){
+		FlatTree<String> tree=this.fill(new FlatTree<String>());
+		assertEquals(Arrays.asList("/a/w", "/a/x"), Tree.directChildren(tree, "/a"));
+		assertEquals(Arrays.asList("/a", "/a-z", "/b"), Tree.directChildren(tree, "/"));
+	}
+
+	@Test public void testDepth(){
+		TreeSpliterator it=this.fill(new FlatTree<String>()).spliterator("/a");
+		List<Integer> depths=new ArrayList<Integer>();
+		while(it.tryAdvance(path -> {})){
+			depths.add(it.getDepth());
+		}
+		assertEquals(Arrays.asList(1, 1, 2, 2), depths);
+	}
+
+	@Test public void testSplit(){
+		FlatTree<Integer> tree=new FlatTree<Integer>();
+		for(int i=0; i<1000; i++){
+			tree.addNode("/" + (i%10) + "/" + (i%100) + "/" + i);
+		}
+		List<String> expected=tree.stream("/").collect(Collectors.toList());
+		assertEquals(tree.size(), expected.size());
+
+		//split as deep as possible, the concatenated results must keep the order
+		List<String> actual=new ArrayList<String>();
+		this.split(tree.spliterator("/"), actual);
+		assertEquals(expected, actual);
+
+		assertNull(tree.spliterator("/", TreeSpliterator.Order.BREADTH_FIRST, Integer.MAX_VALUE).trySplit());
+		assertTrue(tree.parallelStream("/").filter(path -> TreeSpliterator.depth(path)==3).count()==1000);
+	}
+
+	private void split(Spliterator<String> it, List<String> list){
+		Spliterator<String> prefix=it.trySplit();
+		if(prefix!=null){
+			this.split(prefix, list);
+			this.split(it, list);
+		}
+		else{
+			it.forEachRemaining(list::add);
+		}
+	}
+}
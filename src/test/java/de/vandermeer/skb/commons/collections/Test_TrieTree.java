@@ -0,0 +1,144 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+import de.vandermeer.skb.base.composite.Com_Coin;
+import de.vandermeer.skb.base.composite.Com_Leaf;
+import de.vandermeer.skb.base.composite.Com_Node;
+import de.vandermeer.skb.base.composite.Com_Top;
+
+/**
+ * Tests for trie tree.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_TrieTree {
+
+	@Test public void testTypes(){
+		Com_Top t;
+		t=new TrieTree<Object>();
+		assertTrue(t instanceof Tree);
+		assertTrue(t instanceof Com_Node);
+		assertFalse(t instanceof Com_Leaf);
+		assertFalse(t instanceof Com_Coin);
+	}
+
+	@Test public void testConstructor(){
+		TrieTree<String> tree=new TrieTree<String>();
+		assertEquals(0, tree.size());
+		assertEquals(null, tree.getValue("/"));
+		assertTrue(tree.keys().isEmpty());
+		assertTrue(tree.isEmpty());
+	}
+
+	@Test public void testAddAndRemove(){
+		TrieTree<String> tree=new TrieTree<String>();
+		assertTrue(tree.addNodeWithValue("/a/b/c", "v1"));
+		assertTrue(tree.addNodeWithValue("a/b", "d", "v2"));
+		assertEquals(4, tree.size());
+		assertTrue(tree.containsNode("/a"));
+		assertTrue(tree.containsNode("/a/b"));
+		assertEquals("v1", tree.getValue("/a/b/c"));
+		assertEquals("v2", tree.getValue("/a/b", "d"));
+		assertNull(tree.getValue("/a/b"));
+
+		assertTrue(tree.hasChildren("/a/b"));
+		assertFalse(tree.hasChildren("/a/b/c"));
+
+		Collection<String> children=tree.getChildrenNames("/a");
+		assertEquals(3, children.size());
+		assertTrue(children.contains("/a/b/d"));
+
+		assertTrue(tree.removeValue("/a/b/c"));
+		assertNull(tree.getValue("/a/b/c"));
+		assertTrue(tree.containsNode("/a/b/c"));
+
+		assertTrue(tree.removeNode("/a/b"));
+		assertFalse(tree.containsNode("/a/b/c"));
+		assertEquals(1, tree.size());
+		assertEquals(1, tree.keys().size());
+	}
+
+	@Test public void testSubtreeAndMerge(){
+		TrieTree<String> tree=new TrieTree<String>();
+		tree.addNodeWithValue("/a/b/c", "v1");
+		tree.addNodeWithValue("/a/x/c", "v2");
+
+		TrieTree<String> sub=tree.getSubtree("/a/b");
+		assertEquals(1, sub.size());
+		assertTrue(sub.containsNode("/a/b/c"));
+		assertFalse(sub.containsNode("/a/b"));
+		assertFalse(sub.containsNode("/a/x/c"));
+
+		FlatTree<String> flat=new FlatTree<String>();
+		flat.addNodeWithValue("/a/b/c", "new");
+		flat.addNodeWithValue("/y", "v3");
+		assertTrue(tree.merge(flat));
+		assertEquals("new", tree.getValue("/a/b/c"));
+		assertEquals("v3", tree.getValue("/y"));
+		assertEquals("v2", tree.getValue("/a/x/c"));
+
+		TrieTree<String> copy=tree.getCopy();
+		copy.removeNode("/a");
+		assertTrue(tree.containsNode("/a/b/c"));
+		assertEquals(tree.size()-5, copy.size());
+	}
+
+	@Test public void testSavedBytes(){
+		TrieTree<String> tree=new TrieTree<String>();
+		for(int i=0; i<100; i++){
+			tree.addNodeWithValue("/skb/context/properties/property-" + i + "/value.type", "string");
+			tree.addNodeWithValue("/skb/context/properties/property-" + i + "/value.default", "default");
+		}
+		assertTrue(tree.estimateSavedBytes()>0);
+		assertTrue(tree.estimateFlatBytes()>tree.estimateTrieBytes());
+	}
+
+	@Test public void testSegments(){
+		TrieTree<String> tree=new TrieTree<String>();
+		for(int i=0; i<100; i++){
+			tree.addNodeWithValue("/skb/properties/property-" + i + "/value.type", "string");
+		}
+		assertEquals(103, tree.segments.size());
+
+		//a subtree and a copy only hold the segments of their own nodes
+		TrieTree<String> sub=tree.getSubtree("/skb/properties/property-7");
+		assertEquals(4, sub.segments.size());
+		assertTrue(sub.estimateTrieBytes()<tree.estimateTrieBytes()/20);
+		TrieTree<String> copy=tree.getCopy();
+		assertEquals(103, copy.segments.size());
+
+		//segments are dropped with their last node
+		for(int i=0; i<100; i++){
+			tree.removeNode("/skb/properties/property-" + i);
+		}
+		assertEquals(2, tree.segments.size());
+		tree.removeNode("/skb");
+		assertEquals(0, tree.segments.size());
+		assertEquals(103, copy.segments.size());
+		assertEquals(100, copy.segments.get("value.type").uses);
+	}
+}
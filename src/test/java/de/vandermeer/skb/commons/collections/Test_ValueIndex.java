@@ -0,0 +1,132 @@
+/* Copyright 2014 Sven van der Meer <vdmeer.sven@mykolab.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.vandermeer.skb.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for value index.
+ *
+ * @author     Sven van der Meer &lt;vdmeer.sven@mykolab.com&gt;
+ * @version    v0.0.4 build 150701 (01-Jul-15) for Java 1.8
+ */
+public class Test_ValueIndex {
+
+	private Set<String> set(String ... paths){
+		return new HashSet<String>(Arrays.asList(paths));
+	}
+
+	@Test public void testFlatTree(){
+		FlatTree<String> tree = new FlatTree<String>();
+		tree.addNodeWithValue("/a", "x");
+		ValueIndex<String> index = new ValueIndex<String>(tree);
+		assertEquals(this.set("/a"), index.getPaths("x"));
+
+		tree.addNodeWithValue("/b/c", "x");
+		tree.addNodeWithValue("/b/d", "y");
+		assertEquals(this.set("/a", "/b/c"), index.getPaths("x"));
+		assertEquals(this.set("/b/d"), index.getPaths("y"));
+
+		tree.addNodeWithValue("/a", "y");
+		assertEquals(this.set("/b/c"), index.getPaths("x"));
+		assertEquals(this.set("/a", "/b/d"), index.getPaths("y"));
+
+		tree.removeValue("/a");
+		assertEquals(this.set("/b/d"), index.getPaths("y"));
+
+		tree.removeNode("/b");
+		assertTrue(index.getPaths("x").isEmpty());
+		assertFalse(index.containsKey("y"));
+
+		FlatTree<String> other = new FlatTree<String>();
+		other.addNodeWithValue("/m/n", "z");
+		tree.merge(other);
+		assertEquals(this.set("/m/n"), index.getPaths("z"));
+
+		tree.clear();
+		assertTrue(index.keySet().isEmpty());
+
+		index.close();
+		tree.addNodeWithValue("/q", "z");
+		assertTrue(index.getPaths("z").isEmpty());
+	}
+
+	@Test public void testMultiTreeWithExtractor(){
+		FlatMultiTree<Object> tree = new FlatMultiTree<Object>();
+		ValueIndex<Object> index = new ValueIndex<Object>(tree, Object::getClass);
+		tree.addNodeWithValue("/h/a", "handler");
+		tree.addNodeWithValue("/h/a", 1);
+		tree.addNodeWithValue("/h/b", 2);
+		tree.addNodeWithValue("/h/b", 3);
+		tree.addNodeWithValue("/h/c", null);
+
+		assertEquals(this.set("/h/a"), index.getPaths(String.class));
+		assertEquals(this.set("/h/a", "/h/b"), index.getPaths(Integer.class));
+
+		tree.removeMultiValue("/h/b", 2);
+		assertEquals(this.set("/h/a", "/h/b"), index.getPaths(Integer.class));
+		tree.removeMultiValue("/h/b", 3);
+		assertEquals(this.set("/h/a"), index.getPaths(Integer.class));
+
+		tree.removeValue("/h/a");
+		assertFalse(index.containsKey(String.class));
+		assertFalse(index.containsKey(Integer.class));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsupportedTree(){
+		new ValueIndex<String>(new TrieTree<String>());
+	}
+
+	@Test public void testRandom(){
+		Random random = new Random(17);
+		FlatMultiTree<Integer> tree = new FlatMultiTree<Integer>();
+		ValueIndex<Integer> index = new ValueIndex<Integer>(tree);
+		for(int i=0; i<2000; i++){
+			String path = "/" + random.nextInt(5) + "/" + random.nextInt(5);
+			switch(random.nextInt(6)){
+				case 0: tree.removeNode((random.nextBoolean())?path:"/" + random.nextInt(5)); break;
+				case 1: tree.removeValue(path); break;
+				case 2: tree.removeMultiValue(path, random.nextInt(10)); break;
+				default: tree.addNodeWithValue(path, random.nextInt(10));
+			}
+		}
+
+		Map<Object, Set<String>> expected = new HashMap<Object, Set<String>>();
+		for(String key : tree.keys()){
+			if(tree.getValueMulti(key)!=null){
+				for(Integer value : tree.getValueMulti(key)){
+					expected.computeIfAbsent(value, k -> new HashSet<String>()).add(key);
+				}
+			}
+		}
+		assertEquals(expected.keySet(), index.keySet());
+		for(Object key : expected.keySet()){
+			assertEquals(expected.get(key), index.getPaths(key));
+		}
+	}
+}